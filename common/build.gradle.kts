@@ -4,6 +4,7 @@ import java.io.IOException
 plugins {
     bluemap.base
     alias ( libs.plugins.node.gradle )
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 dependencies {
@@ -22,9 +23,18 @@ dependencies {
 
     // tests
     testImplementation ( libs.junit.core )
+    testImplementation ( libs.mockito.core )
     testRuntimeOnly ( libs.junit.engine )
     testRuntimeOnly ( libs.lombok )
     testAnnotationProcessor ( libs.lombok )
+
+    // benchmarks
+    jmh ( libs.sqlite.jdbc )
+}
+
+jmh {
+    // run with e.g.: ./gradlew :common:jmh -PjmhIncludes=TileCacheBenchmark
+    project.findProperty("jmhIncludes")?.let { includes.add(it.toString()) }
 }
 
 node {
@@ -0,0 +1,143 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.common.web;
+
+import de.bluecolored.bluemap.core.storage.GridStorage;
+import de.bluecolored.bluemap.core.storage.ItemMetadata;
+import de.bluecolored.bluemap.core.storage.ItemStorage;
+import de.bluecolored.bluemap.core.storage.compression.CompressedInputStream;
+import de.bluecolored.bluemap.core.storage.compression.Compression;
+import de.bluecolored.bluemap.core.storage.sql.Database;
+import de.bluecolored.bluemap.core.storage.sql.SQLStorage;
+import de.bluecolored.bluemap.core.storage.sql.commandset.SqliteCommandSet;
+import de.bluecolored.bluemap.core.util.FileHelper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Compares serving hires-tiles (data and metadata, like the {@link MapStorageRequestHandler} does) directly from an
+ * sql-storage (sqlite) against serving them through the {@link TileCache}, with most requests hitting a small set of
+ * hot tiles. File- and pack-storages are not compared, the cache passes their tiles through to the storage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Threads(8)
+@Fork(1)
+public class TileCacheBenchmark {
+
+    private static final String MAP = "benchmark";
+    private static final int TILE_SIZE = 32 * 1024;
+
+    @Param({"64", "1024"})
+    public int hotTiles;
+
+    @Param({"4096"})
+    public int tiles;
+
+    private Path root;
+    private SQLStorage storage;
+    private GridStorage gridStorage;
+    private TileCache.MapTiles mapTiles;
+
+    @Setup
+    public void setup() throws IOException {
+        root = Files.createTempDirectory("bluemap-benchmark");
+        storage = new SQLStorage(new SqliteCommandSet(new Database(
+                "jdbc:sqlite:" + root.resolve("benchmark.db"), Map.of(), 1
+        )), Compression.GZIP);
+        storage.initialize();
+        gridStorage = storage.map(MAP).hiresTiles();
+
+        Random random = new Random(0);
+        byte[] data = new byte[TILE_SIZE];
+        for (int i = 0; i < tiles; i++) {
+            random.nextBytes(data);
+            try (OutputStream out = gridStorage.write(x(i), z(i))) {
+                out.write(data);
+            }
+        }
+
+        mapTiles = new TileCache(TileCache.DEFAULT_MAX_MEMORY_USAGE).map(MAP);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        storage.close();
+        try (Stream<Path> files = FileHelper.walk(root)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList())
+                Files.deleteIfExists(file);
+        }
+    }
+
+    @Benchmark
+    public long storage() throws IOException {
+        int i = nextTile();
+        return serve(gridStorage.cell(x(i), z(i)));
+    }
+
+    @Benchmark
+    public long cached() throws IOException {
+        int i = nextTile();
+        return serve(mapTiles.cell(0, gridStorage, x(i), z(i)));
+    }
+
+    private long serve(ItemStorage tile) throws IOException {
+        ItemMetadata metadata = tile.metadata();
+        try (CompressedInputStream in = tile.read()) {
+            if (in == null) return 0;
+            return in.readAllBytes().length + (metadata != null ? metadata.length() : 0);
+        }
+    }
+
+    /**
+     * 90% of the requests go to the hot tiles, the rest is spread over all tiles
+     */
+    private int nextTile() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return random.nextInt(10) != 0 ? random.nextInt(hotTiles) : random.nextInt(tiles);
+    }
+
+    private int x(int i) {
+        return i % 64 - 32;
+    }
+
+    private int z(int i) {
+        return i / 64 - 32;
+    }
+
+}
@@ -35,6 +35,7 @@
 import de.bluecolored.bluemap.common.config.MapConfig;
 import de.bluecolored.bluemap.common.config.storage.StorageConfig;
 import de.bluecolored.bluemap.common.plugin.Plugin;
+import de.bluecolored.bluemap.common.debug.DebugDump;
 import de.bluecolored.bluemap.common.debug.StateDumper;
 import de.bluecolored.bluemap.core.logger.Logger;
 import de.bluecolored.bluemap.core.map.BmMap;
@@ -46,6 +47,7 @@
 import de.bluecolored.bluemap.core.util.FileHelper;
 import de.bluecolored.bluemap.core.util.Key;
 import de.bluecolored.bluemap.core.world.World;
+import de.bluecolored.bluemap.core.world.mca.ChunkCache;
 import de.bluecolored.bluemap.core.world.mca.MCAWorld;
 import org.jetbrains.annotations.Nullable;
 import org.spongepowered.configurate.ConfigurateException;
@@ -77,6 +79,7 @@ public class BlueMapService implements Closeable {
     private final Map<String, World> worlds;
     private final Map<String, BmMap> maps;
     private final Map<String, Storage> storages;
+    private @Nullable ChunkCache chunkCache;
 
 
     public BlueMapService(BlueMapConfiguration configuration, @Nullable ResourcePack preloadedResourcePack) {
@@ -224,7 +227,7 @@ private synchronized void loadMap(String id, MapConfig mapConfig) throws Configu
         if (world == null) {
             try {
                 Logger.global.logDebug("Loading world " + worldId + " ...");
-                world = MCAWorld.load(worldFolder, dimension, loadDataPack(worldFolder));
+                world = MCAWorld.load(worldFolder, dimension, loadDataPack(worldFolder), getOrCreateChunkCache());
                 worlds.put(worldId, world);
             } catch (IOException ex) {
                 throw new ConfigurationException(
@@ -238,6 +241,8 @@ private synchronized void loadMap(String id, MapConfig mapConfig) throws Configu
 
         try {
 
+            mapConfig.validate();
+
             Logger.global.logInfo("Loading map '" + id + "'...");
             BmMap map = new BmMap(
                     id,
@@ -299,6 +304,29 @@ public Map<String, Storage> getLoadedStorages() {
         return Collections.unmodifiableMap(storages);
     }
 
+    /**
+     * Gets the chunk-cache shared by all loaded worlds, or null if no world has been loaded yet.
+     */
+    public @Nullable ChunkCache getChunkCache() {
+        return chunkCache;
+    }
+
+    @DebugDump("chunk-cache-stats")
+    private @Nullable ChunkCache.Stats getChunkCacheStats() {
+        ChunkCache chunkCache = this.chunkCache;
+        return chunkCache != null ? chunkCache.getStats() : null;
+    }
+
+    private synchronized ChunkCache getOrCreateChunkCache() throws ConfigurationException {
+        if (chunkCache == null) {
+            long chunkCacheSize = config.getCoreConfig().resolveChunkCacheSize();
+            Logger.global.logInfo("Using a chunk-cache of " + chunkCacheSize / 1024 / 1024 + " MB ('" +
+                    config.getCoreConfig().getChunkCacheSize() + "')");
+            chunkCache = new ChunkCache(chunkCacheSize);
+        }
+        return chunkCache;
+    }
+
     public @Nullable ResourcePack getResourcePack() {
         return resourcePack;
     }
@@ -26,6 +26,7 @@
 
 import com.flowpowered.math.vector.Vector2i;
 import de.bluecolored.bluemap.common.plugin.Plugin;
+import de.bluecolored.bluemap.common.rendermanager.RenderManager;
 import de.bluecolored.bluemap.common.rendermanager.RenderTask;
 import de.bluecolored.bluemap.common.rendermanager.WorldRegionRenderTask;
 import de.bluecolored.bluemap.core.map.BmMap;
@@ -64,11 +65,12 @@ public TileIsUpdatedCheck(Plugin plugin, BmMap map, Vector2i position) {
     public CheckResult getResult() {
         WorldRegionRenderTask regionRenderTask = new WorldRegionRenderTask(map, region);
 
-        RenderTask current = plugin.getRenderManager().getCurrentRenderTask();
-        if (current == null) return CheckResult.OK;
+        RenderManager renderManager = plugin.getRenderManager();
+        for (RenderTask task : renderManager.getActiveRenderTasks()) {
+            if (task.contains(regionRenderTask)) return CheckResult.BAD;
+        }
 
-        return !current.contains(regionRenderTask) &&
-                !plugin.getRenderManager().containsRenderTask(regionRenderTask) ?
+        return !renderManager.containsRenderTask(regionRenderTask) ?
                 CheckResult.OK : CheckResult.BAD;
     }
 
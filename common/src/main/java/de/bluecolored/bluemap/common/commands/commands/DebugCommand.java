@@ -37,6 +37,7 @@
 import de.bluecolored.bluemap.common.serverinterface.CommandSource;
 import de.bluecolored.bluemap.core.logger.Logger;
 import de.bluecolored.bluemap.core.map.BmMap;
+import de.bluecolored.bluemap.core.map.renderstate.ChunkInfoRegion;
 import de.bluecolored.bluemap.core.map.renderstate.TileInfoRegion;
 import de.bluecolored.bluemap.core.world.Chunk;
 import de.bluecolored.bluemap.core.world.ChunkConsumer;
@@ -194,8 +195,9 @@ public Component map(CommandSource source, @Argument("map") BmMap map, @Argument
         TileInfoRegion.TileInfo tileInfo = map.getMapTileState().get(tilePos.getX(), tilePos.getY());
         int tileRenderTime = tileInfo.getRenderTime();
 
-        int lastChunkHash = map.getMapChunkState().get(chunkPos.getX(), chunkPos.getY());
-        int currentChunkHash = 0;
+        ChunkInfoRegion.ChunkInfo lastChunkInfo = map.getMapChunkState().get(chunkPos.getX(), chunkPos.getY());
+        int currentChunkTimestamp = 0;
+        int currentChunkContentHash = map.getWorld().getChunk(chunkPos.getX(), chunkPos.getY()).getContentHash();
 
         class FindHashConsumer implements ChunkConsumer.ListOnly<Chunk> {
             public int timestamp = 0;
@@ -211,7 +213,7 @@ public void accept(int chunkX, int chunkZ, int timestamp) {
             FindHashConsumer findHashConsumer = new FindHashConsumer();
             map.getWorld().getRegion(regionPos.getX(), regionPos.getY())
                     .iterateAllChunks(findHashConsumer);
-            currentChunkHash = findHashConsumer.timestamp;
+            currentChunkTimestamp = findHashConsumer.timestamp;
         } catch (IOException e) {
             Logger.global.logError("Failed to load chunk-hash.", e);
         }
@@ -227,8 +229,10 @@ public void accept(int chunkX, int chunkZ, int timestamp) {
                         )
                                 .appendNewline()
                                 .append(details(BASE_COLOR,
-                                        item("current hash", currentChunkHash),
-                                        item("last rendered", lastChunkHash)
+                                        item("current timestamp", currentChunkTimestamp),
+                                        item("current content-hash", currentChunkContentHash),
+                                        item("last rendered timestamp", lastChunkInfo.getTimestamp()),
+                                        item("last rendered content-hash", lastChunkInfo.getContentHash())
                                 ))
                 ),
                 item("tile", format("( x: % | z: % )",
@@ -71,8 +71,9 @@ private Component element(BmMap map) {
             ));
         }
 
+        List<RenderTask> activeTasks = plugin.getRenderManager().getActiveRenderTasks();
         long pendingCount = plugin.getRenderManager().getScheduledRenderTasks().stream()
-                .skip(1)
+                .filter(task -> !activeTasks.contains(task))
                 .filter(task -> task instanceof MapRenderTask mapTask && mapTask.getMap().equals(map))
                 .count();
         if (pendingCount > 0) {
@@ -82,8 +83,11 @@ private Component element(BmMap map) {
             ));
         }
 
-        RenderTask task = plugin.getRenderManager().getCurrentRenderTask();
-        if (task instanceof MapRenderTask mapTask && mapTask.getMap().equals(map)) {
+        RenderTask task = activeTasks.stream()
+                .filter(activeTask -> activeTask instanceof MapRenderTask mapTask && mapTask.getMap().equals(map))
+                .findFirst()
+                .orElse(null);
+        if (task != null) {
             icon = ICON_IN_PROGRESS;
             String format = switch (task) {
                 case MapUpdateTask ignored -> "is currently being updated: %";
@@ -30,7 +30,10 @@
 import de.bluecolored.bluemap.common.commands.TextFormat;
 import de.bluecolored.bluemap.common.plugin.Plugin;
 import de.bluecolored.bluemap.common.rendermanager.*;
+import de.bluecolored.bluemap.common.web.TileCache;
 import de.bluecolored.bluemap.core.map.BmMap;
+import de.bluecolored.bluemap.core.map.hires.HiresModelManager;
+import de.bluecolored.bluemap.core.world.mca.ChunkCache;
 import lombok.RequiredArgsConstructor;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.JoinConfiguration;
@@ -66,12 +69,17 @@ private class Status {
         private final Map<String, BmMap> maps;
 
         private final List<RenderTask> renderQueue;
+        private final List<RenderTask> activeTasks;
         private final @Nullable RenderTask currentTask;
         private final long currentTaskEta;
         private final long lastTimeBusy;
 
         private final boolean isRunning, isPaused, isProcessing;
         private final int workerThreadCount, pausePlayerCount;
+        private final Map<String, Double> workerThreadUtilization;
+        private final ChunkCache.@Nullable Stats chunkCacheStats;
+        private final HiresModelManager.TileWriteStats tileWriteStats;
+        private final TileCache.@Nullable Stats tileCacheStats;
 
         public Status() {
             BlueMapService blueMapService = plugin.getBlueMap();
@@ -80,6 +88,7 @@ public Status() {
             this.maps = blueMapService.getMaps();
 
             this.renderQueue = renderManager.getScheduledRenderTasks();
+            this.activeTasks = renderManager.getActiveRenderTasks();
             this.currentTask = renderManager.getCurrentRenderTask();
             this.currentTaskEta = renderManager.estimateCurrentRenderTaskTimeRemaining();
             this.lastTimeBusy = renderManager.getLastTimeBusy();
@@ -89,13 +98,27 @@ public Status() {
             this.isProcessing = isRunning && !isPaused && currentTask != null;
 
             this.workerThreadCount = renderManager.getWorkerThreadCount();
+            this.workerThreadUtilization = new LinkedHashMap<>();
+            for (RenderManager.WorkerThread workerThread : renderManager.getWorkerThreads())
+                this.workerThreadUtilization.put(workerThread.getName(), workerThread.getUtilization());
             this.pausePlayerCount = blueMapService.getConfig().getPluginConfig().getPlayerRenderLimit();
+
+            ChunkCache chunkCache = blueMapService.getChunkCache();
+            this.chunkCacheStats = chunkCache != null ? chunkCache.getStats() : null;
+
+            this.tileWriteStats = maps.values().stream()
+                    .map(map -> map.getHiresModelManager().getTileWriteStats())
+                    .reduce(new HiresModelManager.TileWriteStats(0, 0, 0), HiresModelManager.TileWriteStats::add);
+
+            TileCache tileCache = plugin.getTileCache();
+            this.tileCacheStats = tileCache != null ? tileCache.getStats() : null;
         }
 
         public Component status() {
             return paragraph("Status",
                     lines(
                             renderThreads(),
+                            tileCacheStats != null ? details(BASE_COLOR, stripNulls(tileCache())) : null,
                             isProcessing ? activeTask() : null,
                             mapSummary(isProcessing)
                     )
@@ -145,7 +168,84 @@ private Component renderThreads() {
                                     "✔ % render-threads are %",
                             text(workerThreadCount).color(HIGHLIGHT_COLOR),
                             text(isProcessing ? "running" : "idle").color(HIGHLIGHT_COLOR)
-                    ).color(POSITIVE_COLOR)
+                    ).color(POSITIVE_COLOR),
+                    isProcessing ? details(BASE_COLOR, stripNulls(utilization(), chunkCache(), tileWrites())) : null
+            );
+        }
+
+        private Component utilization() {
+            double average = workerThreadUtilization.values().stream()
+                    .mapToDouble(Double::doubleValue)
+                    .average()
+                    .orElse(0);
+
+            return format("utilization: %",
+                    text(String.format("%.0f%%", average * 100))
+                            .color(HIGHLIGHT_COLOR)
+                            .hoverEvent(HoverEvent.showText(lines(
+                                    workerThreadUtilization.entrySet().stream()
+                                            .<Component>map(entry -> format("%: %",
+                                                    text(entry.getKey()),
+                                                    text(String.format("%.0f%%", entry.getValue() * 100))
+                                                            .color(HIGHLIGHT_COLOR)
+                                            ).color(BASE_COLOR))
+                                            .toList()
+                            )))
+            );
+        }
+
+        private @Nullable Component chunkCache() {
+            if (chunkCacheStats == null) return null;
+
+            return format("chunk-cache: % hits, % used",
+                    text(String.format("%.0f%%", chunkCacheStats.hitRate() * 100))
+                            .color(HIGHLIGHT_COLOR),
+                    text(String.format("%d/%d MiB",
+                            chunkCacheStats.memoryUsage() / 1024 / 1024,
+                            chunkCacheStats.maxMemoryUsage() / 1024 / 1024
+                    ))
+                            .color(HIGHLIGHT_COLOR)
+                            .hoverEvent(HoverEvent.showText(lines(
+                                    item("cached chunks", chunkCacheStats.chunkCount()),
+                                    item("hits", chunkCacheStats.hitCount()),
+                                    item("misses", chunkCacheStats.missCount()),
+                                    item("evictions", chunkCacheStats.evictionCount()),
+                                    item("average load-time", String.format("%.2fms", chunkCacheStats.averageLoadTimeMillis()))
+                            )))
+            );
+        }
+
+        private @Nullable Component tileCache() {
+            if (tileCacheStats == null) return null;
+
+            return format("web tile-cache: % hits, % used",
+                    text(String.format("%.0f%%", tileCacheStats.hitRate() * 100))
+                            .color(HIGHLIGHT_COLOR),
+                    text(String.format("%d/%d MiB",
+                            tileCacheStats.memoryUsage() / 1024 / 1024,
+                            tileCacheStats.maxMemoryUsage() / 1024 / 1024
+                    ))
+                            .color(HIGHLIGHT_COLOR)
+                            .hoverEvent(HoverEvent.showText(lines(
+                                    item("cached tiles", tileCacheStats.tileCount()),
+                                    item("hits", tileCacheStats.hitCount()),
+                                    item("misses", tileCacheStats.missCount()),
+                                    item("evictions", tileCacheStats.evictionCount())
+                            )))
+            );
+        }
+
+        private @Nullable Component tileWrites() {
+            if (tileWriteStats.totalCount() == 0) return null;
+
+            return format("tile-writes: % skipped",
+                    text(String.format("%.0f%%", tileWriteStats.skipRate() * 100))
+                            .color(HIGHLIGHT_COLOR)
+                            .hoverEvent(HoverEvent.showText(lines(
+                                    item("written", tileWriteStats.writtenCount()),
+                                    item("unchanged", tileWriteStats.unchangedCount()),
+                                    item("empty", tileWriteStats.emptyCount())
+                            )))
             );
         }
 
@@ -177,13 +277,30 @@ private Component renderThreads() {
                             taskETA(),
                             currentTask.getDetail()
                                     .map(Component::text)
-                                    .orElse(null)
+                                    .orElse(null),
+                            parallelTasks()
                     )),
                     empty()
             );
 
         }
 
+        private @Nullable Component parallelTasks() {
+            if (activeTasks.size() <= 1) return null;
+
+            int count = activeTasks.size() - 1;
+            return format("running in parallel: %",
+                    text(count == 1 ? "1 more task" : count + " more tasks")
+                            .color(HIGHLIGHT_COLOR)
+                            .hoverEvent(HoverEvent.showText(lines(
+                                    activeTasks.stream()
+                                            .skip(1)
+                                            .<Component>map(task -> text(task.getDescription()).color(HIGHLIGHT_COLOR))
+                                            .toList()
+                            )))
+            );
+        }
+
         private @Nullable Component taskETA() {
             if (currentTask == null) return null;
             if (currentTaskEta == 0) return null;
@@ -31,6 +31,7 @@
 import de.bluecolored.bluemap.common.config.BlueMapConfigManager;
 import de.bluecolored.bluemap.common.config.ConfigurationException;
 import de.bluecolored.bluemap.common.config.storage.FileConfig;
+import de.bluecolored.bluemap.common.config.storage.PackConfig;
 import de.bluecolored.bluemap.common.config.storage.SQLConfig;
 import de.bluecolored.bluemap.common.config.storage.StorageConfig;
 import de.bluecolored.bluemap.common.plugin.Plugin;
@@ -39,6 +40,7 @@
 import de.bluecolored.bluemap.core.map.BmMap;
 import de.bluecolored.bluemap.core.storage.Storage;
 import de.bluecolored.bluemap.core.storage.file.FileStorage;
+import de.bluecolored.bluemap.core.storage.pack.PackStorage;
 import lombok.RequiredArgsConstructor;
 import net.kyori.adventure.text.Component;
 
@@ -96,12 +98,24 @@ public Component storage(CommandSource source, @Argument("storage") @Parser("sto
             ).color(BASE_COLOR));
         }
 
+        if (storage instanceof PackStorage packStorage) {
+            lines.add(format("Path: %",
+                    text(BlueMapConfigManager.formatPath(packStorage.getRoot())).color(HIGHLIGHT_COLOR)
+            ).color(BASE_COLOR));
+        }
+
         if (storageConfig instanceof FileConfig fileConfig) {
             lines.add(format("Compression: %",
                     text(fileConfig.getCompression().getKey().getFormatted()).color(HIGHLIGHT_COLOR)
             ).color(BASE_COLOR));
         }
 
+        if (storageConfig instanceof PackConfig packConfig) {
+            lines.add(format("Compression: %",
+                    text(packConfig.getCompression().getKey().getFormatted()).color(HIGHLIGHT_COLOR)
+            ).color(BASE_COLOR));
+        }
+
         if (storageConfig instanceof SQLConfig sqlConfig) {
             lines.add(format("Dialect: %",
                     text(sqlConfig.getDialect().getKey().getFormatted()).color(HIGHLIGHT_COLOR)
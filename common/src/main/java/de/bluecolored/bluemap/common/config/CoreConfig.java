@@ -27,21 +27,30 @@
 import org.spongepowered.configurate.objectmapping.ConfigSerializable;
 
 import java.nio.file.Path;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @SuppressWarnings({"FieldMayBeFinal", "FieldCanBeLocal"})
 @ConfigSerializable
 public class CoreConfig {
 
+    private static final Pattern MEMORY_SIZE_PATTERN = Pattern.compile("\\s*(\\d+)\\s*([KMG]?B?)\\s*", Pattern.CASE_INSENSITIVE);
+
     private boolean acceptDownload = false;
 
     private int renderThreadCount = 1;
 
+    private int maxActiveRenderTasks = 4;
+
     private boolean metrics = true;
 
     private Path data = Path.of("bluemap");
 
     private boolean scanForModResources = true;
 
+    private String chunkCacheSize = "512MB";
+
     private LogConfig log = new LogConfig();
 
     public boolean isAcceptDownload() {
@@ -57,6 +66,14 @@ public int resolveRenderThreadCount() {
         return Math.max(Runtime.getRuntime().availableProcessors() + renderThreadCount, 1);
     }
 
+    public int getMaxActiveRenderTasks() {
+        return maxActiveRenderTasks;
+    }
+
+    public int resolveMaxActiveRenderTasks() {
+        return Math.max(maxActiveRenderTasks, 1);
+    }
+
     public boolean isMetrics() {
         return metrics;
     }
@@ -69,6 +86,42 @@ public boolean isScanForModResources() {
         return scanForModResources;
     }
 
+    public String getChunkCacheSize() {
+        return chunkCacheSize;
+    }
+
+    /**
+     * Parses the configured chunk-cache-size (e.g. "512MB" or "2GB") into bytes.
+     * A number without a unit is read as megabytes.
+     */
+    public long resolveChunkCacheSize() throws ConfigurationException {
+        return parseMemorySize(chunkCacheSize, "chunk-cache-size");
+    }
+
+    /**
+     * Parses a memory-size (e.g. "512MB" or "2GB") into bytes.
+     * A number without a unit is read as megabytes, a size in bytes needs the unit "B".
+     */
+    static long parseMemorySize(String value, String settingName) throws ConfigurationException {
+        Matcher matcher = MEMORY_SIZE_PATTERN.matcher(value);
+        if (!matcher.matches()) {
+            throw new ConfigurationException("The " + settingName + " '" + value + "' is invalid!\n" +
+                    "Use a number followed by a unit like: \"512MB\" or \"2GB\"");
+        }
+
+        try {
+            long size = Long.parseLong(matcher.group(1));
+            return switch (matcher.group(2).toUpperCase(Locale.ROOT)) {
+                case "B" -> size;
+                case "K", "KB" -> Math.multiplyExact(size, 1024L);
+                case "G", "GB" -> Math.multiplyExact(size, 1024L * 1024L * 1024L);
+                default -> Math.multiplyExact(size, 1024L * 1024L);
+            };
+        } catch (ArithmeticException | NumberFormatException ex) {
+            throw new ConfigurationException("The " + settingName + " '" + value + "' is too large!", ex);
+        }
+    }
+
     public LogConfig getLog() {
         return log;
     }
@@ -47,6 +47,7 @@
 import java.lang.reflect.Type;
 import java.nio.file.Path;
 import java.util.Map;
+import java.util.zip.Deflater;
 
 @SuppressWarnings({"FieldMayBeFinal", "FieldCanBeLocal"})
 @ConfigSerializable
@@ -92,6 +93,8 @@ public class MapConfig implements MapSettings {
     private boolean enableFreeFlightView = true;
     private boolean enableHires = true;
 
+    private boolean mergeFaces = false;
+
     private boolean checkForRemovedRegions = true;
 
     private String storage = "file";
@@ -105,6 +108,8 @@ public class MapConfig implements MapSettings {
     private int lowresTileSize = 500;
     private int lodCount = 3;
     private int lodFactor = 5;
+    private int lowresCompressionLevel = 1;
+    private int renderStateCacheSize = 16;
 
     public Vector3i getMinPos() {
         if (min == null) min = new Vector3i(minX, minY, minZ);
@@ -116,6 +121,23 @@ public Vector3i getMaxPos() {
         return max;
     }
 
+    /**
+     * Checks the settings that can not be validated by their type alone
+     */
+    public void validate() throws ConfigurationException {
+        if (lowresCompressionLevel < Deflater.NO_COMPRESSION || lowresCompressionLevel > Deflater.BEST_COMPRESSION)
+            throw new ConfigurationException("""
+                The configured lowres-compression-level '%d' is invalid!
+                Please check your 'lowres-compression-level' setting in your map-configuration, it has to be between 0 and 9.
+                """.strip().formatted(lowresCompressionLevel));
+
+        if (renderStateCacheSize < 1)
+            throw new ConfigurationException("""
+                The configured render-state-cache-size '%d' is invalid!
+                Please check your 'render-state-cache-size' setting in your map-configuration, it has to be at least 1.
+                """.strip().formatted(renderStateCacheSize));
+    }
+
     /**
      * parse marker-config by converting it first from hocon to json and then loading it with MarkerGson
      */
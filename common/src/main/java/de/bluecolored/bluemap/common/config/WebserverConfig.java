@@ -41,6 +41,12 @@ public class WebserverConfig {
     private String ip = "0.0.0.0";
     private int port = 8100;
 
+    private int workerThreads = 0;
+    private int maxPendingRequests = 1000;
+    private int requestTimeout = 30;
+
+    private String tileCacheSize = "64MB";
+
     private LogConfig log = new LogConfig();
 
     public boolean isEnabled() {
@@ -69,6 +75,29 @@ public int getPort() {
         return port;
     }
 
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public int getMaxPendingRequests() {
+        return maxPendingRequests;
+    }
+
+    public int getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    public String getTileCacheSize() {
+        return tileCacheSize;
+    }
+
+    /**
+     * Parses the configured tile-cache-size (e.g. "64MB") into bytes, 0 means the tile-cache is disabled.
+     */
+    public long resolveTileCacheSize() throws ConfigurationException {
+        return CoreConfig.parseMemorySize(tileCacheSize, "tile-cache-size");
+    }
+
     public LogConfig getLog() {
         return log;
     }
@@ -30,6 +30,7 @@
 import de.bluecolored.bluemap.core.storage.sql.Database;
 import de.bluecolored.bluemap.core.storage.sql.SQLStorage;
 import de.bluecolored.bluemap.core.storage.sql.commandset.CommandSet;
+import de.bluecolored.bluemap.core.storage.sql.commandset.WriteBehindCommandSet;
 import lombok.AccessLevel;
 import lombok.Getter;
 import org.jetbrains.annotations.Nullable;
@@ -63,6 +64,9 @@ public class SQLConfig extends StorageConfig {
     private String driverClass = null;
     private int maxConnections = -1;
 
+    private boolean writeBehind = false;
+    private int writeBehindBatchSize = WriteBehindCommandSet.DEFAULT_BATCH_SIZE;
+
     private String compression = Compression.GZIP.getKey().getFormatted();
 
     @Getter(AccessLevel.NONE)
@@ -117,6 +121,11 @@ public Dialect getDialect() throws ConfigurationException {
 
     @Override
     public SQLStorage createStorage() throws ConfigurationException {
+        if (writeBehind && writeBehindBatchSize < 1) throw new ConfigurationException("""
+            The configured write-behind-batch-size is invalid!
+            Please check your 'write-behind-batch-size' setting in your configuration, it has to be at least 1.
+            """.strip());
+
         Driver driver = createDriver();
         Database database;
         if (driver != null) {
@@ -125,6 +134,14 @@ public SQLStorage createStorage() throws ConfigurationException {
             database = new Database(getConnectionUrl(), getConnectionProperties(), getMaxConnections());
         }
         CommandSet commandSet = getDialect().createCommandSet(database);
+        if (writeBehind) {
+            commandSet = new WriteBehindCommandSet(
+                    commandSet,
+                    writeBehindBatchSize,
+                    WriteBehindCommandSet.DEFAULT_MAX_DELAY_MILLIS,
+                    WriteBehindCommandSet.DEFAULT_MAX_PENDING_BYTES
+            );
+        }
         return new SQLStorage(commandSet, getCompression());
     }
 
@@ -96,6 +96,7 @@ public class Plugin implements ServerEventListener {
 
     private HttpServer webServer;
     private RoutingRequestHandler webRequestHandler;
+    private @Nullable TileCache tileCache;
     private Logger webLogger;
 
     private Timer daemonTimer;
@@ -195,6 +196,10 @@ private void load(@Nullable ResourcePack preloadedResourcePack) throws IOExcepti
 
                     this.webRequestHandler = new RoutingRequestHandler();
 
+                    // tile-cache
+                    long tileCacheSize = webserverConfig.resolveTileCacheSize();
+                    this.tileCache = tileCacheSize > 0 ? new TileCache(tileCacheSize) : null;
+
                     // default route
                     webRequestHandler.register(".*", new FileRequestHandler(webroot));
 
@@ -206,10 +211,10 @@ private void load(@Nullable ResourcePack preloadedResourcePack) throws IOExcepti
                         MapRequestHandler mapRequestHandler;
                         BmMap map = maps.get(id);
                         if (map != null) {
-                            mapRequestHandler = new MapRequestHandler(map, serverInterface, pluginConfig, Predicate.not(pluginState::isPlayerHidden));
+                            mapRequestHandler = new MapRequestHandler(map, tileCache, serverInterface, pluginConfig, Predicate.not(pluginState::isPlayerHidden));
                         } else {
                             Storage storage = blueMap.getOrLoadStorage(mapConfig.getStorage());
-                            mapRequestHandler = new MapRequestHandler(storage.map(id));
+                            mapRequestHandler = new MapRequestHandler(storage.map(id), tileCache != null ? tileCache.map(id) : null);
                         }
 
                         webRequestHandler.register(
@@ -231,11 +236,16 @@ private void load(@Nullable ResourcePack preloadedResourcePack) throws IOExcepti
                     webLogger = Logger.combine(webLoggerList);
 
                     try {
-                        webServer = new HttpServer(new LoggingRequestHandler(
-                                webRequestHandler,
-                                webserverConfig.getLog().getFormat(),
-                                webLogger
-                        ));
+                        webServer = new HttpServer(
+                                new LoggingRequestHandler(
+                                        webRequestHandler,
+                                        webserverConfig.getLog().getFormat(),
+                                        webLogger
+                                ),
+                                webserverConfig.getWorkerThreads(),
+                                webserverConfig.getMaxPendingRequests(),
+                                TimeUnit.SECONDS.toMillis(webserverConfig.getRequestTimeout())
+                        );
                         webServer.bind(new InetSocketAddress(
                                 webserverConfig.resolveIp(),
                                 webserverConfig.getPort()
@@ -264,7 +274,7 @@ private void load(@Nullable ResourcePack preloadedResourcePack) throws IOExcepti
                 }
 
                 //initialize render manager
-                renderManager = new RenderManager();
+                renderManager = new RenderManager(coreConfig.resolveMaxActiveRenderTasks());
 
                 //update webapp and settings
                 if (webappConfig.isEnabled())
@@ -456,6 +466,11 @@ public void unload(boolean keepWebserver) {
                     webLogger = null;
                 }
 
+                if (tileCache != null && !keepWebserver) {
+                    tileCache.invalidateAll();
+                    tileCache = null;
+                }
+
                 //close bluemap
                 if (blueMap != null) {
                     try {
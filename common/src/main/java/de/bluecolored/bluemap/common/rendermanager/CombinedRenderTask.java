@@ -31,17 +31,19 @@
     private final String description;
     private final List<T> tasks;
     private int currentTaskIndex;
+    private int prefetchedTaskIndex;
 
     public CombinedRenderTask(String description, Collection<T> tasks) {
         this.description = description;
         this.tasks = Collections.unmodifiableList(new ArrayList<>(tasks));
 
         this.currentTaskIndex = 0;
+        this.prefetchedTaskIndex = -1;
     }
 
     @Override
     public void doWork() throws Exception {
-        T task;
+        T task, nextTask = null;
 
         synchronized (this) {
             if (!hasMoreWork()) return;
@@ -51,9 +53,28 @@ public void doWork() throws Exception {
                 this.currentTaskIndex++;
                 return;
             }
+
+            int nextTaskIndex = this.currentTaskIndex + 1;
+            if (nextTaskIndex > this.prefetchedTaskIndex && nextTaskIndex < this.tasks.size()) {
+                this.prefetchedTaskIndex = nextTaskIndex;
+                nextTask = this.tasks.get(nextTaskIndex);
+            }
         }
 
-        task.doWork();
+        try {
+            task.doWork();
+        } finally {
+            // let the next task prepare while the current one is being worked on
+            if (nextTask != null) nextTask.prefetch();
+        }
+    }
+
+    @Override
+    public synchronized void prefetch() {
+        if (this.currentTaskIndex > this.prefetchedTaskIndex && this.currentTaskIndex < this.tasks.size()) {
+            this.prefetchedTaskIndex = this.currentTaskIndex;
+            this.tasks.get(this.currentTaskIndex).prefetch();
+        }
     }
 
     @Override
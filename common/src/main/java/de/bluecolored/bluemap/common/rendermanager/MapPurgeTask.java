@@ -53,18 +53,22 @@ public void doWork() throws Exception {
         }
         if (this.cancelled) return;
 
-        // discard any pending lowres changes
+        // discard any pending lowres changes and wait for tile-writes that are already queued
         this.map.getLowresTileManager().discard();
+        this.map.getTileWriter().flush();
+
+        // discard the render-state first, so no pending (write-behind) saves end up in the purged storage
+        map.getMapTileState().reset();
+        map.getMapChunkState().reset();
 
         // purge the map
         map.getStorage().delete(progress -> {
             this.progress = progress;
             return !this.cancelled;
         });
+        map.notifyTilesCleared();
 
         map.resetTextureGallery();
-        map.getMapTileState().reset();
-        map.getMapChunkState().reset();
     }
 
     @Override
@@ -25,44 +25,70 @@
 package de.bluecolored.bluemap.common.rendermanager;
 
 import de.bluecolored.bluemap.core.logger.Logger;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 
 public class RenderManager {
     private static final AtomicInteger nextRenderManagerIndex = new AtomicInteger(0);
 
+    /**
+     * The maximum amount of scheduled tasks that are being processed at the same time.<br>
+     * Worker-threads always prefer the oldest active task and only pull work from the next active tasks
+     * if there is nothing left to do on the earlier ones (e.g. while the last tiles of a task are still rendering).
+     */
+    public static final int DEFAULT_MAX_ACTIVE_TASKS = 4;
+
+    private static final ActiveTask[] NO_ACTIVE_TASKS = new ActiveTask[0];
+
     private final int id;
+    private final int maxActiveTasks;
     private volatile boolean running;
 
-    private long lastTimeBusy;
+    private volatile long lastTimeBusy;
 
     private final AtomicInteger nextWorkerThreadIndex;
     private final Collection<WorkerThread> workerThreads;
-    private final AtomicInteger busyCount;
 
     private ProgressTracker progressTracker;
-    private volatile boolean newTask;
-
-    private final LinkedList<RenderTask> renderTasks;
+    private @Nullable RenderTask trackedTask;
+
+    /**
+     * The scheduled tasks that are not yet being processed.<br>
+     * Compound modifications are synchronized on this deque, which is also the monitor the worker-threads wait on.
+     */
+    private final Deque<RenderTask> renderTasks;
+    private volatile ActiveTask[] activeTasks;
     private final Map<RenderTask, Long> completedTasks;
 
     public RenderManager() {
+        this(DEFAULT_MAX_ACTIVE_TASKS);
+    }
+
+    /**
+     * @param maxActiveTasks The maximum amount of scheduled tasks that are being processed at the same time
+     */
+    public RenderManager(int maxActiveTasks) {
+        if (maxActiveTasks < 1) throw new IllegalArgumentException("maxActiveTasks has to be at least 1");
+
         this.id = nextRenderManagerIndex.getAndIncrement();
+        this.maxActiveTasks = maxActiveTasks;
         this.nextWorkerThreadIndex = new AtomicInteger(0);
 
         this.running = false;
         this.workerThreads = new ConcurrentLinkedDeque<>();
-        this.busyCount = new AtomicInteger(0);
 
         this.lastTimeBusy = -1;
 
         this.progressTracker = null;
-        this.newTask = true;
+        this.trackedTask = null;
 
-        this.renderTasks = new LinkedList<>();
+        this.renderTasks = new ConcurrentLinkedDeque<>();
+        this.activeTasks = NO_ACTIVE_TASKS;
         this.completedTasks = new LinkedHashMap<>() {
             @Override
             protected boolean removeEldestEntry(Map.Entry<RenderTask, Long> eldest) {
@@ -77,11 +103,13 @@ public void start(int threadCount) throws IllegalStateException {
         synchronized (this.workerThreads) {
             if (isRunning()) throw new IllegalStateException("RenderManager is already running!");
             this.workerThreads.clear();
-            this.busyCount.set(0);
 
             if (progressTracker != null) progressTracker.cancel();
             progressTracker = new ProgressTracker(5000, 12); // 5-sec steps over one minute
-            this.newTask = true;
+            synchronized (this.renderTasks) {
+                this.trackedTask = null;
+                updateProgressTracker();
+            }
 
             this.running = true;
 
@@ -117,12 +145,11 @@ public void awaitIdle() throws InterruptedException {
 
     public void awaitIdle(boolean log) throws InterruptedException {
         synchronized (this.renderTasks) {
-            while (!this.renderTasks.isEmpty()) {
+            while (this.activeTasks.length > 0 || !this.renderTasks.isEmpty()) {
                 this.renderTasks.wait(5000);
 
                 if (log) {
-                    RenderTask task = this.getCurrentRenderTask();
-                    if (task != null) {
+                    for (RenderTask task : this.getActiveRenderTasks()) {
                         Logger.global.logInfo("Waiting for task '" + task.getDescription() + "' to stop.. (" +
                                 (Math.round(task.estimateProgress() * 10000) / 100.0) + "%)");
                     }
@@ -162,11 +189,10 @@ public int scheduleRenderTasks(RenderTask... tasks) {
 
     public boolean scheduleRenderTaskNext(RenderTask task) {
         synchronized (this.renderTasks) {
-            if (renderTasks.size() <= 1) return scheduleRenderTask(task);
             if (containsRenderTask(task)) return false;
 
             removeTasksThatAreContainedIn(task);
-            renderTasks.add(1, task);
+            renderTasks.addFirst(task);
             renderTasks.notifyAll();
             return true;
         }
@@ -174,9 +200,6 @@ public boolean scheduleRenderTaskNext(RenderTask task) {
 
     public int scheduleRenderTasksNext(RenderTask... tasks) {
         synchronized (this.renderTasks) {
-            if (renderTasks.size() <= 1)
-                return scheduleRenderTasks(tasks);
-
             int count = 0;
             for (int i = tasks.length - 1; i >= 0; i--) {
                 if (scheduleRenderTaskNext(tasks[i])) count++;
@@ -187,23 +210,23 @@ public int scheduleRenderTasksNext(RenderTask... tasks) {
 
     public void reorderRenderTasks(Comparator<RenderTask> taskComparator) {
         synchronized (this.renderTasks) {
-            if (renderTasks.size() <= 2) return;
+            if (renderTasks.size() <= 1) return;
 
-            RenderTask currentTask = renderTasks.removeFirst();
-            renderTasks.sort(taskComparator);
-            renderTasks.addFirst(currentTask);
+            List<RenderTask> tasks = new ArrayList<>(renderTasks);
+            tasks.sort(taskComparator);
+            renderTasks.clear();
+            renderTasks.addAll(tasks);
         }
     }
 
     public boolean removeRenderTask(RenderTask task) {
         synchronized (this.renderTasks) {
-            if (this.renderTasks.isEmpty()) return false;
-
             // cancel the task if it is currently processed
-            RenderTask first = renderTasks.getFirst();
-            if (first.equals(task)) {
-                first.cancel();
-                return true;
+            for (ActiveTask activeTask : activeTasks) {
+                if (activeTask.task.equals(task)) {
+                    activeTask.task.cancel();
+                    return true;
+                }
             }
 
             // else remove it
@@ -213,23 +236,19 @@ public boolean removeRenderTask(RenderTask task) {
 
     public void removeRenderTasksIf(Predicate<RenderTask> removeCondition) {
         synchronized (this.renderTasks) {
-            if (this.renderTasks.isEmpty()) return;
-
-            RenderTask first = renderTasks.removeFirst();
-            if (removeCondition.test(first)) first.cancel();
+            for (ActiveTask activeTask : activeTasks) {
+                if (removeCondition.test(activeTask.task)) activeTask.task.cancel();
+            }
             renderTasks.removeIf(removeCondition);
-            renderTasks.addFirst(first);
         }
     }
 
     public void removeAllRenderTasks() {
         synchronized (this.renderTasks) {
-            if (this.renderTasks.isEmpty()) return;
-
-            RenderTask first = renderTasks.removeFirst();
-            first.cancel();
+            for (ActiveTask activeTask : activeTasks) {
+                activeTask.task.cancel();
+            }
             renderTasks.clear();
-            renderTasks.addFirst(first);
         }
     }
 
@@ -246,124 +265,245 @@ public long estimateCurrentRenderTaskTimeRemaining() {
         }
     }
 
-    public RenderTask getCurrentRenderTask() {
-        synchronized (this.renderTasks) {
-            if (this.renderTasks.isEmpty()) return null;
-            return this.renderTasks.getFirst();
-        }
+    /**
+     * Returns the oldest task that is currently being processed, or the next scheduled task if there is none.
+     */
+    public @Nullable RenderTask getCurrentRenderTask() {
+        ActiveTask[] activeTasks = this.activeTasks;
+        if (activeTasks.length > 0) return activeTasks[0].task;
+        return this.renderTasks.peekFirst();
+    }
+
+    /**
+     * Returns all tasks that are currently being processed, the oldest task first.
+     */
+    public List<RenderTask> getActiveRenderTasks() {
+        ActiveTask[] activeTasks = this.activeTasks;
+        List<RenderTask> tasks = new ArrayList<>(activeTasks.length);
+        for (ActiveTask activeTask : activeTasks) tasks.add(activeTask.task);
+        return tasks;
     }
 
+    /**
+     * Returns all scheduled tasks, starting with the tasks that are currently being processed.
+     */
     public List<RenderTask> getScheduledRenderTasks() {
         synchronized (this.renderTasks) {
-            return new ArrayList<>(this.renderTasks);
+            List<RenderTask> tasks = getActiveRenderTasks();
+            tasks.addAll(this.renderTasks);
+            return tasks;
         }
     }
 
     public int getScheduledRenderTaskCount() {
-        return this.renderTasks.size();
+        return this.activeTasks.length + this.renderTasks.size();
     }
 
+    /**
+     * Checks if the given task is contained in any of the scheduled tasks that are not yet being processed.
+     */
     public boolean containsRenderTask(RenderTask task) {
-        synchronized (this.renderTasks) {
-            // checking all scheduled renderTasks except the first one, since that is already being processed
-            Iterator<RenderTask> iterator = renderTasks.iterator();
-            if (!iterator.hasNext()) return false;
-            iterator.next(); // skip first
-
-            while(iterator.hasNext()) {
-                if (iterator.next().contains(task)) return true;
-            }
-
-            return false;
+        for (RenderTask scheduledTask : renderTasks) {
+            if (scheduledTask.contains(task)) return true;
         }
+
+        return false;
     }
 
     public int getWorkerThreadCount() {
         return workerThreads.size();
     }
 
+    public List<WorkerThread> getWorkerThreads() {
+        return List.copyOf(workerThreads);
+    }
+
     public long getLastTimeBusy() {
         return lastTimeBusy;
     }
 
     public Map<RenderTask, Long> getCompletedTasks() {
-        return Map.copyOf(completedTasks);
+        synchronized (this.renderTasks) {
+            return Map.copyOf(completedTasks);
+        }
     }
 
     private void removeTasksThatAreContainedIn(RenderTask containingTask) {
         synchronized (this.renderTasks) {
-            if (renderTasks.size() < 2) return;
-            RenderTask first = renderTasks.removeFirst();
-            if (containingTask.contains(first)) first.cancel();
+            ActiveTask[] activeTasks = this.activeTasks;
+            if (activeTasks.length + renderTasks.size() < 2) return;
+            for (ActiveTask activeTask : activeTasks) {
+                if (containingTask.contains(activeTask.task)) activeTask.task.cancel();
+            }
             renderTasks.removeIf(containingTask::contains);
-            renderTasks.addFirst(first);
         }
     }
 
-    private void doWork() throws Exception {
-        RenderTask task;
+    private void doWork(WorkerThread worker) throws Exception {
+        ActiveTask activeTask = claimWork();
 
-        synchronized (this.renderTasks) {
-            while (this.renderTasks.isEmpty())
-                this.renderTasks.wait(10000);
-
-            task = this.renderTasks.getFirst();
-            if (this.newTask) {
-                this.newTask = false;
-                this.progressTracker.resetAndStart(task::estimateProgress);
+        if (activeTask == null) {
+            synchronized (this.renderTasks) {
+                // only wait if nothing changed that might have created new work in the meantime
+                if (!updateActiveTasks() && !hasAvailableWork())
+                    this.renderTasks.wait(10000);
             }
+            return;
+        }
+
+        this.lastTimeBusy = System.currentTimeMillis();
+        worker.utilization.busy();
+        try {
+            activeTask.task.doWork();
+        } finally {
+            worker.utilization.idle();
+            release(activeTask);
+        }
+    }
+
+    /**
+     * Finds the oldest active task that has more work and marks the calling worker as busy on that task
+     */
+    private @Nullable ActiveTask claimWork() {
+        for (ActiveTask activeTask : this.activeTasks) {
+            activeTask.busyCount.incrementAndGet();
+            if (activeTask.task.hasMoreWork()) return activeTask;
+            release(activeTask);
+        }
+        return null;
+    }
 
-            // the following is making sure every render-thread is done working on this task (no thread is "busy")
-            // before continuing working on the next RenderTask
-            if (!task.hasMoreWork()) {
-                if (busyCount.get() <= 0) {
-                    this.completedTasks.put(
-                            this.renderTasks.removeFirst(),
-                            System.currentTimeMillis()
-                    );
-                    this.renderTasks.notifyAll();
+    private boolean hasAvailableWork() {
+        for (ActiveTask activeTask : this.activeTasks) {
+            if (activeTask.task.hasMoreWork()) return true;
+        }
+        return false;
+    }
 
-                    this.newTask = true;
+    private void release(ActiveTask activeTask) {
+        int busyCount = activeTask.busyCount.decrementAndGet();
+        if (busyCount > 0) {
+            this.lastTimeBusy = System.currentTimeMillis();
+            return;
+        }
 
-                    busyCount.set(0);
+        // the task might be completed now, replace it with the next scheduled task right away
+        // (this also wakes up waiting workers if the active tasks changed)
+        if (!activeTask.task.hasMoreWork()) {
+            updateActiveTasks();
+        }
+    }
+
+    /**
+     * Removes all completed tasks from the active tasks and activates scheduled tasks in their place.<br>
+     * A scheduled task is only activated if it is not related to the same map as any earlier active or scheduled
+     * task, so tasks on the same map are still processed strictly in order.
+     * Tasks that can not be related to a map are never processed at the same time as any other task.
+     * @return true if the active tasks changed
+     */
+    private boolean updateActiveTasks() {
+        synchronized (this.renderTasks) {
+            ActiveTask[] activeTasks = this.activeTasks;
+            List<ActiveTask> nextActiveTasks = new ArrayList<>(maxActiveTasks);
+            boolean changed = false;
+
+            // remove completed tasks, making sure every render-thread is done working on them (no thread is "busy")
+            for (ActiveTask activeTask : activeTasks) {
+                if (activeTask.busyCount.get() <= 0 && !activeTask.task.hasMoreWork()) {
+                    this.completedTasks.put(activeTask.task, System.currentTimeMillis());
+                    changed = true;
                 } else {
-                    this.renderTasks.wait(10000);
+                    nextActiveTasks.add(activeTask);
                 }
+            }
 
-                return;
+            // activate scheduled tasks
+            Set<String> blockedMaps = new HashSet<>();
+            boolean exclusive = false;
+            for (ActiveTask activeTask : nextActiveTasks) {
+                String mapId = getMapId(activeTask.task);
+                if (mapId == null) exclusive = true;
+                else blockedMaps.add(mapId);
             }
 
-            this.busyCount.incrementAndGet();
-            this.lastTimeBusy = System.currentTimeMillis();
-        }
+            Iterator<RenderTask> iterator = this.renderTasks.iterator();
+            while (!exclusive && nextActiveTasks.size() < maxActiveTasks && iterator.hasNext()) {
+                RenderTask task = iterator.next();
+                String mapId = getMapId(task);
 
-        try {
-            task.doWork();
-        } finally {
-            synchronized (renderTasks) {
-                int busyCount = this.busyCount.decrementAndGet();
-                if (busyCount > 0) this.lastTimeBusy = System.currentTimeMillis();
+                if (mapId == null) {
+                    exclusive = true;
+                    if (!nextActiveTasks.isEmpty()) break;
+                } else if (!blockedMaps.add(mapId)) {
+                    continue;
+                }
+
+                iterator.remove();
+                nextActiveTasks.add(new ActiveTask(task));
+                changed = true;
+            }
+
+            if (changed) {
+                this.activeTasks = nextActiveTasks.toArray(NO_ACTIVE_TASKS);
+                updateProgressTracker();
                 this.renderTasks.notifyAll();
             }
+
+            return changed;
+        }
+    }
+
+    private void updateProgressTracker() {
+        RenderTask currentTask = getCurrentRenderTask();
+        if (currentTask == null || currentTask == trackedTask) return;
+
+        this.trackedTask = currentTask;
+        if (progressTracker != null) progressTracker.resetAndStart(currentTask::estimateProgress);
+    }
+
+    private static @Nullable String getMapId(RenderTask task) {
+        if (task instanceof MapRenderTask mapTask) return mapTask.getMap().getId();
+        if (task instanceof StorageDeleteTask deleteTask) return deleteTask.getMapId();
+        return null;
+    }
+
+    private static class ActiveTask {
+
+        private final RenderTask task;
+        private final AtomicInteger busyCount;
+
+        private ActiveTask(RenderTask task) {
+            this.task = task;
+            this.busyCount = new AtomicInteger(0);
         }
+
     }
 
     public class WorkerThread extends Thread {
 
         private final int id;
+        private final UtilizationTracker utilization;
 
         private WorkerThread() {
             this.id = RenderManager.this.nextWorkerThreadIndex.getAndIncrement();
+            this.utilization = new UtilizationTracker(TimeUnit.MINUTES.toNanos(1));
             this.setName("RenderManager-" + RenderManager.this.id + "-" + this.id);
         }
 
+        /**
+         * The fraction of time (0-1) this worker spent working on tasks, averaged over roughly the last minute.
+         */
+        public double getUtilization() {
+            return utilization.get();
+        }
+
         @Override
         @SuppressWarnings("BusyWait")
         public void run() {
             try {
                 while (RenderManager.this.running) {
                     try {
-                        RenderManager.this.doWork();
+                        RenderManager.this.doWork(this);
                     } catch (InterruptedException e) {
                         Thread.currentThread().interrupt();
                     } catch (Exception e) {
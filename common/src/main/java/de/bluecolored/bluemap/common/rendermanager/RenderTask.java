@@ -43,6 +43,14 @@ default double estimateProgress() {
         return 0d;
     }
 
+    /**
+     * Hints that this task is going to be worked on soon, so it can already start loading the data it will need in
+     * the background.<br>
+     * This is called on a render-thread while other tasks are still being worked on, so implementations should only
+     * do cheap preparations themselves and must not wait for the background-loading to finish.
+     */
+    default void prefetch() {}
+
     /**
      * Requests to cancel this task. The task then self-decides what to do with this request.
      */
@@ -88,6 +88,10 @@ public boolean contains(RenderTask task) {
         return false;
     }
 
+    public String getMapId() {
+        return mapId;
+    }
+
     @Override
     public String getDescription() {
         return "deleting map '%s'".formatted(mapId);
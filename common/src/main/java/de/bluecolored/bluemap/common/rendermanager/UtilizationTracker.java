@@ -0,0 +1,82 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.common.rendermanager;
+
+/**
+ * Tracks the fraction of time a single thread is busy, as an exponential moving average.<br>
+ * {@link #busy()} and {@link #idle()} are expected to be called by one thread only,
+ * {@link #get()} can be called from any thread.
+ */
+class UtilizationTracker {
+
+    private final double timeConstant;
+    private final long startTime;
+    private volatile Sample sample;
+
+    /**
+     * @param timeConstantNanos the time-span in nanoseconds over which the utilization is (roughly) averaged
+     */
+    UtilizationTracker(long timeConstantNanos) {
+        this.timeConstant = timeConstantNanos;
+        this.startTime = System.nanoTime();
+        this.sample = new Sample(startTime, 0, false);
+    }
+
+    public void busy() {
+        update(true);
+    }
+
+    public void idle() {
+        update(false);
+    }
+
+    /**
+     * The current utilization from 0 (always idle) to 1 (always busy)
+     */
+    public double get() {
+        long now = System.nanoTime();
+
+        // the average starts at 0, so it is corrected by the weight it has gained since the start
+        double weight = 1 - Math.exp(-(now - startTime) / timeConstant);
+        if (weight <= 0) return 0;
+        return Math.min(sample.valueAt(now, timeConstant) / weight, 1);
+    }
+
+    private void update(boolean busy) {
+        long now = System.nanoTime();
+        this.sample = new Sample(now, sample.valueAt(now, timeConstant), busy);
+    }
+
+    private record Sample(long time, double utilization, boolean busy) {
+
+        double valueAt(long time, double timeConstant) {
+            double decay = Math.exp(-(time - this.time) / timeConstant);
+            double target = busy ? 1 : 0;
+            return target + (utilization - target) * decay;
+        }
+
+    }
+
+}
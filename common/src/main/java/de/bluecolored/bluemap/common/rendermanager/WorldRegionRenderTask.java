@@ -27,11 +27,11 @@
 import com.flowpowered.math.vector.Vector2i;
 import com.flowpowered.math.vector.Vector2l;
 import de.bluecolored.bluemap.common.debug.DebugDump;
+import de.bluecolored.bluemap.core.BlueMap;
 import de.bluecolored.bluemap.core.logger.Logger;
 import de.bluecolored.bluemap.core.map.BmMap;
 import de.bluecolored.bluemap.core.map.renderstate.TileActionResolver.ActionAndNextState;
 import de.bluecolored.bluemap.core.map.renderstate.TileActionResolver.BoundsSituation;
-import de.bluecolored.bluemap.core.map.renderstate.TileInfoRegion;
 import de.bluecolored.bluemap.core.map.renderstate.TileState;
 import de.bluecolored.bluemap.core.util.Grid;
 import de.bluecolored.bluemap.core.world.Chunk;
@@ -40,14 +40,26 @@
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Comparator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
 import static de.bluecolored.bluemap.core.map.renderstate.TileActionResolver.Action.DELETE;
 import static de.bluecolored.bluemap.core.map.renderstate.TileActionResolver.Action.RENDER;
 
 public class WorldRegionRenderTask implements MapRenderTask {
 
+    // loads chunks ahead of the render-threads, a single thread is enough since this is mostly bound by disk-reads
+    private static final ThreadPoolExecutor PRELOAD_EXECUTOR = createPreloadExecutor();
+
+    // if the preloader can't keep up, the oldest requests are dropped, those regions are most likely being rendered already
+    private static final int PRELOAD_QUEUE_SIZE = 4;
+
     @Getter private final BmMap map;
     @Getter private final Vector2i regionPos;
     @Getter private final TileUpdateStrategy force;
@@ -56,12 +68,18 @@ public class WorldRegionRenderTask implements MapRenderTask {
     private Vector2i chunkMin, chunkMax, chunksSize;
     private Vector2i tileMin, tileMax, tileSize;
 
-    private int[] chunkHashes;
+    private int[] chunkTimestamps, chunkContentHashes;
     private ActionAndNextState[] tileActions;
 
-    private volatile int nextTileX, nextTileZ;
+    // the actions for tiles that only need to be processed if the content of their (re-saved) chunks changed,
+    // null for tiles that don't need this check
+    private ActionAndNextState[] unchangedTileActions;
+    private int[] tileOrder;
+
+    private volatile int nextTile;
     private volatile int atWork;
-    private volatile boolean completed, cancelled;
+    private volatile boolean initialized, preloadRequested, completed, cancelled;
+    private final Runnable preloadRequest = this::preloadChunks;
 
     public WorldRegionRenderTask(BmMap map, Vector2i regionPos) {
         this(map, regionPos, false);
@@ -76,10 +94,11 @@ public WorldRegionRenderTask(BmMap map, Vector2i regionPos, TileUpdateStrategy f
         this.regionPos = regionPos;
         this.force = force;
 
-        this.nextTileX = 0;
-        this.nextTileZ = 0;
+        this.nextTile = 0;
 
         this.atWork = 0;
+        this.initialized = false;
+        this.preloadRequested = false;
         this.completed = false;
         this.cancelled = false;
     }
@@ -97,17 +116,19 @@ private synchronized void init() {
         this.tileMax = regionGrid.getCellMax(regionPos, tileGrid);
         this.tileSize = tileMax.sub(tileMin).add(1, 1);
 
-        // load chunk-hash array
+        // load chunk-timestamp array, content-hashes are only loaded when needed
         int chunkMaxCount = chunksSize.getX() * chunksSize.getY();
         try {
-            chunkHashes = new int[chunkMaxCount];
+            chunkTimestamps = new int[chunkMaxCount];
+            chunkContentHashes = new int[chunkMaxCount];
             map.getWorld().getRegion(regionPos.getX(), regionPos.getY())
                     .iterateAllChunks( (ChunkConsumer.ListOnly<Chunk>) (x, z, timestamp) -> {
-                        chunkHashes[chunkIndex(
+                        chunkTimestamps[chunkIndex(
                                 x - chunkMin.getX(),
                                 z - chunkMin.getY()
                         )] = timestamp;
-                        map.getWorld().invalidateChunkCache(x, z);
+                        // keeps chunks that have been preloaded already (e.g. as border-chunks of the previous region)
+                        map.getWorld().invalidateChunkCache(x, z, timestamp);
                     });
         } catch (IOException ex) {
             Logger.global.logError("Failed to load chunks for region " + regionPos, ex);
@@ -119,17 +140,27 @@ private synchronized void init() {
         int tileRenderCount = 0;
         int tileDeleteCount = 0;
         tileActions = new ActionAndNextState[tileMaxCount];
+        unchangedTileActions = new ActionAndNextState[tileMaxCount];
         for (int x = 0; x < tileSize.getX(); x++) {
             for (int z = 0; z < tileSize.getY(); z++) {
                 Vector2i tile = new Vector2i(tileMin.getX() + x, tileMin.getY() + z);
-                TileState tileState = map.getMapTileState().get(tile.getX(), tile.getY()).getState();
+                TileState tileState = map.getMapTileState().getState(tile.getX(), tile.getY());
+                BoundsSituation boundsSituation = checkTileBounds(tile);
 
                 int tileIndex = tileIndex(x, z);
+                ChunkChanges chunkChanges = force.test(tileState) ? ChunkChanges.CHANGED : checkChunkTimestamps(tile);
                 tileActions[tileIndex] = tileState.findActionAndNextState(
-                        force.test(tileState) || checkChunksHaveChanges(tile),
-                        checkTileBounds(tile)
+                        chunkChanges != ChunkChanges.NONE,
+                        boundsSituation
                 );
 
+                // checking the content needs the chunks to be loaded, this is deferred to the render-threads
+                if (chunkChanges == ChunkChanges.CHECK_CONTENT) {
+                    ActionAndNextState unchangedAction = tileState.findActionAndNextState(false, boundsSituation);
+                    if (!unchangedAction.equals(tileActions[tileIndex]))
+                        unchangedTileActions[tileIndex] = unchangedAction;
+                }
+
                 if (tileActions[tileIndex].action() == RENDER)
                     tileRenderCount++;
                 if (tileActions[tileIndex].action() == DELETE)
@@ -137,61 +168,138 @@ private synchronized void init() {
             }
         }
 
-        if (tileRenderCount >= tileMaxCount * 0.75)
-            map.getWorld().preloadRegionChunks(regionPos.getX(), regionPos.getY());
+        tileOrder = createTileOrder(tileSize.getX(), tileSize.getY());
 
         if (tileRenderCount + tileDeleteCount == 0)
             completed = true;
 
+        initialized = true;
+    }
+
+    /**
+     * Starts loading the chunks needed to render this region in the background (if that has not been started already).
+     */
+    private void preloadChunksAsync() {
+        synchronized (this) {
+            if (preloadRequested || cancelled || completed) return;
+            preloadRequested = true;
+        }
+
+        try {
+            PRELOAD_EXECUTOR.execute(preloadRequest);
+        } catch (RejectedExecutionException ignore) {}
+    }
+
+    /**
+     * Loads all chunks that the tiles which need to be rendered will access into the chunk-cache, including the
+     * border-chunks of the neighbouring regions.<br>
+     * The task needs to be initialized already, the preloader-thread never initializes a task itself.
+     */
+    private void preloadChunks() {
+        ActionAndNextState[] tileActions;
+        synchronized (this) {
+            if (!initialized || cancelled || completed) return;
+            tileActions = this.tileActions;
+        }
+
+        // the chunk-area of all tiles of this region, extended by one chunk since blocks next to a tile are accessed as well
+        int     minX = tileGrid.getCellMinX(tileMin.getX(), chunkGrid) - 1,
+                maxX = tileGrid.getCellMaxX(tileMax.getX(), chunkGrid) + 1,
+                minZ = tileGrid.getCellMinY(tileMin.getY(), chunkGrid) - 1,
+                maxZ = tileGrid.getCellMaxY(tileMax.getY(), chunkGrid) + 1;
+        int sizeX = maxX - minX + 1;
+
+        BitSet neededChunks = new BitSet(sizeX * (maxZ - minZ + 1));
+        for (int x = 0; x < tileSize.getX(); x++) {
+            for (int z = 0; z < tileSize.getY(); z++) {
+                if (tileActions[tileIndex(x, z)].action() != RENDER) continue;
+
+                int tileX = tileMin.getX() + x, tileZ = tileMin.getY() + z;
+                int     tileMinX = tileGrid.getCellMinX(tileX, chunkGrid) - 1 - minX,
+                        tileMaxX = tileGrid.getCellMaxX(tileX, chunkGrid) + 1 - minX,
+                        tileMinZ = tileGrid.getCellMinY(tileZ, chunkGrid) - 1 - minZ,
+                        tileMaxZ = tileGrid.getCellMaxY(tileZ, chunkGrid) + 1 - minZ;
+                for (int chunkZ = tileMinZ; chunkZ <= tileMaxZ; chunkZ++) {
+                    neededChunks.set(chunkZ * sizeX + tileMinX, chunkZ * sizeX + tileMaxX + 1);
+                }
+            }
+        }
+        if (neededChunks.isEmpty()) return;
+
+        Predicate<Vector2i> chunkFilter = chunk -> !cancelled &&
+                chunk.getX() >= minX && chunk.getX() <= maxX &&
+                chunk.getY() >= minZ && chunk.getY() <= maxZ &&
+                neededChunks.get((chunk.getY() - minZ) * sizeX + chunk.getX() - minX);
+
+        // this region first, then the border-chunks of the neighbouring regions
+        // all together limited by the preload-budget, so the preload never evicts most of the chunks that are in use
+        long memoryBudget = map.getWorld().getChunkPreloadBudget();
+        memoryBudget -= map.getWorld().preloadRegionChunks(regionPos.getX(), regionPos.getY(), chunkFilter, memoryBudget);
+
+        int     minRegionX = regionGrid.getCellX(chunkGrid.getCellMinX(minX)),
+                maxRegionX = regionGrid.getCellX(chunkGrid.getCellMinX(maxX)),
+                minRegionZ = regionGrid.getCellY(chunkGrid.getCellMinY(minZ)),
+                maxRegionZ = regionGrid.getCellY(chunkGrid.getCellMinY(maxZ));
+        for (int regionX = minRegionX; regionX <= maxRegionX; regionX++) {
+            for (int regionZ = minRegionZ; regionZ <= maxRegionZ; regionZ++) {
+                if (cancelled || memoryBudget <= 0) return;
+                if (regionX == regionPos.getX() && regionZ == regionPos.getY()) continue;
+                memoryBudget -= map.getWorld().preloadRegionChunks(regionX, regionZ, chunkFilter, memoryBudget);
+            }
+        }
     }
 
     @Override
     public void doWork() {
         if (cancelled || completed) return;
 
-        int tileX, tileZ;
+        int tileIndex;
 
         synchronized (this) {
             if (cancelled || completed) return;
 
-            tileX = nextTileX;
-            tileZ = nextTileZ;
-
-            if (tileX == 0 && tileZ == 0) {
+            if (!initialized) {
                 init();
                 if (cancelled || completed) return;
             }
 
-            nextTileX = tileX + 1;
-            if (nextTileX >= tileSize.getX()) {
-                nextTileZ = tileZ + 1;
-                nextTileX = 0;
-            }
-            if (nextTileZ >= tileSize.getY()) {
+            // make sure the chunks are loaded ahead of the render-threads
+            preloadChunksAsync();
+
+            tileIndex = tileOrder[nextTile];
+
+            nextTile++;
+            if (nextTile >= tileOrder.length) {
                 completed = true;
             }
 
             this.atWork++;
         }
 
-        processTile(tileX, tileZ);
+        processTile(tileIndex % tileSize.getX(), tileIndex / tileSize.getX());
 
+        boolean complete;
         synchronized (this) {
             this.atWork--;
-
-            if (atWork <= 0 && completed && !cancelled) {
-                complete();
-            }
+            complete = atWork <= 0 && completed && !cancelled;
         }
+
+        // not holding the monitor, this might load chunks
+        if (complete) complete();
     }
 
     private void processTile(int x, int z) {
         Vector2i tile = new Vector2i(tileMin.getX() + x, tileMin.getY() + z);
         ActionAndNextState action = tileActions[tileIndex(x, z)];
+        ActionAndNextState unchangedAction = unchangedTileActions[tileIndex(x, z)];
         TileState resultState = TileState.RENDER_ERROR;
 
         try {
 
+            // skip the tile if its chunks have been saved without changing their content
+            if (unchangedAction != null && !checkChunkContentsHaveChanges(tile))
+                action = unchangedAction;
+
             resultState = switch (action.action()) {
 
                 case NONE -> action.state();
@@ -221,29 +329,42 @@ private void processTile(int x, int z) {
         } finally {
 
             // mark tile with new state
-            map.getMapTileState().set(tile.getX(), tile.getY(), new TileInfoRegion.TileInfo(
+            map.getMapTileState().set(tile.getX(), tile.getY(),
                     (int) (System.currentTimeMillis() / 1000),
                     resultState
-            ));
+            );
 
         }
 
     }
 
-    private synchronized void complete() {
-        // save chunk-hashes
-        if (chunkHashes != null) {
+    /**
+     * Called once by the thread that finished the last tile
+     */
+    private void complete() {
+        // save chunk-timestamps and content-hashes
+        if (chunkTimestamps != null) {
             for (int x = 0; x < chunksSize.getX(); x++) {
                 for (int z = 0; z < chunksSize.getY(); z++) {
-                    int hash = chunkHashes[chunkIndex(x, z)];
-                    map.getMapChunkState().set(chunkMin.getX() + x, chunkMin.getY() + z, hash);
+                    int chunkX = chunkMin.getX() + x, chunkZ = chunkMin.getY() + z;
+                    int timestamp = chunkTimestamps[chunkIndex(x, z)];
+                    int lastTimestamp = map.getMapChunkState().getTimestamp(chunkX, chunkZ);
+
+                    // content-hashes of unchanged chunks don't need to be loaded again
+                    int contentHash = timestamp == lastTimestamp && chunkContentHashes[chunkIndex(x, z)] == 0 ?
+                            map.getMapChunkState().getContentHash(chunkX, chunkZ) :
+                            getContentHash(x, z);
+
+                    map.getMapChunkState().set(chunkX, chunkZ, timestamp, contentHash);
                 }
             }
-            chunkHashes = null;
+            chunkTimestamps = null;
+            chunkContentHashes = null;
         }
 
         // clear tile-actions
         tileActions = null;
+        unchangedTileActions = null;
 
         // save map (at most, every minute)
         map.save(TimeUnit.MINUTES.toMillis(1));
@@ -251,20 +372,38 @@ private synchronized void complete() {
 
     @Override
     @DebugDump
-    public synchronized boolean hasMoreWork() {
+    public boolean hasMoreWork() {
         return !completed && !cancelled;
     }
 
     @Override
     @DebugDump
     public double estimateProgress() {
-        if (tileSize == null) return 0;
-        return Math.min((double) (nextTileZ * tileSize.getX() + nextTileX) / (tileSize.getX() * tileSize.getY()), 1);
+        int[] tileOrder = this.tileOrder;
+        if (tileOrder == null) return 0;
+        return Math.min((double) nextTile / tileOrder.length, 1);
+    }
+
+    /**
+     * Initializes this task on the calling render-thread (this only reads the region-header and render-state, no
+     * chunks), so the preloader-thread already knows which chunks will be needed.
+     */
+    @Override
+    public void prefetch() {
+        synchronized (this) {
+            if (cancelled || completed) return;
+            if (!initialized) init();
+        }
+
+        preloadChunksAsync();
     }
 
     @Override
     public void cancel() {
         this.cancelled = true;
+
+        // drop the preload-request if it has not been started yet
+        PRELOAD_EXECUTOR.remove(preloadRequest);
     }
 
     @Override
@@ -293,33 +432,129 @@ private int tileIndex(int x, int z) {
         return z * tileSize.getX() + x;
     }
 
-    private boolean checkChunksHaveChanges(Vector2i tile) {
-        int     minX = tileGrid.getCellMinX(tile.getX(), chunkGrid),
-                maxX = tileGrid.getCellMaxX(tile.getX(), chunkGrid),
-                minZ = tileGrid.getCellMinY(tile.getY(), chunkGrid),
-                maxZ = tileGrid.getCellMaxY(tile.getY(), chunkGrid);
+    /**
+     * Creates the order in which the tiles are processed (as tile-indices), following a Z-order curve.
+     * This way tiles that are processed around the same time are close to each other and mostly access the same
+     * chunks, which keeps the chunks that are currently needed in the cache.
+     */
+    private static int[] createTileOrder(int sizeX, int sizeZ) {
+        long[] keys = new long[sizeX * sizeZ];
+        for (int x = 0; x < sizeX; x++) {
+            for (int z = 0; z < sizeZ; z++) {
+                int index = z * sizeX + x;
+                keys[index] = interleaveBits(x, z) << 32 | index;
+            }
+        }
+        Arrays.sort(keys);
+
+        int[] order = new int[keys.length];
+        for (int i = 0; i < keys.length; i++)
+            order[i] = (int) keys[i];
+        return order;
+    }
+
+    private static long interleaveBits(int x, int z) {
+        long result = 0;
+        for (int i = 0; i < 15; i++) {
+            result |= (long) (x >> i & 1) << (2 * i) | (long) (z >> i & 1) << (2 * i + 1);
+        }
+        return result;
+    }
+
+    private static ThreadPoolExecutor createPreloadExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                1, 1,
+                10, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(PRELOAD_QUEUE_SIZE),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "BlueMap-ChunkPreloader");
+                    thread.setDaemon(true);
+                    // use current classloader, this fixes ClassLoading issues with forge
+                    thread.setContextClassLoader(BlueMap.class.getClassLoader());
+                    return thread;
+                },
+                new ThreadPoolExecutor.DiscardOldestPolicy()
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Checks the chunk-timestamps of all chunks of this region that the tile is made of, this does not load any chunks.
+     */
+    private ChunkChanges checkChunkTimestamps(Vector2i tile) {
+        ChunkChanges result = ChunkChanges.NONE;
+        int     minX = Math.max(tileGrid.getCellMinX(tile.getX(), chunkGrid), chunkMin.getX()),
+                maxX = Math.min(tileGrid.getCellMaxX(tile.getX(), chunkGrid), chunkMax.getX()),
+                minZ = Math.max(tileGrid.getCellMinY(tile.getY(), chunkGrid), chunkMin.getY()),
+                maxZ = Math.min(tileGrid.getCellMaxY(tile.getY(), chunkGrid), chunkMax.getY());
 
         for (int chunkX = minX; chunkX <= maxX; chunkX++) {
             for (int chunkZ = minZ; chunkZ <= maxZ; chunkZ++) {
-                int dx = chunkX - chunkMin.getX();
-                int dz = chunkZ - chunkMin.getY();
-
-                // only check hash for chunks inside the current region
-                if (
-                        chunkX >= chunkMin.getX() && chunkX <= chunkMax.getX() &&
-                        chunkZ >= chunkMin.getY() && chunkZ <= chunkMax.getY()
-                ) {
-                    int hash = chunkHashes[chunkIndex(dx, dz)];
-                    int lastHash = map.getMapChunkState().get(chunkX, chunkZ);
-
-                    if (lastHash != hash) return true;
-                }
+                int timestamp = chunkTimestamps[chunkIndex(chunkX - chunkMin.getX(), chunkZ - chunkMin.getY())];
+
+                // the chunk has not been saved since it was last rendered
+                if (map.getMapChunkState().getTimestamp(chunkX, chunkZ) == timestamp) continue;
+
+                // the chunk has been saved, without a content-hash from the last render we can't know if it changed
+                if (map.getMapChunkState().getContentHash(chunkX, chunkZ) == 0) return ChunkChanges.CHANGED;
+                result = ChunkChanges.CHECK_CONTENT;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Compares the content-hashes of all chunks of this region that the tile is made of, loading the chunks that have
+     * been saved since they were last rendered.
+     */
+    private boolean checkChunkContentsHaveChanges(Vector2i tile) {
+        int     minX = Math.max(tileGrid.getCellMinX(tile.getX(), chunkGrid), chunkMin.getX()),
+                maxX = Math.min(tileGrid.getCellMaxX(tile.getX(), chunkGrid), chunkMax.getX()),
+                minZ = Math.max(tileGrid.getCellMinY(tile.getY(), chunkGrid), chunkMin.getY()),
+                maxZ = Math.min(tileGrid.getCellMaxY(tile.getY(), chunkGrid), chunkMax.getY());
+
+        for (int chunkX = minX; chunkX <= maxX; chunkX++) {
+            for (int chunkZ = minZ; chunkZ <= maxZ; chunkZ++) {
+                int dx = chunkX - chunkMin.getX(), dz = chunkZ - chunkMin.getY();
+                if (!map.getMapChunkState().isUnchanged(chunkX, chunkZ,
+                        chunkTimestamps[chunkIndex(dx, dz)],
+                        () -> getContentHash(dx, dz)
+                )) return true;
             }
         }
 
         return false;
     }
 
+    /**
+     * Loads the content-hash of a chunk (relative to the regions chunkMin) if it has not been loaded yet.
+     * Returns 0 if the chunk does not have a content-hash.<br>
+     * This can be called concurrently by multiple render-threads, in the worst case the same hash is loaded twice.
+     */
+    private int getContentHash(int x, int z) {
+        int index = chunkIndex(x, z);
+        int contentHash = chunkContentHashes[index];
+        if (contentHash != 0) return contentHash;
+
+        // chunk does not exist
+        if (chunkTimestamps[index] == 0) return 0;
+
+        Chunk chunk = map.getWorld().getChunk(chunkMin.getX() + x, chunkMin.getY() + z);
+        contentHash = chunk.getContentHash();
+
+        // the inhabited-time is only relevant for rendering if a minimum is configured for this map
+        long minInhabitedTime = map.getMapSettings().getMinInhabitedTime();
+        if (contentHash != 0 && minInhabitedTime > 0 && chunk.getInhabitedTime() >= minInhabitedTime) {
+            contentHash = contentHash * 31 + 1;
+            if (contentHash == 0) contentHash = 1;
+        }
+
+        chunkContentHashes[index] = contentHash;
+        return contentHash;
+    }
+
     private BoundsSituation checkTileBounds(Vector2i tile) {
         boolean isInsideBounds = map.getMapSettings().isInsideRenderBoundaries(tile, tileGrid, true);
         if (!isInsideBounds) return BoundsSituation.OUTSIDE;
@@ -383,4 +618,13 @@ private static int compareVec2L(Vector2l v1, Vector2l v2) {
         return Long.signum(v1.lengthSquared() - v2.lengthSquared());
     }
 
+    private enum ChunkChanges {
+        /** All chunks are unchanged since the last render */
+        NONE,
+        /** Some chunks have been saved since the last render, but they might still have the same content */
+        CHECK_CONTENT,
+        /** Some chunks have (or might have) changed */
+        CHANGED
+    }
+
 }
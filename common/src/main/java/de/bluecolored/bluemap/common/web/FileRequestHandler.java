@@ -32,9 +32,8 @@
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.InvalidPathException;
-import java.nio.file.Path;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
@@ -151,9 +150,9 @@ private HttpResponse generateResponse(HttpRequest request) throws IOException {
 
         //send response
         try {
-            response.setData(Files.newInputStream(filePath));
+            response.setData(FileChannel.open(filePath, StandardOpenOption.READ));
             return response;
-        } catch (FileNotFoundException e) {
+        } catch (FileNotFoundException | NoSuchFileException e) {
             return new HttpResponse(HttpStatusCode.NOT_FOUND);
         }
     }
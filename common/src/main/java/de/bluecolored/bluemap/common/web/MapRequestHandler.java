@@ -41,7 +41,15 @@
 public class MapRequestHandler extends RoutingRequestHandler {
 
     public MapRequestHandler(BmMap map, Server serverInterface, PluginConfig pluginConfig, Predicate<UUID> playerFilter) {
-        this(map.getStorage(),
+        this(map, null, serverInterface, pluginConfig, playerFilter);
+    }
+
+    /**
+     * @param tileCache if present, the tiles of the map are served from this cache, which gets notified about
+     *                  tile-updates of the map
+     */
+    public MapRequestHandler(BmMap map, @Nullable TileCache tileCache, Server serverInterface, PluginConfig pluginConfig, Predicate<UUID> playerFilter) {
+        this(new MapStorageRequestHandler(map.getStorage(), map.getMapTileState(), registerTileCache(map, tileCache)),
                 new LivePlayersDataSupplier(serverInterface, pluginConfig, map.getWorld(), playerFilter),
                 new LiveMarkersDataSupplier(map.getMarkerSets()));
     }
@@ -50,11 +58,21 @@ public MapRequestHandler(MapStorage mapStorage) {
         this(mapStorage, null, null);
     }
 
+    public MapRequestHandler(MapStorage mapStorage, TileCache.@Nullable MapTiles tileCache) {
+        this(new MapStorageRequestHandler(mapStorage, null, tileCache), null, null);
+    }
+
     public MapRequestHandler(MapStorage mapStorage,
                              @Nullable Supplier<String> livePlayersDataSupplier,
                              @Nullable Supplier<String> liveMarkerDataSupplier) {
+        this(new MapStorageRequestHandler(mapStorage), livePlayersDataSupplier, liveMarkerDataSupplier);
+    }
+
+    private MapRequestHandler(MapStorageRequestHandler mapStorageRequestHandler,
+                              @Nullable Supplier<String> livePlayersDataSupplier,
+                              @Nullable Supplier<String> liveMarkerDataSupplier) {
 
-        register(".*", new MapStorageRequestHandler(mapStorage));
+        register(".*", mapStorageRequestHandler);
 
         if (livePlayersDataSupplier != null) {
             register("live/players\\.json", "", new JsonDataRequestHandler(
@@ -69,4 +87,11 @@ public MapRequestHandler(MapStorage mapStorage,
         }
     }
 
+    private static TileCache.@Nullable MapTiles registerTileCache(BmMap map, @Nullable TileCache tileCache) {
+        if (tileCache == null) return null;
+        TileCache.MapTiles mapTiles = tileCache.map(map.getId());
+        map.addTileUpdateListener(mapTiles);
+        return mapTiles;
+    }
+
 }
@@ -25,12 +25,16 @@
 package de.bluecolored.bluemap.common.web;
 
 import de.bluecolored.bluemap.api.ContentTypeRegistry;
+import de.bluecolored.bluemap.common.web.http.HttpHeader;
 import de.bluecolored.bluemap.common.web.http.HttpRequest;
 import de.bluecolored.bluemap.common.web.http.HttpRequestHandler;
 import de.bluecolored.bluemap.common.web.http.HttpResponse;
 import de.bluecolored.bluemap.common.web.http.HttpStatusCode;
 import de.bluecolored.bluemap.core.logger.Logger;
+import de.bluecolored.bluemap.core.map.renderstate.MapTileState;
 import de.bluecolored.bluemap.core.storage.GridStorage;
+import de.bluecolored.bluemap.core.storage.ItemMetadata;
+import de.bluecolored.bluemap.core.storage.ItemStorage;
 import de.bluecolored.bluemap.core.storage.MapStorage;
 import de.bluecolored.bluemap.core.storage.compression.CompressedInputStream;
 import de.bluecolored.bluemap.core.storage.compression.Compression;
@@ -38,11 +42,17 @@
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.NoSuchElementException;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
@@ -56,7 +66,26 @@ public class MapStorageRequestHandler implements HttpRequestHandler {
 
     private @NonNull MapStorage mapStorage;
 
-    @SuppressWarnings("resource")
+    /**
+     * If present, hires-tiles that are known to be empty are answered without reading the storage
+     */
+    private @Nullable MapTileState mapTileState;
+
+    /**
+     * If present, tiles are served from this cache instead of reading them from the storage on each request
+     */
+    private TileCache.@Nullable MapTiles tileCache;
+
+    public MapStorageRequestHandler(@NonNull MapStorage mapStorage, @Nullable MapTileState mapTileState) {
+        this(mapStorage, mapTileState, null);
+    }
+
+    public MapStorageRequestHandler(@NonNull MapStorage mapStorage, @Nullable MapTileState mapTileState, TileCache.@Nullable MapTiles tileCache) {
+        this.mapStorage = mapStorage;
+        this.mapTileState = mapTileState;
+        this.tileCache = tileCache;
+    }
+
     @Override
     public HttpResponse handle(HttpRequest request) {
         String path = request.getPath();
@@ -74,9 +103,10 @@ public HttpResponse handle(HttpRequest request) {
                 int x = Integer.parseInt(tileMatcher.group(2).replace("/", ""));
                 int z = Integer.parseInt(tileMatcher.group(3).replace("/", ""));
 
+                if (lod == 0 && mapTileState != null && mapTileState.isKnownEmpty(x, z))
+                    return new HttpResponse(HttpStatusCode.NO_CONTENT);
+
                 GridStorage gridStorage = lod == 0 ? mapStorage.hiresTiles() : mapStorage.lowresTiles(lod);
-                CompressedInputStream in = gridStorage.read(x, z);
-                if (in == null) return new HttpResponse(HttpStatusCode.NO_CONTENT);
 
                 HttpResponse response = new HttpResponse(HttpStatusCode.OK);
                 response.addHeader("Cache-Control", "public");
@@ -85,25 +115,26 @@ public HttpResponse handle(HttpRequest request) {
                 if (lod == 0) response.addHeader("Content-Type", "application/octet-stream");
                 else response.addHeader("Content-Type", "image/png");
 
-                writeToResponse(in, response, request);
-                return response;
+                ItemStorage tile = tileCache != null ? tileCache.cell(lod, gridStorage, x, z) : gridStorage.cell(x, z);
+                return respond(tile, response, request);
             }
 
             // provide meta-data
-            CompressedInputStream in = switch (path) {
-                case "settings.json" -> mapStorage.settings().read();
-                case "textures.json" -> mapStorage.textures().read();
-                case "live/markers.json" -> mapStorage.markers().read();
-                case "live/players.json" -> mapStorage.players().read();
-                default -> path.startsWith("assets/") ? mapStorage.asset(path.substring(7)).read() : null;
+            ItemStorage item = switch (path) {
+                case "settings.json" -> mapStorage.settings();
+                case "textures.json" -> mapStorage.textures();
+                case "live/markers.json" -> mapStorage.markers();
+                case "live/players.json" -> mapStorage.players();
+                default -> path.startsWith("assets/") ? mapStorage.asset(path.substring(7)) : null;
             };
-            if (in != null){
+            if (item != null){
                 HttpResponse response = new HttpResponse(HttpStatusCode.OK);
                 response.addHeader("Cache-Control", "public");
                 response.addHeader("Cache-Control", "max-age=" + TimeUnit.DAYS.toSeconds(1));
                 response.addHeader("Content-Type", ContentTypeRegistry.fromFileName(path));
-                writeToResponse(in, response, request);
-                return response;
+
+                response = respond(item, response, request);
+                if (response.getStatusCode() != HttpStatusCode.NO_CONTENT) return response;
             }
 
         } catch (NumberFormatException | NoSuchElementException ignore){
@@ -115,6 +146,89 @@ public HttpResponse handle(HttpRequest request) {
         return new HttpResponse(HttpStatusCode.NOT_FOUND);
     }
 
+    /**
+     * Completes the prepared response with the item-data, or turns it into a <code>304 Not Modified</code> response if
+     * the request is conditional and the client already has the current version of the item.
+     * If the item does not exist, a <code>204 No Content</code> response is returned.
+     */
+    @SuppressWarnings("resource")
+    private HttpResponse respond(ItemStorage item, HttpResponse response, HttpRequest request) throws IOException {
+
+        // if the storage provides metadata we can answer conditional requests without reading the item
+        ItemMetadata metadata = item.metadata();
+        if (metadata != null && addValidators(metadata, response) && isNotModified(metadata, request)) {
+            response.setStatusCode(HttpStatusCode.NOT_MODIFIED);
+            return response;
+        }
+
+        CompressedInputStream in = item.read();
+        if (in == null) return new HttpResponse(HttpStatusCode.NO_CONTENT);
+
+        // otherwise the data needs to be read, but if it is in memory anyway we can still save sending it
+        if (metadata == null && in.getFileChannel() == null) {
+            Compression compression = in.getCompression();
+            byte[] data;
+            try (CompressedInputStream dataIn = in) {
+                data = dataIn.readAllBytes();
+            }
+
+            metadata = ItemMetadata.of(data);
+            if (addValidators(metadata, response) && isNotModified(metadata, request)) {
+                response.setStatusCode(HttpStatusCode.NOT_MODIFIED);
+                return response;
+            }
+
+            in = new CompressedInputStream(new ByteArrayInputStream(data), compression);
+        }
+
+        writeToResponse(in, response, request);
+        return response;
+    }
+
+    /**
+     * Adds the ETag and Last-Modified headers for the item to the response, returns false if the metadata
+     * contains nothing to validate the item with
+     */
+    private boolean addValidators(ItemMetadata metadata, HttpResponse response) {
+        String tag = metadata.getTag();
+        if (tag == null) return false;
+
+        // the same tag is used for all content-encodings, so it is a weak one
+        response.addHeader("ETag", "W/\"" + tag + "\"");
+        response.addHeader("Vary", "Accept-Encoding");
+        if (metadata.lastModified() > 0) response.addHeader("Last-Modified", DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant
+                .ofEpochMilli(metadata.lastModified())
+                .atOffset(ZoneOffset.UTC)
+        ));
+        return true;
+    }
+
+    private boolean isNotModified(ItemMetadata metadata, HttpRequest request) {
+
+        // If-None-Match takes precedence over If-Modified-Since
+        HttpHeader etagHeader = request.getHeader("If-None-Match");
+        if (etagHeader != null) {
+            String tag = metadata.getTag();
+            if (tag == null) return false;
+            for (String value : etagHeader.getValue().split(",")) {
+                value = value.trim();
+                if (value.startsWith("W/")) value = value.substring(2);
+                if (value.equals("*") || value.equals("\"" + tag + "\"")) return true;
+            }
+            return false;
+        }
+
+        HttpHeader modHeader = request.getHeader("If-Modified-Since");
+        if (modHeader != null && metadata.lastModified() > 0) {
+            try {
+                long since = Instant.from(DateTimeFormatter.RFC_1123_DATE_TIME.parse(modHeader.getValue().trim())).toEpochMilli();
+                return since + 1000 >= metadata.lastModified();
+            } catch (DateTimeParseException ignored) {}
+        }
+
+        return false;
+    }
+
     private void writeToResponse(CompressedInputStream data, HttpResponse response, HttpRequest request) throws IOException {
         Compression compression = data.getCompression();
         if (
@@ -122,7 +236,7 @@ private void writeToResponse(CompressedInputStream data, HttpResponse response,
                 request.hasHeaderValue("Accept-Encoding", compression.getId())
         ) {
             response.addHeader("Content-Encoding", compression.getId());
-            response.setData(data);
+            setRawData(data, response);
         } else if (
                 compression != Compression.GZIP &&
                 !response.hasHeaderValue("Content-Type", "image/png") &&
@@ -133,11 +247,20 @@ private void writeToResponse(CompressedInputStream data, HttpResponse response,
             try (data; OutputStream os = Compression.GZIP.compress(byteOut)) {
                 data.decompress().transferTo(os);
             }
-            byte[] compressedData = byteOut.toByteArray();
-            response.setData(new ByteArrayInputStream(compressedData));
+            response.setData(byteOut.toByteArray());
+        } else if (compression == Compression.NONE) {
+            setRawData(data, response);
         } else {
             response.setData(data.decompress());
         }
     }
 
+    private void setRawData(CompressedInputStream data, HttpResponse response) throws IOException {
+        FileChannel fileChannel = data.getFileChannel();
+        long length = data.getFileChannelLength();
+        if (fileChannel != null && length >= 0) response.setData(fileChannel, length);
+        else if (fileChannel != null) response.setData(fileChannel);
+        else response.setData(data);
+    }
+
 }
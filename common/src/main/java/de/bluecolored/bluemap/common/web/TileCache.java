@@ -0,0 +1,248 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.common.web;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import de.bluecolored.bluemap.core.BlueMap;
+import de.bluecolored.bluemap.core.map.TileUpdateListener;
+import de.bluecolored.bluemap.core.storage.GridStorage;
+import de.bluecolored.bluemap.core.storage.ItemMetadata;
+import de.bluecolored.bluemap.core.storage.ItemStorage;
+import de.bluecolored.bluemap.core.storage.compression.CompressedInputStream;
+import de.bluecolored.bluemap.core.storage.compression.Compression;
+import de.bluecolored.bluemap.core.util.stream.OnCloseOutputStream;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A cache for the (still compressed) tile-data that is served by the {@link MapStorageRequestHandler}s of all maps.<br>
+ * The cache is bounded by the amount of memory the cached tiles are using. Concurrent requests for the same
+ * uncached tile are coalesced, so the tile is only read once from the storage.<br>
+ * Tiles are invalidated when a {@link MapTiles} listener gets notified about an update of the tile, and expire after a
+ * few minutes, so changes made by other processes are picked up as well.<br>
+ * Storages that read their tiles from a {@link java.nio.channels.FileChannel} (like the file- and pack-storage) are not
+ * cached: the webserver can send their tiles zero-copy straight from the file, which is cheaper than copying them
+ * into and out of the heap. The first tile read from such a storage marks the lod of the map as uncached, from then on
+ * its tiles (and their metadata) are passed through to the storage directly.
+ */
+public class TileCache {
+
+    public static final long DEFAULT_MAX_MEMORY_USAGE = 64L * 1024 * 1024;
+
+    private static final long EXPIRE_AFTER_WRITE_MINUTES = 5;
+    private static final int ENTRY_OVERHEAD = 128; // rough estimate of the memory used by the key and entry
+
+    private static final Entry MISSING = new Entry(null, Compression.NONE, null);
+
+    @Getter private final long maxMemoryUsage;
+    private final Cache<Key, Entry> cache;
+
+    public TileCache() {
+        this(DEFAULT_MAX_MEMORY_USAGE);
+    }
+
+    public TileCache(long maxMemoryUsage) {
+        this.maxMemoryUsage = maxMemoryUsage;
+        this.cache = Caffeine.newBuilder()
+                .executor(BlueMap.THREAD_POOL)
+                .maximumWeight(maxMemoryUsage)
+                .weigher(TileCache::weigh)
+                .expireAfterWrite(EXPIRE_AFTER_WRITE_MINUTES, TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns a view on the cached tiles of the map with the given id.
+     * The view can be registered as {@link TileUpdateListener} to invalidate the tiles of the map when they are updated.
+     */
+    public MapTiles map(String mapId) {
+        return new MapTiles(mapId);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Performs pending maintenance (like evicting tiles to stay within the memory-budget) right away
+     */
+    void cleanUp() {
+        cache.cleanUp();
+    }
+
+    public Stats getStats() {
+        long memoryUsage = cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L);
+        return new Stats(cache.estimatedSize(), memoryUsage, maxMemoryUsage, cache.stats());
+    }
+
+    /**
+     * Returns the cached entry, loading it from the storage if needed.
+     * Returns null if the storage turned out to be file-channel backed, then the tile should be read from the
+     * storage directly.
+     */
+    private @Nullable Entry get(Key key, GridStorage storage, Set<Integer> uncachedLods) throws IOException {
+        try {
+            return cache.get(key, k -> load(storage, k.x, k.z, k.lod, uncachedLods));
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private static @Nullable Entry load(GridStorage storage, int x, int z, int lod, Set<Integer> uncachedLods) {
+        try (CompressedInputStream in = storage.read(x, z)) {
+            if (in == null) return MISSING;
+
+            // zero-copy from the file is cheaper than caching, returning null stores nothing
+            if (in.getFileChannel() != null) {
+                uncachedLods.add(lod);
+                return null;
+            }
+
+            // the data is in memory anyway, so the tag is computed from it instead of asking the storage separately
+            byte[] data = in.readAllBytes();
+            return new Entry(data, in.getCompression(), ItemMetadata.of(data));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static int weigh(Key key, Entry entry) {
+        byte[] data = entry.data;
+        return ENTRY_OVERHEAD + (data != null ? data.length : 0);
+    }
+
+    private record Key(String mapId, int lod, int x, int z) {}
+
+    private record Entry(byte @Nullable [] data, Compression compression, @Nullable ItemMetadata metadata) {}
+
+    @RequiredArgsConstructor
+    public class MapTiles implements TileUpdateListener {
+
+        private final String mapId;
+        private final Set<Integer> uncachedLods = ConcurrentHashMap.newKeySet();
+
+        /**
+         * Returns an {@link ItemStorage} for the tile of the given lod and position, serving the tile-data (and its
+         * metadata) from the cache and loading it from the given storage if it is not cached.
+         */
+        public ItemStorage cell(int lod, GridStorage storage, int x, int z) {
+            if (uncachedLods.contains(lod)) return storage.cell(x, z);
+            return new CachedCell(new Key(mapId, lod, x, z), storage, uncachedLods);
+        }
+
+        @Override
+        public void onTileUpdate(int lod, int x, int z) {
+            cache.invalidate(new Key(mapId, lod, x, z));
+        }
+
+        @Override
+        public void onTilesCleared() {
+            cache.asMap().keySet().removeIf(key -> key.mapId.equals(mapId));
+        }
+
+    }
+
+    @RequiredArgsConstructor
+    private class CachedCell implements ItemStorage {
+
+        private final Key key;
+        private final GridStorage storage;
+        private final Set<Integer> uncachedLods;
+
+        @Override
+        public OutputStream write() throws IOException {
+            return new OnCloseOutputStream(storage.write(key.x, key.z), () -> cache.invalidate(key));
+        }
+
+        @Override
+        public @Nullable CompressedInputStream read() throws IOException {
+            Entry entry = get(key, storage, uncachedLods);
+            if (entry == null) return storage.read(key.x, key.z);
+            if (entry.data == null) return null;
+            return new CompressedInputStream(new ByteArrayInputStream(entry.data), entry.compression);
+        }
+
+        @Override
+        public void delete() throws IOException {
+            cache.invalidate(key);
+            storage.delete(key.x, key.z);
+        }
+
+        @Override
+        public boolean exists() throws IOException {
+            Entry entry = get(key, storage, uncachedLods);
+            if (entry == null) return storage.exists(key.x, key.z);
+            return entry.data != null;
+        }
+
+        @Override
+        public @Nullable ItemMetadata metadata() throws IOException {
+            Entry entry = get(key, storage, uncachedLods);
+            if (entry == null) return storage.metadata(key.x, key.z);
+            return entry.metadata;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return storage.isClosed();
+        }
+
+    }
+
+    public record Stats(
+            long tileCount,
+            long memoryUsage,
+            long maxMemoryUsage,
+            long hitCount,
+            long missCount,
+            long evictionCount
+    ) {
+
+        private Stats(long tileCount, long memoryUsage, long maxMemoryUsage, CacheStats stats) {
+            this(tileCount, memoryUsage, maxMemoryUsage, stats.hitCount(), stats.missCount(), stats.evictionCount());
+        }
+
+        public double hitRate() {
+            long requestCount = hitCount + missCount;
+            return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+        }
+
+    }
+
+}
@@ -30,28 +30,31 @@
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
-import java.nio.channels.Channel;
-import java.nio.channels.SelectableChannel;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.SocketChannel;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executor;
+import java.nio.channels.*;
+import java.util.concurrent.*;
 
 public class HttpConnection implements SelectionConsumer {
 
     private final HttpRequestHandler requestHandler;
     private final Executor responseHandlerExecutor;
+    private final long requestTimeoutMillis;
     private HttpRequest request;
     private CompletableFuture<HttpResponse> futureResponse;
     private HttpResponse response;
+    private volatile boolean requestAbandoned;
 
     public HttpConnection(HttpRequestHandler requestHandler) {
         this(requestHandler, Runnable::run); //run synchronously
     }
 
     public HttpConnection(HttpRequestHandler requestHandler, Executor responseHandlerExecutor) {
+        this(requestHandler, responseHandlerExecutor, 0);
+    }
+
+    public HttpConnection(HttpRequestHandler requestHandler, Executor responseHandlerExecutor, long requestTimeoutMillis) {
         this.requestHandler = requestHandler;
         this.responseHandlerExecutor = responseHandlerExecutor;
+        this.requestTimeoutMillis = requestTimeoutMillis;
     }
 
     @Override
@@ -83,28 +86,22 @@ public void accept(SelectionKey selectionKey) {
 
             // process request
             if (futureResponse == null) {
-                futureResponse = CompletableFuture.supplyAsync(
-                        () -> requestHandler.handle(request),
-                        responseHandlerExecutor
-                );
-                futureResponse.handle((response, error) -> {
-                    if (error != null) {
-                        Logger.global.logError("Unexpected error handling request", error);
-                        response = new HttpResponse(HttpStatusCode.INTERNAL_SERVER_ERROR);
-                    }
-
-                    try {
-                        response.read(channel); // do an initial read to trigger response sending intent
-                        this.response = response;
-                    } catch (IOException e) {
-                        handleIOException(channel, e);
-                    }
-
-                    return null;
-                });
+                futureResponse = handleAsync(request);
+
+                if (!futureResponse.isDone()) {
+                    // stop listening to the channel until the response is ready, then wake up the selector
+                    selectionKey.interestOps(0);
+                    futureResponse.whenComplete((response, error) -> {
+                        try {
+                            selectionKey.interestOps(SelectionKey.OP_WRITE);
+                            selectionKey.selector().wakeup();
+                        } catch (CancelledKeyException ignore) {}
+                    });
+                }
             }
 
-            if (response == null) return;
+            if (!futureResponse.isDone()) return;
+            if (response == null) response = futureResponse.join();
             if (!selectionKey.isValid()) return;
 
             // send response
@@ -114,7 +111,10 @@ public void accept(SelectionKey selectionKey) {
             }
 
             // reset to accept new request
-            request.clear();
+            // (a request that timed out might still be in use by its handler, so we need a new instance)
+            if (requestAbandoned) request = null;
+            else request.clear();
+            requestAbandoned = false;
             response.close();
             futureResponse = null;
             response = null;
@@ -125,26 +125,60 @@ public void accept(SelectionKey selectionKey) {
         }
     }
 
+    private CompletableFuture<HttpResponse> handleAsync(HttpRequest request) {
+        CompletableFuture<HttpResponse> handling;
+        try {
+            handling = CompletableFuture.supplyAsync(
+                    () -> requestHandler.handle(request),
+                    responseHandlerExecutor
+            );
+        } catch (RejectedExecutionException ex) {
+            Logger.global.logDebug("Rejected request: " + ex);
+            return CompletableFuture.completedFuture(new HttpResponse(HttpStatusCode.SERVICE_UNAVAILABLE));
+        }
+
+        CompletableFuture<HttpResponse> timedHandling = handling;
+        if (requestTimeoutMillis > 0 && !handling.isDone())
+            timedHandling = handling.copy().orTimeout(requestTimeoutMillis, TimeUnit.MILLISECONDS);
+
+        return timedHandling.handle((response, error) -> {
+            if (error == null) return response;
+
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            if (cause instanceof TimeoutException) {
+                Logger.global.logDebug("Request timed out: " + request.getPath());
+
+                // close the response once it is ready, nobody will read it anymore
+                requestAbandoned = true;
+                handling.thenAccept(this::closeResponse);
+                return new HttpResponse(HttpStatusCode.SERVICE_UNAVAILABLE);
+            }
+
+            Logger.global.logError("Unexpected error handling request", error);
+            return new HttpResponse(HttpStatusCode.INTERNAL_SERVER_ERROR);
+        });
+    }
+
+    private void closeResponse(HttpResponse response) {
+        try {
+            response.close();
+        } catch (IOException e) {
+            Logger.global.logWarning("Failed to close response: " + e);
+        }
+    }
+
     private void handleIOException(Channel channel, IOException e) {
-        request.clear();
+        if (requestAbandoned) request = null;
+        else if (request != null) request.clear();
+        requestAbandoned = false;
 
         if (response != null) {
-            try {
-                response.close();
-            } catch (IOException e2) {
-                Logger.global.logWarning("Failed to close response: " + e2);
-            }
+            closeResponse(response);
             response = null;
         }
 
         if (futureResponse != null) {
-            futureResponse.thenAccept(response -> {
-                try {
-                    response.close();
-                } catch (IOException e2) {
-                    Logger.global.logWarning("Failed to close response: " + e2);
-                }
-            });
+            futureResponse.thenAccept(this::closeResponse);
             futureResponse = null;
         }
 
@@ -27,24 +27,33 @@
 import java.io.*;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 public class HttpResponse implements Closeable {
 
     private static final byte[] CHUNK_SUFFIX = "\r\n".getBytes(StandardCharsets.UTF_8);
 
+    private static final int BUFFER_SIZE = 0x10000;
+    private static final int CHUNK_PREFIX_SPACE = 16; // enough space for the hex-length of a chunk + "\r\n"
+    private static final BlockingQueue<ByteBuffer> BUFFER_POOL = new ArrayBlockingQueue<>(64);
+
     private String version;
     private HttpStatusCode statusCode;
     private final Map<String, HttpHeader> headers;
     private ReadableByteChannel data;
+    private long dataLength = -1;
 
     private ByteBuffer headerData;
     private ByteBuffer dataBuffer;
+    private long dataOffset = 0, dataSent = 0;
     private boolean complete = false;
     private boolean headerComplete = false;
     private boolean dataChannelComplete = false;
@@ -77,28 +86,64 @@ public synchronized boolean read(WritableByteChannel channel) throws IOException
             return true;
         }
 
-        // send data chunked
-        if (dataBuffer == null) dataBuffer = ByteBuffer.allocate(1024 + 200).flip(); // 200 extra bytes
+        boolean dataSent;
+        if (data instanceof FileChannel fileChannel) dataSent = sendFileData(fileChannel, channel);
+        else if (dataLength >= 0) dataSent = sendData(channel);
+        else dataSent = sendChunkedData(channel);
+
+        if (!dataSent) return false;
+        complete = true;
+        return true;
+    }
+
+    /**
+     * Transfers the file-data directly to the target-channel (zero-copy if supported by the os)
+     */
+    private boolean sendFileData(FileChannel fileChannel, WritableByteChannel channel) throws IOException {
+        while (dataSent < dataLength) {
+            long transferred = fileChannel.transferTo(dataOffset + dataSent, dataLength - dataSent, channel);
+            if (transferred <= 0) {
+                if (fileChannel.size() < dataOffset + dataLength)
+                    throw new IOException("File has been truncated while sending it");
+                return false;
+            }
+            dataSent += transferred;
+        }
+        return true;
+    }
+
+    /**
+     * Sends the data as is (with a known content-length)
+     */
+    private boolean sendData(WritableByteChannel channel) throws IOException {
+        if (dataBuffer == null) dataBuffer = acquireBuffer().flip();
         while (true) {
             if (dataBuffer.hasRemaining()) channel.write(dataBuffer);
             if (dataBuffer.hasRemaining()) return false;
-            if (dataComplete) break; // nothing more to do
+            if (dataChannelComplete) return true;
 
-            // fill data buffer from channel
             dataBuffer.clear();
-            dataBuffer.position(100); // keep 100 space in front
-            dataBuffer.limit(1124); // keep 100 space at the end
+            fillDataBuffer();
+            dataBuffer.flip();
+        }
+    }
 
-            int readTotal = 0;
-            if (!dataChannelComplete) {
-                int read = 0;
-                while (dataBuffer.hasRemaining() && (read = data.read(dataBuffer)) != -1) {
-                    readTotal += read;
-                }
+    /**
+     * Sends the data with chunked transfer-encoding
+     */
+    private boolean sendChunkedData(WritableByteChannel channel) throws IOException {
+        if (dataBuffer == null) dataBuffer = acquireBuffer().flip();
+        while (true) {
+            if (dataBuffer.hasRemaining()) channel.write(dataBuffer);
+            if (dataBuffer.hasRemaining()) return false;
+            if (dataComplete) return true;
 
-                if (read == -1) dataChannelComplete = true;
-            }
+            // fill data buffer from channel
+            dataBuffer.clear();
+            dataBuffer.position(CHUNK_PREFIX_SPACE); // keep space in front
+            dataBuffer.limit(dataBuffer.capacity() - CHUNK_SUFFIX.length); // keep space at the end
 
+            int readTotal = fillDataBuffer();
             if (readTotal == 0) dataComplete = true;
 
             byte[] chunkPrefix = (Integer.toHexString(readTotal) + "\r\n")
@@ -108,20 +153,32 @@ public synchronized boolean read(WritableByteChannel channel) throws IOException
             dataBuffer.put(CHUNK_SUFFIX);
             dataBuffer.limit(dataBuffer.position());
 
-            int startPos = 100 - chunkPrefix.length;
+            int startPos = CHUNK_PREFIX_SPACE - chunkPrefix.length;
             dataBuffer.position(startPos);
             dataBuffer.put(chunkPrefix);
             dataBuffer.position(startPos);
         }
+    }
 
-        complete = true;
-        return true;
+    private int fillDataBuffer() throws IOException {
+        int readTotal = 0;
+        if (!dataChannelComplete) {
+            int read = 0;
+            while (dataBuffer.hasRemaining() && (read = data.read(dataBuffer)) != -1) {
+                readTotal += read;
+            }
+
+            if (read == -1) dataChannelComplete = true;
+        }
+        return readTotal;
     }
 
     private void writeHeaderData() {
         ByteArrayOutputStream headerDataOut = new ByteArrayOutputStream();
 
-        if (hasData()){
+        if (hasData() && dataLength >= 0){
+            headers.put("Content-Length", new HttpHeader("Content-Length", Long.toString(dataLength)));
+        } else if (hasData()){
             headers.put("Transfer-Encoding", new HttpHeader("Transfer-Encoding", "chunked"));
         } else {
             headers.put("Content-Length", new HttpHeader("Content-Length", "0"));
@@ -154,14 +211,38 @@ public void addHeader(String key, String value){
 
     public void setData(ReadableByteChannel channel){
         this.data = channel;
+        this.dataLength = -1;
+    }
+
+    /**
+     * Sets the remaining content of the file-channel (from its current position) as the data of this response.
+     * The data will be sent with a Content-Length header and transferred directly from the file.
+     */
+    public void setData(FileChannel channel) throws IOException {
+        setData(channel, channel.size() - channel.position());
+    }
+
+    /**
+     * Sets <code>length</code> bytes of the file-channel (starting at its current position) as the data of this response.
+     * The data will be sent with a Content-Length header and transferred directly from the file.
+     */
+    public void setData(FileChannel channel, long length) throws IOException {
+        this.data = channel;
+        this.dataOffset = channel.position();
+        this.dataLength = length;
     }
 
     public void setData(InputStream dataStream){
-        this.data = Channels.newChannel(dataStream);
+        setData(Channels.newChannel(dataStream));
+    }
+
+    public void setData(byte[] data){
+        setData(new ByteArrayInputStream(data));
+        this.dataLength = data.length;
     }
 
     public void setData(String data){
-        setData(new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8)));
+        setData(data.getBytes(StandardCharsets.UTF_8));
     }
 
     public boolean hasData() {
@@ -173,10 +254,25 @@ public boolean isComplete() {
     }
 
     @Override
-    public void close() throws IOException {
+    public synchronized void close() throws IOException {
+        if (dataBuffer != null) {
+            releaseBuffer(dataBuffer);
+            dataBuffer = null;
+        }
+
         if (data != null) data.close();
     }
 
+    private static ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = BUFFER_POOL.poll();
+        if (buffer == null) buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        return buffer.clear();
+    }
+
+    private static void releaseBuffer(ByteBuffer buffer) {
+        BUFFER_POOL.offer(buffer);
+    }
+
     public HttpStatusCode getStatusCode(){
         return statusCode;
     }
@@ -24,23 +24,114 @@
  */
 package de.bluecolored.bluemap.common.web.http;
 
+import de.bluecolored.bluemap.core.BlueMap;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.io.IOException;
+import java.util.concurrent.*;
 
 public class HttpServer extends Server {
 
     @Getter @Setter
     private HttpRequestHandler requestHandler;
 
+    private final ExecutorService workerPool;
+    private final Executor requestExecutor;
+    private final long requestTimeoutMillis;
+
+    /**
+     * Creates a HttpServer that handles all requests synchronously on the selector-thread
+     */
     public HttpServer(HttpRequestHandler requestHandler) throws IOException {
         this.requestHandler = requestHandler;
+        this.workerPool = null;
+        this.requestExecutor = Runnable::run;
+        this.requestTimeoutMillis = 0;
+    }
+
+    /**
+     * Creates a HttpServer that handles requests on a separate pool of worker-threads.
+     * @param workerThreads the number of worker-threads, or 0 to use a new virtual thread for each request
+     * @param maxPendingRequests the maximum number of requests that are processed or waiting to be processed,
+     *                           requests exceeding this limit are rejected with a 503 response
+     * @param requestTimeoutMillis the time after which a request that is still processing gets a 503 response,
+     *                             or 0 to never time out
+     */
+    public HttpServer(
+            HttpRequestHandler requestHandler,
+            int workerThreads, int maxPendingRequests, long requestTimeoutMillis
+    ) throws IOException {
+        if (workerThreads < 0) throw new IllegalArgumentException("workerThreads can not be negative");
+        if (maxPendingRequests <= 0) throw new IllegalArgumentException("maxPendingRequests has to be positive");
+
+        this.requestHandler = requestHandler;
+        Thread.Builder threadBuilder = workerThreads == 0 ? Thread.ofVirtual() : Thread.ofPlatform().daemon(true);
+        ThreadFactory threadFactory = createThreadFactory(threadBuilder.name("BlueMap-Webserver-Worker-", 0));
+        this.workerPool = workerThreads == 0 ?
+                Executors.newThreadPerTaskExecutor(threadFactory) :
+                Executors.newFixedThreadPool(workerThreads, threadFactory);
+        this.requestExecutor = new BoundedExecutor(workerPool, maxPendingRequests);
+        this.requestTimeoutMillis = requestTimeoutMillis;
     }
 
     @Override
     public SelectionConsumer createConnectionHandler() {
-        return new HttpConnection(requestHandler);
+        return new HttpConnection(requestHandler, requestExecutor, requestTimeoutMillis);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            if (workerPool != null) workerPool.shutdownNow();
+        }
+    }
+
+    private static ThreadFactory createThreadFactory(Thread.Builder builder) {
+        ThreadFactory factory = builder.factory();
+        return runnable -> {
+            Thread thread = factory.newThread(runnable);
+            // use current classloader, this fixes ClassLoading issues with forge
+            thread.setContextClassLoader(BlueMap.class.getClassLoader());
+            return thread;
+        };
+    }
+
+    /**
+     * Executor that rejects new tasks with a {@link RejectedExecutionException} once a maximum number of
+     * tasks is already running or queued.
+     */
+    private static class BoundedExecutor implements Executor {
+
+        private final Executor delegate;
+        private final Semaphore permits;
+
+        public BoundedExecutor(Executor delegate, int maxTasks) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(maxTasks);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (!permits.tryAcquire())
+                throw new RejectedExecutionException("Too many pending requests");
+
+            try {
+                delegate.execute(() -> {
+                    try {
+                        command.run();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                permits.release();
+                throw ex;
+            }
+        }
+
     }
 
 }
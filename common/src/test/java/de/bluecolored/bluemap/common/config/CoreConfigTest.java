@@ -0,0 +1,69 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.common.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CoreConfigTest {
+
+    private static final long MB = 1024L * 1024L;
+
+    @Test
+    public void testParseMemorySize() throws ConfigurationException {
+        assertEquals(512 * MB, parse("512MB"));
+        assertEquals(512 * MB, parse("512M"));
+        assertEquals(2048 * MB, parse("2GB"));
+        assertEquals(2048 * MB, parse("2g"));
+        assertEquals(64 * 1024L, parse("64KB"));
+        assertEquals(64 * 1024L, parse("64k"));
+        assertEquals(1000L, parse("1000B"));
+        assertEquals(256 * MB, parse(" 256 mb "));
+    }
+
+    @Test
+    public void testParseMemorySizeWithoutUnit() throws ConfigurationException {
+        // a bare number is read as megabytes, not as bytes
+        assertEquals(512 * MB, parse("512"));
+        assertEquals(0, parse("0"));
+    }
+
+    @Test
+    public void testParseInvalidMemorySize() {
+        assertThrows(ConfigurationException.class, () -> parse(""));
+        assertThrows(ConfigurationException.class, () -> parse("MB"));
+        assertThrows(ConfigurationException.class, () -> parse("-512MB"));
+        assertThrows(ConfigurationException.class, () -> parse("1.5GB"));
+        assertThrows(ConfigurationException.class, () -> parse("512TB"));
+        assertThrows(ConfigurationException.class, () -> parse("99999999999999999999"));
+        assertThrows(ConfigurationException.class, () -> parse("9999999999999GB"));
+    }
+
+    private static long parse(String value) throws ConfigurationException {
+        return CoreConfig.parseMemorySize(value, "chunk-cache-size");
+    }
+
+}
@@ -0,0 +1,408 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.common.rendermanager;
+
+import de.bluecolored.bluemap.core.map.BmMap;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class RenderManagerTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final Map<String, BmMap> maps = new ConcurrentHashMap<>();
+    private final Map<String, TestTask> workingOnMap = new ConcurrentHashMap<>();
+    private final List<String> violations = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger exclusiveInFlight = new AtomicInteger();
+    private final AtomicInteger taskIndex = new AtomicInteger();
+
+    private RenderManager renderManager;
+
+    @AfterEach
+    public void cleanup() throws InterruptedException {
+        if (renderManager != null) {
+            renderManager.stop();
+            renderManager.awaitShutdown();
+        }
+    }
+
+    @Test
+    public void testAllTasksComplete() {
+        renderManager = new RenderManager(4);
+
+        List<TestTask> tasks = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            tasks.add(new TestTask("map" + (i % 5), 50));
+        }
+        tasks.forEach(renderManager::scheduleRenderTask);
+        renderManager.start(8);
+
+        awaitIdle();
+
+        for (TestTask task : tasks) {
+            assertEquals(50, task.workDone.get(), task.getDescription());
+        }
+        assertEquals(0, renderManager.getScheduledRenderTaskCount());
+        assertEquals(10, renderManager.getCompletedTasks().size());
+        assertTrue(violations.isEmpty(), violations::toString);
+    }
+
+    @Test
+    public void testTasksOnSameMapRunInOrder() {
+        renderManager = new RenderManager(4);
+
+        List<TestTask> tasks = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            tasks.add(new TestTask("map" + (i % 3), 20));
+        }
+        tasks.forEach(renderManager::scheduleRenderTask);
+        renderManager.start(6);
+
+        awaitIdle();
+
+        for (int i = 3; i < tasks.size(); i++) {
+            TestTask previous = tasks.get(i - 3);
+            TestTask task = tasks.get(i);
+            assertTrue(previous.finishedAt < task.startedAt, task.getDescription() + " started before " + previous.getDescription());
+        }
+        assertTrue(violations.isEmpty(), violations::toString);
+    }
+
+    @Test
+    public void testCompletionAndRemovalWhileClaiming() throws InterruptedException {
+        renderManager = new RenderManager(4);
+        renderManager.start(8);
+
+        List<TestTask> tasks = new ArrayList<>();
+        Set<RenderTask> removed = ConcurrentHashMap.newKeySet();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 200; i++) {
+            TestTask task = new TestTask("map" + random.nextInt(6), 1 + random.nextInt(30));
+            tasks.add(task);
+            renderManager.scheduleRenderTask(task);
+
+            // remove some scheduled, active and completed tasks while the workers are claiming work on them
+            if (i % 3 == 0) {
+                TestTask toRemove = tasks.get(random.nextInt(tasks.size()));
+                if (renderManager.removeRenderTask(toRemove)) removed.add(toRemove);
+            }
+            if (i % 50 == 49) {
+                renderManager.removeRenderTasksIf(scheduled -> {
+                    boolean remove = scheduled.getDescription().startsWith("map0-");
+                    if (remove) removed.add(scheduled);
+                    return remove;
+                });
+            }
+            if (i % 10 == 0) Thread.sleep(1);
+        }
+
+        awaitIdle();
+
+        assertEquals(0, renderManager.getScheduledRenderTaskCount());
+        for (TestTask task : tasks) {
+            if (!removed.contains(task)) assertEquals(task.totalWork, task.workDone.get(), task.getDescription());
+            assertFalse(task.cancelled && task.hasMoreWork(), task.getDescription());
+        }
+        assertTrue(violations.isEmpty(), violations::toString);
+    }
+
+    @Test
+    public void testRemoveActiveTaskDuringWork() throws InterruptedException {
+        renderManager = new RenderManager(4);
+
+        TestTask blocked = new TestTask("map", 100);
+        blocked.gate = new CountDownLatch(1);
+        TestTask next = new TestTask("map", 10);
+        renderManager.scheduleRenderTasks(blocked, next);
+        renderManager.start(2);
+
+        assertTrue(blocked.entered.await(TIMEOUT.toSeconds(), TimeUnit.SECONDS));
+        assertEquals(List.of(blocked), renderManager.getActiveRenderTasks());
+
+        assertTrue(renderManager.removeRenderTask(blocked));
+        assertTrue(blocked.cancelled);
+
+        // the cancelled task stays active until the running work is done, so the next task on the map has to wait
+        Thread.sleep(50);
+        assertEquals(List.of(blocked), renderManager.getActiveRenderTasks());
+        assertEquals(0, next.workDone.get());
+
+        blocked.gate.countDown();
+        awaitIdle();
+
+        assertTrue(blocked.workDone.get() < 100);
+        assertEquals(10, next.workDone.get());
+        assertTrue(renderManager.getCompletedTasks().containsKey(blocked));
+        assertTrue(renderManager.getCompletedTasks().containsKey(next));
+        assertTrue(violations.isEmpty(), violations::toString);
+    }
+
+    @Test
+    public void testRemoveAllTasksDuringWork() throws InterruptedException {
+        renderManager = new RenderManager(2);
+
+        TestTask blocked = new TestTask("a", 1);
+        blocked.gate = new CountDownLatch(1);
+        TestTask other = new TestTask("b", 1_000_000);
+        other.workMillis = 1;
+        TestTask scheduled = new TestTask("c", 10);
+        renderManager.scheduleRenderTasks(blocked, other, scheduled);
+        renderManager.start(3);
+
+        assertTrue(blocked.entered.await(TIMEOUT.toSeconds(), TimeUnit.SECONDS));
+        assertTrue(other.entered.await(TIMEOUT.toSeconds(), TimeUnit.SECONDS));
+        renderManager.removeAllRenderTasks();
+        blocked.gate.countDown();
+
+        awaitIdle();
+
+        assertTrue(blocked.cancelled);
+        assertTrue(other.cancelled);
+        assertTrue(other.workDone.get() < 1_000_000);
+        assertEquals(0, scheduled.workDone.get());
+        assertEquals(0, renderManager.getScheduledRenderTaskCount());
+    }
+
+    @Test
+    public void testStopDuringWork() throws InterruptedException {
+        renderManager = new RenderManager(4);
+
+        TestTask blocked = new TestTask("a", 1);
+        blocked.gate = new CountDownLatch(1);
+        TestTask other = new TestTask("b", 1_000_000);
+        other.workMillis = 1;
+        renderManager.scheduleRenderTasks(blocked, other);
+        renderManager.start(4);
+
+        assertTrue(blocked.entered.await(TIMEOUT.toSeconds(), TimeUnit.SECONDS));
+        assertTrue(other.entered.await(TIMEOUT.toSeconds(), TimeUnit.SECONDS));
+
+        renderManager.stop();
+        assertTimeoutPreemptively(TIMEOUT, renderManager::awaitShutdown);
+        assertFalse(renderManager.isRunning());
+        assertEquals(0, renderManager.getWorkerThreadCount());
+
+        // stopping does not drop the unfinished tasks, they are continued on the next start
+        assertEquals(List.of(other), renderManager.getActiveRenderTasks());
+        int workDone = other.workDone.get();
+        Thread.sleep(50);
+        assertEquals(workDone, other.workDone.get());
+
+        other.remaining.set(Math.min(other.remaining.get(), 100));
+        renderManager.start(2);
+        awaitIdle();
+
+        assertEquals(0, blocked.workDone.get());
+        assertFalse(other.hasMoreWork());
+        assertEquals(0, renderManager.getScheduledRenderTaskCount());
+    }
+
+    @Test
+    public void testProgressOnAllActiveTasks() throws InterruptedException {
+        renderManager = new RenderManager(3);
+
+        // the oldest task has no work available while its last piece of work is running,
+        // the other active tasks have to make progress in the meantime
+        TestTask oldest = new TestTask("a", 1);
+        oldest.gate = new CountDownLatch(1);
+        TestTask second = new TestTask("b", 200);
+        TestTask third = new TestTask("c", 200);
+        TestTask fourth = new TestTask("d", 200);
+        renderManager.scheduleRenderTasks(oldest, second, third, fourth);
+        renderManager.start(4);
+
+        assertTrue(oldest.entered.await(TIMEOUT.toSeconds(), TimeUnit.SECONDS));
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            while (renderManager.getActiveRenderTasks().size() > 1) Thread.sleep(1);
+        });
+
+        // all later tasks got activated and completed while the oldest one was still being worked on
+        assertEquals(List.of(oldest), renderManager.getActiveRenderTasks());
+        assertEquals(0, oldest.workDone.get());
+        assertEquals(200, second.workDone.get());
+        assertEquals(200, third.workDone.get());
+        assertEquals(200, fourth.workDone.get());
+
+        oldest.gate.countDown();
+        awaitIdle();
+
+        assertEquals(1, oldest.workDone.get());
+        assertTrue(violations.isEmpty(), violations::toString);
+    }
+
+    @Test
+    public void testTasksWithoutMapRunExclusively() {
+        renderManager = new RenderManager(4);
+
+        TestTask before = new TestTask("a", 20);
+        ExclusiveTask exclusive = new ExclusiveTask();
+        TestTask after = new TestTask("b", 20);
+        renderManager.scheduleRenderTasks(before, exclusive, after);
+        renderManager.start(4);
+
+        awaitIdle();
+
+        assertTrue(before.finishedAt < exclusive.startedAt);
+        assertTrue(exclusive.finishedAt < after.startedAt);
+        assertTrue(violations.isEmpty(), violations::toString);
+    }
+
+    @Test
+    public void testInvalidMaxActiveTasks() {
+        assertThrows(IllegalArgumentException.class, () -> new RenderManager(0));
+    }
+
+    private void awaitIdle() {
+        assertTimeoutPreemptively(TIMEOUT, () -> renderManager.awaitIdle());
+    }
+
+    private BmMap mockMap(String id) {
+        return maps.computeIfAbsent(id, key -> {
+            BmMap map = mock(BmMap.class, withSettings().stubOnly());
+            when(map.getId()).thenReturn(key);
+            return map;
+        });
+    }
+
+    private class TestTask implements MapRenderTask {
+
+        private final BmMap map;
+        private final String description;
+        private final int totalWork;
+
+        private final AtomicInteger remaining;
+        private final AtomicInteger workDone = new AtomicInteger();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private volatile @Nullable CountDownLatch gate;
+        private volatile long workMillis;
+
+        private volatile boolean cancelled;
+        private volatile long startedAt = Long.MAX_VALUE, finishedAt = Long.MAX_VALUE;
+
+        private TestTask(String mapId, int totalWork) {
+            this.map = mockMap(mapId);
+            this.description = mapId + "-" + taskIndex.getAndIncrement();
+            this.totalWork = totalWork;
+            this.remaining = new AtomicInteger(totalWork);
+        }
+
+        @Override
+        public void doWork() throws Exception {
+            String mapId = map.getId();
+            inFlight.incrementAndGet();
+            TestTask current = workingOnMap.putIfAbsent(mapId, this);
+            if (current != null && current != this)
+                violations.add(description + " worked on at the same time as " + current.description);
+            if (exclusiveInFlight.get() > 0)
+                violations.add(description + " worked on at the same time as an exclusive task");
+            if (startedAt == Long.MAX_VALUE) startedAt = System.nanoTime();
+
+            try {
+                // another worker might have taken the last piece of work since this one was claimed
+                if (remaining.getAndUpdate(r -> Math.max(r - 1, 0)) <= 0) return;
+
+                entered.countDown();
+                CountDownLatch gate = this.gate;
+                if (gate != null) gate.await();
+                if (workMillis > 0) Thread.sleep(workMillis);
+                workDone.incrementAndGet();
+            } finally {
+                finishedAt = System.nanoTime();
+                if (inFlight.decrementAndGet() == 0) workingOnMap.remove(mapId, this);
+            }
+        }
+
+        @Override
+        public boolean hasMoreWork() {
+            return !cancelled && remaining.get() > 0;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public BmMap getMap() {
+            return map;
+        }
+
+        @Override
+        public String getDescription() {
+            return description;
+        }
+
+    }
+
+    private class ExclusiveTask implements RenderTask {
+
+        private final AtomicInteger remaining = new AtomicInteger(20);
+        private volatile long startedAt = Long.MAX_VALUE, finishedAt = Long.MAX_VALUE;
+
+        @Override
+        public void doWork() {
+            exclusiveInFlight.incrementAndGet();
+            try {
+                if (startedAt == Long.MAX_VALUE) startedAt = System.nanoTime();
+                if (!workingOnMap.isEmpty())
+                    violations.add("exclusive task worked on at the same time as " + workingOnMap.values());
+                remaining.getAndUpdate(r -> Math.max(r - 1, 0));
+            } finally {
+                finishedAt = System.nanoTime();
+                exclusiveInFlight.decrementAndGet();
+            }
+        }
+
+        @Override
+        public boolean hasMoreWork() {
+            return remaining.get() > 0;
+        }
+
+        @Override
+        public void cancel() {
+            remaining.set(0);
+        }
+
+        @Override
+        public String getDescription() {
+            return "exclusive";
+        }
+
+    }
+
+}
@@ -0,0 +1,285 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.common.web;
+
+import de.bluecolored.bluemap.common.web.http.HttpHeader;
+import de.bluecolored.bluemap.common.web.http.HttpRequest;
+import de.bluecolored.bluemap.common.web.http.HttpResponse;
+import de.bluecolored.bluemap.common.web.http.HttpStatusCode;
+import de.bluecolored.bluemap.core.storage.ItemMetadata;
+import de.bluecolored.bluemap.core.storage.ItemStorage;
+import de.bluecolored.bluemap.core.storage.compression.CompressedInputStream;
+import de.bluecolored.bluemap.core.storage.compression.Compression;
+import de.bluecolored.bluemap.core.storage.file.FileMapStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MapStorageRequestHandlerTest {
+
+    private static final byte[] SETTINGS = "{\"name\":\"test\"}".getBytes(StandardCharsets.UTF_8);
+    private static final long LAST_MODIFIED = 1_700_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    private MapStorageRequestHandler handler;
+    private String etag;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        FileMapStorage storage = new FileMapStorage(dir, Compression.NONE, false);
+        try (OutputStream out = storage.settings().write()) {
+            out.write(SETTINGS);
+        }
+        Files.setLastModifiedTime(dir.resolve("settings.json"), FileTime.fromMillis(LAST_MODIFIED));
+
+        handler = new MapStorageRequestHandler(storage, null);
+        etag = "W/\"" + Long.toHexString(SETTINGS.length) + "-" + Long.toHexString(LAST_MODIFIED) + "\"";
+    }
+
+    @Test
+    public void testValidators() throws IOException {
+        HttpResponse response = handler.handle(request("settings.json"));
+
+        assertEquals(HttpStatusCode.OK, response.getStatusCode());
+        assertEquals(etag, header(response, "ETag"));
+        assertEquals(httpDate(LAST_MODIFIED), header(response, "Last-Modified"));
+        assertEquals("Accept-Encoding", header(response, "Vary"));
+        assertArrayEquals(SETTINGS, body(response));
+    }
+
+    @Test
+    public void testIfNoneMatch() throws IOException {
+        assertEquals(HttpStatusCode.NOT_MODIFIED, handler.handle(request("settings.json",
+                "If-None-Match: " + etag
+        )).getStatusCode());
+
+        // strong comparison of the same tag is accepted as well
+        assertEquals(HttpStatusCode.NOT_MODIFIED, handler.handle(request("settings.json",
+                "If-None-Match: " + etag.substring(2)
+        )).getStatusCode());
+
+        assertEquals(HttpStatusCode.OK, handler.handle(request("settings.json",
+                "If-None-Match: W/\"other\""
+        )).getStatusCode());
+    }
+
+    @Test
+    public void testIfNoneMatchList() throws IOException {
+        assertEquals(HttpStatusCode.NOT_MODIFIED, handler.handle(request("settings.json",
+                "If-None-Match: W/\"other\", " + etag + ",W/\"another\""
+        )).getStatusCode());
+
+        assertEquals(HttpStatusCode.OK, handler.handle(request("settings.json",
+                "If-None-Match: W/\"other\", W/\"another\""
+        )).getStatusCode());
+    }
+
+    @Test
+    public void testIfNoneMatchAny() throws IOException {
+        assertEquals(HttpStatusCode.NOT_MODIFIED, handler.handle(request("settings.json",
+                "If-None-Match: *"
+        )).getStatusCode());
+    }
+
+    @Test
+    public void testIfModifiedSince() throws IOException {
+        assertEquals(HttpStatusCode.NOT_MODIFIED, handler.handle(request("settings.json",
+                "If-Modified-Since: " + httpDate(LAST_MODIFIED)
+        )).getStatusCode());
+
+        assertEquals(HttpStatusCode.OK, handler.handle(request("settings.json",
+                "If-Modified-Since: " + httpDate(LAST_MODIFIED - 60_000)
+        )).getStatusCode());
+
+        // unparseable dates are ignored
+        assertEquals(HttpStatusCode.OK, handler.handle(request("settings.json",
+                "If-Modified-Since: yesterday"
+        )).getStatusCode());
+    }
+
+    @Test
+    public void testIfNoneMatchPrecedence() throws IOException {
+        // a matching If-Modified-Since must not be used if the If-None-Match header does not match
+        assertEquals(HttpStatusCode.OK, handler.handle(request("settings.json",
+                "If-None-Match: W/\"other\"",
+                "If-Modified-Since: " + httpDate(LAST_MODIFIED + 60_000)
+        )).getStatusCode());
+
+        assertEquals(HttpStatusCode.NOT_MODIFIED, handler.handle(request("settings.json",
+                "If-None-Match: " + etag,
+                "If-Modified-Since: " + httpDate(LAST_MODIFIED - 60_000)
+        )).getStatusCode());
+    }
+
+    @Test
+    public void testNotModifiedHasNoBody() throws IOException {
+        HttpResponse response = handler.handle(request("settings.json", "If-None-Match: " + etag));
+
+        assertEquals(HttpStatusCode.NOT_MODIFIED, response.getStatusCode());
+        assertFalse(response.hasData());
+        assertEquals(etag, header(response, "ETag"));
+
+        String raw = new String(raw(response), StandardCharsets.UTF_8);
+        assertTrue(raw.startsWith("HTTP/1.1 304"), raw);
+        assertTrue(raw.endsWith("\r\n\r\n"), raw);
+    }
+
+    @Test
+    public void testMissingTile() throws IOException {
+        HttpResponse response = handler.handle(request("tiles/0/x1/z2.prbm", "If-None-Match: *"));
+
+        assertEquals(HttpStatusCode.NO_CONTENT, response.getStatusCode());
+        assertNull(response.getHeader("ETag"));
+    }
+
+    @Test
+    public void testWithoutMetadata() throws IOException {
+        // like the sql-storages, this storage provides no metadata, so the tag is computed from the read data
+        FileMapStorage storage = new FileMapStorage(dir, Compression.NONE, false) {
+            @Override
+            public ItemStorage settings() {
+                return new MemoryItemStorage(SETTINGS);
+            }
+        };
+        handler.setMapStorage(storage);
+        String hashTag = "W/\"" + ItemMetadata.of(SETTINGS).getTag() + "\"";
+
+        HttpResponse response = handler.handle(request("settings.json"));
+        assertEquals(HttpStatusCode.OK, response.getStatusCode());
+        assertEquals(hashTag, header(response, "ETag"));
+        assertNull(response.getHeader("Last-Modified"));
+        assertArrayEquals(SETTINGS, body(response));
+
+        response = handler.handle(request("settings.json", "If-None-Match: W/\"other\", " + hashTag));
+        assertEquals(HttpStatusCode.NOT_MODIFIED, response.getStatusCode());
+        assertFalse(response.hasData());
+
+        // without a timestamp If-Modified-Since can not be answered
+        assertEquals(HttpStatusCode.OK, handler.handle(request("settings.json",
+                "If-Modified-Since: " + httpDate(System.currentTimeMillis())
+        )).getStatusCode());
+    }
+
+    @Test
+    public void testTag() {
+        assertEquals("10-ff", new ItemMetadata(16, 255, null).getTag());
+        assertEquals("abc-10", new ItemMetadata(16, 255, "abc").getTag());
+        assertNull(new ItemMetadata(-1, 255, null).getTag());
+    }
+
+    static HttpRequest request(String path, String... headers) throws IOException {
+        StringBuilder raw = new StringBuilder("GET /" + path + " HTTP/1.1\r\n");
+        for (String header : headers) raw.append(header).append("\r\n");
+        raw.append("\r\n");
+
+        HttpRequest request = new HttpRequest(InetAddress.getLoopbackAddress());
+        request.write(Channels.newChannel(new ByteArrayInputStream(raw.toString().getBytes(StandardCharsets.UTF_8))));
+        assertTrue(request.isComplete());
+        return request;
+    }
+
+    private static String header(HttpResponse response, String key) {
+        HttpHeader header = response.getHeader(key);
+        return header != null ? header.getValue() : null;
+    }
+
+    private static String httpDate(long millis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(millis).atOffset(ZoneOffset.UTC));
+    }
+
+    private static byte[] raw(HttpResponse response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (response) {
+            while (!response.read(Channels.newChannel(out)));
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] body(HttpResponse response) throws IOException {
+        byte[] raw = raw(response);
+        String text = new String(raw, StandardCharsets.ISO_8859_1);
+        int bodyStart = text.indexOf("\r\n\r\n") + 4;
+        if (!text.substring(0, bodyStart).contains("\r\nTransfer-Encoding: chunked\r\n"))
+            return new ByteArrayInputStream(raw, bodyStart, raw.length - bodyStart).readAllBytes();
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int pos = bodyStart;
+        while (true) {
+            int lineEnd = text.indexOf("\r\n", pos);
+            int chunkLength = Integer.parseInt(text.substring(pos, lineEnd), 16);
+            if (chunkLength == 0) return body.toByteArray();
+            body.write(raw, lineEnd + 2, chunkLength);
+            pos = lineEnd + 2 + chunkLength + 2;
+        }
+    }
+
+    private record MemoryItemStorage(byte[] data) implements ItemStorage {
+
+        @Override
+        public OutputStream write() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompressedInputStream read() {
+            return new CompressedInputStream(new ByteArrayInputStream(data), Compression.NONE);
+        }
+
+        @Override
+        public void delete() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return false;
+        }
+
+    }
+
+}
@@ -0,0 +1,323 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.common.web;
+
+import de.bluecolored.bluemap.common.web.http.HttpStatusCode;
+import de.bluecolored.bluemap.core.storage.GridStorage;
+import de.bluecolored.bluemap.core.storage.ItemStorage;
+import de.bluecolored.bluemap.core.storage.compression.CompressedInputStream;
+import de.bluecolored.bluemap.core.storage.compression.Compression;
+import de.bluecolored.bluemap.core.storage.file.FileMapStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TileCacheTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testConcurrentMissesReadOnce() throws Exception {
+        TestGridStorage storage = new TestGridStorage();
+        storage.put(1, 2, "tile");
+        storage.gate = new CountDownLatch(1);
+
+        ItemStorage cell = new TileCache().map("test").cell(0, storage, 1, 2);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) results.add(executor.submit(() -> read(cell)));
+
+            // give all threads the chance to request the tile while the first read is blocked
+            while (storage.reads.get() == 0) Thread.onSpinWait();
+            Thread.sleep(100);
+            storage.gate.countDown();
+
+            for (Future<String> result : results)
+                assertEquals("tile", result.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, storage.reads.get());
+    }
+
+    @Test
+    public void testTileUpdate() throws IOException {
+        TestGridStorage storage = new TestGridStorage();
+        storage.put(1, 2, "old");
+        storage.put(3, 4, "old");
+
+        TileCache tileCache = new TileCache();
+        TileCache.MapTiles tiles = tileCache.map("test");
+        TileCache.MapTiles otherTiles = tileCache.map("other");
+
+        assertEquals("old", read(tiles.cell(0, storage, 1, 2)));
+        assertEquals("old", read(tiles.cell(0, storage, 3, 4)));
+        assertEquals("old", read(tiles.cell(1, storage, 1, 2)));
+        assertEquals("old", read(otherTiles.cell(0, storage, 1, 2)));
+
+        storage.put(1, 2, "new");
+        storage.put(3, 4, "new");
+
+        // only the updated tile of the updated lod and map is read again
+        tiles.onTileUpdate(0, 1, 2);
+        assertEquals("new", read(tiles.cell(0, storage, 1, 2)));
+        assertEquals("old", read(tiles.cell(0, storage, 3, 4)));
+        assertEquals("old", read(tiles.cell(1, storage, 1, 2)));
+        assertEquals("old", read(otherTiles.cell(0, storage, 1, 2)));
+        assertEquals(5, storage.reads.get());
+    }
+
+    @Test
+    public void testTilesCleared() throws IOException {
+        TestGridStorage storage = new TestGridStorage();
+        storage.put(1, 2, "old");
+
+        TileCache tileCache = new TileCache();
+        TileCache.MapTiles tiles = tileCache.map("test");
+        TileCache.MapTiles otherTiles = tileCache.map("other");
+
+        assertEquals("old", read(tiles.cell(0, storage, 1, 2)));
+        assertEquals("old", read(tiles.cell(3, storage, 1, 2)));
+        assertEquals("old", read(otherTiles.cell(0, storage, 1, 2)));
+
+        storage.put(1, 2, "new");
+
+        // all tiles of the cleared map are read again, the tiles of other maps stay cached
+        tiles.onTilesCleared();
+        assertEquals("new", read(tiles.cell(0, storage, 1, 2)));
+        assertEquals("new", read(tiles.cell(3, storage, 1, 2)));
+        assertEquals("old", read(otherTiles.cell(0, storage, 1, 2)));
+        assertEquals(5, storage.reads.get());
+    }
+
+    @Test
+    public void testWriteAndDeleteInvalidate() throws IOException {
+        TestGridStorage storage = new TestGridStorage();
+        storage.put(1, 2, "old");
+
+        ItemStorage cell = new TileCache().map("test").cell(0, storage, 1, 2);
+        assertEquals("old", read(cell));
+
+        try (OutputStream out = cell.write()) {
+            out.write("new".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals("new", read(cell));
+
+        cell.delete();
+        assertNull(cell.read());
+        assertFalse(cell.exists());
+    }
+
+    @Test
+    public void testMissingTile() throws IOException {
+        TestGridStorage storage = new TestGridStorage();
+
+        ItemStorage cell = new TileCache().map("test").cell(0, storage, 1, 2);
+        assertNull(cell.read());
+        assertNull(cell.read());
+        assertFalse(cell.exists());
+        assertNull(cell.metadata());
+
+        // the missing tile is cached as well
+        assertEquals(1, storage.reads.get());
+    }
+
+    @Test
+    public void testMissingTileResponse() throws IOException {
+        FileMapStorage mapStorage = new FileMapStorage(dir, Compression.NONE, false);
+        TileCache.MapTiles tiles = new TileCache().map("test");
+        MapStorageRequestHandler handler = new MapStorageRequestHandler(mapStorage, null, tiles);
+
+        assertEquals(HttpStatusCode.NO_CONTENT, handler.handle(MapStorageRequestHandlerTest.request("tiles/1/x1/z2.png")).getStatusCode());
+        assertEquals(HttpStatusCode.NO_CONTENT, handler.handle(MapStorageRequestHandlerTest.request("tiles/1/x1/z2.png")).getStatusCode());
+
+        Path tileFile = dir.resolve("tiles/1/x1/z2.png");
+        Files.createDirectories(tileFile.getParent());
+        Files.write(tileFile, new byte[]{ 1, 2, 3 });
+
+        // the cached missing tile is served until the tile gets updated
+        assertEquals(HttpStatusCode.NO_CONTENT, handler.handle(MapStorageRequestHandlerTest.request("tiles/1/x1/z2.png")).getStatusCode());
+        tiles.onTileUpdate(1, 1, 2);
+        assertEquals(HttpStatusCode.OK, handler.handle(MapStorageRequestHandlerTest.request("tiles/1/x1/z2.png")).getStatusCode());
+    }
+
+    @Test
+    public void testFileChannelTilesAreNotCached() throws IOException {
+        FileMapStorage mapStorage = new FileMapStorage(dir, Compression.NONE, false);
+        GridStorage storage = mapStorage.hiresTiles();
+        try (OutputStream out = storage.write(1, 2)) {
+            out.write("tile".getBytes(StandardCharsets.UTF_8));
+        }
+
+        TileCache tileCache = new TileCache();
+        TileCache.MapTiles tiles = tileCache.map("test");
+
+        // the tile is served straight from the file, with the metadata of the storage
+        ItemStorage cell = tiles.cell(0, storage, 1, 2);
+        assertEquals(storage.metadata(1, 2), cell.metadata());
+        try (CompressedInputStream in = cell.read()) {
+            assertNotNull(in);
+            assertNotNull(in.getFileChannel());
+        }
+        assertTrue(cell.exists());
+        assertEquals(0, tileCache.getStats().tileCount());
+
+        // from now on the cells of this lod are passed through to the storage
+        assertEquals(storage.cell(3, 4).getClass(), tiles.cell(0, storage, 3, 4).getClass());
+        assertEquals("tile", read(tiles.cell(0, storage, 1, 2)));
+        assertEquals(0, tileCache.getStats().tileCount());
+    }
+
+    @Test
+    public void testMemoryBudget() throws IOException {
+        TestGridStorage storage = new TestGridStorage();
+        String data = "x".repeat(1024);
+        for (int x = 0; x < 100; x++) storage.put(x, 0, data);
+
+        long maxMemoryUsage = 16 * 1024;
+        TileCache tileCache = new TileCache(maxMemoryUsage);
+        TileCache.MapTiles tiles = tileCache.map("test");
+
+        for (int x = 0; x < 100; x++) {
+            assertEquals(data, read(tiles.cell(0, storage, x, 0)));
+        }
+        tileCache.cleanUp();
+
+        TileCache.Stats stats = tileCache.getStats();
+        assertEquals(maxMemoryUsage, stats.maxMemoryUsage());
+        assertTrue(stats.memoryUsage() <= maxMemoryUsage, "memory usage: " + stats.memoryUsage());
+        assertTrue(stats.tileCount() <= maxMemoryUsage / 1024, "tile count: " + stats.tileCount());
+        assertTrue(stats.tileCount() > 0);
+        assertTrue(stats.evictionCount() > 0);
+
+        // a tile larger than the whole budget is served, but not kept
+        storage.put(0, 1, "x".repeat((int) maxMemoryUsage * 2));
+        assertEquals(maxMemoryUsage * 2, read(tiles.cell(0, storage, 0, 1)).length());
+        tileCache.cleanUp();
+        assertTrue(tileCache.getStats().memoryUsage() <= maxMemoryUsage);
+    }
+
+    private static String read(ItemStorage cell) throws IOException {
+        try (CompressedInputStream in = cell.read()) {
+            assertNotNull(in);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static class TestGridStorage implements GridStorage {
+
+        private final Map<Long, byte[]> items = new ConcurrentHashMap<>();
+        private final AtomicInteger reads = new AtomicInteger();
+        private volatile CountDownLatch gate;
+
+        void put(int x, int z, String data) {
+            items.put(key(x, z), data.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public OutputStream write(int x, int z) {
+            return new ByteArrayOutputStream() {
+                @Override
+                public void close() {
+                    items.put(key(x, z), toByteArray());
+                }
+            };
+        }
+
+        @Override
+        public CompressedInputStream read(int x, int z) throws IOException {
+            reads.incrementAndGet();
+
+            CountDownLatch gate = this.gate;
+            if (gate != null) {
+                try {
+                    if (!gate.await(10, TimeUnit.SECONDS)) throw new IOException("Timed out waiting for the gate");
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(ex);
+                }
+            }
+
+            byte[] data = items.get(key(x, z));
+            if (data == null) return null;
+            return new CompressedInputStream(new ByteArrayInputStream(data), Compression.NONE);
+        }
+
+        @Override
+        public void delete(int x, int z) {
+            items.remove(key(x, z));
+        }
+
+        @Override
+        public boolean exists(int x, int z) {
+            return items.containsKey(key(x, z));
+        }
+
+        @Override
+        public ItemStorage cell(int x, int z) {
+            return new GridStorageCell(this, x, z);
+        }
+
+        @Override
+        public Stream<Cell> stream() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isClosed() {
+            return false;
+        }
+
+        private static long key(int x, int z) {
+            return (long) x << 32 | (z & 0xFFFFFFFFL);
+        }
+
+    }
+
+}
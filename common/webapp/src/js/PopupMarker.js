@@ -178,10 +178,12 @@ export class PopupMarker extends Marker {
 
         if (this.appState.debug) {
             let faceIndex = int.faceIndex;
-            let attributes = int.object.geometry.attributes;
+            let geometry = int.object.geometry;
+            let attributes = geometry.attributes;
             if (attributes.sunlight && attributes.blocklight) {
-                let sunlight = attributes.sunlight.array[faceIndex * 3];
-                let blocklight = attributes.blocklight.array[faceIndex * 3];
+                let vertexIndex = geometry.index ? geometry.index.array[faceIndex * 3] : faceIndex * 3;
+                let sunlight = attributes.sunlight.array[vertexIndex];
+                let blocklight = attributes.blocklight.array[vertexIndex];
 
                 this.element.innerHTML += `
                     <hr>
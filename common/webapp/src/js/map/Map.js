@@ -30,6 +30,7 @@ import {
 	NearestFilter,
 	NearestMipMapLinearFilter,
 	Raycaster,
+	RepeatWrapping,
 	ShaderMaterial,
 	Texture,
 	Vector3
@@ -72,7 +73,8 @@ export class Map {
 			hires: {
 				tileSize: {x: 32, z: 32},
 				scale: {x: 1, z: 1},
-				translate: {x: 2, z: 2}
+				translate: {x: 2, z: 2},
+				mergeFaces: false
 			},
 			lowres: {
 				tileSize: {x: 32, z: 32},
@@ -194,7 +196,8 @@ export class Map {
 				this.data.hires = {
 					tileSize: {...this.data.hires.tileSize, ...vecArrToObj(worldSettings.hires.tileSize, true)},
 					scale: {...this.data.hires.scale, ...vecArrToObj(worldSettings.hires.scale, true)},
-					translate: {...this.data.hires.translate, ...vecArrToObj(worldSettings.hires.translate, true)}
+					translate: {...this.data.hires.translate, ...vecArrToObj(worldSettings.hires.translate, true)},
+					mergeFaces: worldSettings.hires.mergeFaces === true
 				};
 				this.data.lowres = {
 					tileSize: {...this.data.lowres.tileSize, ...vecArrToObj(worldSettings.lowres.tileSize, true)},
@@ -326,8 +329,10 @@ export class Map {
 			texture.generateMipmaps = opaque || transparent;
 			texture.magFilter = NearestFilter;
 			texture.minFilter = texture.generateMipmaps ? NearestMipMapLinearFilter : NearestFilter;
-			texture.wrapS = ClampToEdgeWrapping;
-			texture.wrapT = ClampToEdgeWrapping;
+			// merged hires-faces repeat their (non-animated) texture in uv-space
+			let wrapping = this.data.hires.mergeFaces && !textureSettings.animation ? RepeatWrapping : ClampToEdgeWrapping;
+			texture.wrapS = wrapping;
+			texture.wrapT = wrapping;
 			texture.flipY = false;
 			texture.flatShading = true;
 
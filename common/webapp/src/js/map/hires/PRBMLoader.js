@@ -138,7 +138,7 @@ function decodePrwm( buffer, offset ) {
 
     if ( version === 0 ) {
         throw new Error( 'PRWM decoder: Invalid format version: 0' );
-    } else if ( version !== 1 ) {
+    } else if ( version !== 1 && version !== 2 ) {
         throw new Error( 'PRWM decoder: Unsupported format version: ' + version );
     }
 
@@ -154,6 +154,29 @@ function decodePrwm( buffer, offset ) {
 
     let pos = 8;
 
+    // version 2: positions and uvs are quantized, value = offset + quantized * step
+    let positionOffset = null,
+        positionStep = null,
+        uvOffset = null,
+        uvStep = null;
+
+    if ( version === 2 ) {
+        let headerView = new DataView( buffer, offset + pos, 40 );
+        positionOffset = [];
+        positionStep = [];
+        for ( let axis = 0; axis < 3; axis ++ ) {
+            positionOffset[ axis ] = headerView.getFloat32( axis * 4, ! bigEndian );
+            positionStep[ axis ] = headerView.getFloat32( 12 + axis * 4, ! bigEndian );
+        }
+        uvOffset = [];
+        uvStep = [];
+        for ( let axis = 0; axis < 2; axis ++ ) {
+            uvOffset[ axis ] = headerView.getFloat32( 24 + axis * 4, ! bigEndian );
+            uvStep[ axis ] = headerView.getFloat32( 32 + axis * 4, ! bigEndian );
+        }
+        pos += 40;
+    }
+
     let attributes = {},
         attributeName,
         char,
@@ -207,6 +230,15 @@ function decodePrwm( buffer, offset ) {
         };
     }
 
+    if ( positionOffset !== null && attributes.position ) {
+        attributes.position.values = dequantize( attributes.position.values, positionOffset, positionStep );
+    }
+
+    // uvs spanning a too large range are written as floats and are not quantized
+    if ( uvOffset !== null && attributes.uv && ! ( attributes.uv.values instanceof Float32Array ) ) {
+        attributes.uv.values = dequantize( attributes.uv.values, uvOffset, uvStep );
+    }
+
     indices = null;
     if ( indexedGeometry ) {
         pos = Math.ceil( pos / 4 ) * 4;
@@ -217,6 +249,12 @@ function decodePrwm( buffer, offset ) {
             indicesNumber,
             bigEndian
         );
+
+        pos += indices.BYTES_PER_ELEMENT * indicesNumber;
+
+        if ( version === 2 ) {
+            indices = decodeIndices( indices );
+        }
     }
 
     // read groups
@@ -244,6 +282,47 @@ function decodePrwm( buffer, offset ) {
     };
 }
 
+/**
+ * Converts quantized vectors back to floats: value = offset + quantized * step
+ * (the cardinality of the vectors is the length of the offset and step arrays)
+ * @param values {TypedArray}
+ * @param offset {number[]}
+ * @param step {number[]}
+ * @returns {Float32Array}
+ */
+function dequantize( values, offset, step ) {
+    let result = new Float32Array( values.length ),
+        cardinality = offset.length,
+        i = 0;
+
+    for ( ; i < values.length; i ++ ) {
+        result[ i ] = offset[ i % cardinality ] + values[ i ] * step[ i % cardinality ];
+    }
+
+    return result;
+}
+
+/**
+ * Version 2 stores each index as the distance to the next not yet used vertex (vertices are numbered in order of
+ * their first use), this restores the actual indices
+ * @param encoded {Uint16Array | Uint32Array}
+ * @returns {Uint16Array | Uint32Array}
+ */
+function decodeIndices( encoded ) {
+    let result = new encoded.constructor( encoded.length ),
+        nextVertex = 0,
+        index,
+        i = 0;
+
+    for ( ; i < encoded.length; i ++ ) {
+        index = nextVertex - encoded[ i ];
+        if ( index === nextVertex ) nextVertex ++;
+        result[ i ] = index;
+    }
+
+    return result;
+}
+
 function read4ByteInt(array, pos) {
     return array[pos] |
         array[pos + 1] << 8 |
@@ -1,6 +1,7 @@
 plugins {
     bluemap.base
     id("org.sonarqube") version "6.0.1.5171"
+    id("me.champeau.jmh") version "0.7.2"
 
 }
 
@@ -28,9 +29,19 @@ dependencies {
     testImplementation ( libs.junit.core )
     testImplementation(libs.mockito.core)
     testImplementation(libs.mockito.junit.jupiter)
+    testImplementation ( libs.sqlite.jdbc )
     testRuntimeOnly ( libs.junit.engine )
     testRuntimeOnly ( libs.lombok )
     testAnnotationProcessor ( libs.lombok )
+
+    // benchmarks
+    jmh ( libs.sqlite.jdbc )
+}
+
+jmh {
+    // run with e.g.: ./gradlew :core:jmh -PjmhIncludes=ChunkLoaderBenchmark
+    project.findProperty("jmhIncludes")?.let { includes.add(it.toString()) }
+    jvmArgs.add("-Dbluemap.benchmark.root=${rootProject.projectDir.absolutePath}")
 }
 
 tasks.register("zipResourceExtensions", type = Zip::class) {
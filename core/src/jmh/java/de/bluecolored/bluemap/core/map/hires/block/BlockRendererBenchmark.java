@@ -0,0 +1,306 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.map.hires.block;
+
+import de.bluecolored.bluemap.core.map.TextureGallery;
+import de.bluecolored.bluemap.core.map.hires.ArrayTileModel;
+import de.bluecolored.bluemap.core.map.hires.RenderSettings;
+import de.bluecolored.bluemap.core.map.hires.TileModelView;
+import de.bluecolored.bluemap.core.resources.pack.resourcepack.ResourcePack;
+import de.bluecolored.bluemap.core.util.math.Color;
+import de.bluecolored.bluemap.core.world.BlockEntity;
+import de.bluecolored.bluemap.core.world.BlockState;
+import de.bluecolored.bluemap.core.world.DimensionType;
+import de.bluecolored.bluemap.core.world.LightData;
+import de.bluecolored.bluemap.core.world.biome.Biome;
+import de.bluecolored.bluemap.core.world.block.BlockAccess;
+import de.bluecolored.bluemap.core.world.block.BlockNeighborhood;
+import org.jetbrains.annotations.Nullable;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Renders a fixed 16x16x16 neighborhood of full blocks, tinted blocks and rotated + uv-locked stairs
+ * with the {@link BlockStateModelRenderer}, using a small resource-pack that is generated on setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BlockRendererBenchmark {
+
+    private static final int SIZE = 16;
+
+    private Path resourceRoot;
+    private BlockStateModelRenderer blockRenderer;
+    private BlockNeighborhood block;
+    private ArrayTileModel tileModel;
+    private TileModelView tileModelView;
+    private final Color blockColor = new Color();
+
+    @Setup
+    public void setup() throws IOException, InterruptedException {
+        resourceRoot = Files.createTempDirectory("bluemap-benchmark-");
+        writeResources(resourceRoot);
+
+        ResourcePack resourcePack = new ResourcePack(34);
+        resourcePack.loadResources(List.of(resourceRoot));
+
+        TextureGallery textureGallery = new TextureGallery();
+        textureGallery.put(resourcePack);
+
+        RenderSettings renderSettings = new BenchmarkRenderSettings();
+        blockRenderer = new BlockStateModelRenderer(resourcePack, textureGallery, renderSettings);
+        block = new BlockNeighborhood(new FixedBlockAccess(), resourcePack, renderSettings, DimensionType.OVERWORLD);
+        tileModel = new ArrayTileModel(SIZE * SIZE * SIZE * 12);
+        tileModelView = new TileModelView(tileModel);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(resourceRoot)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public void renderNeighborhood(Blackhole blackhole) {
+        tileModel.clear();
+        for (int x = 0; x < SIZE; x++) {
+            for (int z = 0; z < SIZE; z++) {
+                for (int y = SIZE - 1; y >= 0; y--) {
+                    block.set(x, y, z);
+                    tileModelView.initialize();
+                    blockRenderer.render(block, tileModelView, blockColor);
+                    tileModelView.translate(x, y, z);
+                    blackhole.consume(blockColor.a);
+                }
+            }
+        }
+        blackhole.consume(tileModel.size());
+    }
+
+    private static BlockState blockAt(int x, int y, int z) {
+        if (x < 0 || y < 0 || z < 0 || x >= SIZE || y >= SIZE || z >= SIZE) return BlockState.AIR;
+        if (y < 6) return STONE;
+        if (y == 6) return GRASS;
+        if (y == 7 && (x + z) % 3 == 0) return STAIRS[(x * 7 + z) % STAIRS.length];
+        return BlockState.AIR;
+    }
+
+    private static final BlockState STONE = new BlockState("minecraft:stone");
+    private static final BlockState GRASS = new BlockState("minecraft:grass_block");
+    private static final BlockState[] STAIRS = new BlockState[]{
+            new BlockState("minecraft:oak_stairs", Map.of("facing", "north")),
+            new BlockState("minecraft:oak_stairs", Map.of("facing", "east")),
+            new BlockState("minecraft:oak_stairs", Map.of("facing", "south")),
+            new BlockState("minecraft:oak_stairs", Map.of("facing", "west"))
+    };
+
+    private static class FixedBlockAccess implements BlockAccess {
+
+        private final LightData lightData = new LightData(15, 0);
+        private int x, y, z;
+
+        @Override
+        public void set(int x, int y, int z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        @Override
+        public BlockAccess copy() {
+            FixedBlockAccess copy = new FixedBlockAccess();
+            copy.set(x, y, z);
+            return copy;
+        }
+
+        @Override public int getX() { return x; }
+        @Override public int getY() { return y; }
+        @Override public int getZ() { return z; }
+
+        @Override
+        public BlockState getBlockState() {
+            return blockAt(x, y, z);
+        }
+
+        @Override
+        public LightData getLightData() {
+            return lightData.set(getBlockState().isAir() ? 15 : 0, 0);
+        }
+
+        @Override
+        public Biome getBiome() {
+            return Biome.DEFAULT;
+        }
+
+        @Override
+        public @Nullable BlockEntity getBlockEntity() {
+            return null;
+        }
+
+        @Override
+        public boolean hasOceanFloorY() {
+            return false;
+        }
+
+        @Override
+        public int getOceanFloorY() {
+            return 0;
+        }
+
+    }
+
+    private static class BenchmarkRenderSettings implements RenderSettings {
+
+        @Override
+        public int getRemoveCavesBelowY() {
+            return Integer.MIN_VALUE;
+        }
+
+        @Override
+        public int getCaveDetectionOceanFloor() {
+            return 0;
+        }
+
+        @Override
+        public boolean isCaveDetectionUsesBlockLight() {
+            return false;
+        }
+
+        @Override
+        public float getAmbientLight() {
+            return 0.1f;
+        }
+
+        @Override
+        public boolean isSaveHiresLayer() {
+            return true;
+        }
+
+        @Override
+        public boolean isRenderTopOnly() {
+            return false;
+        }
+
+    }
+
+    private static void writeResources(Path root) throws IOException {
+        Path assets = root.resolve("assets").resolve("minecraft");
+
+        for (String texture : new String[]{ "stone", "dirt", "grass_block_top", "grass_block_side", "oak_planks" }) {
+            BufferedImage image = new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB);
+            int color = 0xFF000000 | texture.hashCode() & 0xFFFFFF;
+            for (int i = 0; i < 16 * 16; i++) image.setRGB(i % 16, i / 16, color ^ (i * 0x010101 & 0x0F0F0F));
+            Path file = assets.resolve("textures/block/" + texture + ".png");
+            Files.createDirectories(file.getParent());
+            ImageIO.write(image, "png", file.toFile());
+        }
+
+        write(assets.resolve("models/block/cube.json"), """
+                { "elements": [ { "from": [0, 0, 0], "to": [16, 16, 16], "faces": {
+                    "down":  { "texture": "#down",  "cullface": "down" },
+                    "up":    { "texture": "#up",    "cullface": "up", "tintindex": 0 },
+                    "north": { "texture": "#north", "cullface": "north" },
+                    "south": { "texture": "#south", "cullface": "south" },
+                    "west":  { "texture": "#west",  "cullface": "west" },
+                    "east":  { "texture": "#east",  "cullface": "east" }
+                } } ] }
+                """);
+        write(assets.resolve("models/block/stone.json"), """
+                { "elements": [ { "from": [0, 0, 0], "to": [16, 16, 16], "faces": {
+                    "down":  { "texture": "#all", "cullface": "down" },
+                    "up":    { "texture": "#all", "cullface": "up" },
+                    "north": { "texture": "#all", "cullface": "north" },
+                    "south": { "texture": "#all", "cullface": "south" },
+                    "west":  { "texture": "#all", "cullface": "west" },
+                    "east":  { "texture": "#all", "cullface": "east" }
+                } } ], "textures": { "all": "minecraft:block/stone" } }
+                """);
+        write(assets.resolve("models/block/grass_block.json"), """
+                { "parent": "minecraft:block/cube", "textures": {
+                    "down": "minecraft:block/dirt", "up": "minecraft:block/grass_block_top",
+                    "north": "minecraft:block/grass_block_side", "south": "minecraft:block/grass_block_side",
+                    "west": "minecraft:block/grass_block_side", "east": "minecraft:block/grass_block_side"
+                } }
+                """);
+        write(assets.resolve("models/block/oak_stairs.json"), """
+                { "textures": { "texture": "minecraft:block/oak_planks" }, "elements": [
+                    { "from": [0, 0, 0], "to": [16, 8, 16], "faces": {
+                        "down":  { "uv": [0, 0, 16, 16], "texture": "#texture", "cullface": "down" },
+                        "up":    { "uv": [0, 0, 16, 16], "texture": "#texture" },
+                        "north": { "uv": [0, 8, 16, 16], "texture": "#texture", "cullface": "north" },
+                        "south": { "uv": [0, 8, 16, 16], "texture": "#texture", "cullface": "south" },
+                        "west":  { "uv": [0, 8, 16, 16], "texture": "#texture", "cullface": "west" },
+                        "east":  { "uv": [0, 8, 16, 16], "texture": "#texture", "cullface": "east" }
+                    } },
+                    { "from": [8, 8, 0], "to": [16, 16, 16], "faces": {
+                        "up":    { "uv": [8, 0, 16, 16], "texture": "#texture", "cullface": "up" },
+                        "north": { "uv": [0, 0, 8, 8], "texture": "#texture", "cullface": "north" },
+                        "south": { "uv": [8, 0, 16, 8], "texture": "#texture", "cullface": "south" },
+                        "west":  { "uv": [0, 0, 16, 8], "texture": "#texture" },
+                        "east":  { "uv": [0, 0, 16, 8], "texture": "#texture", "cullface": "east" }
+                    } }
+                ] }
+                """);
+
+        write(assets.resolve("blockstates/stone.json"), """
+                { "variants": { "": { "model": "minecraft:block/stone" } } }
+                """);
+        write(assets.resolve("blockstates/grass_block.json"), """
+                { "variants": { "": { "model": "minecraft:block/grass_block" } } }
+                """);
+        write(assets.resolve("blockstates/oak_stairs.json"), """
+                { "variants": {
+                    "facing=east":  { "model": "minecraft:block/oak_stairs" },
+                    "facing=west":  { "model": "minecraft:block/oak_stairs", "y": 180, "uvlock": true },
+                    "facing=south": { "model": "minecraft:block/oak_stairs", "y": 90, "uvlock": true },
+                    "facing=north": { "model": "minecraft:block/oak_stairs", "y": 270, "uvlock": true }
+                } }
+                """);
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+
+}
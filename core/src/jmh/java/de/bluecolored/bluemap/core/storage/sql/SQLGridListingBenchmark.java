@@ -0,0 +1,149 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.storage.sql;
+
+import de.bluecolored.bluemap.core.storage.GridStorage;
+import de.bluecolored.bluemap.core.storage.compression.Compression;
+import de.bluecolored.bluemap.core.storage.sql.commandset.CommandSet;
+import de.bluecolored.bluemap.core.storage.sql.commandset.SqliteCommandSet;
+import de.bluecolored.bluemap.core.util.Key;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Compares listing all grid-items of a sqlite-grid-storage with the old <code>LIMIT/OFFSET</code>-paging against the
+ * keyset-paged {@link GridItemSpliterator}, sequentially and in parallel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class SQLGridListingBenchmark {
+
+    private static final String MAP = "benchmark";
+    private static final Key STORAGE = Key.bluemap("tile-state");
+    private static final int PAGE_SIZE = 1000;
+
+    @Param({"100000", "1000000", "3000000"})
+    public int rows;
+
+    private Path dbFile;
+    private Database db;
+    private SqliteCommandSet commandSet;
+    private GridStorage gridStorage;
+
+    @Setup
+    public void setup() throws IOException {
+        dbFile = Files.createTempFile("bluemap-benchmark", ".db");
+        db = new Database("jdbc:sqlite:" + dbFile, Map.of(), Runtime.getRuntime().availableProcessors());
+        commandSet = new SqliteCommandSet(db);
+        commandSet.initializeTables();
+
+        // fill a square grid with the requested amount of rows
+        int size = (int) Math.ceil(Math.sqrt(rows));
+        byte[] data = new byte[16];
+        List<CommandSet.GridItem> batch = new ArrayList<>(10000);
+        for (int i = 0; i < rows; i++) {
+            batch.add(new CommandSet.GridItem(MAP, STORAGE, i / size - size / 2, i % size - size / 2, Compression.NONE, data));
+            if (batch.size() == 10000) {
+                commandSet.writeGridItems(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) commandSet.writeGridItems(batch);
+
+        gridStorage = new SQLGridStorage(commandSet, MAP, STORAGE, Compression.NONE);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        commandSet.close();
+        Files.deleteIfExists(dbFile);
+    }
+
+    @Benchmark
+    public long offsetPaging() throws IOException {
+        int mapKey = commandSet.mapKey(MAP);
+        int storageKey = commandSet.gridStorageKey(STORAGE);
+        int compressionKey = commandSet.compressionKey(Compression.NONE);
+
+        // the previous listing-statement of the sqlite-commandset
+        long count = 0;
+        for (int page = 0;; page++) {
+            int start = page * PAGE_SIZE;
+            int pageCount = db.run(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement("""
+                    SELECT `x`, `z`
+                    FROM `bluemap_grid_storage_data`
+                    WHERE `map` = ?
+                    AND `storage` = ?
+                    AND `compression` = ?
+                    LIMIT ? OFFSET ?
+                    """)) {
+                    statement.setInt(1, mapKey);
+                    statement.setInt(2, storageKey);
+                    statement.setInt(3, compressionKey);
+                    statement.setInt(4, PAGE_SIZE);
+                    statement.setInt(5, start);
+                    ResultSet result = statement.executeQuery();
+                    int i = 0;
+                    while (result.next()) i++;
+                    return i;
+                }
+            });
+            count += pageCount;
+            if (pageCount < PAGE_SIZE) return count;
+        }
+    }
+
+    @Benchmark
+    public long keysetSequential() throws IOException {
+        try (Stream<GridStorage.Cell> stream = gridStorage.stream()) {
+            return stream.count();
+        }
+    }
+
+    @Benchmark
+    public long keysetParallel() throws IOException {
+        try (Stream<GridStorage.Cell> stream = gridStorage.stream()) {
+            return stream.parallel()
+                    .filter(cell -> cell.getX() != Integer.MIN_VALUE)
+                    .count();
+        }
+    }
+
+}
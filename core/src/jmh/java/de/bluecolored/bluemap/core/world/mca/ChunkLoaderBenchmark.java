@@ -0,0 +1,199 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.world.mca;
+
+import de.bluecolored.bluemap.core.resources.pack.datapack.DataPack;
+import de.bluecolored.bluemap.core.storage.compression.Compression;
+import de.bluecolored.bluemap.core.util.stream.ByteBufferInputStream;
+import de.bluecolored.bluemap.core.world.Chunk;
+import de.bluecolored.bluemap.core.world.ChunkConsumer;
+import de.bluecolored.bluemap.core.world.mca.chunk.*;
+import de.bluecolored.bluemap.core.world.mca.region.MCARegion;
+import lombok.RequiredArgsConstructor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+
+/**
+ * Compares decoding the chunks of the bundled test-worlds (map-maze and map-temple) through the {@link MCAChunkLoader}
+ * with the previous decompress-then-parse loading-path, and with directly mapping them onto the
+ * {@link Chunk_1_18.Data} classes through {@link MCAUtil#BLUENBT}.<br>
+ * (The interning of palette block-states is used by all of them.)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ChunkLoaderBenchmark {
+
+    @Param({"map-maze", "map-temple"})
+    public String world;
+
+    private MCAWorld mcaWorld;
+    private ChunkLoader<Chunk> chunkLoader;
+    private List<RawChunk> chunks;
+
+    @Setup
+    public void setup() throws IOException, InterruptedException {
+        Path worldFolder = Path.of(System.getProperty("bluemap.benchmark.root", "..")).resolve(world);
+        mcaWorld = MCAWorld.load(worldFolder, DataPack.DIMENSION_OVERWORLD, new DataPack(0), new ChunkCache());
+        chunkLoader = new MCAChunkLoader(mcaWorld);
+
+        // collect the raw (compressed) data of all chunks in memory, so the benchmark does not measure disk-io
+        ChunkLoader<RawChunk> rawLoader = new ChunkLoader<>() {
+            @Override
+            public RawChunk load(ByteBuffer data, Compression compression) {
+                ByteBuffer copy = ByteBuffer.allocate(data.remaining());
+                copy.put(data.duplicate());
+                return new RawChunk(copy.flip(), compression);
+            }
+
+            @Override
+            public RawChunk emptyChunk() {
+                return null;
+            }
+
+            @Override
+            public RawChunk erroredChunk() {
+                return null;
+            }
+        };
+
+        chunks = new ArrayList<>();
+        try (Stream<Path> files = Files.list(worldFolder.resolve("region"))) {
+            for (Path file : files.filter(f -> f.getFileName().toString().endsWith(MCARegion.FILE_SUFFIX)).toList()) {
+                new MCARegion<>(rawLoader, file).iterateAllChunks((ChunkConsumer<RawChunk>) (x, z, chunk) -> chunks.add(chunk));
+            }
+        }
+
+        if (chunks.isEmpty()) throw new IllegalStateException("No chunks found in " + worldFolder);
+    }
+
+    @Benchmark
+    public void chunkLoader(Blackhole blackhole) throws IOException {
+        for (RawChunk chunk : chunks) {
+            blackhole.consume(chunkLoader.load(chunk.data(), chunk.compression()));
+        }
+    }
+
+    @Benchmark
+    public void previousChunkLoader(Blackhole blackhole) throws IOException {
+        PreviousChunkLoader previousChunkLoader = new PreviousChunkLoader(mcaWorld);
+        byte[] chunkDataBuffer = new byte[0];
+        for (RawChunk chunk : chunks) {
+            // the region-file was read into a byte-array first
+            int length = chunk.data().remaining();
+            if (chunkDataBuffer.length < length) chunkDataBuffer = new byte[length];
+            chunk.data().get(chunk.data().position(), chunkDataBuffer, 0, length);
+
+            blackhole.consume(previousChunkLoader.load(chunkDataBuffer, 0, length, chunk.compression()));
+        }
+    }
+
+    @Benchmark
+    public void blueNbtDataMapping(Blackhole blackhole) throws IOException {
+        for (RawChunk chunk : chunks) {
+            try (InputStream in = chunk.compression().decompress(new ByteBufferInputStream(chunk.data()))) {
+                Chunk_1_18.Data data = MCAUtil.BLUENBT.read(in, Chunk_1_18.Data.class);
+                blackhole.consume(new Chunk_1_18(mcaWorld, data));
+            }
+        }
+    }
+
+    private record RawChunk(ByteBuffer data, Compression compression) {}
+
+    /**
+     * The previous loading-path of the {@link MCAChunkLoader}: the chunk is decompressed and decoded with the loader
+     * of the previously loaded chunk, and decompressed and decoded a second time if that guess was wrong.
+     */
+    @RequiredArgsConstructor
+    private static class PreviousChunkLoader {
+
+        private static final List<VersionLoader> VERSION_LOADERS = List.of(
+                new VersionLoader(Chunk_1_18.Data.class, (world, data) -> new Chunk_1_18(world, (Chunk_1_18.Data) data), 2844),
+                new VersionLoader(Chunk_1_16.Data.class, (world, data) -> new Chunk_1_16(world, (Chunk_1_16.Data) data), 2500),
+                new VersionLoader(Chunk_1_13.Data.class, (world, data) -> new Chunk_1_15(world, (Chunk_1_13.Data) data), 2200),
+                new VersionLoader(Chunk_1_13.Data.class, (world, data) -> new Chunk_1_13(world, (Chunk_1_13.Data) data), 0)
+        );
+
+        private final MCAWorld world;
+        private VersionLoader lastUsedLoader = VERSION_LOADERS.get(0);
+
+        public MCAChunk load(byte[] data, int offset, int length, Compression compression) throws IOException {
+            InputStream in = new ByteArrayInputStream(data, offset, length);
+            in.mark(-1);
+
+            // try last used version
+            VersionLoader usedLoader = lastUsedLoader;
+            MCAChunk chunk;
+            try (InputStream decompressedIn = compression.decompress(in)) {
+                chunk = usedLoader.load(world, decompressedIn);
+            }
+
+            // check version and reload chunk if the wrong loader has been used and a better one has been found
+            for (VersionLoader actualLoader : VERSION_LOADERS) {
+                if (chunk.getDataVersion() < actualLoader.dataVersion()) continue;
+                if (actualLoader != usedLoader) {
+                    in.reset();
+                    try (InputStream decompressedIn = compression.decompress(in)) {
+                        chunk = actualLoader.load(world, decompressedIn);
+                    }
+                    lastUsedLoader = actualLoader;
+                }
+                break;
+            }
+
+            return chunk;
+        }
+
+    }
+
+    private record VersionLoader(
+            Class<? extends MCAChunk.Data> dataType,
+            BiFunction<MCAWorld, MCAChunk.Data, MCAChunk> constructor,
+            int dataVersion
+    ) {
+
+        public MCAChunk load(MCAWorld world, InputStream in) throws IOException {
+            MCAChunk.Data data = MCAUtil.BLUENBT.read(in, dataType);
+            return constructor.apply(world, data);
+        }
+
+    }
+
+}
@@ -50,8 +50,10 @@
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Predicate;
 
 @Getter
@@ -74,11 +76,15 @@ public class BmMap {
     private final MapTileState mapTileState;
     private final MapChunkState mapChunkState;
 
+    private final TileWriter tileWriter;
     private final HiresModelManager hiresModelManager;
     private final LowresTileManager lowresTileManager;
 
     private final ConcurrentHashMap<String, MarkerSet> markerSets;
 
+    @Getter(AccessLevel.NONE) private final List<TileUpdateListener> tileUpdateListeners;
+    @Getter(AccessLevel.NONE) private final TileUpdateListener tileUpdateNotifier;
+
     @Setter private Predicate<Vector2i> tileFilter;
 
     @Getter(AccessLevel.NONE) private long renderTimeSumNanos;
@@ -94,8 +100,23 @@ public BmMap(String id, String name, World world, MapStorage storage, ResourcePa
         this.mapSettings = Objects.requireNonNull(settings);
 
         Logger.global.logDebug("Loading render-state for map '" + id + "'");
-        this.mapTileState = new MapTileState(storage.tileState());
-        this.mapChunkState = new MapChunkState(storage.chunkState());
+        this.mapTileState = new MapTileState(storage.tileState(), settings.getRenderStateCacheSize());
+        this.mapChunkState = new MapChunkState(storage.chunkState(), settings.getRenderStateCacheSize());
+
+        this.tileUpdateListeners = new CopyOnWriteArrayList<>();
+        this.tileUpdateNotifier = new TileUpdateListener() {
+            @Override
+            public void onTileUpdate(int lod, int x, int z) {
+                for (TileUpdateListener listener : tileUpdateListeners)
+                    listener.onTileUpdate(lod, x, z);
+            }
+
+            @Override
+            public void onTilesCleared() {
+                for (TileUpdateListener listener : tileUpdateListeners)
+                    listener.onTilesCleared();
+            }
+        };
 
         if (Thread.interrupted()) throw new InterruptedException();
 
@@ -104,8 +125,12 @@ public BmMap(String id, String name, World world, MapStorage storage, ResourcePa
         this.textureGallery.put(resourcePack);
         saveTextureGallery();
 
+        this.tileWriter = new TileWriter(id);
         this.hiresModelManager = new HiresModelManager(
                 storage.hiresTiles(),
+                this.tileWriter,
+                this.mapTileState,
+                this.tileUpdateNotifier,
                 this.resourcePack,
                 this.textureGallery,
                 settings,
@@ -114,9 +139,12 @@ public BmMap(String id, String name, World world, MapStorage storage, ResourcePa
 
         this.lowresTileManager = new LowresTileManager(
                 storage,
+                this.tileWriter,
                 new Grid(settings.getLowresTileSize()),
                 settings.getLodCount(),
-                settings.getLodFactor()
+                settings.getLodFactor(),
+                settings.getLowresCompressionLevel(),
+                this.tileUpdateNotifier
         );
 
         this.tileFilter = t -> true;
@@ -148,6 +176,24 @@ public void unrenderTile(Vector2i tile) {
         hiresModelManager.unrender(tile, lowresTileManager);
     }
 
+    /**
+     * Adds a listener that gets notified whenever a tile of this map has been written or deleted
+     */
+    public void addTileUpdateListener(TileUpdateListener listener) {
+        tileUpdateListeners.add(listener);
+    }
+
+    public void removeTileUpdateListener(TileUpdateListener listener) {
+        tileUpdateListeners.remove(listener);
+    }
+
+    /**
+     * Notifies all {@link TileUpdateListener}s that all tiles of this map have been deleted
+     */
+    public void notifyTilesCleared() {
+        tileUpdateNotifier.onTilesCleared();
+    }
+
     public synchronized boolean save(long minTimeSinceLastSave) {
         long now = System.currentTimeMillis();
         if (now - lastSaveTime < minTimeSinceLastSave)
@@ -158,7 +204,9 @@ public synchronized boolean save(long minTimeSinceLastSave) {
     }
 
     public synchronized void save() {
+        // tiles are written before the render-state, so no tile is marked as rendered that has not been written yet
         lowresTileManager.save();
+        tileWriter.flush();
         mapTileState.save();
         mapChunkState.save();
         saveMarkerState();
@@ -50,6 +50,13 @@ public interface MapSettings extends RenderSettings {
 
     int getLodFactor();
 
+    int getLowresCompressionLevel();
+
+    /**
+     * The number of render-state cells (of each kind) that are kept in memory for this map
+     */
+    int getRenderStateCacheSize();
+
     float getSkyLight();
 
     boolean isEnablePerspectiveView();
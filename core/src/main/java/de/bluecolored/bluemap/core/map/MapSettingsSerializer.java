@@ -55,6 +55,7 @@ public JsonElement serialize(BmMap map, Type typeOfSrc, JsonSerializationContext
         hires.add("tileSize", context.serialize(hiresTileSize));
         hires.add("scale", context.serialize(Vector2i.ONE));
         hires.add("translate", context.serialize(gridOrigin));
+        hires.addProperty("mergeFaces", map.getMapSettings().isMergeFaces());
         root.add("hires", hires);
 
         // lowres
@@ -37,6 +37,7 @@
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class TextureGallery {
 
@@ -45,15 +46,18 @@ public class TextureGallery {
             .create();
 
     private final Map<ResourcePath<Texture>, TextureMapping> textureMappings;
+    private final Map<Integer, TextureMapping> textureMappingsById;
     private int nextId;
 
     public TextureGallery() {
         this.textureMappings = new HashMap<>();
+        this.textureMappingsById = new ConcurrentHashMap<>();
         this.nextId = 0;
     }
 
     public void clear() {
         this.textureMappings.clear();
+        this.textureMappingsById.clear();
         this.nextId = 0;
     }
 
@@ -63,10 +67,24 @@ public int get(@Nullable ResourcePath<Texture> textureResourcePath) {
         return mapping != null ? mapping.getId() : 0;
     }
 
+    /**
+     * Returns true if the texture with the given id is animated.
+     * Faces using an animated texture can not be merged or repeated, since the animation-frame is selected in uv-space.
+     */
+    public boolean isAnimated(int id) {
+        TextureMapping mapping = textureMappingsById.get(id);
+        if (mapping == null) return false;
+        Texture texture = mapping.getTexture();
+        return texture != null && texture.getAnimation() != null;
+    }
+
     public synchronized void put(ResourcePath<Texture> textureResourcePath) {
         textureMappings.compute(textureResourcePath, (r, mapping) -> {
-            if (mapping == null)
-                return new TextureMapping(nextId++, textureResourcePath.getResource());
+            if (mapping == null) {
+                mapping = new TextureMapping(nextId++, textureResourcePath.getResource());
+                textureMappingsById.put(mapping.getId(), mapping);
+                return mapping;
+            }
 
             Texture texture = textureResourcePath.getResource();
             if (texture != null) mapping.setTexture(texture);
@@ -114,7 +132,9 @@ public static TextureGallery readTexturesFile(InputStream in) throws IOException
             for (int ordinal = 0; ordinal < textures.length; ordinal++) {
                 Texture texture = textures[ordinal];
                 if (texture != null) {
-                    gallery.textureMappings.put(texture.getResourcePath(), new TextureMapping(ordinal, texture));
+                    TextureMapping mapping = new TextureMapping(ordinal, texture);
+                    gallery.textureMappings.put(texture.getResourcePath(), mapping);
+                    gallery.textureMappingsById.put(ordinal, mapping);
                 }
             }
         } catch (JsonParseException ex) {
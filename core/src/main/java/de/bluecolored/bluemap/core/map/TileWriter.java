@@ -0,0 +1,167 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.map;
+
+import de.bluecolored.bluemap.core.BlueMap;
+import de.bluecolored.bluemap.core.logger.Logger;
+import de.bluecolored.bluemap.core.storage.GridStorage;
+
+import java.util.concurrent.*;
+
+/**
+ * Writes the map-tiles of one map into their {@link GridStorage}s on a few background threads, so the render-threads
+ * don't have to wait for encoding, compressing and writing the tile-data.<br>
+ * <br>
+ * Writes are distributed on single-threaded lanes by the tile they write to, so all writes of the same tile
+ * are executed in the order they have been submitted.
+ * The amount of memory held by queued writes is limited: If the limit is reached, the submitting thread blocks until
+ * enough writes have been completed.<br>
+ * <br>
+ * Each map has its own TileWriter, so {@link #flush() flushing} one map never has to wait for the writes of other maps.
+ */
+public class TileWriter {
+
+    private static final int LANE_COUNT = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors() / 2));
+    public static final long DEFAULT_MAX_QUEUED_BYTES = 64L * 1024 * 1024;
+
+    private final ThreadPoolExecutor[] lanes;
+
+    // permits are counted in KiB
+    private final Semaphore queuePermits;
+    private final int maxPermits;
+
+    public TileWriter(String name) {
+        this(name, DEFAULT_MAX_QUEUED_BYTES);
+    }
+
+    /**
+     * @param name the name of this writer (e.g. the map-id), used to name the writer-threads
+     * @param maxQueuedBytes the (approximate) amount of memory that queued writes are allowed to hold
+     */
+    public TileWriter(String name, long maxQueuedBytes) {
+        if (maxQueuedBytes < 1024) throw new IllegalArgumentException("maxQueuedBytes has to be at least 1024");
+
+        this.lanes = new ThreadPoolExecutor[LANE_COUNT];
+        for (int i = 0; i < LANE_COUNT; i++)
+            lanes[i] = createLane(name, i);
+
+        this.maxPermits = (int) Math.min(maxQueuedBytes / 1024, Integer.MAX_VALUE);
+        this.queuePermits = new Semaphore(maxPermits);
+    }
+
+    /**
+     * Submits a write (or delete) of the tile at the given position of the given storage,
+     * that holds no significant amount of extra memory while it is queued.
+     * @see #submit(GridStorage, int, int, long, Runnable)
+     */
+    public void submit(GridStorage storage, int x, int z, Runnable write) {
+        submit(storage, x, z, 0, write);
+    }
+
+    /**
+     * Submits a write (or delete) of the tile at the given position of the given storage.<br>
+     * The write holds the given amount of memory until it is completed. If the memory-limit of the queued writes is
+     * reached, this blocks until enough writes have been completed, unless this is called from a writer-thread itself
+     * (e.g. a lowres-tile that is updating the next lod-layer while it is saved).
+     * A single write that is bigger than the whole limit is still accepted once no other writes are queued.
+     */
+    public void submit(GridStorage storage, int x, int z, long queuedBytes, Runnable write) {
+        int permits = 0;
+        if (queuedBytes > 0 && !(Thread.currentThread() instanceof WriterThread)) {
+            permits = (int) Math.min((queuedBytes + 1023) / 1024, maxPermits);
+            queuePermits.acquireUninterruptibly(permits);
+        }
+
+        int acquiredPermits = permits;
+        Runnable task = () -> {
+            try {
+                write.run();
+            } catch (RuntimeException ex) {
+                Logger.global.logError("Failed to write tile " + x + "," + z, ex);
+            } finally {
+                if (acquiredPermits > 0) queuePermits.release(acquiredPermits);
+            }
+        };
+
+        int hash = (System.identityHashCode(storage) * 31 + x) * 31 + z;
+        try {
+            lanes[Math.floorMod(hash, LANE_COUNT)].execute(task);
+        } catch (RejectedExecutionException ex) {
+            task.run();
+        }
+    }
+
+    /**
+     * Waits until all writes that have been submitted to this writer before this method was called are completed.
+     */
+    public void flush() {
+        if (Thread.currentThread() instanceof WriterThread)
+            throw new IllegalStateException("Can not flush the tile-writer from a writer-thread!");
+
+        // the lanes work through their queues in order, so a no-op task completes after all writes submitted before
+        Future<?>[] barriers = new Future[LANE_COUNT];
+        for (int i = 0; i < LANE_COUNT; i++) {
+            try {
+                barriers[i] = lanes[i].submit(() -> {});
+            } catch (RejectedExecutionException ignore) {}
+        }
+
+        try {
+            for (Future<?> barrier : barriers) {
+                if (barrier != null) barrier.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            Logger.global.logError("Failed to wait for pending tile-writes", ex);
+        }
+    }
+
+    private static ThreadPoolExecutor createLane(String name, int index) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                1, 1,
+                10, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new WriterThread(runnable, "BlueMap-TileWriter-" + name + "-" + index);
+                    thread.setDaemon(true);
+                    // use current classloader, this fixes ClassLoading issues with forge
+                    thread.setContextClassLoader(BlueMap.class.getClassLoader());
+                    return thread;
+                }
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static class WriterThread extends Thread {
+
+        public WriterThread(Runnable task, String name) {
+            super(task, name);
+        }
+
+    }
+
+}
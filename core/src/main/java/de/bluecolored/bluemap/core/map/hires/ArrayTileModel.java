@@ -68,6 +68,17 @@ public int size() {
         return size;
     }
 
+    /**
+     * Returns the approximate amount of heap-memory (in bytes) that the face-data of this model occupies
+     */
+    public long getMemorySize() {
+        return (long) capacity * (
+                (FI_POSITION + FI_UV + FI_AO + FI_COLOR) * Float.BYTES +
+                (FI_SUNLIGHT + FI_BLOCKLIGHT) +
+                FI_MATERIAL_INDEX * 3 * Integer.BYTES // materialIndex + both sort-arrays
+        );
+    }
+
     @Override
     public int add(int count) {
         ensureCapacity(count);
@@ -498,6 +509,19 @@ private void swap(int face1, int face2) {
         materialIndex[face2] = vi;
     }
 
+    /**
+     * Copies all data of one face over the data of another face
+     */
+    void copy(int from, int to) {
+        System.arraycopy(position,      from * FI_POSITION,         position,       to * FI_POSITION,       FI_POSITION);
+        System.arraycopy(uv,            from * FI_UV,               uv,             to * FI_UV,             FI_UV);
+        System.arraycopy(ao,            from * FI_AO,               ao,             to * FI_AO,             FI_AO);
+        System.arraycopy(color,         from * FI_COLOR,            color,          to * FI_COLOR,          FI_COLOR);
+        sunlight[to * FI_SUNLIGHT] = sunlight[from * FI_SUNLIGHT];
+        blocklight[to * FI_BLOCKLIGHT] = blocklight[from * FI_BLOCKLIGHT];
+        materialIndex[to * FI_MATERIAL_INDEX] = materialIndex[from * FI_MATERIAL_INDEX];
+    }
+
     public static InstancePool<ArrayTileModel> instancePool() {
         return INSTANCE_POOL;
     }
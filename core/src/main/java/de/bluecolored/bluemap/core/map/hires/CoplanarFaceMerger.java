@@ -0,0 +1,340 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.map.hires;
+
+import de.bluecolored.bluemap.core.util.MergeSort;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Merges adjacent coplanar quads of an {@link ArrayTileModel} into bigger quads.<br>
+ * Quads are only merged if they share the same material, color, light and (uniform) ambient-occlusion, and if their
+ * texture is mapped exactly once onto the quad, so the merged quad can just repeat the texture in uv-space.<br>
+ * The model is expected to be sorted by material, the order of the remaining faces is preserved.
+ */
+class CoplanarFaceMerger {
+
+    private static final int CELL_BITS = 21;
+    private static final int CELL_MASK = (1 << CELL_BITS) - 1;
+
+    private final IntPredicate mergeableMaterial;
+
+    /**
+     * @param mergeableMaterial tests if the faces of a material can be merged
+     *                          (e.g. animated textures can not be repeated)
+     */
+    CoplanarFaceMerger(IntPredicate mergeableMaterial) {
+        this.mergeableMaterial = mergeableMaterial;
+    }
+
+    void merge(ArrayTileModel model) {
+        int faceCount = model.size;
+        int maxQuads = faceCount / 2;
+        if (maxQuads < 2) return;
+
+        // find all quads that could be merged
+        Map<QuadGroup, Integer> groupIds = new HashMap<>();
+        QuadGroup[] groups = new QuadGroup[maxQuads];
+        int[] quadFace = new int[maxQuads];
+        int[] quadGroup = new int[maxQuads];
+        int[] quadA = new int[maxQuads];
+        int[] quadB = new int[maxQuads];
+        int quadCount = 0;
+        int minA = Integer.MAX_VALUE, maxA = Integer.MIN_VALUE;
+        int minB = Integer.MAX_VALUE, maxB = Integer.MIN_VALUE;
+
+        float[] corners = new float[4 * 3];
+        float[] uvs = new float[4 * 2];
+        int[] cornerUvs = new int[4 * 2];
+        int[] cell = new int[2];
+
+        for (int face = 0; face + 1 < faceCount;) {
+            QuadGroup group = detectQuad(model, face, corners, uvs, cornerUvs, cell);
+            if (group == null) {
+                face++;
+                continue;
+            }
+
+            int groupId = groupIds.computeIfAbsent(group, g -> groupIds.size());
+            groups[groupId] = group;
+
+            quadFace[quadCount] = face;
+            quadGroup[quadCount] = groupId;
+            quadA[quadCount] = cell[0];
+            quadB[quadCount] = cell[1];
+            quadCount++;
+
+            minA = Math.min(minA, cell[0]); maxA = Math.max(maxA, cell[0]);
+            minB = Math.min(minB, cell[1]); maxB = Math.max(maxB, cell[1]);
+
+            face += 2;
+        }
+
+        if (quadCount < 2 || groupIds.size() == quadCount || quadCount > CELL_MASK) return;
+        if ((long) maxA - minA >= CELL_MASK || (long) maxB - minB >= CELL_MASK) return;
+
+        // sort quads by group, then row (b) and then column (a)
+        long[] keys = new long[quadCount];
+        int[] order = new int[quadCount];
+        for (int q = 0; q < quadCount; q++) {
+            keys[q] = key(quadGroup[q], quadA[q] - minA, quadB[q] - minB);
+            order[q] = q;
+        }
+        MergeSort.mergeSortInt(order, 0, quadCount, (q1, q2) -> Long.compare(keys[q1], keys[q2]), order.clone());
+
+        long[] sorted = new long[quadCount];
+        for (int i = 0; i < quadCount; i++)
+            sorted[i] = keys[order[i]];
+
+        // greedily grow rectangles, first along a then along b
+        boolean[] consumed = new boolean[quadCount];
+        boolean[] removed = new boolean[faceCount];
+        int removedCount = 0;
+        for (int i = 0; i < quadCount; i++) {
+            if (consumed[i]) continue;
+            long key = sorted[i];
+
+            int width = 1;
+            while (i + width < quadCount && !consumed[i + width] && sorted[i + width] == key + width)
+                width++;
+
+            int height = 1;
+            while (findRow(sorted, consumed, i + width, key + ((long) height << CELL_BITS), width) >= 0)
+                height++;
+
+            for (int h = 0; h < height; h++) {
+                int rowStart = h == 0 ? i : findRow(sorted, consumed, i + width, key + ((long) h << CELL_BITS), width);
+                for (int w = 0; w < width; w++) {
+                    int p = rowStart + w;
+                    consumed[p] = true;
+                    if (p == i) continue;
+
+                    int face = quadFace[order[p]];
+                    removed[face] = true;
+                    removed[face + 1] = true;
+                    removedCount += 2;
+                }
+            }
+
+            if (width > 1 || height > 1) {
+                int q = order[i];
+                writeQuad(model, quadFace[q], groups[quadGroup[q]], quadA[q], quadB[q], width, height, corners, uvs);
+            }
+        }
+
+        if (removedCount == 0) return;
+
+        // compact the model, keeping the order of all remaining faces
+        int size = 0;
+        for (int face = 0; face < faceCount; face++) {
+            if (removed[face]) continue;
+            if (face != size) model.copy(face, size);
+            size++;
+        }
+        model.size = size;
+    }
+
+    private static long key(int group, int a, int b) {
+        return ((long) group << (2 * CELL_BITS)) | ((long) b << CELL_BITS) | a;
+    }
+
+    /**
+     * Searches a row of unconsumed quads with the given width, starting at the given key.
+     * Returns the sorted-index of the rows first quad or -1 if there is no such row.
+     */
+    private static int findRow(long[] sorted, boolean[] consumed, int from, long rowKey, int width) {
+        int start = Arrays.binarySearch(sorted, from, sorted.length, rowKey);
+        if (start < 0) return -1;
+        if (start + width > sorted.length) return -1;
+        for (int w = 0; w < width; w++) {
+            if (consumed[start + w] || sorted[start + w] != rowKey + w) return -1;
+        }
+        return start;
+    }
+
+    /**
+     * Tests if the two faces starting at the given face form a mergeable quad.
+     * Returns the group of quads this quad can be merged with, or null if it can not be merged.
+     * The quads minimum cell-position on its plane is written into the cell-array.
+     */
+    private QuadGroup detectQuad(ArrayTileModel model, int face, float[] corners, float[] uvs, int[] cornerUv, int[] cell) {
+        int t1 = face, t2 = face + 1;
+
+        int material = model.materialIndex[t1 * ArrayTileModel.FI_MATERIAL_INDEX];
+        if (model.materialIndex[t2 * ArrayTileModel.FI_MATERIAL_INDEX] != material) return null;
+        if (model.sunlight[t1 * ArrayTileModel.FI_SUNLIGHT] != model.sunlight[t2 * ArrayTileModel.FI_SUNLIGHT]) return null;
+        if (model.blocklight[t1 * ArrayTileModel.FI_BLOCKLIGHT] != model.blocklight[t2 * ArrayTileModel.FI_BLOCKLIGHT]) return null;
+
+        float[] color = model.color;
+        int c1 = t1 * ArrayTileModel.FI_COLOR, c2 = t2 * ArrayTileModel.FI_COLOR;
+        if (color[c1] != color[c2] || color[c1 + 1] != color[c2 + 1] || color[c1 + 2] != color[c2 + 2]) return null;
+
+        float[] ao = model.ao;
+        int a1 = t1 * ArrayTileModel.FI_AO, a2 = t2 * ArrayTileModel.FI_AO;
+        float aoValue = ao[a1];
+        if (ao[a1 + 1] != aoValue || ao[a1 + 2] != aoValue) return null;
+        if (ao[a2] != aoValue || ao[a2 + 1] != aoValue || ao[a2 + 2] != aoValue) return null;
+
+        // the second triangle needs to share the first and last vertex of the first triangle: (v0, v1, v2) + (v0, v2, v3)
+        float[] position = model.position;
+        int p1 = t1 * ArrayTileModel.FI_POSITION, p2 = t2 * ArrayTileModel.FI_POSITION;
+        for (int k = 0; k < 3; k++) {
+            if (position[p2 + k] != position[p1 + k]) return null;
+            if (position[p2 + 3 + k] != position[p1 + 6 + k]) return null;
+        }
+
+        float[] uv = model.uv;
+        int u1 = t1 * ArrayTileModel.FI_UV, u2 = t2 * ArrayTileModel.FI_UV;
+        for (int k = 0; k < 2; k++) {
+            if (uv[u2 + k] != uv[u1 + k]) return null;
+            if (uv[u2 + 2 + k] != uv[u1 + 4 + k]) return null;
+        }
+
+        System.arraycopy(position, p1, corners, 0, 9);
+        System.arraycopy(position, p2 + 6, corners, 9, 3);
+        System.arraycopy(uv, u1, uvs, 0, 6);
+        System.arraycopy(uv, u2 + 4, uvs, 6, 2);
+
+        // the quad needs to be axis-aligned
+        int axis = -1;
+        for (int k = 0; k < 3; k++) {
+            float v = corners[k];
+            if (corners[3 + k] == v && corners[6 + k] == v && corners[9 + k] == v) {
+                if (axis != -1) return null;
+                axis = k;
+            }
+        }
+        if (axis == -1) return null;
+        int axisA = axis == 0 ? 1 : 0;
+        int axisB = axis == 2 ? 1 : 2;
+
+        // and cover exactly one (full) block-face
+        float minA = Float.POSITIVE_INFINITY, maxA = Float.NEGATIVE_INFINITY;
+        float minB = Float.POSITIVE_INFINITY, maxB = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < 4; i++) {
+            float a = corners[i * 3 + axisA], b = corners[i * 3 + axisB];
+            minA = Math.min(minA, a); maxA = Math.max(maxA, a);
+            minB = Math.min(minB, b); maxB = Math.max(maxB, b);
+        }
+        if (maxA - minA != 1f || maxB - minB != 1f) return null;
+        if (minA != (int) minA || minB != (int) minB) return null;
+
+        int cornerLayout = 0, cornerMask = 0;
+        for (int i = 0; i < 4; i++) {
+            float da = corners[i * 3 + axisA] - minA, db = corners[i * 3 + axisB] - minB;
+            if ((da != 0f && da != 1f) || (db != 0f && db != 1f)) return null;
+
+            float u = uvs[i * 2], v = uvs[i * 2 + 1];
+            if ((u != 0f && u != 1f) || (v != 0f && v != 1f)) return null;
+
+            int code = (int) da | ((int) db << 1);
+            cornerLayout |= code << (i * 2);
+            cornerMask |= 1 << code;
+            cornerUv[code * 2] = (int) u; // uvs indexed by the corners position (a + 2b) on the quad
+            cornerUv[code * 2 + 1] = (int) v;
+        }
+        if (cornerMask != 0b1111) return null;
+
+        // the uvs need to map one texture onto the quad, so that the texture can be repeated along a and b
+        int u0 = cornerUv[0], v0 = cornerUv[1];
+        int uA = cornerUv[2] - u0, vA = cornerUv[3] - v0;
+        int uB = cornerUv[4] - u0, vB = cornerUv[5] - v0;
+        if (cornerUv[6] != u0 + uA + uB || cornerUv[7] != v0 + vA + vB) return null;
+        if (Math.abs(uA) + Math.abs(vA) != 1 || Math.abs(uB) + Math.abs(vB) != 1) return null;
+        if (uA * uB + vA * vB != 0) return null;
+
+        if (!mergeableMaterial.test(material)) return null;
+
+        cell[0] = (int) minA;
+        cell[1] = (int) minB;
+
+        return new QuadGroup(
+                material, axis, corners[axis],
+                color[c1], color[c1 + 1], color[c1 + 2],
+                model.sunlight[t1 * ArrayTileModel.FI_SUNLIGHT],
+                model.blocklight[t1 * ArrayTileModel.FI_BLOCKLIGHT],
+                aoValue, cornerLayout,
+                u0, v0, uA, vA, uB, vB
+        );
+    }
+
+    private static void writeQuad(
+            ArrayTileModel model, int face, QuadGroup group,
+            int a0, int b0, int width, int height,
+            float[] corners, float[] uvs
+    ) {
+        int axisA = group.axis == 0 ? 1 : 0;
+        int axisB = group.axis == 2 ? 1 : 2;
+
+        for (int i = 0; i < 4; i++) {
+            int code = (group.cornerLayout >> (i * 2)) & 0b11;
+            int da = (code & 1) * width, db = (code >> 1) * height;
+
+            corners[i * 3 + group.axis] = group.plane;
+            corners[i * 3 + axisA] = a0 + da;
+            corners[i * 3 + axisB] = b0 + db;
+
+            uvs[i * 2] = group.u0 + da * group.uA + db * group.uB;
+            uvs[i * 2 + 1] = group.v0 + da * group.vA + db * group.vB;
+        }
+
+        model.setPositions(face,
+                corners[0], corners[1], corners[2],
+                corners[3], corners[4], corners[5],
+                corners[6], corners[7], corners[8]
+        );
+        model.setUvs(face,
+                uvs[0], uvs[1],
+                uvs[2], uvs[3],
+                uvs[4], uvs[5]
+        );
+
+        model.setPositions(face + 1,
+                corners[0], corners[1], corners[2],
+                corners[6], corners[7], corners[8],
+                corners[9], corners[10], corners[11]
+        );
+        model.setUvs(face + 1,
+                uvs[0], uvs[1],
+                uvs[4], uvs[5],
+                uvs[6], uvs[7]
+        );
+    }
+
+    /**
+     * All properties that quads need to share to be merged
+     */
+    private record QuadGroup(
+            int material, int axis, float plane,
+            float r, float g, float b,
+            byte sunlight, byte blocklight,
+            float ao, int cornerLayout,
+            int u0, int v0, int uA, int vA, int uB, int vB
+    ) {}
+
+}
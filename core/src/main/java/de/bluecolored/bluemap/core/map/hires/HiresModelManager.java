@@ -29,31 +29,77 @@
 import de.bluecolored.bluemap.core.logger.Logger;
 import de.bluecolored.bluemap.core.map.TextureGallery;
 import de.bluecolored.bluemap.core.map.TileMetaConsumer;
+import de.bluecolored.bluemap.core.map.TileUpdateListener;
+import de.bluecolored.bluemap.core.map.TileWriter;
+import de.bluecolored.bluemap.core.map.renderstate.MapTileState;
+import de.bluecolored.bluemap.core.map.renderstate.TileInfoRegion;
 import de.bluecolored.bluemap.core.resources.pack.resourcepack.ResourcePack;
 import de.bluecolored.bluemap.core.storage.GridStorage;
 import de.bluecolored.bluemap.core.util.Grid;
 import de.bluecolored.bluemap.core.util.math.Color;
 import de.bluecolored.bluemap.core.world.World;
 import lombok.Getter;
+import net.jpountz.xxhash.XXHash64;
+import net.jpountz.xxhash.XXHashFactory;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.concurrent.atomic.LongAdder;
 
 public class HiresModelManager {
 
+    private static final XXHash64 CONTENT_HASH = XXHashFactory.fastestInstance().hash64();
+    private static final long CONTENT_HASH_SEED = 0x426C75654D6170L;
+
     private final GridStorage storage;
+    private final TileWriter tileWriter;
+    private final @Nullable MapTileState tileState;
+    private final TileUpdateListener updateListener;
     private final HiresModelRenderer renderer;
+    private final @Nullable CoplanarFaceMerger faceMerger;
+
+    private final LongAdder writtenTiles = new LongAdder();
+    private final LongAdder unchangedTiles = new LongAdder();
+    private final LongAdder emptyTiles = new LongAdder();
 
     @Getter
     private final Grid tileGrid;
 
     public HiresModelManager(GridStorage storage, ResourcePack resourcePack, TextureGallery textureGallery, RenderSettings renderSettings, Grid tileGrid) {
-        this(storage, new HiresModelRenderer(resourcePack, textureGallery, renderSettings), tileGrid);
+        this(storage, new TileWriter("hires"), null, TileUpdateListener.NONE, resourcePack, textureGallery, renderSettings, tileGrid);
+    }
+
+    /**
+     * @param tileWriter the writer that the tiles of this map are written with
+     * @param tileState if present, the content-hashes of the written tiles are stored in this tile-state,
+     *                  so re-rendered tiles with unchanged content don't need to be written again
+     * @param updateListener gets notified about each tile that has been written or deleted
+     */
+    public HiresModelManager(GridStorage storage, TileWriter tileWriter, @Nullable MapTileState tileState, TileUpdateListener updateListener, ResourcePack resourcePack, TextureGallery textureGallery, RenderSettings renderSettings, Grid tileGrid) {
+        this(
+                storage,
+                tileWriter,
+                tileState,
+                updateListener,
+                new HiresModelRenderer(resourcePack, textureGallery, renderSettings),
+                renderSettings.isMergeFaces() ? new CoplanarFaceMerger(material -> !textureGallery.isAnimated(material)) : null,
+                tileGrid
+        );
     }
 
     public HiresModelManager(GridStorage storage, HiresModelRenderer renderer, Grid tileGrid) {
+        this(storage, new TileWriter("hires"), null, TileUpdateListener.NONE, renderer, null, tileGrid);
+    }
+
+    private HiresModelManager(GridStorage storage, TileWriter tileWriter, @Nullable MapTileState tileState, TileUpdateListener updateListener, HiresModelRenderer renderer, @Nullable CoplanarFaceMerger faceMerger, Grid tileGrid) {
         this.storage = storage;
+        this.tileWriter = tileWriter;
+        this.tileState = tileState;
+        this.updateListener = updateListener;
         this.renderer = renderer;
+        this.faceMerger = faceMerger;
 
         this.tileGrid = tileGrid;
     }
@@ -74,9 +120,16 @@ public void render(World world, Vector2i tile, TileMetaConsumer tileMetaConsumer
             renderer.render(world, modelMin, modelMax, model, tileMetaConsumer);
 
             model.sort();
-            save(model, tile);
-
-            ArrayTileModel.instancePool().recycleInstance(model);
+            if (faceMerger != null) faceMerger.merge(model);
+
+            // encode and write the tile in the background, the model is recycled once it is written
+            tileWriter.submit(storage, tile.getX(), tile.getY(), model.getMemorySize(), () -> {
+                try {
+                    save(model, tile);
+                } finally {
+                    ArrayTileModel.instancePool().recycleInstance(model);
+                }
+            });
         } else {
             renderer.render(world, modelMin, modelMax, VoidTileModel.INSTANCE, tileMetaConsumer);
         }
@@ -88,11 +141,17 @@ public void render(World world, Vector2i tile, TileMetaConsumer tileMetaConsumer
      * The hires tile is deleted and the tileMetaConsumer (lowres) is updated with default values in the tiles area.
      */
     public void unrender(Vector2i tile, TileMetaConsumer tileMetaConsumer) {
-        try {
-            storage.delete(tile.getX(), tile.getY());
-        } catch (IOException ex) {
-            Logger.global.logError("Failed to delete hires model: " + tile, ex);
-        }
+        // deleting through the tile-writer makes sure that a still pending write of this tile can't recreate it
+        tileWriter.submit(storage, tile.getX(), tile.getY(), () -> {
+            try {
+                storage.delete(tile.getX(), tile.getY());
+                if (tileState != null)
+                    tileState.setContentHash(tile.getX(), tile.getY(), TileInfoRegion.UNKNOWN_CONTENT_HASH);
+                updateListener.onTileUpdate(0, tile.getX(), tile.getY());
+            } catch (IOException ex) {
+                Logger.global.logError("Failed to delete hires model: " + tile, ex);
+            }
+        });
 
         Color color = new Color();
         tileGrid.forEachIntersecting(tile, Grid.UNIT, (x, z) ->
@@ -100,15 +159,94 @@ public void unrender(Vector2i tile, TileMetaConsumer tileMetaConsumer) {
         );
     }
 
+    /**
+     * Returns the statistics about how many of the saved tiles have actually been written
+     */
+    public TileWriteStats getTileWriteStats() {
+        return new TileWriteStats(writtenTiles.sum(), unchangedTiles.sum(), emptyTiles.sum());
+    }
+
     private void save(final ArrayTileModel model, Vector2i tile) {
-        try (
-                OutputStream out = storage.write(tile.getX(), tile.getY());
-                PRBMWriter modelWriter = new PRBMWriter(out)
-        ) {
-            modelWriter.write(model);
+        int x = tile.getX(), z = tile.getY();
+        long previousHash = tileState != null ? tileState.getContentHash(x, z) : TileInfoRegion.UNKNOWN_CONTENT_HASH;
+
+        try {
+
+            // empty tiles are not stored at all, the web-app treats missing tiles as empty
+            if (model.size() == 0) {
+                if (previousHash != TileInfoRegion.EMPTY_CONTENT_HASH) {
+                    storage.delete(x, z);
+                    updateListener.onTileUpdate(0, x, z);
+                }
+                if (tileState != null)
+                    tileState.setContentHash(x, z, TileInfoRegion.EMPTY_CONTENT_HASH);
+                emptyTiles.increment();
+                return;
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+            try (PRBMWriter modelWriter = new PRBMWriter(bytes)) {
+                modelWriter.write(model);
+            }
+            byte[] data = bytes.toByteArray();
+
+            // skip writing the tile if exactly the same tile is already stored
+            long contentHash = contentHash(data);
+            if (contentHash == previousHash && storage.exists(x, z)) {
+                unchangedTiles.increment();
+                return;
+            }
+
+            try (OutputStream out = storage.write(x, z)) {
+                out.write(data);
+            }
+            if (tileState != null)
+                tileState.setContentHash(x, z, contentHash);
+            writtenTiles.increment();
+            updateListener.onTileUpdate(0, x, z);
+
         } catch (IOException e){
             Logger.global.logError("Failed to save hires model: " + tile, e);
         }
     }
 
+    private static long contentHash(byte[] data) {
+        long hash = CONTENT_HASH.hash(data, 0, data.length, CONTENT_HASH_SEED);
+
+        // don't collide with the reserved hashes
+        if (hash == TileInfoRegion.UNKNOWN_CONTENT_HASH || hash == TileInfoRegion.EMPTY_CONTENT_HASH)
+            hash += 2;
+
+        return hash;
+    }
+
+    public record TileWriteStats(
+            long writtenCount,
+            long unchangedCount,
+            long emptyCount
+    ) {
+
+        public long skippedCount() {
+            return unchangedCount + emptyCount;
+        }
+
+        public long totalCount() {
+            return writtenCount + skippedCount();
+        }
+
+        public double skipRate() {
+            long total = totalCount();
+            return total == 0 ? 0 : (double) skippedCount() / total;
+        }
+
+        public TileWriteStats add(TileWriteStats other) {
+            return new TileWriteStats(
+                    writtenCount + other.writtenCount,
+                    unchangedCount + other.unchangedCount,
+                    emptyCount + other.emptyCount
+            );
+        }
+
+    }
+
 }
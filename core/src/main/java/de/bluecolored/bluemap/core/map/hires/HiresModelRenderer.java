@@ -33,18 +33,27 @@
 import de.bluecolored.bluemap.core.map.hires.entity.EntityModelRenderer;
 import de.bluecolored.bluemap.core.resources.pack.resourcepack.ResourcePack;
 import de.bluecolored.bluemap.core.util.math.Color;
+import de.bluecolored.bluemap.core.world.BlockState;
 import de.bluecolored.bluemap.core.world.Chunk;
+import de.bluecolored.bluemap.core.world.LightData;
 import de.bluecolored.bluemap.core.world.World;
-import de.bluecolored.bluemap.core.world.block.Block;
 import de.bluecolored.bluemap.core.world.block.BlockNeighborhood;
+import de.bluecolored.bluemap.core.world.block.BlockSnapshot;
 
 public class HiresModelRenderer {
 
+    /**
+     * The border around a tile that is included in the tile's {@link BlockSnapshot},
+     * covering the neighbors the block-renderers look at (culling, ao, biome-blending)
+     */
+    private static final int SNAPSHOT_BORDER = 2;
+
     private final ResourcePack resourcePack;
     private final RenderSettings renderSettings;
 
     private final ThreadLocal<BlockStateModelRenderer> threadLocalBlockRenderer;
     private final ThreadLocal<EntityModelRenderer> threadLocalEntityRenderer;
+    private final ThreadLocal<BlockSnapshot> threadLocalSnapshot;
 
     public HiresModelRenderer(ResourcePack resourcePack, TextureGallery textureGallery, RenderSettings renderSettings) {
         this.resourcePack = resourcePack;
@@ -52,6 +61,7 @@ public HiresModelRenderer(ResourcePack resourcePack, TextureGallery textureGalle
 
         this.threadLocalBlockRenderer = ThreadLocal.withInitial(() -> new BlockStateModelRenderer(resourcePack, textureGallery, renderSettings));
         this.threadLocalEntityRenderer = ThreadLocal.withInitial(() -> new EntityModelRenderer(resourcePack, textureGallery, renderSettings));
+        this.threadLocalSnapshot = ThreadLocal.withInitial(BlockSnapshot::new);
     }
 
     public void render(World world, Vector3i modelMin, Vector3i modelMax, TileModel model) {
@@ -59,6 +69,7 @@ public void render(World world, Vector3i modelMin, Vector3i modelMax, TileModel
     }
 
     public void render(World world, Vector3i modelMin, Vector3i modelMax, TileModel tileModel, TileMetaConsumer tileMetaConsumer) {
+        BlockSnapshot snapshot = threadLocalSnapshot.get();
         try {
             Vector3i min = modelMin.max(renderSettings.getMinPos());
             Vector3i max = modelMax.min(renderSettings.getMaxPos());
@@ -68,10 +79,17 @@ public void render(World world, Vector3i modelMin, Vector3i modelMax, TileModel
             BlockStateModelRenderer blockRenderer = threadLocalBlockRenderer.get();
             EntityModelRenderer entityRenderer = threadLocalEntityRenderer.get();
 
-            int maxHeight, minY, maxY;
+            int maxHeight, minY, maxY, columnMaxY;
             double topBlockLight;
             Color columnColor = new Color(), blockColor = new Color();
-            BlockNeighborhood block = new BlockNeighborhood(new Block(world, 0, 0, 0), resourcePack, renderSettings, world.getDimensionType());
+            LightData lightData = new LightData(0, 0);
+
+            // copy the tile and its border into a snapshot once, so all (neighbor-) lookups are cheap array-reads
+            snapshot.load(world,
+                    modelMin.getX() - SNAPSHOT_BORDER, min.getY(), modelMin.getZ() - SNAPSHOT_BORDER,
+                    modelMax.getX() + SNAPSHOT_BORDER, max.getY(), modelMax.getZ() + SNAPSHOT_BORDER
+            );
+            BlockNeighborhood block = new BlockNeighborhood(snapshot.createAccess(), resourcePack, renderSettings, world.getDimensionType());
             TileModelView tileModelView = new TileModelView(tileModel);
 
             int x, y, z;
@@ -84,11 +102,28 @@ public void render(World world, Vector3i modelMin, Vector3i modelMax, TileModel
                     columnColor.set(0, 0, 0, 0, true);
 
                     if (renderSettings.isInsideRenderBoundaries(x, z)) {
-                        Chunk chunk = world.getChunkAtBlock(x, z);
+                        Chunk chunk = snapshot.getChunk(x, z);
                         minY = Math.max(min.getY(), chunk.getMinY(x, z));
                         maxY = Math.min(max.getY(), chunk.getMaxY(x, z));
+                        columnMaxY = Math.min(maxY, chunk.getColumnMaxY(x, z));
+
+                        // the air above the column is not rendered, but its block-light still lights up the column
+                        topBlockLight = maxBlockLight(chunk, x, z, Math.max(columnMaxY + 1, minY), maxY, lightData);
+
+                        for (y = columnMaxY; y >= minY; y--) {
+
+                            // skip sections that only contain air, except for their block-light
+                            if ((y & 0xF) == 0xF) {
+                                BlockState uniformBlockState = chunk.getUniformBlockState(y);
+                                if (uniformBlockState != null && uniformBlockState.isAir()) {
+                                    int sectionMinY = Math.max(y & ~0xF, minY);
+                                    topBlockLight = Math.max(topBlockLight,
+                                            maxBlockLight(chunk, x, z, sectionMinY, y, lightData) * (1 - columnColor.a));
+                                    y = sectionMinY;
+                                    continue;
+                                }
+                            }
 
-                        for (y = maxY; y >= minY; y--) {
                             block.set(x, y, z);
                             if (!block.isInsideRenderBounds()) continue;
 
@@ -134,6 +169,20 @@ public void render(World world, Vector3i modelMin, Vector3i modelMax, TileModel
         } catch (MaxCapacityReachedException ex) {
             Logger.global.noFloodWarning("max-capacity-reached",
                     "One or more map-tiles are too complex to be completed (@~ %s to %s): %s".formatted(modelMin, modelMax, ex));
+        } finally {
+            snapshot.clear();
+        }
+    }
+
+    /**
+     * Returns the highest block-light level of the blocks from minY to maxY (inclusive) in the given column
+     */
+    private static int maxBlockLight(Chunk chunk, int x, int z, int minY, int maxY, LightData lightData) {
+        int maxBlockLight = 0;
+        for (int y = maxY; y >= minY && maxBlockLight < 15; y--) {
+            maxBlockLight = Math.max(maxBlockLight, chunk.getLightData(x, y, z, lightData).getBlockLight());
         }
+        return maxBlockLight;
     }
+
 }
@@ -31,12 +31,26 @@
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
-
+import java.util.Arrays;
+
+/**
+ * Writes an {@link ArrayTileModel} in the PRBM format (version 2).<br>
+ * <br>
+ * Compared to version 1 the geometry is indexed: equal vertices (which are all 4 corners of a quad, most of the time)
+ * are only written once and the indices are encoded as the distance to the next not yet used vertex.
+ * Positions and UVs are quantized to unsigned 16-bit values relative to the tiles minimum (written as offset + step in
+ * front of the attributes). UVs only fall back to floats if they span a range too large to be quantized precisely
+ * enough, tiles with merged faces (repeating their textures in uv-space) are still quantized.<br>
+ * Normals are still calculated per face, but written per vertex like all other attributes. They are part of the
+ * vertex that is deduplicated, so only vertices of faces facing the same direction are shared (like the corners of
+ * a quad), while the corners of e.g. a block-edge stay separate vertices with their own normals.
+ */
 @SuppressWarnings("unused")
 public class PRBMWriter implements Closeable {
 
-    private static final int FORMAT_VERSION = 1;
-    private static final int HEADER_BITS = 0b0_0_0_00111; // indexed (no) _ indices-type (-) _ endianness (little) _ attribute-nr (7)
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_BITS = 0b1_0_0_00111; // indexed (yes) _ indices-type (16bit) _ endianness (little) _ attribute-nr (7)
+    private static final int HEADER_INDICES_32BIT = 1 << 6;
 
     private static final int ATTRIBUTE_TYPE_FLOAT = 0;
     private static final int ATTRIBUTE_TYPE_INTEGER = 1 << 7;
@@ -57,25 +71,68 @@ public class PRBMWriter implements Closeable {
     private static final int ATTRIBUTE_ENCODING_UNSIGNED_16BIT_INT = 8;
     private static final int ATTRIBUTE_ENCODING_UNSIGNED_32BIT_INT = 10;
 
+    private static final int QUANTIZATION_STEPS = 0xFFFF;
+    private static final float MIN_POSITION_STEP = 1f / 256f;
+    private static final float MIN_UV_STEP = 1f / 32768f;
+    private static final float MAX_UV_STEP = 1f / 256f;
+
+    // vertex layout:   position-xy, position-z, uv-u, uv-v, normal, color, ao + blocklight + sunlight
+    private static final int
+            VI_POSITION_XY = 0,
+            VI_POSITION_Z = 1,
+            VI_UV_U = 2,
+            VI_UV_V = 3,
+            VI_NORMAL = 4,
+            VI_COLOR = 5,
+            VI_LIGHT = 6,
+            VERTEX_SIZE = 7;
+
     private final CountingOutputStream out;
 
+    private final float[] positionOffset = new float[3];
+    private final float[] positionStep = new float[3];
+    private final float[] uvOffset = new float[2];
+    private final float[] uvStep = new float[2];
+    private boolean quantizedUvs;
+
+    private int[] vertices = new int[0];
+    private int[] indices = new int[0];
+    private int[] vertexTable = new int[0];
+    private int vertexCount;
+
     public PRBMWriter(OutputStream out) {
         this.out = new CountingOutputStream(out);
     }
 
     public void write(ArrayTileModel model) throws IOException {
+        calculatePositionQuantization(model);
+        quantizedUvs = calculateUvQuantization(model);
+        indexVertices(model);
+
+        boolean indices32bit = vertexCount > 0xFFFF;
+
         out.write(FORMAT_VERSION); // version - 1 byte
-        out.write(HEADER_BITS); // format info - 1 byte
-        write3byteValue(model.size * 3); // number of values - 3 bytes
-        write3byteValue(0); // number of indices (0 for non-indexed) - 3 bytes
-
-        writePositionArray(model);
-        writeNormalArray(model);
-        writeColorArray(model);
-        writeUvArray(model);
-        writeAoArray(model);
-        writeBlocklightArray(model);
-        writeSunlightArray(model);
+        out.write(HEADER_BITS | (indices32bit ? HEADER_INDICES_32BIT : 0)); // format info - 1 byte
+        write3byteValue(vertexCount); // number of values - 3 bytes
+        write3byteValue(model.size * 3); // number of indices - 3 bytes
+
+        // position quantization: position = offset + value * step - 6 * 4 bytes
+        for (int i = 0; i < 3; i++) writeFloat(positionOffset[i]);
+        for (int i = 0; i < 3; i++) writeFloat(positionStep[i]);
+
+        // uv quantization (only used if the uvs are written as integers): uv = offset + value * step - 4 * 4 bytes
+        for (int i = 0; i < 2; i++) writeFloat(uvOffset[i]);
+        for (int i = 0; i < 2; i++) writeFloat(uvStep[i]);
+
+        writePositionArray();
+        writeNormalArray();
+        writeColorArray();
+        writeUvArray();
+        writeAoArray();
+        writeBlocklightArray();
+        writeSunlightArray();
+
+        writeIndexArray(model, indices32bit);
 
         writeMaterialGroups(model);
     }
@@ -85,29 +142,178 @@ public void close() throws IOException {
         out.close();
     }
 
-    private void writePositionArray(ArrayTileModel model) throws IOException {
+    private void calculatePositionQuantization(ArrayTileModel model) {
         float[] position = model.position;
+        int posSize = model.size * ArrayTileModel.FI_POSITION;
+
+        for (int axis = 0; axis < 3; axis++) {
+            float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+            for (int i = axis; i < posSize; i += 3) {
+                float value = position[i];
+                if (value < min) min = value;
+                if (value > max) max = value;
+            }
+
+            if (min > max) min = max = 0; // empty model
+
+            // use a whole-block offset and a power-of-two step, so the usual block-grid positions stay exact
+            float offset = (float) Math.floor(min);
+            float step = MIN_POSITION_STEP;
+            while ((max - offset) / step > QUANTIZATION_STEPS) step *= 2;
+
+            positionOffset[axis] = offset;
+            positionStep[axis] = step;
+        }
+    }
+
+    /**
+     * Calculates the offset and step to quantize the uvs with, returns false if the uvs span a too large range to be
+     * quantized and need to be written as floats.
+     */
+    private boolean calculateUvQuantization(ArrayTileModel model) {
+        float[] uv = model.uv;
+        int uvSize = model.size * ArrayTileModel.FI_UV;
+        boolean quantized = true;
+
+        for (int axis = 0; axis < 2; axis++) {
+            float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+            for (int i = axis; i < uvSize; i += 2) {
+                float value = uv[i];
+                if (value < min) min = value;
+                if (value > max) max = value;
+            }
+
+            if (min > max) min = max = 0; // empty model
+
+            // same as the positions: whole-texture offset and power-of-two step, so the usual texture-pixels stay exact
+            float offset = (float) Math.floor(min);
+            float step = MIN_UV_STEP;
+            while ((max - offset) / step > QUANTIZATION_STEPS) step *= 2;
+
+            uvOffset[axis] = offset;
+            uvStep[axis] = step;
+            if (!(step <= MAX_UV_STEP) || !Float.isFinite(offset)) quantized = false;
+        }
+
+        return quantized;
+    }
+
+    /**
+     * Builds the quantized vertices of the model and deduplicates them into the index-buffer, using an
+     * open-addressing hash-table over the vertex-data
+     */
+    private void indexVertices(ArrayTileModel model) {
+        int maxVertices = model.size * 3;
+        if (vertices.length < maxVertices * VERTEX_SIZE) vertices = new int[maxVertices * VERTEX_SIZE];
+        if (indices.length < maxVertices) indices = new int[maxVertices];
+
+        int tableSize = Integer.highestOneBit(Math.max(maxVertices, 1) * 2) << 1;
+        if (vertexTable.length < tableSize) vertexTable = new int[tableSize];
+        Arrays.fill(vertexTable, 0, tableSize, 0);
+        int tableMask = tableSize - 1;
+
+        float[] position = model.position, color = model.color, uv = model.uv, ao = model.ao;
+        byte[] blocklight = model.blocklight, sunlight = model.sunlight;
+        VectorM3f normal = new VectorM3f(0, 0, 0);
+
+        vertexCount = 0;
+        int pi, ci, ui, vi, faceNormal, faceColor, hash, slot, index;
+        for (int face = 0; face < model.size; face++) {
+            pi = face * ArrayTileModel.FI_POSITION;
+            calculateSurfaceNormal(
+                    position[pi], position[pi + 1], position[pi + 2],
+                    position[pi + 3], position[pi + 4], position[pi + 5],
+                    position[pi + 6], position[pi + 7], position[pi + 8],
+                    normal
+            );
+            faceNormal =
+                    (normalizedSignedByte(normal.x) & 0xFF) << 16 |
+                    (normalizedSignedByte(normal.y) & 0xFF) << 8 |
+                    (normalizedSignedByte(normal.z) & 0xFF);
+
+            ci = face * ArrayTileModel.FI_COLOR;
+            faceColor =
+                    normalizedUnsignedByte(color[ci]) << 16 |
+                    normalizedUnsignedByte(color[ci + 1]) << 8 |
+                    normalizedUnsignedByte(color[ci + 2]);
+
+            for (int j = 0; j < 3; j++) {
+                pi = face * ArrayTileModel.FI_POSITION + j * 3;
+                ui = face * ArrayTileModel.FI_UV + j * 2;
+
+                // build the vertex in the next free slot
+                vi = vertexCount * VERTEX_SIZE;
+                vertices[vi + VI_POSITION_XY] = quantizePosition(position[pi], 0) << 16 | quantizePosition(position[pi + 1], 1);
+                vertices[vi + VI_POSITION_Z] = quantizePosition(position[pi + 2], 2);
+                vertices[vi + VI_UV_U] = quantizedUvs ? quantizeUv(uv[ui], 0) : Float.floatToIntBits(uv[ui]);
+                vertices[vi + VI_UV_V] = quantizedUvs ? quantizeUv(uv[ui + 1], 1) : Float.floatToIntBits(uv[ui + 1]);
+                vertices[vi + VI_NORMAL] = faceNormal;
+                vertices[vi + VI_COLOR] = faceColor;
+                vertices[vi + VI_LIGHT] =
+                        normalizedUnsignedByte(ao[face * ArrayTileModel.FI_AO + j]) << 16 |
+                        (blocklight[face] & 0xFF) << 8 |
+                        (sunlight[face] & 0xFF);
+
+                // find an equal vertex or add this one
+                hash = vertexHash(vi);
+                slot = hash & tableMask;
+                while (true) {
+                    index = vertexTable[slot] - 1;
+                    if (index < 0) {
+                        index = vertexCount++;
+                        vertexTable[slot] = index + 1;
+                        break;
+                    }
+                    if (Arrays.equals(
+                            vertices, index * VERTEX_SIZE, index * VERTEX_SIZE + VERTEX_SIZE,
+                            vertices, vi, vi + VERTEX_SIZE
+                    )) break;
+                    slot = (slot + 1) & tableMask;
+                }
+
+                indices[face * 3 + j] = index;
+            }
+        }
+    }
 
+    private int vertexHash(int vi) {
+        int hash = 1;
+        for (int i = 0; i < VERTEX_SIZE; i++)
+            hash = 31 * hash + vertices[vi + i];
+        return hash ^ (hash >>> 16);
+    }
+
+    private int quantizePosition(float value, int axis) {
+        float step = positionStep[axis];
+        return Math.min(Math.max(Math.round((value - positionOffset[axis]) / step), 0), QUANTIZATION_STEPS);
+    }
+
+    private int quantizeUv(float value, int axis) {
+        float step = uvStep[axis];
+        return Math.min(Math.max(Math.round((value - uvOffset[axis]) / step), 0), QUANTIZATION_STEPS);
+    }
+
+    private void writePositionArray() throws IOException {
         writeString("position");
         out.write(
                 ATTRIBUTE_TYPE_FLOAT |
                 ATTRIBUTE_NOT_NORMALIZED |
                 ATTRIBUTE_CARDINALITY_3D_VEC |
-                ATTRIBUTE_ENCODING_SIGNED_32BIT_FLOAT
+                ATTRIBUTE_ENCODING_UNSIGNED_16BIT_INT
         );
 
         writePadding();
 
-        int posSize = model.size * ArrayTileModel.FI_POSITION;
-        for (int i = 0; i < posSize; i++) {
-            writeFloat(position[i]);
+        int vi;
+        for (int i = 0; i < vertexCount; i++) {
+            vi = i * VERTEX_SIZE;
+            write2byteValue(vertices[vi + VI_POSITION_XY] >>> 16);
+            write2byteValue(vertices[vi + VI_POSITION_XY] & 0xFFFF);
+            write2byteValue(vertices[vi + VI_POSITION_Z]);
         }
     }
 
-    private void writeNormalArray(ArrayTileModel model) throws IOException {
-        VectorM3f normal = new VectorM3f(0, 0, 0);
-        float[] position = model.position;
-
+    private void writeNormalArray() throws IOException {
         writeString("normal");
         out.write(
                 ATTRIBUTE_TYPE_FLOAT |
@@ -118,27 +324,12 @@ private void writeNormalArray(ArrayTileModel model) throws IOException {
 
         writePadding();
 
-        int pi, i, j;
-        for (i = 0; i < model.size; i++) {
-            pi = i * ArrayTileModel.FI_POSITION;
-            calculateSurfaceNormal(
-                    position[pi], position[pi + 1], position[pi + 2],
-                    position[pi + 3], position[pi + 4], position[pi + 5],
-                    position[pi + 6], position[pi + 7], position[pi + 8],
-                    normal
-            );
-
-            for (j = 0; j < 3; j++) { // all 3 points
-                writeNormalizedSignedByteValue(normal.x);
-                writeNormalizedSignedByteValue(normal.y);
-                writeNormalizedSignedByteValue(normal.z);
-            }
+        for (int i = 0; i < vertexCount; i++) {
+            writePackedBytes(vertices[i * VERTEX_SIZE + VI_NORMAL]);
         }
     }
 
-    private void writeColorArray(ArrayTileModel model) throws IOException {
-        float[] color = model.color;
-
+    private void writeColorArray() throws IOException {
         writeString("color");
         out.write(
                 ATTRIBUTE_TYPE_FLOAT |
@@ -149,21 +340,19 @@ private void writeColorArray(ArrayTileModel model) throws IOException {
 
         writePadding();
 
-        int colorSize = model.size * ArrayTileModel.FI_COLOR, i, j;
-        for (i = 0; i < colorSize; i += 3) {
-            for (j = 0; j < 3; j++) {
-                writeNormalizedUnsignedByteValue(color[i]);
-                writeNormalizedUnsignedByteValue(color[i + 1]);
-                writeNormalizedUnsignedByteValue(color[i + 2]);
-            }
+        for (int i = 0; i < vertexCount; i++) {
+            writePackedBytes(vertices[i * VERTEX_SIZE + VI_COLOR]);
         }
     }
 
-    private void writeUvArray(ArrayTileModel model) throws IOException {
-        float[] uv = model.uv;
-
+    private void writeUvArray() throws IOException {
         writeString("uv");
-        out.write(
+        out.write(quantizedUvs ?
+                ATTRIBUTE_TYPE_FLOAT |
+                ATTRIBUTE_NOT_NORMALIZED |
+                ATTRIBUTE_CARDINALITY_2D_VEC |
+                ATTRIBUTE_ENCODING_UNSIGNED_16BIT_INT
+                :
                 ATTRIBUTE_TYPE_FLOAT |
                 ATTRIBUTE_NOT_NORMALIZED |
                 ATTRIBUTE_CARDINALITY_2D_VEC |
@@ -172,15 +361,20 @@ private void writeUvArray(ArrayTileModel model) throws IOException {
 
         writePadding();
 
-        int uvSize = model.size * ArrayTileModel.FI_UV;
-        for (int i = 0; i < uvSize; i++) {
-            writeFloat(uv[i]);
+        int vi;
+        for (int i = 0; i < vertexCount; i++) {
+            vi = i * VERTEX_SIZE;
+            if (quantizedUvs) {
+                write2byteValue(vertices[vi + VI_UV_U]);
+                write2byteValue(vertices[vi + VI_UV_V]);
+            } else {
+                write4byteValue(vertices[vi + VI_UV_U]);
+                write4byteValue(vertices[vi + VI_UV_V]);
+            }
         }
     }
 
-    private void writeAoArray(ArrayTileModel model) throws IOException {
-        float[] ao = model.ao;
-
+    private void writeAoArray() throws IOException {
         writeString("ao");
         out.write(
                 ATTRIBUTE_TYPE_FLOAT |
@@ -191,15 +385,12 @@ private void writeAoArray(ArrayTileModel model) throws IOException {
 
         writePadding();
 
-        int uvSize = model.size * ArrayTileModel.FI_AO;
-        for (int i = 0; i < uvSize; i++) {
-            writeNormalizedUnsignedByteValue(ao[i]);
+        for (int i = 0; i < vertexCount; i++) {
+            out.write(vertices[i * VERTEX_SIZE + VI_LIGHT] >> 16 & 0xFF);
         }
     }
 
-    private void writeBlocklightArray(ArrayTileModel model) throws IOException {
-        byte[] blocklight = model.blocklight;
-
+    private void writeBlocklightArray() throws IOException {
         writeString("blocklight");
         out.write(
                 ATTRIBUTE_TYPE_FLOAT |
@@ -210,17 +401,12 @@ private void writeBlocklightArray(ArrayTileModel model) throws IOException {
 
         writePadding();
 
-        int blSize = model.size * ArrayTileModel.FI_BLOCKLIGHT;
-        for (int i = 0; i < blSize; i++) {
-            out.write(blocklight[i]);
-            out.write(blocklight[i]);
-            out.write(blocklight[i]);
+        for (int i = 0; i < vertexCount; i++) {
+            out.write(vertices[i * VERTEX_SIZE + VI_LIGHT] >> 8 & 0xFF);
         }
     }
 
-    private void writeSunlightArray(ArrayTileModel model) throws IOException {
-        byte[] sunlight = model.sunlight;
-
+    private void writeSunlightArray() throws IOException {
         writeString("sunlight");
         out.write(
                 ATTRIBUTE_TYPE_FLOAT |
@@ -231,11 +417,24 @@ private void writeSunlightArray(ArrayTileModel model) throws IOException {
 
         writePadding();
 
-        int slSize = model.size * ArrayTileModel.FI_SUNLIGHT;
-        for (int i = 0; i < slSize; i++) {
-            out.write(sunlight[i]);
-            out.write(sunlight[i]);
-            out.write(sunlight[i]);
+        for (int i = 0; i < vertexCount; i++) {
+            out.write(vertices[i * VERTEX_SIZE + VI_LIGHT] & 0xFF);
+        }
+    }
+
+    private void writeIndexArray(ArrayTileModel model, boolean indices32bit) throws IOException {
+        writePadding();
+
+        // indices are written relative to the next new vertex: vertices are numbered in order of their first use,
+        // so a new vertex is always written as 0 and reused vertices as small distances, which compresses very well
+        int indexCount = model.size * 3, nextVertex = 0, index, value;
+        for (int i = 0; i < indexCount; i++) {
+            index = indices[i];
+            value = nextVertex - index;
+            if (index == nextVertex) nextVertex++;
+
+            if (indices32bit) write4byteValue(value);
+            else write2byteValue(value);
         }
     }
 
@@ -303,18 +502,25 @@ private void write4byteValue(int value) throws IOException {
         out.write((value >> 24) & 0xFF);
     }
 
+    /**
+     * Writes the lower 3 bytes of the value, most significant first (used for packed 3-component byte vectors)
+     */
+    private void writePackedBytes(int value) throws IOException {
+        out.write((value >> 16) & 0xFF);
+        out.write((value >> 8) & 0xFF);
+        out.write(value & 0xFF);
+    }
+
     private void writeFloat(float value) throws IOException {
         write4byteValue(Float.floatToIntBits(value));
     }
 
-    private void writeNormalizedSignedByteValue(float value) throws IOException {
-        byte normalized = (byte) (value * 0x80 - 0.5);
-        out.write(normalized & 0xFF);
+    private static byte normalizedSignedByte(float value) {
+        return (byte) (value * 0x80 - 0.5);
     }
 
-    private void writeNormalizedUnsignedByteValue(float value) throws IOException {
-        int normalized = (int) (value * 0xFF);
-        out.write(normalized & 0xFF);
+    private static int normalizedUnsignedByte(float value) {
+        return (int) (value * 0xFF) & 0xFF;
     }
 
     private void writeString(String value) throws IOException {
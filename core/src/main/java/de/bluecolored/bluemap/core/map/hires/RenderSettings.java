@@ -127,4 +127,12 @@ default Predicate<Vector2i> getCellRenderBoundariesFilter(Grid grid, boolean all
 
     boolean isRenderTopOnly();
 
+    /**
+     * If adjacent coplanar faces with the same material, color and light should be merged into bigger faces
+     * before a hires-tile is saved
+     */
+    default boolean isMergeFaces() {
+        return false;
+    }
+
 }
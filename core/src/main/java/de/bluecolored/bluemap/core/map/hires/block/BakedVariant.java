@@ -0,0 +1,350 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.map.hires.block;
+
+import com.flowpowered.math.TrigMath;
+import com.flowpowered.math.vector.Vector3f;
+import com.flowpowered.math.vector.Vector3i;
+import com.flowpowered.math.vector.Vector4f;
+import de.bluecolored.bluemap.core.map.TextureGallery;
+import de.bluecolored.bluemap.core.resources.ResourcePath;
+import de.bluecolored.bluemap.core.resources.pack.resourcepack.ResourcePack;
+import de.bluecolored.bluemap.core.resources.pack.resourcepack.blockstate.Variant;
+import de.bluecolored.bluemap.core.resources.pack.resourcepack.model.Element;
+import de.bluecolored.bluemap.core.resources.pack.resourcepack.model.Face;
+import de.bluecolored.bluemap.core.resources.pack.resourcepack.model.Model;
+import de.bluecolored.bluemap.core.resources.pack.resourcepack.texture.Texture;
+import de.bluecolored.bluemap.core.util.Direction;
+import de.bluecolored.bluemap.core.util.math.MatrixM4f;
+import de.bluecolored.bluemap.core.util.math.VectorM2f;
+import de.bluecolored.bluemap.core.util.math.VectorM3f;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+
+/**
+ * The geometry of a {@link Variant} and its {@link Model}, baked into flat arrays.<br>
+ * All positions are already rotated, scaled and variant-transformed, UVs are already rotated (and uv-locked),
+ * textures and material-ids are resolved, and all neighbor-offsets needed for culling, light and ambient-occlusion
+ * are already made rotation-relative.
+ * So rendering a block only needs to copy the faces into the tile-model and apply the per-block light, ao and tint.
+ */
+final class BakedVariant {
+
+    private static final float BLOCK_SCALE = 1f / 16f;
+
+    /**
+     * The 4 corners (indices into the 8 element-corners) of each face, indexed by the ordinal of its {@link Direction}
+     */
+    private static final int[][] FACE_CORNERS = new int[6][];
+    static {
+        FACE_CORNERS[Direction.DOWN.ordinal()] = new int[]{ 0, 2, 3, 1 };
+        FACE_CORNERS[Direction.UP.ordinal()] = new int[]{ 5, 7, 6, 4 };
+        FACE_CORNERS[Direction.NORTH.ordinal()] = new int[]{ 2, 0, 4, 6 };
+        FACE_CORNERS[Direction.SOUTH.ordinal()] = new int[]{ 1, 3, 7, 5 };
+        FACE_CORNERS[Direction.WEST.ordinal()] = new int[]{ 0, 1, 5, 4 };
+        FACE_CORNERS[Direction.EAST.ordinal()] = new int[]{ 3, 2, 6, 7 };
+    }
+
+    final int faceCount;
+    final boolean ambientOcclusion;
+
+    /** 4 vertices (x, y, z) per face */
+    final float[] positions;
+
+    /** 4 vertices (u, v) per face */
+    final float[] uvs;
+
+    final int[] materials;
+    final @Nullable Texture[] textures;
+    final boolean[] tinted;
+    final int[] lightEmission;
+
+    /** the y-component of the rotated face-direction, used for top-only rendering and the map-color */
+    final float[] normalY;
+
+    /** the (x, y, z) offset of the block in front of the face, where the light is sampled */
+    final int[] lightNeighbors;
+
+    /** the (x, y, z) offset of the cullface-block, only valid if {@link #culled} is true for the face */
+    final boolean[] culled;
+    final int[] cullNeighbors;
+
+    /** for each vertex up to 4 (x, y, z) offsets of blocks that might occlude it */
+    final int[] aoNeighbors;
+    final byte[] aoNeighborCounts;
+
+    private BakedVariant(int faceCount, boolean ambientOcclusion) {
+        this.faceCount = faceCount;
+        this.ambientOcclusion = ambientOcclusion;
+        this.positions = new float[faceCount * 12];
+        this.uvs = new float[faceCount * 8];
+        this.materials = new int[faceCount];
+        this.textures = new Texture[faceCount];
+        this.tinted = new boolean[faceCount];
+        this.lightEmission = new int[faceCount];
+        this.normalY = new float[faceCount];
+        this.lightNeighbors = new int[faceCount * 3];
+        this.culled = new boolean[faceCount];
+        this.cullNeighbors = new int[faceCount * 3];
+        this.aoNeighbors = new int[faceCount * 4 * 4 * 3];
+        this.aoNeighborCounts = new byte[faceCount * 4];
+    }
+
+    static BakedVariant bake(Variant variant, Model model, ResourcePack resourcePack, TextureGallery textureGallery) {
+        return new Baker(variant, model, resourcePack, textureGallery).bake();
+    }
+
+    private static class Baker {
+
+        private final Variant variant;
+        private final Model model;
+        private final ResourcePack resourcePack;
+        private final TextureGallery textureGallery;
+
+        private final VectorM3f[] corners = new VectorM3f[8];
+        private final VectorM2f[] rawUvs = new VectorM2f[4];
+        private final VectorM2f[] uvs = new VectorM2f[4];
+        private final VectorM3f vertex = new VectorM3f(0, 0, 0);
+        private final VectorM3f direction = new VectorM3f(0, 0, 0);
+        private final MatrixM4f elementTransform = new MatrixM4f();
+
+        private BakedVariant baked;
+        private int faceIndex;
+
+        Baker(Variant variant, Model model, ResourcePack resourcePack, TextureGallery textureGallery) {
+            this.variant = variant;
+            this.model = model;
+            this.resourcePack = resourcePack;
+            this.textureGallery = textureGallery;
+
+            for (int i = 0; i < corners.length; i++) corners[i] = new VectorM3f(0, 0, 0);
+            for (int i = 0; i < rawUvs.length; i++) rawUvs[i] = new VectorM2f(0, 0);
+        }
+
+        BakedVariant bake() {
+            Element[] elements = model.getElements();
+            if (elements == null) elements = new Element[0];
+
+            int faceCount = 0;
+            for (Element element : elements) {
+                Map<Direction, Face> faces = element.getFaces();
+                if (faces != null) faceCount += faces.size();
+            }
+
+            baked = new BakedVariant(faceCount, model.isAmbientocclusion());
+            faceIndex = 0;
+
+            for (Element element : elements) {
+                bakeElement(element);
+            }
+
+            return baked;
+        }
+
+        private void bakeElement(Element element) {
+            Map<Direction, Face> faces = element.getFaces();
+            if (faces == null || faces.isEmpty()) return;
+
+            Vector3f from = element.getFrom();
+            Vector3f to = element.getTo();
+
+            float
+                    minX = Math.min(from.getX(), to.getX()),
+                    minY = Math.min(from.getY(), to.getY()),
+                    minZ = Math.min(from.getZ(), to.getZ()),
+                    maxX = Math.max(from.getX(), to.getX()),
+                    maxY = Math.max(from.getY(), to.getY()),
+                    maxZ = Math.max(from.getZ(), to.getZ());
+
+            VectorM3f[] c = corners;
+            c[0].x = minX; c[0].y = minY; c[0].z = minZ;
+            c[1].x = minX; c[1].y = minY; c[1].z = maxZ;
+            c[2].x = maxX; c[2].y = minY; c[2].z = minZ;
+            c[3].x = maxX; c[3].y = minY; c[3].z = maxZ;
+            c[4].x = minX; c[4].y = maxY; c[4].z = minZ;
+            c[5].x = minX; c[5].y = maxY; c[5].z = maxZ;
+            c[6].x = maxX; c[6].y = maxY; c[6].z = minZ;
+            c[7].x = maxX; c[7].y = maxY; c[7].z = maxZ;
+
+            elementTransform
+                    .copy(element.getRotation().getMatrix())
+                    .scale(BLOCK_SCALE, BLOCK_SCALE, BLOCK_SCALE);
+
+            for (Direction faceDir : Direction.values()) {
+                Face face = faces.get(faceDir);
+                if (face == null) continue;
+                bakeFace(element, face, faceDir);
+            }
+        }
+
+        private void bakeFace(Element element, Face face, Direction faceDir) {
+            int f = faceIndex++;
+            int[] faceCorners = FACE_CORNERS[faceDir.ordinal()];
+
+            // positions
+            for (int i = 0; i < 4; i++) {
+                VectorM3f corner = corners[faceCorners[i]];
+                vertex.set(corner.x, corner.y, corner.z);
+                vertex.transform(elementTransform);
+                if (variant.isTransformed())
+                    vertex.transform(variant.getTransformMatrix());
+
+                int index = f * 12 + i * 3;
+                baked.positions[index    ] = vertex.x;
+                baked.positions[index + 1] = vertex.y;
+                baked.positions[index + 2] = vertex.z;
+            }
+
+            // texture
+            ResourcePath<Texture> texturePath = face.getTexture().getTexturePath(model.getTextures()::get);
+            baked.materials[f] = textureGallery.get(texturePath);
+            baked.textures[f] = texturePath != null ? texturePath.getResource(resourcePack::getTexture) : null;
+
+            // uvs
+            bakeUvs(f, face, faceDir);
+
+            baked.tinted[f] = face.getTintindex() >= 0;
+            baked.lightEmission[f] = element.getLightEmission();
+
+            // face direction
+            Vector3i faceDirVector = faceDir.toVector();
+            direction.set(faceDirVector.getX(), faceDirVector.getY(), faceDirVector.getZ());
+            direction.rotateAndScale(element.getRotation().getMatrix());
+            makeRotationRelative(direction);
+            baked.normalY[f] = direction.y;
+
+            // neighbors
+            setRotationRelativeOffset(baked.lightNeighbors, f * 3,
+                    faceDirVector.getX(), faceDirVector.getY(), faceDirVector.getZ());
+
+            Direction cullface = face.getCullface();
+            if (cullface != null) {
+                Vector3i cullVector = cullface.toVector();
+                baked.culled[f] = true;
+                setRotationRelativeOffset(baked.cullNeighbors, f * 3,
+                        cullVector.getX(), cullVector.getY(), cullVector.getZ());
+            }
+
+            // ambient occlusion
+            if (baked.ambientOcclusion) {
+                for (int i = 0; i < 4; i++) {
+                    bakeAoNeighbors(f * 4 + i, corners[faceCorners[i]], faceDirVector);
+                }
+            }
+        }
+
+        private void bakeUvs(int f, Face face, Direction faceDir) {
+            Vector4f uvRaw = face.getUv();
+            rawUvs[0].set(uvRaw.getX() / 16f, uvRaw.getW() / 16f);
+            rawUvs[1].set(uvRaw.getZ() / 16f, uvRaw.getW() / 16f);
+            rawUvs[2].set(uvRaw.getZ() / 16f, uvRaw.getY() / 16f);
+            rawUvs[3].set(uvRaw.getX() / 16f, uvRaw.getY() / 16f);
+
+            int rotationSteps = Math.floorDiv(face.getRotation(), 90) % 4;
+            if (rotationSteps < 0) rotationSteps += 4;
+            for (int i = 0; i < 4; i++) {
+                uvs[i] = rawUvs[(rotationSteps + i) % 4];
+            }
+
+            if (variant.isUvlock() && variant.isTransformed()) {
+                Vector3i faceDirVector = faceDir.toVector();
+                float xRotSin = TrigMath.sin(variant.getX() * TrigMath.DEG_TO_RAD);
+                float xRotCos = TrigMath.cos(variant.getX() * TrigMath.DEG_TO_RAD);
+
+                float uvRotation = variant.getY() * (faceDirVector.getY() * xRotCos + faceDirVector.getZ() * xRotSin) +
+                        variant.getX() * (1 - faceDirVector.getY());
+
+                if (uvRotation != 0) {
+                    uvRotation = (float)(uvRotation * TrigMath.DEG_TO_RAD);
+                    float cx = TrigMath.cos(uvRotation), cy = TrigMath.sin(uvRotation);
+                    for (VectorM2f uv : uvs) {
+                        uv.translate(-0.5f, -0.5f).rotate(cx, cy).translate(0.5f, 0.5f);
+                    }
+                }
+            }
+
+            for (int i = 0; i < 4; i++) {
+                baked.uvs[f * 8 + i * 2    ] = uvs[i].x;
+                baked.uvs[f * 8 + i * 2 + 1] = uvs[i].y;
+            }
+        }
+
+        private void bakeAoNeighbors(int vertexIndex, VectorM3f vertex, Vector3i dirVec) {
+            int x = 0;
+            if (vertex.x == 16){
+                x = 1;
+            } else if (vertex.x == 0){
+                x = -1;
+            }
+
+            int y = 0;
+            if (vertex.y == 16){
+                y = 1;
+            } else if (vertex.y == 0){
+                y = -1;
+            }
+
+            int z = 0;
+            if (vertex.z == 16){
+                z = 1;
+            } else if (vertex.z == 0){
+                z = -1;
+            }
+
+            int count = 0;
+            int offset = vertexIndex * 4 * 3;
+
+            if (x * dirVec.getX() + y * dirVec.getY() > 0)
+                setRotationRelativeOffset(baked.aoNeighbors, offset + count++ * 3, x, y, 0);
+
+            if (x * dirVec.getX() + z * dirVec.getZ() > 0)
+                setRotationRelativeOffset(baked.aoNeighbors, offset + count++ * 3, x, 0, z);
+
+            if (y * dirVec.getY() + z * dirVec.getZ() > 0)
+                setRotationRelativeOffset(baked.aoNeighbors, offset + count++ * 3, 0, y, z);
+
+            if (x * dirVec.getX() + y * dirVec.getY() + z * dirVec.getZ() > 0)
+                setRotationRelativeOffset(baked.aoNeighbors, offset + count++ * 3, x, y, z);
+
+            baked.aoNeighborCounts[vertexIndex] = (byte) count;
+        }
+
+        private void setRotationRelativeOffset(int[] target, int index, int dx, int dy, int dz) {
+            direction.set(dx, dy, dz);
+            makeRotationRelative(direction);
+            target[index    ] = Math.round(direction.x);
+            target[index + 1] = Math.round(direction.y);
+            target[index + 2] = Math.round(direction.z);
+        }
+
+        private void makeRotationRelative(VectorM3f direction){
+            if (variant.isTransformed())
+                direction.rotateAndScale(variant.getTransformMatrix());
+        }
+
+    }
+
+}
@@ -31,20 +31,16 @@
 import de.bluecolored.bluemap.core.map.hires.TileModelView;
 import de.bluecolored.bluemap.core.resources.pack.resourcepack.ResourcePack;
 import de.bluecolored.bluemap.core.resources.pack.resourcepack.blockstate.Variant;
+import de.bluecolored.bluemap.core.resources.pack.resourcepack.blockstate.VariantSet;
 import de.bluecolored.bluemap.core.util.math.Color;
 import de.bluecolored.bluemap.core.world.BlockState;
 import de.bluecolored.bluemap.core.world.block.BlockNeighborhood;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class BlockStateModelRenderer {
 
     private final ResourcePack resourcePack;
     private final LoadingCache<BlockRendererType, BlockRenderer> blockRenderers;
 
-    private final List<Variant> variants = new ArrayList<>();
-
     public BlockStateModelRenderer(ResourcePack resourcePack, TextureGallery textureGallery, RenderSettings renderSettings) {
         this.resourcePack = resourcePack;
         this.blockRenderers = Caffeine.newBuilder()
@@ -81,18 +77,16 @@ public void render(BlockNeighborhood block, BlockState blockState, TileModelView
     private void renderModel(BlockNeighborhood block, BlockState blockState, TileModelView tileModel, Color blockColor) {
         int modelStart = tileModel.getStart();
 
-        var stateResource = resourcePack.getBlockState(blockState);
-        if (stateResource == null) return;
+        VariantSet[] variantSets = resourcePack.getBlockStateVariants(blockState);
 
         float blockColorOpacity = 0;
-        variants.clear();
-        stateResource.forEach(blockState, block.getX(), block.getY(), block.getZ(), variants::add);
 
         //noinspection ForLoopReplaceableByForEach
-        for (int i = 0; i < variants.size(); i++) {
-            variantColor.set(0f, 0f, 0f, 0f, true);
+        for (int i = 0; i < variantSets.length; i++) {
+            Variant variant = variantSets[i].select(block.getX(), block.getY(), block.getZ());
+            if (variant == null) continue;
 
-            Variant variant = variants.get(i);
+            variantColor.set(0f, 0f, 0f, 0f, true);
             blockRenderers.get(variant.getRenderer())
                     .render(block, variant, tileModel.initialize(), variantColor);
 
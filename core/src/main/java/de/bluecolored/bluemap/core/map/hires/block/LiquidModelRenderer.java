@@ -43,8 +43,8 @@
 import de.bluecolored.bluemap.core.util.math.VectorM2f;
 import de.bluecolored.bluemap.core.util.math.VectorM3f;
 import de.bluecolored.bluemap.core.world.BlockState;
+import de.bluecolored.bluemap.core.world.LightData;
 import de.bluecolored.bluemap.core.world.block.BlockNeighborhood;
-import de.bluecolored.bluemap.core.world.block.ExtendedBlock;
 
 /**
  * A model builder for all liquid blocks
@@ -119,7 +119,7 @@ private void build() {
         ) return;
 
         int level = blockState.getLiquidLevel();
-        if (level < 8 && !(level == 0 && isSameLiquid(block.getNeighborBlock(0, 1, 0)))){
+        if (level < 8 && !(level == 0 && isSameLiquid(block.getNeighborBlockState(0, 1, 0)))){
             corners[4].y = getLiquidCornerHeight(-1,  -1);
             corners[5].y = getLiquidCornerHeight(-1,  0);
             corners[6].y = getLiquidCornerHeight(0,  -1);
@@ -185,7 +185,7 @@ private float getLiquidCornerHeight(int x, int z){
 
         for (ix = x; ix <= x+1; ix++){
             for (iz = z; iz<= z+1; iz++){
-                if (isSameLiquid(block.getNeighborBlock(ix, 1, iz))){
+                if (isSameLiquid(block.getNeighborBlockState(ix, 1, iz))){
                     return 16f;
                 }
             }
@@ -193,14 +193,12 @@ private float getLiquidCornerHeight(int x, int z){
 
         float sumHeight = 0f;
         int count = 0;
-        ExtendedBlock neighbor;
         BlockState neighborBlockState;
 
         for (ix = x; ix <= x+1; ix++){
             for (iz = z; iz<= z+1; iz++){
-                neighbor = block.getNeighborBlock(ix, 0, iz);
-                neighborBlockState = neighbor.getBlockState();
-                if (isSameLiquid(neighbor)){
+                neighborBlockState = block.getNeighborBlockState(ix, 0, iz);
+                if (isSameLiquid(neighborBlockState)){
                     if (neighborBlockState.getLiquidLevel() == 0) return 14f;
 
                     sumHeight += getLiquidBaseHeight(neighborBlockState);
@@ -225,16 +223,18 @@ private boolean isLiquidBlockingBlock(BlockState blockState){
     }
 
     @SuppressWarnings("StringEquality")
-    private boolean isSameLiquid(ExtendedBlock block){
-        BlockState blockState = block.getBlockState();
-
+    private boolean isSameLiquid(BlockState blockState){
         if (this.isWaterlogged)
-            return blockState.isWater() || blockState.isWaterlogged() || block.getProperties().isAlwaysWaterlogged();
+            return blockState.isWater() || blockState.isWaterlogged() || isAlwaysWaterlogged(blockState);
 
         if (blockState.getFormatted() == this.blockState.getFormatted())
             return true;
 
-        return this.isWaterLike && (blockState.isWaterlogged() || block.getProperties().isAlwaysWaterlogged());
+        return this.isWaterLike && (blockState.isWaterlogged() || isAlwaysWaterlogged(blockState));
+    }
+
+    private boolean isAlwaysWaterlogged(BlockState blockState) {
+        return resourcePack.getBlockProperties(blockState).isAlwaysWaterlogged();
     }
 
     private float getLiquidBaseHeight(BlockState block){
@@ -247,13 +247,14 @@ private boolean createElementFace(Direction faceDir, VectorM3f c0, VectorM3f c1,
         Vector3i faceDirVector = faceDir.toVector();
 
         //face culling
-        ExtendedBlock bl = block.getNeighborBlock(
+        BlockState neighborBlockState = block.getNeighborBlockState(
                 faceDirVector.getX(),
                 faceDirVector.getY(),
                 faceDirVector.getZ()
         );
 
-        if (isSameLiquid(bl) || (faceDir != Direction.UP && bl.getProperties().isCulling())) return false;
+        if (isSameLiquid(neighborBlockState)) return false;
+        if (faceDir != Direction.UP && resourcePack.getBlockProperties(neighborBlockState).isCulling()) return false;
 
         // initialize the faces
         blockModel.initialize();
@@ -338,8 +339,13 @@ private boolean createElementFace(Direction faceDir, VectorM3f c0, VectorM3f c1,
             blockLight = block.getBlockLightLevel();
             sunLight = block.getSunLightLevel();
         } else {
-            blockLight = bl.getBlockLightLevel();
-            sunLight = bl.getSunLightLevel();
+            LightData neighborLightData = block.getNeighborLightData(
+                    faceDirVector.getX(),
+                    faceDirVector.getY(),
+                    faceDirVector.getZ()
+            );
+            blockLight = neighborLightData.getBlockLight();
+            sunLight = neighborLightData.getSkyLight();
         }
 
         tileModel.setBlocklight(face1, blockLight);
@@ -371,11 +377,11 @@ private int getFlowingAngle() {
     }
 
     private float compareLiquidHeights(float ownHeight, int dx, int dz) {
-        ExtendedBlock neighbor = block.getNeighborBlock(dx, 0,  dz);
-        if (neighbor.getBlockState().isAir()) return 0;
-        if (!isSameLiquid(neighbor)) return 0;
+        BlockState neighborBlockState = block.getNeighborBlockState(dx, 0,  dz);
+        if (neighborBlockState.isAir()) return 0;
+        if (!isSameLiquid(neighborBlockState)) return 0;
 
-        float otherHeight = getLiquidBaseHeight(neighbor.getBlockState()) * BLOCK_SCALE;
+        float otherHeight = getLiquidBaseHeight(neighborBlockState) * BLOCK_SCALE;
         return otherHeight - ownHeight;
     }
 
@@ -33,20 +33,18 @@
 import de.bluecolored.bluemap.core.resources.pack.resourcepack.ResourcePack;
 import de.bluecolored.bluemap.core.resources.pack.resourcepack.blockstate.Variant;
 import de.bluecolored.bluemap.core.util.math.Color;
-import de.bluecolored.bluemap.core.world.BlockState;
+import de.bluecolored.bluemap.core.world.BlockStateCache;
 import de.bluecolored.bluemap.core.world.block.BlockNeighborhood;
 
 public class MissingModelRenderer implements BlockRenderer {
 
-    private static final LoadingCache<BlockState, BlockRendererType> BLOCK_RENDERER_TYPES = Caffeine.newBuilder()
-            .maximumSize(1000)
-            .build(blockState -> {
-                for (BlockRendererType type : BlockRendererType.REGISTRY.values())
-                    if (type.isFallbackFor(blockState)) return type;
+    private static final BlockStateCache<BlockRendererType> BLOCK_RENDERER_TYPES = new BlockStateCache<>(blockState -> {
+        for (BlockRendererType type : BlockRendererType.REGISTRY.values())
+            if (type.isFallbackFor(blockState)) return type;
 
-                Logger.global.logDebug("No renderer found for block state: " + blockState);
-                return BlockRendererType.DEFAULT;
-            });
+        Logger.global.logDebug("No renderer found for block state: " + blockState);
+        return BlockRendererType.DEFAULT;
+    });
 
     private final LoadingCache<BlockRendererType, BlockRenderer> blockRenderers;
 
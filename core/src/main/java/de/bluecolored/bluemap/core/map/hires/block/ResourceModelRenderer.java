@@ -24,53 +24,44 @@
  */
 package de.bluecolored.bluemap.core.map.hires.block;
 
-import com.flowpowered.math.TrigMath;
-import com.flowpowered.math.vector.Vector3f;
-import com.flowpowered.math.vector.Vector3i;
-import com.flowpowered.math.vector.Vector4f;
 import de.bluecolored.bluemap.core.map.TextureGallery;
 import de.bluecolored.bluemap.core.map.hires.RenderSettings;
 import de.bluecolored.bluemap.core.map.hires.TileModel;
 import de.bluecolored.bluemap.core.map.hires.TileModelView;
 import de.bluecolored.bluemap.core.resources.BlockColorCalculatorFactory;
-import de.bluecolored.bluemap.core.resources.ResourcePath;
 import de.bluecolored.bluemap.core.resources.pack.resourcepack.ResourcePack;
 import de.bluecolored.bluemap.core.resources.pack.resourcepack.blockstate.Variant;
-import de.bluecolored.bluemap.core.resources.pack.resourcepack.model.Element;
-import de.bluecolored.bluemap.core.resources.pack.resourcepack.model.Face;
 import de.bluecolored.bluemap.core.resources.pack.resourcepack.model.Model;
 import de.bluecolored.bluemap.core.resources.pack.resourcepack.texture.Texture;
-import de.bluecolored.bluemap.core.util.Direction;
 import de.bluecolored.bluemap.core.util.math.Color;
-import de.bluecolored.bluemap.core.util.math.MatrixM4f;
-import de.bluecolored.bluemap.core.util.math.VectorM2f;
-import de.bluecolored.bluemap.core.util.math.VectorM3f;
 import de.bluecolored.bluemap.core.world.BlockProperties;
+import de.bluecolored.bluemap.core.world.BlockState;
 import de.bluecolored.bluemap.core.world.LightData;
 import de.bluecolored.bluemap.core.world.block.BlockNeighborhood;
-import de.bluecolored.bluemap.core.world.block.ExtendedBlock;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
 
 /**
- * This model builder creates a BlockStateModel using the information from parsed resource-pack json files.
+ * This model builder creates a BlockStateModel using the information from parsed resource-pack json files.<br>
+ * The geometry of each {@link Variant} is baked once on first use (see {@link BakedVariant}), rendering a block then
+ * only copies the baked faces and applies the light, ambient-occlusion and tint of that block.
  */
-@SuppressWarnings("DuplicatedCode")
 public class ResourceModelRenderer implements BlockRenderer {
-    private static final float BLOCK_SCALE = 1f / 16f;
 
     private final ResourcePack resourcePack;
     private final TextureGallery textureGallery;
     private final RenderSettings renderSettings;
     private final BlockColorCalculatorFactory.BlockColorCalculator blockColorCalculator;
 
-    private final VectorM3f[] corners = new VectorM3f[8];
-    private final VectorM2f[] rawUvs = new VectorM2f[4];
-    private final VectorM2f[] uvs = new VectorM2f[4];
+    private final Map<Variant, BakedVariant> bakedVariants = new HashMap<>();
+
     private final Color tintColor = new Color();
     private final Color mapColor = new Color();
 
     private BlockNeighborhood block;
-    private Variant variant;
-    private Model modelResource;
+    private BakedVariant baked;
     private TileModelView blockModel;
     private Color blockColor;
     private float blockColorOpacity;
@@ -80,31 +71,32 @@ public ResourceModelRenderer(ResourcePack resourcePack, TextureGallery textureGa
         this.textureGallery = textureGallery;
         this.renderSettings = renderSettings;
         this.blockColorCalculator = resourcePack.getColorCalculatorFactory().createCalculator();
-
-        for (int i = 0; i < corners.length; i++) corners[i] = new VectorM3f(0, 0, 0);
-        for (int i = 0; i < rawUvs.length; i++) rawUvs[i] = new VectorM2f(0, 0);
     }
 
     public void render(BlockNeighborhood block, Variant variant, TileModelView blockModel, Color color) {
+        BakedVariant baked = bakedVariants.get(variant);
+        if (baked == null) {
+            Model modelResource = variant.getModel().getResource(resourcePack::getModel);
+            if (modelResource == null) return;
+
+            baked = BakedVariant.bake(variant, modelResource, resourcePack, textureGallery);
+            bakedVariants.put(variant, baked);
+        }
+
         this.block = block;
+        this.baked = baked;
         this.blockModel = blockModel;
         this.blockColor = color;
         this.blockColorOpacity = 0f;
-        this.variant = variant;
-        this.modelResource = variant.getModel().getResource(resourcePack::getModel);
-
-        if (this.modelResource == null) return;
 
         this.tintColor.set(0, 0, 0, -1, true);
 
         // render model
         int modelStart = blockModel.getStart();
 
-        Element[] elements = modelResource.getElements();
-        if (elements != null) {
-            for (Element element : elements) {
-                buildModelElementResource(element, blockModel.initialize());
-            }
+        blockModel.initialize();
+        for (int face = 0; face < baked.faceCount; face++) {
+            renderFace(face);
         }
 
         if (color.a > 0) {
@@ -114,10 +106,6 @@ public void render(BlockNeighborhood block, Variant variant, TileModelView block
 
         blockModel.initialize(modelStart);
 
-        // apply model-transform
-        if (variant.isTransformed())
-            blockModel.transform(variant.getTransformMatrix());
-
         //random offset
         if (block.getProperties().isRandomOffset()){
             float dx = (hashToFloat(block.getX(), block.getZ(), 123984) - 0.5f) * 0.75f;
@@ -127,234 +115,50 @@ public void render(BlockNeighborhood block, Variant variant, TileModelView block
 
     }
 
-    private final MatrixM4f modelElementTransform = new MatrixM4f();
-    private void buildModelElementResource(Element element, TileModelView blockModel) {
-
-        //create faces
-        Vector3f from = element.getFrom();
-        Vector3f to = element.getTo();
-
-        float
-                minX = Math.min(from.getX(), to.getX()),
-                minY = Math.min(from.getY(), to.getY()),
-                minZ = Math.min(from.getZ(), to.getZ()),
-                maxX = Math.max(from.getX(), to.getX()),
-                maxY = Math.max(from.getY(), to.getY()),
-                maxZ = Math.max(from.getZ(), to.getZ());
-
-        VectorM3f[] c = corners;
-        c[0].x = minX; c[0].y = minY; c[0].z = minZ;
-        c[1].x = minX; c[1].y = minY; c[1].z = maxZ;
-        c[2].x = maxX; c[2].y = minY; c[2].z = minZ;
-        c[3].x = maxX; c[3].y = minY; c[3].z = maxZ;
-        c[4].x = minX; c[4].y = maxY; c[4].z = minZ;
-        c[5].x = minX; c[5].y = maxY; c[5].z = maxZ;
-        c[6].x = maxX; c[6].y = maxY; c[6].z = minZ;
-        c[7].x = maxX; c[7].y = maxY; c[7].z = maxZ;
-
-        int modelStart = blockModel.getStart();
-        createElementFace(element, Direction.DOWN, c[0], c[2], c[3], c[1]);
-        createElementFace(element, Direction.UP, c[5], c[7], c[6], c[4]);
-        createElementFace(element, Direction.NORTH, c[2], c[0], c[4], c[6]);
-        createElementFace(element, Direction.SOUTH, c[1], c[3], c[7], c[5]);
-        createElementFace(element, Direction.WEST, c[0], c[1], c[5], c[4]);
-        createElementFace(element, Direction.EAST, c[3], c[2], c[6], c[7]);
-        blockModel.initialize(modelStart);
-
-        //rotate and scale down
-        blockModel.transform(modelElementTransform
-                .copy(element.getRotation().getMatrix())
-                .scale(BLOCK_SCALE, BLOCK_SCALE, BLOCK_SCALE)
-        );
-    }
-
-    private final VectorM3f faceRotationVector = new VectorM3f(0, 0, 0);
-
-    // =================================================================================================================
-    // region ## REFACTORED createElementFace AND HELPERS ##
-    //
-    // Code Smell Code [java:S6541] Brain Method
-    // single-responsibility methods to reduce complexity and improve readability.
-    // =================================================================================================================
-
-    /**
-     * A simple data class to hold sky and block light values together.
-     */
-    private static class FaceLight {
-        final int skyLight;
-        final int blockLight;
-
-        public FaceLight(int skyLight, int blockLight) {
-            this.skyLight = skyLight;
-            this.blockLight = blockLight;
-        }
-    }
-
-    /**
-     * Main method to create a face of a model element. It now orchestrates calls to helper methods.
-     */
-    private void createElementFace(Element element, Direction faceDir, VectorM3f c0, VectorM3f c1, VectorM3f c2, VectorM3f c3) {
-        Face face = element.getFaces().get(faceDir);
-        if (face == null) return;
-
-        // --- Step 1: Lighting & Culling ---
-        FaceLight faceLight = calculateLight(faceDir);
-        if (shouldRemoveInCave(faceLight)) return;
-
-        calculateFaceRotationVector(element, faceDir); // Sets the field faceRotationVector
-        if (shouldCullFace(face, faceRotationVector)) return;
-
-        // --- Step 2: Initialize Model and Set Positions ---
-        blockModel.initialize();
-        blockModel.add(2); // 2 triangles per face
-        int face1 = blockModel.getStart();
-        int face2 = face1 + 1;
-        setFacePositions(face1, face2, c0, c1, c2, c3);
-
-        // --- Step 3: Material and Texture ---
-        ResourcePath<Texture> texturePath = face.getTexture().getTexturePath(modelResource.getTextures()::get);
-        setTextureForFaces(face1, face2, texturePath);
+    private void renderFace(int face) {
 
-        // --- Step 4: UVs and Tinting ---
-        VectorM2f[] finalUvs = calculateUvCoordinates(face, faceDir);
-        setUvsForFaces(face1, face2, finalUvs);
-        applyFaceTint(face, face1, face2);
-
-        // --- Step 5: Light and Ambient Occlusion ---
-        applyLightToFaces(face1, face2, faceLight, element.getLightEmission());
-        applyAmbientOcclusion(face1, face2, c0, c1, c2, c3, faceDir);
-
-        // --- Step 6: Update Final Map Color ---
-        updateMapColor(texturePath, faceRotationVector, faceLight);
-    }
-
-    /**
-     * Calculates the effective sunlight and blocklight for a face.
-     */
-    private FaceLight calculateLight(Direction faceDir) {
-        ExtendedBlock facedBlockNeighbor = getRotationRelativeBlock(faceDir);
+        // light & culling
         LightData blockLightData = block.getLightData();
-        LightData facedLightData = facedBlockNeighbor.getLightData();
+        LightData facedLightData = getNeighborLightData(baked.lightNeighbors, face * 3);
 
         int sunLight = Math.max(blockLightData.getSkyLight(), facedLightData.getSkyLight());
         int blockLight = Math.max(blockLightData.getBlockLight(), facedLightData.getBlockLight());
 
-        return new FaceLight(sunLight, blockLight);
-    }
-
-    /**
-     * Checks if the face should be removed based on cave-rendering settings.
-     */
-    private boolean shouldRemoveInCave(FaceLight faceLight) {
-        if (!block.isRemoveIfCave()) return false;
+        if (shouldRemoveInCave(sunLight, blockLight)) return;
+        if (renderSettings.isRenderTopOnly() && baked.normalY[face] < 0.01) return;
+        if (baked.culled[face] && shouldCullFace(face)) return;
 
-        int lightLevel = renderSettings.isCaveDetectionUsesBlockLight()
-                ? Math.max(faceLight.blockLight, faceLight.skyLight)
-                : faceLight.skyLight;
-
-        return lightLevel == 0;
-    }
-
-    /**
-     * Calculates the rotated direction vector for a face and stores it in the class field `faceRotationVector`.
-     */
-    private void calculateFaceRotationVector(Element element, Direction faceDir) {
-        Vector3i faceDirVector = faceDir.toVector();
-        faceRotationVector.set(
-                faceDirVector.getX(),
-                faceDirVector.getY(),
-                faceDirVector.getZ()
-        );
-        faceRotationVector.rotateAndScale(element.getRotation().getMatrix());
-        makeRotationRelative(faceRotationVector);
-    }
-
-    /**
-     * Determines if a face should be culled based on its direction or cullface properties.
-     */
-    private boolean shouldCullFace(Face face, VectorM3f faceRotationVec) {
-        if (renderSettings.isRenderTopOnly() && faceRotationVec.y < 0.01) return true;
-
-        if (face.getCullface() != null) {
-            ExtendedBlock b = getRotationRelativeBlock(face.getCullface());
-            BlockProperties p = b.getProperties();
-            if (p.isCulling()) return true;
-            return p.getCullingIdentical() && b.getBlockState().equals(block.getBlockState());
-        }
-
-        return false;
-    }
-
-    /**
-     * Sets the vertex positions for the two triangles that make up the face.
-     */
-    private void setFacePositions(int face1, int face2, VectorM3f c0, VectorM3f c1, VectorM3f c2, VectorM3f c3) {
+        // geometry
+        int face1 = blockModel.add(2); // 2 triangles per face
+        int face2 = face1 + 1;
         TileModel tileModel = blockModel.getTileModel();
-        tileModel.setPositions(face1, c0.x, c0.y, c0.z, c1.x, c1.y, c1.z, c2.x, c2.y, c2.z);
-        tileModel.setPositions(face2, c0.x, c0.y, c0.z, c2.x, c2.y, c2.z, c3.x, c3.y, c3.z);
-    }
-
-    /**
-     * Sets the material (texture) for the face's triangles.
-     */
-    private void setTextureForFaces(int face1, int face2, ResourcePath<Texture> texturePath) {
-        int textureId = textureGallery.get(texturePath);
-        blockModel.getTileModel().setMaterialIndex(face1, textureId);
-        blockModel.getTileModel().setMaterialIndex(face2, textureId);
-    }
-
-    /**
-     * Calculates the final UV coordinates, accounting for face and UV-lock rotations.
-     */
-    private VectorM2f[] calculateUvCoordinates(Face face, Direction faceDir) {
-        Vector4f uvRaw = face.getUv();
-        rawUvs[0].set(uvRaw.getX() / 16f, uvRaw.getW() / 16f);
-        rawUvs[1].set(uvRaw.getZ() / 16f, uvRaw.getW() / 16f);
-        rawUvs[2].set(uvRaw.getZ() / 16f, uvRaw.getY() / 16f);
-        rawUvs[3].set(uvRaw.getX() / 16f, uvRaw.getY() / 16f);
-
-        int rotationSteps = Math.floorDiv(face.getRotation(), 90) % 4;
-        if (rotationSteps < 0) rotationSteps += 4;
-        for (int i = 0; i < 4; i++) {
-            uvs[i] = rawUvs[(rotationSteps + i) % 4];
-        }
 
-        if (variant.isUvlock() && variant.isTransformed()) {
-            Vector3i faceDirVector = faceDir.toVector();
-            float xRotSin = TrigMath.sin(variant.getX() * TrigMath.DEG_TO_RAD);
-            float xRotCos = TrigMath.cos(variant.getX() * TrigMath.DEG_TO_RAD);
+        float[] p = baked.positions;
+        int pi = face * 12;
+        tileModel.setPositions(face1,
+                p[pi    ], p[pi + 1], p[pi + 2],
+                p[pi + 3], p[pi + 4], p[pi + 5],
+                p[pi + 6], p[pi + 7], p[pi + 8]
+        );
+        tileModel.setPositions(face2,
+                p[pi    ], p[pi + 1], p[pi + 2],
+                p[pi + 6], p[pi + 7], p[pi + 8],
+                p[pi + 9], p[pi + 10], p[pi + 11]
+        );
 
-            float uvRotation = variant.getY() * (faceDirVector.getY() * xRotCos + faceDirVector.getZ() * xRotSin) +
-                    variant.getX() * (1 - faceDirVector.getY());
+        // material & uvs
+        int materialIndex = baked.materials[face];
+        tileModel.setMaterialIndex(face1, materialIndex);
+        tileModel.setMaterialIndex(face2, materialIndex);
 
-            if (uvRotation != 0) {
-                uvRotation = (float)(uvRotation * TrigMath.DEG_TO_RAD);
-                float cx = TrigMath.cos(uvRotation), cy = TrigMath.sin(uvRotation);
-                for (VectorM2f uv : uvs) {
-                    uv.translate(-0.5f, -0.5f).rotate(cx, cy).translate(0.5f, 0.5f);
-                }
-            }
-        }
+        float[] uv = baked.uvs;
+        int ui = face * 8;
+        tileModel.setUvs(face1, uv[ui    ], uv[ui + 1], uv[ui + 2], uv[ui + 3], uv[ui + 4], uv[ui + 5]);
+        tileModel.setUvs(face2, uv[ui    ], uv[ui + 1], uv[ui + 4], uv[ui + 5], uv[ui + 6], uv[ui + 7]);
 
-        return uvs;
-    }
-
-    /**
-     * Sets the UV coordinates for the face's triangles.
-     */
-    private void setUvsForFaces(int face1, int face2, VectorM2f[] finalUvs) {
-        TileModel tileModel = blockModel.getTileModel();
-        tileModel.setUvs(face1, finalUvs[0].x, finalUvs[0].y, finalUvs[1].x, finalUvs[1].y, finalUvs[2].x, finalUvs[2].y);
-        tileModel.setUvs(face2, finalUvs[0].x, finalUvs[0].y, finalUvs[2].x, finalUvs[2].y, finalUvs[3].x, finalUvs[3].y);
-    }
-
-    /**
-     * Applies tint color to the model faces if required.
-     */
-    private void applyFaceTint(Face face, int face1, int face2) {
-        TileModel tileModel = blockModel.getTileModel();
-        if (face.getTintindex() >= 0) {
-            if (tintColor.a < 0) { // Lazy load tint color
+        // tint
+        if (baked.tinted[face]) {
+            if (tintColor.a < 0) { // lazy load tint color
                 blockColorCalculator.getBlockColor(block, tintColor);
             }
             tileModel.setColor(face1, tintColor.r, tintColor.g, tintColor.b);
@@ -363,42 +167,49 @@ private void applyFaceTint(Face face, int face1, int face2) {
             tileModel.setColor(face1, 1f, 1f, 1f);
             tileModel.setColor(face2, 1f, 1f, 1f);
         }
-    }
 
-    /**
-     * Applies light data to the model faces.
-     */
-    private void applyLightToFaces(int face1, int face2, FaceLight faceLight, int lightEmission) {
-        TileModel tileModel = blockModel.getTileModel();
-        int emissiveBlockLight = Math.max(faceLight.blockLight, lightEmission);
+        // light
+        int emissiveBlockLight = Math.max(blockLight, baked.lightEmission[face]);
         tileModel.setBlocklight(face1, emissiveBlockLight);
         tileModel.setBlocklight(face2, emissiveBlockLight);
-        tileModel.setSunlight(face1, faceLight.skyLight);
-        tileModel.setSunlight(face2, faceLight.skyLight);
-    }
+        tileModel.setSunlight(face1, sunLight);
+        tileModel.setSunlight(face2, sunLight);
 
-    /**
-     * Calculates and applies ambient occlusion to the model faces.
-     */
-    private void applyAmbientOcclusion(int face1, int face2, VectorM3f c0, VectorM3f c1, VectorM3f c2, VectorM3f c3, Direction dir) {
+        // ambient occlusion
         float ao0 = 1f, ao1 = 1f, ao2 = 1f, ao3 = 1f;
-        if (modelResource.isAmbientocclusion()) {
-            ao0 = testAo(c0, dir);
-            ao1 = testAo(c1, dir);
-            ao2 = testAo(c2, dir);
-            ao3 = testAo(c3, dir);
+        if (baked.ambientOcclusion) {
+            int vertex = face * 4;
+            ao0 = testAo(vertex);
+            ao1 = testAo(vertex + 1);
+            ao2 = testAo(vertex + 2);
+            ao3 = testAo(vertex + 3);
+        }
+        tileModel.setAOs(face1, ao0, ao1, ao2);
+        tileModel.setAOs(face2, ao0, ao2, ao3);
+
+        // map color
+        if (baked.normalY[face] > 0.01) {
+            updateMapColor(baked.textures[face], sunLight, blockLight);
         }
-        blockModel.getTileModel().setAOs(face1, ao0, ao1, ao2);
-        blockModel.getTileModel().setAOs(face2, ao0, ao2, ao3);
     }
 
-    /**
-     * Updates the aggregate map color if the face is pointing upwards.
-     */
-    private void updateMapColor(ResourcePath<Texture> texturePath, VectorM3f faceRotationVec, FaceLight faceLight) {
-        if (faceRotationVec.y <= 0.01 || texturePath == null) return;
+    private boolean shouldRemoveInCave(int sunLight, int blockLight) {
+        if (!block.isRemoveIfCave()) return false;
 
-        Texture texture = texturePath.getResource(resourcePack::getTexture);
+        int lightLevel = renderSettings.isCaveDetectionUsesBlockLight()
+                ? Math.max(blockLight, sunLight)
+                : sunLight;
+
+        return lightLevel == 0;
+    }
+
+    private boolean shouldCullFace(int face) {
+        BlockProperties p = getNeighborProperties(baked.cullNeighbors, face * 3);
+        if (p.isCulling()) return true;
+        return p.getCullingIdentical() && getNeighborBlockState(baked.cullNeighbors, face * 3).equals(block.getBlockState());
+    }
+
+    private void updateMapColor(@Nullable Texture texture, int sunLight, int blockLight) {
         if (texture == null) return;
 
         mapColor.set(texture.getColorPremultiplied());
@@ -406,8 +217,8 @@ private void updateMapColor(ResourcePath<Texture> texturePath, VectorM3f faceRot
             mapColor.multiply(tintColor);
         }
 
-        // Apply light
-        float combinedLight = Math.max(faceLight.skyLight / 15f, faceLight.blockLight / 15f);
+        // apply light
+        float combinedLight = Math.max(sunLight / 15f, blockLight / 15f);
         combinedLight = (1 - renderSettings.getAmbientLight()) * combinedLight + renderSettings.getAmbientLight();
         mapColor.r *= combinedLight;
         mapColor.g *= combinedLight;
@@ -420,83 +231,29 @@ private void updateMapColor(ResourcePath<Texture> texturePath, VectorM3f faceRot
         blockColor.add(mapColor);
     }
 
-    // endregion
-    // =================================================================================================================
+    private float testAo(int vertex) {
+        int count = baked.aoNeighborCounts[vertex];
+        int offset = vertex * 4 * 3;
 
+        int occluding = 0;
+        for (int i = 0; i < count; i++) {
+            if (getNeighborProperties(baked.aoNeighbors, offset + i * 3).isOccluding()) occluding++;
+        }
 
-    private ExtendedBlock getRotationRelativeBlock(Direction direction){
-        return getRotationRelativeBlock(direction.toVector());
-    }
-
-    private ExtendedBlock getRotationRelativeBlock(Vector3i direction){
-        return getRotationRelativeBlock(
-                direction.getX(),
-                direction.getY(),
-                direction.getZ()
-        );
+        if (occluding > 3) occluding = 3;
+        return  Math.max(0f, Math.min(1f - occluding * 0.25f, 1f));
     }
 
-    private final VectorM3f rotationRelativeBlockDirection = new VectorM3f(0, 0, 0);
-    private ExtendedBlock getRotationRelativeBlock(int dx, int dy, int dz){
-        rotationRelativeBlockDirection.set(dx, dy, dz);
-        makeRotationRelative(rotationRelativeBlockDirection);
-
-        return block.getNeighborBlock(
-                Math.round(rotationRelativeBlockDirection.x),
-                Math.round(rotationRelativeBlockDirection.y),
-                Math.round(rotationRelativeBlockDirection.z)
-        );
+    private BlockState getNeighborBlockState(int[] offsets, int index) {
+        return block.getNeighborBlockState(offsets[index], offsets[index + 1], offsets[index + 2]);
     }
 
-    private void makeRotationRelative(VectorM3f direction){
-        if (variant.isTransformed())
-            direction.rotateAndScale(variant.getTransformMatrix());
+    private LightData getNeighborLightData(int[] offsets, int index) {
+        return block.getNeighborLightData(offsets[index], offsets[index + 1], offsets[index + 2]);
     }
 
-    private float testAo(VectorM3f vertex, Direction dir){
-        Vector3i dirVec = dir.toVector();
-        int occluding = 0;
-
-        int x = 0;
-        if (vertex.x == 16){
-            x = 1;
-        } else if (vertex.x == 0){
-            x = -1;
-        }
-
-        int y = 0;
-        if (vertex.y == 16){
-            y = 1;
-        } else if (vertex.y == 0){
-            y = -1;
-        }
-
-        int z = 0;
-        if (vertex.z == 16){
-            z = 1;
-        } else if (vertex.z == 0){
-            z = -1;
-        }
-
-
-        if (x * dirVec.getX() + y * dirVec.getY() > 0){
-            if (getRotationRelativeBlock(x, y, 0).getProperties().isOccluding()) occluding++;
-        }
-
-        if (x * dirVec.getX() + z * dirVec.getZ() > 0){
-            if (getRotationRelativeBlock(x, 0, z).getProperties().isOccluding()) occluding++;
-        }
-
-        if (y * dirVec.getY() + z * dirVec.getZ() > 0){
-            if (getRotationRelativeBlock(0, y, z).getProperties().isOccluding()) occluding++;
-        }
-
-        if (x * dirVec.getX() + y * dirVec.getY() + z * dirVec.getZ() > 0){
-            if (getRotationRelativeBlock(x, y, z).getProperties().isOccluding()) occluding++;
-        }
-
-        if (occluding > 3) occluding = 3;
-        return  Math.max(0f, Math.min(1f - occluding * 0.25f, 1f));
+    private BlockProperties getNeighborProperties(int[] offsets, int index) {
+        return block.getNeighborProperties(offsets[index], offsets[index + 1], offsets[index + 2]);
     }
 
     private static float hashToFloat(int x, int z, long seed) {
@@ -29,8 +29,11 @@
 import com.github.benmanes.caffeine.cache.LoadingCache;
 import de.bluecolored.bluemap.core.BlueMap;
 import de.bluecolored.bluemap.core.logger.Logger;
+import de.bluecolored.bluemap.core.map.TileUpdateListener;
+import de.bluecolored.bluemap.core.map.TileWriter;
 import de.bluecolored.bluemap.core.storage.GridStorage;
 import de.bluecolored.bluemap.core.util.Grid;
+import de.bluecolored.bluemap.core.util.PNGEncoder;
 import de.bluecolored.bluemap.core.util.Vector2iCache;
 import de.bluecolored.bluemap.core.util.math.Color;
 import org.jetbrains.annotations.Nullable;
@@ -41,6 +44,7 @@
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class LowresLayer {
 
@@ -50,28 +54,35 @@ public class LowresLayer {
     private static final Vector2iCache VECTOR_2_I_CACHE = new Vector2iCache();
 
     private final GridStorage storage;
+    private final TileWriter tileWriter;
 
     private final Grid tileGrid;
     private final int lodFactor;
 
     private final int lod;
+    private final PNGEncoder pngEncoder;
+    private final TileUpdateListener updateListener;
     private final LoadingCache<Vector2i, LowresTile> tileWeakInstanceCache;
     private final LoadingCache<Vector2i, LowresTile> tileCache;
     @Nullable private final LowresLayer nextLayer;
 
     private final Map<Vector2i, LowresTile> pendingChanges;
+    private final AtomicInteger failedSaves;
 
     public LowresLayer(
-            GridStorage storage, Grid tileGrid, int lodFactor,
-            int lod, @Nullable LowresLayer nextLayer
+            GridStorage storage, TileWriter tileWriter, Grid tileGrid, int lodFactor,
+            int lod, @Nullable LowresLayer nextLayer, PNGEncoder pngEncoder, TileUpdateListener updateListener
     ) {
         this.storage = storage;
+        this.tileWriter = tileWriter;
 
         this.tileGrid = tileGrid;
         this.lodFactor = lodFactor;
 
         this.lod = lod;
         this.nextLayer = nextLayer;
+        this.pngEncoder = pngEncoder;
+        this.updateListener = updateListener;
 
         // this extra cache makes sure that a tile instance is reused as long as it is still referenced somewhere ..
         // so always only one instance of the same lowres-tile exists
@@ -88,18 +99,40 @@ public LowresLayer(
                 .build(tileWeakInstanceCache::get);
 
         this.pendingChanges = new ConcurrentHashMap<>();
+        this.failedSaves = new AtomicInteger();
     }
 
+    /**
+     * Submits all pending tiles to the {@link TileWriter}.
+     * Use {@link TileWriter#flush()} to wait for the tiles to be written.
+     */
     public void save() {
-        pendingChanges.entrySet().removeIf(entry -> saveTile(entry.getKey(), entry.getValue()));
-        if (pendingChanges.size() >= DISCARD_THRESHOLD) {
-            Logger.global.logDebug("Discarding changes of " + pendingChanges.size() + " lowres-tiles that failed to save!");
+        int failed = failedSaves.getAndSet(0);
+        if (failed >= DISCARD_THRESHOLD) {
+            Logger.global.logDebug("Discarding changes of " + pendingChanges.size() + " lowres-tiles, " + failed + " tiles failed to save!");
             pendingChanges.clear();
+            return;
+        }
+
+        for (Map.Entry<Vector2i, LowresTile> entry : pendingChanges.entrySet()) {
+            Vector2i tilePos = entry.getKey();
+            LowresTile tile = entry.getValue();
+
+            // only one thread submits the tile, changes made after this are pending again
+            if (!pendingChanges.remove(tilePos, tile)) continue;
+
+            tileWriter.submit(storage, tilePos.getX(), tilePos.getY(), () -> {
+                if (!saveTile(tilePos, tile)) {
+                    pendingChanges.putIfAbsent(tilePos, tile);
+                    failedSaves.incrementAndGet();
+                }
+            });
         }
     }
 
     public void discard() {
         pendingChanges.clear();
+        failedSaves.set(0);
         tileCache.invalidateAll();
         tileWeakInstanceCache.invalidateAll();
     }
@@ -125,54 +158,66 @@ private boolean saveTile(Vector2i tilePos, LowresTile tile) {
 
         // save the tile
         try (OutputStream out = storage.write(tilePos.getX(), tilePos.getY())) {
-            tile.save(out);
+            tile.save(out, pngEncoder);
         } catch (IOException e) {
             Logger.global.logError("Failed to save tile " + tilePos + " (lod: " + lod + ")", e);
             return false;
         }
+        updateListener.onTileUpdate(lod, tilePos.getX(), tilePos.getY());
 
         if (this.nextLayer == null) return true;
 
         // write to next LOD (prepare for the most confusing grid-math you will ever see)
-        Color averageColor = new Color();
-        int averageHeight, averageBlockLight;
-        int count;
-
-        Color color = new Color();
-
         int nextLodTileX = Math.floorDiv(tilePos.getX(), lodFactor);
         int nextLodTileY = Math.floorDiv(tilePos.getY(), lodFactor);
-        Vector2i groupCount = new Vector2i(
-                Math.floorDiv(tileGrid.getGridSize().getX(), lodFactor),
-                Math.floorDiv(tileGrid.getGridSize().getY(), lodFactor)
-        );
-
-        for (int gX = 0; gX < groupCount.getX(); gX++) {
-            for (int gY = 0; gY < groupCount.getY(); gY++) {
-                averageColor.set(0, 0, 0, 0, true);
-                averageHeight = 0;
-                averageBlockLight = 0;
-                count = 0;
-                for (int x = 0; x < lodFactor; x++) {
-                    for (int y = 0; y < lodFactor; y++) {
-                        count++;
-                        averageColor.add(tile.getColor(gX * lodFactor + x, gY * lodFactor + y, color).premultiplied());
-                        averageHeight += tile.getHeight(gX * lodFactor + x, gY * lodFactor + y);
-                        averageBlockLight += tile.getBlockLight(gX * lodFactor + x, gY * lodFactor + y);
+        int groupCountX = Math.floorDiv(tileGrid.getGridSize().getX(), lodFactor);
+        int groupCountY = Math.floorDiv(tileGrid.getGridSize().getY(), lodFactor);
+        int count = lodFactor * lodFactor;
+
+        int[] data = tile.data;
+        int width = tile.width, heightOffset = tile.heightOffset;
+
+        for (int gX = 0; gX < groupCountX; gX++) {
+            for (int gY = 0; gY < groupCountY; gY++) {
+
+                // average the premultiplied colors, heights and block-lights of the group
+                int red = 0, green = 0, blue = 0, alpha = 0;
+                int averageHeight = 0, averageBlockLight = 0;
+                for (int y = 0; y < lodFactor; y++) {
+                    int i = (gY * lodFactor + y) * width + gX * lodFactor;
+                    for (int x = 0; x < lodFactor; x++, i++) {
+                        int color = data[i];
+                        int a = color >>> 24;
+                        red += ((color >> 16) & 0xFF) * a;
+                        green += ((color >> 8) & 0xFF) * a;
+                        blue += (color & 0xFF) * a;
+                        alpha += a;
+
+                        int heightAndLight = data[heightOffset + i];
+                        int height = heightAndLight & 0x0000FFFF;
+                        if (height > 0x00008000) height |= 0xFFFF0000;
+                        averageHeight += height;
+                        averageBlockLight += (heightAndLight & 0x00FF0000) >> 16;
                     }
                 }
-                averageColor.div(count);
-                averageHeight /= count;
-                averageBlockLight /= count;
+
+                int averageColor = 0;
+                if (alpha > 0) {
+                    averageColor =
+                            ((alpha / count) << 24) |
+                            ((red / alpha) << 16) |
+                            ((green / alpha) << 8) |
+                            (blue / alpha);
+                }
 
                 this.nextLayer.set(
                         nextLodTileX,
                         nextLodTileY,
-                        Math.floorMod(tilePos.getX(), lodFactor) * groupCount.getX() + gX,
-                        Math.floorMod(tilePos.getY(), lodFactor) * groupCount.getY() + gY,
+                        Math.floorMod(tilePos.getX(), lodFactor) * groupCountX + gX,
+                        Math.floorMod(tilePos.getY(), lodFactor) * groupCountY + gY,
                         averageColor,
-                        averageHeight,
-                        averageBlockLight
+                        averageHeight / count,
+                        averageBlockLight / count
                 );
             }
         }
@@ -180,34 +225,38 @@ private boolean saveTile(Vector2i tilePos, LowresTile tile) {
         return true;
     }
 
-    private LowresTile accessTile(int x, int z) {
+    private void setPixel(int x, int z, int pixelX, int pixelZ, int color, int height, int blockLight) {
         Vector2i tilePos = VECTOR_2_I_CACHE.get(x, z);
         LowresTile tile = tileCache.get(tilePos);
 
+        // unchanged pixels don't need the tile to be saved again
+        if (!tile.set(pixelX, pixelZ, color, height, blockLight)) return;
+
         if (pendingChanges.size() >= MAX_PENDING) save();
         pendingChanges.put(tilePos, tile);
-
-        return tile;
     }
 
     void set(int cellX, int cellZ, int pixelX, int pixelZ, Color color, int height, int blockLight) {
-        accessTile(cellX, cellZ)
-                .set(pixelX, pixelZ, color, height, blockLight);
+        set(cellX, cellZ, pixelX, pixelZ, color.straight().getInt(), height, blockLight);
+    }
+
+    /**
+     * Sets the (non-premultiplied) ARGB-color, height and block-light of a pixel
+     */
+    void set(int cellX, int cellZ, int pixelX, int pixelZ, int color, int height, int blockLight) {
+        setPixel(cellX, cellZ, pixelX, pixelZ, color, height, blockLight);
 
         // for seamless edges
         if (pixelX == 0) {
-            accessTile(cellX - 1, cellZ)
-                    .set(tileGrid.getGridSize().getX(), pixelZ, color, height, blockLight);
+            setPixel(cellX - 1, cellZ, tileGrid.getGridSize().getX(), pixelZ, color, height, blockLight);
         }
 
         if (pixelZ == 0) {
-            accessTile(cellX, cellZ - 1)
-                    .set(pixelX, tileGrid.getGridSize().getY(), color, height, blockLight);
+            setPixel(cellX, cellZ - 1, pixelX, tileGrid.getGridSize().getY(), color, height, blockLight);
         }
 
         if (pixelX == 0 && pixelZ == 0) {
-            accessTile(cellX - 1, cellZ - 1)
-                    .set(tileGrid.getGridSize().getX(), tileGrid.getGridSize().getY(), color, height, blockLight);
+            setPixel(cellX - 1, cellZ - 1, tileGrid.getGridSize().getX(), tileGrid.getGridSize().getY(), color, height, blockLight);
         }
     }
 
@@ -25,6 +25,7 @@
 package de.bluecolored.bluemap.core.map.lowres;
 
 import com.flowpowered.math.vector.Vector2i;
+import de.bluecolored.bluemap.core.util.PNGEncoder;
 import de.bluecolored.bluemap.core.util.math.Color;
 
 import javax.imageio.ImageIO;
@@ -40,60 +41,85 @@ public class LowresTile {
 
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 
-    private final BufferedImage texture;
     private final Vector2i size;
 
+    /**
+     * The ARGB-pixels of the tile-image (row by row), the color in the upper half and the height and block-light
+     * in the lower half
+     */
+    final int[] data;
+    final int width, heightOffset;
+
     public LowresTile(Vector2i tileSize) {
         this.size = tileSize.add(1, 1); // add 1 for seamless edges
-        this.texture = new BufferedImage(this.size.getX(), this.size.getY() * 2, BufferedImage.TYPE_INT_ARGB);
+        this.width = size.getX();
+        this.heightOffset = size.getX() * size.getY();
+        this.data = new int[heightOffset * 2];
     }
 
     public LowresTile(Vector2i tileSize, InputStream in) throws IOException {
-        this.size = tileSize.add(1, 1); // add 1 for seamless edges
-        this.texture = ImageIO.read(in);
+        this(tileSize);
 
-        if (this.texture == null) {
+        BufferedImage texture = ImageIO.read(in);
+        if (texture == null) {
             throw new IOException("No registered ImageReader is able to read the image-stream");
         }
 
-        if (this.texture.getWidth() != this.size.getX() || this.texture.getHeight() != this.size.getY() * 2) {
+        if (texture.getWidth() != this.size.getX() || texture.getHeight() != this.size.getY() * 2) {
             throw new IOException("Size of tile does not match");
         }
+
+        texture.getRGB(0, 0, texture.getWidth(), texture.getHeight(), data, 0, width);
     }
 
-    public void set(int x, int z, Color color, int height, int blockLight) {
+    /**
+     * Sets the color, height and block-light of a pixel and returns <code>true</code> if the pixel has been changed
+     */
+    public boolean set(int x, int z, Color color, int height, int blockLight) {
+        return set(x, z, color.straight().getInt(), height, blockLight);
+    }
+
+    /**
+     * Sets the (non-premultiplied) ARGB-color, height and block-light of a pixel and returns <code>true</code> if the
+     * pixel has been changed
+     */
+    public boolean set(int x, int z, int argb, int height, int blockLight) {
+        int heightAndLight =
+                (height & 0x0000FFFF) |
+                ((blockLight << 16) & 0x00FF0000) |
+                0xFF000000;
+
         lock.readLock().lock();
         try {
-            texture.setRGB(x, z, color.straight().getInt());
-            texture.setRGB(x, size.getY() + z,
-                    (height & 0x0000FFFF) |
-                            ((blockLight << 16) & 0x00FF0000) |
-                            0xFF000000
-            );
+            int i = z * width + x;
+            if (data[i] == argb && data[heightOffset + i] == heightAndLight) return false;
+            data[i] = argb;
+            data[heightOffset + i] = heightAndLight;
+            return true;
         } finally {
             lock.readLock().unlock();
         }
     }
 
     public Color getColor(int x, int z, Color target) {
-        return target.set(texture.getRGB(x, z));
+        return target.set(data[z * width + x]);
     }
 
     public int getHeight(int x, int z) {
-        int height = texture.getRGB(x, size.getY() + z) & 0x0000FFFF;
+        int height = data[heightOffset + z * width + x] & 0x0000FFFF;
         if (height > 0x00008000)
             return height | 0xFFFF0000;
         return height;
     }
 
     public int getBlockLight(int x, int z) {
-        return (texture.getRGB(x, size.getY() + z) & 0x00FF0000) >> 16;
+        return (data[heightOffset + z * width + x] & 0x00FF0000) >> 16;
     }
 
-    public void save(OutputStream out) throws IOException {
+    public void save(OutputStream out, PNGEncoder encoder) throws IOException {
         lock.writeLock().lock();
         try {
-            ImageIO.write(texture, "png", out);
+            encoder.encode(data, size.getX(), size.getY() * 2, out);
         } finally {
             lock.writeLock().unlock();
         }
@@ -25,8 +25,11 @@
 package de.bluecolored.bluemap.core.map.lowres;
 
 import de.bluecolored.bluemap.core.map.TileMetaConsumer;
+import de.bluecolored.bluemap.core.map.TileUpdateListener;
+import de.bluecolored.bluemap.core.map.TileWriter;
 import de.bluecolored.bluemap.core.storage.MapStorage;
 import de.bluecolored.bluemap.core.util.Grid;
+import de.bluecolored.bluemap.core.util.PNGEncoder;
 import de.bluecolored.bluemap.core.util.math.Color;
 
 public class LowresTileManager implements TileMetaConsumer {
@@ -34,23 +37,39 @@ public class LowresTileManager implements TileMetaConsumer {
     private final Grid tileGrid;
     private final int lodFactor, lodCount;
 
+    private final TileWriter tileWriter;
     private final LowresLayer[] layers;
 
-    public LowresTileManager(MapStorage storage, Grid tileGrid, int lodCount, int lodFactor) {
+    public LowresTileManager(MapStorage storage, Grid tileGrid, int lodCount, int lodFactor, int compressionLevel) {
+        this(storage, new TileWriter("lowres"), tileGrid, lodCount, lodFactor, compressionLevel, TileUpdateListener.NONE);
+    }
+
+    /**
+     * @param tileWriter the writer that the tiles of this map are written with
+     * @param updateListener gets notified about each tile that has been written
+     */
+    public LowresTileManager(MapStorage storage, TileWriter tileWriter, Grid tileGrid, int lodCount, int lodFactor, int compressionLevel, TileUpdateListener updateListener) {
+        this.tileWriter = tileWriter;
         this.tileGrid = tileGrid;
         this.lodFactor = lodFactor;
         this.lodCount = lodCount;
 
+        PNGEncoder pngEncoder = new PNGEncoder(compressionLevel);
         this.layers = new LowresLayer[lodCount];
         for (int i = lodCount - 1; i >= 0; i--) {
-            this.layers[i] = new LowresLayer(storage.lowresTiles(i + 1), tileGrid, lodFactor, i + 1,
-                    (i == lodCount - 1) ? null : layers[i + 1]);
+            this.layers[i] = new LowresLayer(storage.lowresTiles(i + 1), tileWriter, tileGrid, lodFactor, i + 1,
+                    (i == lodCount - 1) ? null : layers[i + 1], pngEncoder, updateListener);
         }
     }
 
+    /**
+     * Saves all pending tiles and waits until they are written.
+     */
     public synchronized void save() {
+        // flush after each layer, because saving a tile updates the next layer
         for (LowresLayer layer : this.layers) {
             layer.save();
+            tileWriter.flush();
         }
     }
 
@@ -25,6 +25,10 @@
 package de.bluecolored.bluemap.core.map.renderstate;
 
 import com.flowpowered.math.vector.Vector2i;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import de.bluecolored.bluemap.core.BlueMap;
 import de.bluecolored.bluemap.core.logger.Logger;
 import de.bluecolored.bluemap.core.storage.GridStorage;
 import de.bluecolored.bluemap.core.storage.compression.CompressedInputStream;
@@ -34,12 +38,23 @@
 import de.bluecolored.bluenbt.BlueNBT;
 import de.bluecolored.bluenbt.TypeToken;
 import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.LinkedHashMap;
 import java.util.Map;
-
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * Stores cells of render-state information in a {@link GridStorage}.<br>
+ * A bounded number of cells is kept in a concurrent cache. Modified cells that are evicted from the cache are saved
+ * in the background (write-behind), if such a cell is requested again before it has been written, the pending
+ * instance is reused instead of loading the outdated cell from storage.<br>
+ * <br>
+ * Cells must only be modified through {@link #update(int, int, Function)}, which keeps the cell in the cache while it
+ * is being modified and never modifies a cell while it is being saved.
+ */
 abstract class CellStorage<T extends CellStorage.Cell> {
 
     private static final BlueNBT BLUE_NBT = new BlueNBT();
@@ -48,45 +63,92 @@
         BLUE_NBT.register(TypeToken.of(TileState[].class), new PalettedArrayAdapter<>(BLUE_NBT, TileState.class));
     }
 
-    private static final int CACHE_SIZE = 4;
+    static final int DEFAULT_CACHE_SIZE = 16;
+
+    private static final ThreadPoolExecutor SAVE_EXECUTOR = createSaveExecutor();
 
     @Getter private final GridStorage storage;
     private final Class<T> type;
-    private final LinkedHashMap<Vector2i, T> cells = new LinkedHashMap<>(
-            8,
-            0.75f,
-            true
-    ) {
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<Vector2i, T> eldest) {
-            if (this.size() <= CACHE_SIZE) return false;
-            saveCell(eldest.getKey(), eldest.getValue());
-            return true;
-        }
-    };
+    private final Cache<Vector2i, T> cells;
+    private final Map<Vector2i, T> pendingSaves = new ConcurrentHashMap<>();
 
     public CellStorage(GridStorage storage, Class<T> type) {
+        this(storage, type, DEFAULT_CACHE_SIZE);
+    }
+
+    public CellStorage(GridStorage storage, Class<T> type, int cacheSize) {
+        if (cacheSize < 1) throw new IllegalArgumentException("cacheSize has to be at least 1");
+
         this.storage = storage;
         this.type = type;
+        this.cells = Caffeine.newBuilder()
+                .executor(Runnable::run)
+                .maximumSize(cacheSize)
+                .evictionListener(this::onEviction)
+                .build();
     }
 
-    public synchronized void save() {
-        cells.forEach(this::saveCell);
+    /**
+     * Saves all modified cells and waits until all pending (write-behind) saves are completed.
+     */
+    public void save() {
+        cells.asMap().forEach(this::saveCell);
+        awaitPendingSaves();
     }
 
-    public synchronized void reset() {
-        cells.clear();
+    /**
+     * Discards all cached cells and pending saves without saving them.
+     */
+    public void reset() {
+        cells.invalidateAll();
+        pendingSaves.clear();
+        awaitPendingSaves();
     }
 
     T cell(int x, int z) {
         return cell(new Vector2i(x, z));
     }
 
-    synchronized T cell(Vector2i pos) {
-        return cells.computeIfAbsent(pos, this::loadCell);
+    T cell(Vector2i pos) {
+        return cells.get(pos, this::loadCell);
     }
 
-    private synchronized T loadCell(Vector2i pos) {
+    /**
+     * Modifies the cell at the given position.<br>
+     * The modification runs while the cache-entry of the cell is locked, so the cell can not be evicted (and the
+     * eviction can not miss the modification) until it is done. It also holds the cell's monitor, so the cell is not
+     * modified while it is being saved.
+     */
+    <R> R update(int x, int z, Function<? super T, R> modification) {
+        Object[] result = new Object[1];
+        cells.asMap().compute(new Vector2i(x, z), (pos, cell) -> {
+            if (cell == null) cell = loadCell(pos);
+            synchronized (cell) {
+                result[0] = modification.apply(cell);
+            }
+            return cell;
+        });
+
+        //noinspection unchecked
+        return (R) result[0];
+    }
+
+    /**
+     * Returns the cell if it is currently cached or waiting to be saved, without loading it from storage
+     */
+    @Nullable T cellIfPresent(int x, int z) {
+        Vector2i pos = new Vector2i(x, z);
+        T cell = cells.getIfPresent(pos);
+        if (cell != null) return cell;
+        return pendingSaves.get(pos);
+    }
+
+    private T loadCell(Vector2i pos) {
+
+        // the cell has been evicted but is not yet saved, so we take it back and cancel the save
+        T pending = pendingSaves.remove(pos);
+        if (pending != null) return pending;
+
         try (CompressedInputStream in = storage.read(pos.getX(), pos.getY())) {
             if (in != null)
                 return BLUE_NBT.read(in.decompress(), type);
@@ -108,15 +170,70 @@ private synchronized T loadCell(Vector2i pos) {
 
     protected abstract T createNewCell();
 
-    private synchronized void saveCell(Vector2i pos, T cell) {
+    /**
+     * Called synchronously while a cell is evicted (with its cache-entry locked), so the cell is registered as pending
+     * before it can be loaded again, and no modification can happen between checking and registering the cell
+     */
+    private void onEviction(Vector2i pos, T cell, RemovalCause cause) {
+        if (pos == null || cell == null || !cell.isModified()) return;
+
+        pendingSaves.put(pos, cell);
+        try {
+            SAVE_EXECUTOR.execute(() -> savePendingCell(pos, cell));
+        } catch (RejectedExecutionException ex) {
+            savePendingCell(pos, cell);
+        }
+    }
+
+    private void savePendingCell(Vector2i pos, T cell) {
+        // skip if the cell has been loaded back into the cache or the storage has been reset
+        if (pendingSaves.get(pos) != cell) return;
+
+        saveCell(pos, cell);
+        pendingSaves.remove(pos, cell);
+    }
+
+    private void saveCell(Vector2i pos, T cell) {
         if (!cell.isModified()) return;
-        try (OutputStream in = storage.write(pos.getX(), pos.getY())) {
-            BLUE_NBT.write(cell, in, type);
-        } catch (IOException ex) {
-            Logger.global.logError("Failed to save render-state cell " + pos, ex);
+
+        // cells are saved one at a time, so a cell can't be written twice concurrently or be modified while writing it
+        synchronized (cell) {
+            try (OutputStream in = storage.write(pos.getX(), pos.getY())) {
+                BLUE_NBT.write(cell, in, type);
+            } catch (IOException ex) {
+                Logger.global.logError("Failed to save render-state cell " + pos, ex);
+            }
         }
     }
 
+    private static void awaitPendingSaves() {
+        // the executor works through its queue in order, so a no-op task completes after all saves submitted before
+        try {
+            SAVE_EXECUTOR.submit(() -> {}).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | RejectedExecutionException ex) {
+            Logger.global.logError("Failed to wait for pending render-state saves", ex);
+        }
+    }
+
+    private static ThreadPoolExecutor createSaveExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                1, 1,
+                10, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "BlueMap-RenderStateWriter");
+                    thread.setDaemon(true);
+                    // use current classloader, this fixes ClassLoading issues with forge
+                    thread.setContextClassLoader(BlueMap.class.getClassLoader());
+                    return thread;
+                }
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     public interface Cell {
         boolean isModified();
     }
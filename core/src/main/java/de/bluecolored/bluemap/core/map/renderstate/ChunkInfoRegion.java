@@ -26,8 +26,12 @@
 
 import de.bluecolored.bluenbt.NBTName;
 import de.bluecolored.bluenbt.NBTPostDeserialize;
+import lombok.AllArgsConstructor;
+import lombok.Data;
 import lombok.Getter;
 
+import java.util.function.IntSupplier;
+
 import static de.bluecolored.bluemap.core.map.renderstate.MapChunkState.SHIFT;
 
 public class ChunkInfoRegion implements CellStorage.Cell {
@@ -36,8 +40,13 @@ public class ChunkInfoRegion implements CellStorage.Cell {
     static final int REGION_MASK = REGION_LENGTH - 1;
     static final int CHUNKS_PER_REGION = REGION_LENGTH * REGION_LENGTH;
 
+    // these are the chunk-timestamps, the key is still named after the "hashes" they used to be the only part of,
+    // keeping it means that existing render-states stay valid (and are still readable by older versions)
     @NBTName("chunk-hashes")
-    private int[] chunkHashes;
+    private int[] timestamps;
+
+    @NBTName("content-hashes")
+    private int[] contentHashes;
 
     @Getter
     private transient boolean modified;
@@ -46,30 +55,83 @@ private ChunkInfoRegion() {}
 
     @NBTPostDeserialize
     public void init() {
-        if (chunkHashes == null || chunkHashes.length != CHUNKS_PER_REGION)
-            chunkHashes = new int[CHUNKS_PER_REGION];
+        if (timestamps == null || timestamps.length != CHUNKS_PER_REGION)
+            timestamps = new int[CHUNKS_PER_REGION];
+
+        if (contentHashes == null || contentHashes.length != CHUNKS_PER_REGION)
+            contentHashes = new int[CHUNKS_PER_REGION];
+    }
+
+    public ChunkInfo get(int x, int z) {
+        int index = index(x, z);
+        return new ChunkInfo(
+                timestamps[index],
+                contentHashes[index]
+        );
+    }
+
+    public int getTimestamp(int x, int z) {
+        return timestamps[index(x, z)];
     }
 
-    public int get(int x, int z) {
-        return chunkHashes[index(x, z)];
+    public int getContentHash(int x, int z) {
+        return contentHashes[index(x, z)];
     }
 
-    public int set(int x, int z, int hash) {
+    /**
+     * Checks if the chunk is unchanged since it was last rendered.<br>
+     * That is the case if the chunk has not been saved since (same timestamp), or if it has been saved but its
+     * content did not change. The content-hash is only requested if the timestamp changed and a content-hash for
+     * the last render is known.
+     */
+    public boolean isUnchanged(int x, int z, int timestamp, IntSupplier contentHash) {
         int index = index(x, z);
-        int previous = chunkHashes[index];
+        if (timestamps[index] == timestamp) return true;
+
+        int lastContentHash = contentHashes[index];
+        return lastContentHash != 0 && lastContentHash == contentHash.getAsInt();
+    }
 
-        chunkHashes[index] = hash;
+    public ChunkInfo set(int x, int z, ChunkInfo info) {
+        int index = index(x, z);
 
-        if (previous != hash)
-            modified = true;
+        ChunkInfo previous = new ChunkInfo(
+                timestamps[index],
+                contentHashes[index]
+        );
 
+        set(x, z, info.getTimestamp(), info.getContentHash());
         return previous;
     }
 
+    public void set(int x, int z, int timestamp, int contentHash) {
+        int index = index(x, z);
+
+        if (timestamps[index] == timestamp && contentHashes[index] == contentHash)
+            return;
+
+        timestamps[index] = timestamp;
+        contentHashes[index] = contentHash;
+        modified = true;
+    }
+
     private static int index(int x, int z) {
         return (z & REGION_MASK) << SHIFT | (x & REGION_MASK);
     }
 
+    /**
+     * The state of a chunk when it was last rendered.<br>
+     * The content-hash is 0 if it is unknown.
+     */
+    @Data
+    @AllArgsConstructor
+    public static class ChunkInfo {
+
+        private int timestamp;
+        private int contentHash;
+
+    }
+
     public static ChunkInfoRegion create() {
         ChunkInfoRegion region = new ChunkInfoRegion();
         region.init();
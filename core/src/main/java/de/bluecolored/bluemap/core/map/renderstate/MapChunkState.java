@@ -26,6 +26,8 @@
 
 import de.bluecolored.bluemap.core.storage.GridStorage;
 
+import java.util.function.IntSupplier;
+
 public class MapChunkState extends CellStorage<ChunkInfoRegion> {
 
     static final int SHIFT = 7;
@@ -34,12 +36,38 @@ public MapChunkState(GridStorage storage) {
         super(storage, ChunkInfoRegion.class);
     }
 
-    public int get(int x, int z) {
+    public MapChunkState(GridStorage storage, int cacheSize) {
+        super(storage, ChunkInfoRegion.class, cacheSize);
+    }
+
+    public ChunkInfoRegion.ChunkInfo get(int x, int z) {
         return cell(x >> SHIFT, z >> SHIFT).get(x, z);
     }
 
-    public synchronized int set(int x, int z, int hash) {
-        return cell(x >> SHIFT, z >> SHIFT).set(x, z, hash);
+    public int getTimestamp(int x, int z) {
+        return cell(x >> SHIFT, z >> SHIFT).getTimestamp(x, z);
+    }
+
+    public int getContentHash(int x, int z) {
+        return cell(x >> SHIFT, z >> SHIFT).getContentHash(x, z);
+    }
+
+    /**
+     * @see ChunkInfoRegion#isUnchanged(int, int, int, IntSupplier)
+     */
+    public boolean isUnchanged(int x, int z, int timestamp, IntSupplier contentHash) {
+        return cell(x >> SHIFT, z >> SHIFT).isUnchanged(x, z, timestamp, contentHash);
+    }
+
+    public ChunkInfoRegion.ChunkInfo set(int x, int z, ChunkInfoRegion.ChunkInfo info) {
+        return update(x >> SHIFT, z >> SHIFT, cell -> cell.set(x, z, info));
+    }
+
+    public void set(int x, int z, int timestamp, int contentHash) {
+        update(x >> SHIFT, z >> SHIFT, cell -> {
+            cell.set(x, z, timestamp, contentHash);
+            return null;
+        });
     }
 
     @Override
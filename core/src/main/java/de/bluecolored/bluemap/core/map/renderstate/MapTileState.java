@@ -26,34 +26,77 @@
 
 import de.bluecolored.bluemap.core.storage.GridStorage;
 import de.bluecolored.bluemap.core.util.Grid;
-import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class MapTileState extends CellStorage<TileInfoRegion> {
 
     static final int SHIFT = 5;
     public static final Grid GRID = new Grid(1 << SHIFT);
 
-    @Getter private int lastRenderTime = -1;
+    private final AtomicInteger lastRenderTime = new AtomicInteger(-1);
 
     public MapTileState(GridStorage storage) {
         super(storage, TileInfoRegion.class);
     }
 
+    public MapTileState(GridStorage storage, int cacheSize) {
+        super(storage, TileInfoRegion.class, cacheSize);
+    }
+
+    public int getLastRenderTime() {
+        return lastRenderTime.get();
+    }
+
     public TileInfoRegion.TileInfo get(int x, int z) {
         return cell(x >> SHIFT, z >> SHIFT).get(x, z);
     }
 
-    public synchronized TileInfoRegion.TileInfo set(int x, int z, TileInfoRegion.TileInfo info) {
-        TileInfoRegion.TileInfo old = cell(x >> SHIFT, z >> SHIFT).set(x, z, info);
+    public int getRenderTime(int x, int z) {
+        return cell(x >> SHIFT, z >> SHIFT).getRenderTime(x, z);
+    }
 
-        if (info.getRenderTime() > lastRenderTime)
-            lastRenderTime = info.getRenderTime();
+    public TileState getState(int x, int z) {
+        return cell(x >> SHIFT, z >> SHIFT).getState(x, z);
+    }
 
+    public TileInfoRegion.TileInfo set(int x, int z, TileInfoRegion.TileInfo info) {
+        TileInfoRegion.TileInfo old = update(x >> SHIFT, z >> SHIFT, cell -> cell.set(x, z, info));
+        lastRenderTime.accumulateAndGet(info.getRenderTime(), Math::max);
         return old;
     }
 
+    public void set(int x, int z, int renderTime, TileState state) {
+        update(x >> SHIFT, z >> SHIFT, cell -> {
+            cell.set(x, z, renderTime, state);
+            return null;
+        });
+        lastRenderTime.accumulateAndGet(renderTime, Math::max);
+    }
+
+    public long getContentHash(int x, int z) {
+        return cell(x >> SHIFT, z >> SHIFT).getContentHash(x, z);
+    }
+
+    public void setContentHash(int x, int z, long contentHash) {
+        update(x >> SHIFT, z >> SHIFT, cell -> {
+            cell.setContentHash(x, z, contentHash);
+            return null;
+        });
+    }
+
+    /**
+     * Tests if the tile is known to be rendered without any content.<br>
+     * This check only uses the currently loaded render-state and never loads anything from storage, so it can cheaply
+     * be used e.g. to answer web-requests. If the state is not loaded, <code>false</code> is returned.
+     */
+    public boolean isKnownEmpty(int x, int z) {
+        TileInfoRegion cell = cellIfPresent(x >> SHIFT, z >> SHIFT);
+        return cell != null && cell.getContentHash(x, z) == TileInfoRegion.EMPTY_CONTENT_HASH;
+    }
+
     @Override
-    protected synchronized TileInfoRegion createNewCell() {
+    protected TileInfoRegion createNewCell() {
         return TileInfoRegion.create();
     }
 
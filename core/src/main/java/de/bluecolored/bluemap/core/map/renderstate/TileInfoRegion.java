@@ -44,12 +44,25 @@ public class TileInfoRegion implements CellStorage.Cell {
     private static final int REGION_MASK = REGION_LENGTH - 1;
     private static final int TILES_PER_REGION = REGION_LENGTH * REGION_LENGTH;
 
+    /**
+     * The content-hash of a tile where the content is unknown (e.g. because it has never been rendered or deleted)
+     */
+    public static final long UNKNOWN_CONTENT_HASH = 0;
+
+    /**
+     * The content-hash of a tile that has been rendered without any content, so there is no tile stored
+     */
+    public static final long EMPTY_CONTENT_HASH = 1;
+
     @NBTName("last-render-times")
     private int[] lastRenderTimes;
 
     @NBTName("tile-states")
     private TileState[] tileStates;
 
+    @NBTName("content-hashes")
+    private long[] contentHashes;
+
     @Getter
     private transient boolean modified;
 
@@ -64,6 +77,9 @@ public void init() {
             tileStates = new TileState[TILES_PER_REGION];
             Arrays.fill(tileStates, TileState.UNKNOWN);
         }
+
+        if (contentHashes == null || contentHashes.length != TILES_PER_REGION)
+            contentHashes = new long[TILES_PER_REGION];
     }
 
     public TileInfo get(int x, int z) {
@@ -74,6 +90,14 @@ public TileInfo get(int x, int z) {
         );
     }
 
+    public int getRenderTime(int x, int z) {
+        return lastRenderTimes[index(x, z)];
+    }
+
+    public TileState getState(int x, int z) {
+        return tileStates[index(x, z)];
+    }
+
     public TileInfo set(int x, int z, TileInfo info) {
         int index = index(x, z);
 
@@ -82,13 +106,33 @@ public TileInfo set(int x, int z, TileInfo info) {
                 tileStates[index]
         );
 
-        lastRenderTimes[index] = info.getRenderTime();
-        tileStates[index] = Objects.requireNonNull(info.getState());
+        set(x, z, info.getRenderTime(), info.getState());
+        return previous;
+    }
+
+    public void set(int x, int z, int renderTime, TileState state) {
+        int index = index(x, z);
 
-        if (!previous.equals(info))
-            this.modified = true;
+        if (lastRenderTimes[index] == renderTime && tileStates[index] == Objects.requireNonNull(state))
+            return;
 
-        return previous;
+        lastRenderTimes[index] = renderTime;
+        tileStates[index] = state;
+        this.modified = true;
+    }
+
+    public long getContentHash(int x, int z) {
+        return contentHashes[index(x, z)];
+    }
+
+    public void setContentHash(int x, int z, long contentHash) {
+        int index = index(x, z);
+
+        if (contentHashes[index] == contentHash)
+            return;
+
+        contentHashes[index] = contentHash;
+        this.modified = true;
     }
 
     int findLatestRenderTime() {
@@ -30,12 +30,16 @@
 import de.bluecolored.bluemap.core.world.biome.Biome;
 import de.bluecolored.bluemap.core.world.block.BlockAccess;
 import de.bluecolored.bluemap.core.world.block.BlockNeighborhood;
+import de.bluecolored.bluemap.core.world.block.ExtendedBlock;
+import org.jetbrains.annotations.Nullable;
 
 import java.awt.image.BufferedImage;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -51,6 +55,10 @@ public class BlockColorCalculatorFactory {
             BLEND_MIN_Z = - BLEND_RADIUS_H,
             BLEND_MAX_Z =   BLEND_RADIUS_H;
 
+    private static final int BLEND_LAYER_SIZE = 16; // must be a power of 2
+    private static final int BLEND_LAYER_MASK = BLEND_LAYER_SIZE - 1;
+    private static final int BLEND_LAYER_SAMPLES = BLEND_LAYER_SIZE + BLEND_MAX_X - BLEND_MIN_X;
+
     private int[] foliageMap = new int[0];
     private int[] dryFoliageMap = new int[0];
     private int[] grassMap = new int[0];
@@ -128,10 +136,24 @@ private interface ColorFunction {
         Color invoke(BlockColorCalculator calculator, BlockNeighborhood block, Color target);
     }
 
+    @FunctionalInterface
+    private interface SampleFunction {
+        Color invoke(BlockColorCalculator calculator, ExtendedBlock block, Color target);
+    }
+
     public class BlockColorCalculator {
 
         private final Color tempColor = new Color();
 
+        private final BlendCache waterBlend = new BlendCache((calculator, block, target) -> target.set(block.getBiome().getWaterColor()));
+        private final BlendCache foliageBlend = new BlendCache((calculator, block, target) -> calculator.getFoliageColor(block.getBiome(), target));
+        private final BlendCache dryFoliageBlend = new BlendCache((calculator, block, target) -> calculator.getDryFoliageColor(block.getBiome(), target));
+        private final BlendCache grassBlend = new BlendCache(BlockColorCalculator::getGrassColor);
+
+        private final Deque<float[]> unusedBlendLayers = new ArrayDeque<>();
+        private @Nullable BlockNeighborhood blendSource;
+        private @Nullable ExtendedBlock blendSampler;
+
         @SuppressWarnings("UnusedReturnValue")
         public Color getBlockColor(BlockNeighborhood block, Color target) {
             String blockId = block.getBlockState().getFormatted();
@@ -152,39 +174,11 @@ public Color getRedstoneColor(BlockAccess block, Color target) {
         }
 
         public Color getBlendedWaterColor(BlockNeighborhood block, Color target) {
-            target.set(0, 0, 0, 0, true);
-
-            int x, y, z;
-
-            Biome biome;
-            for (y = BLEND_MIN_Y; y <= BLEND_MAX_Y; y++) {
-                for (x = BLEND_MIN_X; x <= BLEND_MAX_X; x++) {
-                    for (z = BLEND_MIN_Z; z <= BLEND_MAX_Z; z++) {
-                        biome = block.getNeighborBlock(x, y, z).getBiome();
-                        target.add(biome.getWaterColor());
-                    }
-                }
-            }
-
-            return target.flatten();
+            return waterBlend.getBlendedColor(block, target);
         }
 
         public Color getBlendedFoliageColor(BlockNeighborhood block, Color target) {
-            target.set(0, 0, 0, 0, true);
-
-            int x, y, z;
-
-            Biome biome;
-            for (y = BLEND_MIN_Y; y <= BLEND_MAX_Y; y++) {
-                for (x = BLEND_MIN_X; x <= BLEND_MAX_X; x++) {
-                    for (z = BLEND_MIN_Z; z <= BLEND_MAX_Z; z++) {
-                        biome = block.getNeighborBlock(x, y, z).getBiome();
-                        target.add(getFoliageColor(biome, tempColor));
-                    }
-                }
-            }
-
-            return target.flatten();
+            return foliageBlend.getBlendedColor(block, target);
         }
 
         public Color getFoliageColor(Biome biome, Color target) {
@@ -193,21 +187,7 @@ public Color getFoliageColor(Biome biome, Color target) {
         }
 
         public Color getBlendedDryFoliageColor(BlockNeighborhood block, Color target) {
-            target.set(0, 0, 0, 0, true);
-
-            int x, y, z;
-
-            Biome biome;
-            for (y = BLEND_MIN_Y; y <= BLEND_MAX_Y; y++) {
-                for (x = BLEND_MIN_X; x <= BLEND_MAX_X; x++) {
-                    for (z = BLEND_MIN_Z; z <= BLEND_MAX_Z; z++) {
-                        biome = block.getNeighborBlock(x, y, z).getBiome();
-                        target.add(getDryFoliageColor(biome, tempColor));
-                    }
-                }
-            }
-
-            return target.flatten();
+            return dryFoliageBlend.getBlendedColor(block, target);
         }
 
         public Color getDryFoliageColor(Biome biome, Color target) {
@@ -216,19 +196,7 @@ public Color getDryFoliageColor(Biome biome, Color target) {
         }
 
         public Color getBlendedGrassColor(BlockNeighborhood block, Color target) {
-            target.set(0, 0, 0, 0, true);
-
-            int x, y, z;
-
-            for (y = BLEND_MIN_Y; y <= BLEND_MAX_Y; y++) {
-                for (x = BLEND_MIN_X; x <= BLEND_MAX_X; x++) {
-                    for (z = BLEND_MIN_Z; z <= BLEND_MAX_Z; z++) {
-                        target.add(getGrassColor(block.getNeighborBlock(x, y, z), tempColor));
-                    }
-                }
-            }
-
-            return target.flatten();
+            return grassBlend.getBlendedColor(block, target);
         }
 
         public Color getGrassColor(BlockAccess block, Color target) {
@@ -254,6 +222,127 @@ private void getColorFromMap(Biome biome, int[] colorMap, int defaultColor, Colo
             target.set(color);
         }
 
+        /**
+         * The blend-caches are only valid for the blocks of one {@link BlockNeighborhood} (which is created for each
+         * rendered tile), so they are reset if a different one is used.
+         */
+        private ExtendedBlock prepareBlending(BlockNeighborhood block) {
+            if (blendSource != block || blendSampler == null) {
+                waterBlend.clear();
+                foliageBlend.clear();
+                dryFoliageBlend.clear();
+                grassBlend.clear();
+
+                blendSource = block;
+                blendSampler = block.copy();
+            }
+            return blendSampler;
+        }
+
+        /**
+         * Caches the biome-colors blended over the {@link #BLEND_RADIUS_H horizontal} blend-area of all blocks in
+         * {@link #BLEND_LAYER_SIZE}x{@link #BLEND_LAYER_SIZE} layers, so the blended color of a block can be
+         * looked up by adding the sums of the {@link #BLEND_RADIUS_V vertically} neighboring layers.<br>
+         * Each layer is calculated once from the samples of its area (plus the blend-radius) using separate
+         * sums along the z- and the x-axis.
+         */
+        private class BlendCache {
+
+            private final SampleFunction sampleFunction;
+            private final Map<Long, float[]> layers = new HashMap<>();
+
+            private final float[] samples = new float[BLEND_LAYER_SAMPLES * BLEND_LAYER_SAMPLES * 4];
+            private final float[] rowSums = new float[BLEND_LAYER_SAMPLES * BLEND_LAYER_SIZE * 4];
+
+            private BlendCache(SampleFunction sampleFunction) {
+                this.sampleFunction = sampleFunction;
+            }
+
+            public Color getBlendedColor(BlockNeighborhood block, Color target) {
+                ExtendedBlock sampler = prepareBlending(block);
+
+                int x = block.getX(), y = block.getY(), z = block.getZ();
+                int i = ((x & BLEND_LAYER_MASK) * BLEND_LAYER_SIZE + (z & BLEND_LAYER_MASK)) * 4;
+
+                target.set(0, 0, 0, 0, true);
+                for (int dy = BLEND_MIN_Y; dy <= BLEND_MAX_Y; dy++) {
+                    float[] layer = getLayer(sampler, x, y + dy, z);
+                    target.r += layer[i];
+                    target.g += layer[i + 1];
+                    target.b += layer[i + 2];
+                    target.a += layer[i + 3];
+                }
+
+                return target.flatten();
+            }
+
+            private float[] getLayer(ExtendedBlock sampler, int x, int y, int z) {
+                int layerX = Math.floorDiv(x, BLEND_LAYER_SIZE), layerZ = Math.floorDiv(z, BLEND_LAYER_SIZE);
+                long key =
+                        ((long) layerX & 0xFFFFFF) << 40 |
+                        ((long) layerZ & 0xFFFFFF) << 16 |
+                        ((long) y & 0xFFFF);
+
+                float[] layer = layers.get(key);
+                if (layer == null) {
+                    layer = unusedBlendLayers.poll();
+                    if (layer == null) layer = new float[BLEND_LAYER_SIZE * BLEND_LAYER_SIZE * 4];
+                    calculateLayer(sampler, layerX * BLEND_LAYER_SIZE, y, layerZ * BLEND_LAYER_SIZE, layer);
+                    layers.put(key, layer);
+                }
+                return layer;
+            }
+
+            private void calculateLayer(ExtendedBlock sampler, int minX, int y, int minZ, float[] layer) {
+                int sx, sz, i;
+
+                // sample all colors of the layer and the surrounding blend-area
+                i = 0;
+                for (sx = 0; sx < BLEND_LAYER_SAMPLES; sx++) {
+                    for (sz = 0; sz < BLEND_LAYER_SAMPLES; sz++) {
+                        sampler.set(minX + BLEND_MIN_X + sx, y, minZ + BLEND_MIN_Z + sz);
+                        sampleFunction.invoke(BlockColorCalculator.this, sampler, tempColor);
+                        samples[i++] = tempColor.r;
+                        samples[i++] = tempColor.g;
+                        samples[i++] = tempColor.b;
+                        samples[i++] = tempColor.a;
+                    }
+                }
+
+                // sum up along the z-axis
+                int c, d;
+                float sum;
+                for (sx = 0; sx < BLEND_LAYER_SAMPLES; sx++) {
+                    for (sz = 0; sz < BLEND_LAYER_SIZE; sz++) {
+                        for (c = 0; c < 4; c++) {
+                            sum = 0;
+                            for (d = 0; d <= BLEND_MAX_Z - BLEND_MIN_Z; d++)
+                                sum += samples[(sx * BLEND_LAYER_SAMPLES + sz + d) * 4 + c];
+                            rowSums[(sx * BLEND_LAYER_SIZE + sz) * 4 + c] = sum;
+                        }
+                    }
+                }
+
+                // sum up along the x-axis
+                for (sx = 0; sx < BLEND_LAYER_SIZE; sx++) {
+                    for (sz = 0; sz < BLEND_LAYER_SIZE; sz++) {
+                        for (c = 0; c < 4; c++) {
+                            sum = 0;
+                            for (d = 0; d <= BLEND_MAX_X - BLEND_MIN_X; d++)
+                                sum += rowSums[((sx + d) * BLEND_LAYER_SIZE + sz) * 4 + c];
+                            layer[(sx * BLEND_LAYER_SIZE + sz) * 4 + c] = sum;
+                        }
+                    }
+                }
+            }
+
+            private void clear() {
+                unusedBlendLayers.addAll(layers.values());
+                layers.clear();
+            }
+
+        }
+
     }
 
 }
@@ -24,8 +24,6 @@
  */
 package de.bluecolored.bluemap.core.resources.pack.resourcepack;
 
-import com.github.benmanes.caffeine.cache.Caffeine;
-import com.github.benmanes.caffeine.cache.LoadingCache;
 import de.bluecolored.bluemap.core.BlueMap;
 import de.bluecolored.bluemap.core.logger.Logger;
 import de.bluecolored.bluemap.core.resources.BlockColorCalculatorFactory;
@@ -34,6 +32,7 @@
 import de.bluecolored.bluemap.core.resources.adapter.ResourcesGson;
 import de.bluecolored.bluemap.core.resources.pack.Pack;
 import de.bluecolored.bluemap.core.resources.pack.resourcepack.blockstate.BlockState;
+import de.bluecolored.bluemap.core.resources.pack.resourcepack.blockstate.VariantSet;
 import de.bluecolored.bluemap.core.resources.pack.resourcepack.entitystate.EntityState;
 import de.bluecolored.bluemap.core.resources.pack.resourcepack.model.Model;
 import de.bluecolored.bluemap.core.resources.pack.resourcepack.model.TextureVariable;
@@ -42,6 +41,7 @@
 import de.bluecolored.bluemap.core.util.Key;
 import de.bluecolored.bluemap.core.util.Tristate;
 import de.bluecolored.bluemap.core.world.BlockProperties;
+import de.bluecolored.bluemap.core.world.BlockStateCache;
 import org.jetbrains.annotations.Nullable;
 
 import javax.imageio.ImageIO;
@@ -56,6 +56,7 @@
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
@@ -80,7 +81,9 @@ public class ResourcePack extends Pack {
     private final Map<String, ResourcePath<BlockState>> blockStatePaths;
     private final Map<Key, ResourcePath<EntityState>> entityStatePaths;
     private final Map<String, ResourcePath<Texture>> texturePaths;
-    private final LoadingCache<de.bluecolored.bluemap.core.world.BlockState, BlockProperties> blockPropertiesCache;
+    private final BlockStateCache<BlockState> blockStateCache;
+    private final BlockStateCache<BlockProperties> blockPropertiesCache;
+    private final BlockStateCache<VariantSet[]> blockStateVariantsCache;
 
     public ResourcePack(int packVersion) {
         super(packVersion);
@@ -101,10 +104,9 @@ public ResourcePack(int packVersion) {
         this.blockStatePaths = new HashMap<>();
         this.entityStatePaths = new HashMap<>();
         this.texturePaths = new HashMap<>();
-        this.blockPropertiesCache = Caffeine.newBuilder()
-                .executor(BlueMap.THREAD_POOL)
-                .maximumSize(10000)
-                .build(this::loadBlockProperties);
+        this.blockStateCache = new BlockStateCache<>(this::loadBlockState);
+        this.blockPropertiesCache = new BlockStateCache<>(this::loadBlockProperties);
+        this.blockStateVariantsCache = new BlockStateCache<>(this::loadBlockStateVariants);
     }
 
     public synchronized void loadResources(Iterable<Path> roots) throws IOException, InterruptedException {
@@ -338,13 +340,36 @@ private void bake() throws IOException, InterruptedException {
             extension.bake();
         }
 
+        // drop anything that has been resolved before all resources were loaded
+        blockStateCache.clear();
+        blockPropertiesCache.clear();
+        blockStateVariantsCache.clear();
+
     }
 
     public @Nullable BlockState getBlockState(de.bluecolored.bluemap.core.world.BlockState blockState) {
+        return blockStateCache.get(blockState);
+    }
+
+    private @Nullable BlockState loadBlockState(de.bluecolored.bluemap.core.world.BlockState blockState) {
         ResourcePath<BlockState> path = blockStatePaths.get(blockState.getFormatted());
         return path != null ? path.getResource(this::getBlockState) : MISSING_BLOCK_STATE.getResource(this::getBlockState);
     }
 
+    /**
+     * Returns the {@link VariantSet}s that apply to the given block-state.<br>
+     * The conditions of the block-state resource are only evaluated once for each block-state,
+     * the result is cached.
+     */
+    public VariantSet[] getBlockStateVariants(de.bluecolored.bluemap.core.world.BlockState blockState) {
+        return Objects.requireNonNull(blockStateVariantsCache.get(blockState));
+    }
+
+    private VariantSet[] loadBlockStateVariants(de.bluecolored.bluemap.core.world.BlockState blockState) {
+        BlockState resource = getBlockState(blockState);
+        return resource != null ? resource.getVariantSets(blockState) : new VariantSet[0];
+    }
+
     public @Nullable BlockState getBlockState(ResourcePath<BlockState> path) {
         BlockState blockState = blockStates.get(path);
         return blockState != null ? blockState : MISSING_BLOCK_STATE.getResource(blockStates::get);
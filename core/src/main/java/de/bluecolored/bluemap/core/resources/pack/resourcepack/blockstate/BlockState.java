@@ -26,6 +26,8 @@
 
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Consumer;
 
 @SuppressWarnings("FieldMayBeFinal")
@@ -51,4 +53,18 @@ public void forEach(de.bluecolored.bluemap.core.world.BlockState blockState, int
         if (multipart != null) multipart.forEach(blockState, x, y, z, consumer);
     }
 
+    /**
+     * Evaluates all conditions for the given block-state and returns the {@link VariantSet}s that apply to it,
+     * in the same order as they are used by {@link #forEach}.
+     */
+    public VariantSet[] getVariantSets(de.bluecolored.bluemap.core.world.BlockState blockState) {
+        List<VariantSet> variantSets = new ArrayList<>();
+        if (variants != null) {
+            VariantSet variantSet = variants.getVariantSet(blockState);
+            if (variantSet != null) variantSets.add(variantSet);
+        }
+        if (multipart != null) multipart.forEachVariantSet(blockState, variantSets::add);
+        return variantSets.toArray(VariantSet[]::new);
+    }
+
 }
@@ -47,9 +47,16 @@ public class Multipart {
     private Multipart(){}
 
     public void forEach(BlockState blockState, int x, int y, int z, Consumer<Variant> consumer) {
+        forEachVariantSet(blockState, part -> part.forEach(x, y, z, consumer));
+    }
+
+    /**
+     * Calls the consumer for each part that applies to the given block-state.
+     */
+    public void forEachVariantSet(BlockState blockState, Consumer<VariantSet> consumer) {
         for (VariantSet part : parts) {
             if (part.getCondition().matches(blockState)) {
-                part.forEach(x, y, z, consumer);
+                consumer.accept(part);
             }
         }
     }
@@ -30,8 +30,9 @@
 import com.google.gson.stream.JsonToken;
 import de.bluecolored.bluemap.core.resources.AbstractTypeAdapterFactory;
 
+import org.jetbrains.annotations.Nullable;
+
 import java.io.IOException;
-import java.util.Arrays;
 import java.util.function.Consumer;
 
 @SuppressWarnings("FieldMayBeFinal")
@@ -41,6 +42,7 @@ public class VariantSet {
     private BlockStateCondition condition;
     private Variant[] variants;
 
+    private transient double[] cumulativeWeights;
     private transient double totalWeight;
 
     public VariantSet(Variant... variants) {
@@ -51,7 +53,8 @@ public VariantSet(BlockStateCondition condition, Variant... variants) {
         this.condition = condition;
         this.variants = variants;
 
-        this.totalWeight = summarizeWeights();
+        this.cumulativeWeights = summarizeWeights();
+        this.totalWeight = cumulativeWeights.length > 0 ? cumulativeWeights[cumulativeWeights.length - 1] : 0;
     }
 
     public BlockStateCondition getCondition() {
@@ -66,21 +69,32 @@ public Variant[] getVariants() {
         return variants;
     }
 
-    private double summarizeWeights() {
-        return Arrays.stream(variants)
-                .mapToDouble(Variant::getWeight)
-                .sum();
+    private double[] summarizeWeights() {
+        double[] cumulativeWeights = new double[variants.length];
+        double sum = 0;
+        for (int i = 0; i < variants.length; i++) {
+            sum += variants[i].getWeight();
+            cumulativeWeights[i] = sum;
+        }
+        return cumulativeWeights;
     }
 
     public void forEach(int x, int y, int z, Consumer<Variant> consumer) {
+        Variant variant = select(x, y, z);
+        if (variant != null) consumer.accept(variant);
+    }
+
+    /**
+     * Selects one of the variants of this set (weighted-)randomly, based on the given position.
+     */
+    public @Nullable Variant select(int x, int y, int z) {
+        if (variants.length == 1) return variants[0];
+
         double selection = hashToFloat(x, y, z) * totalWeight; // random based on position
-        for (Variant variant : variants) {
-            selection -= variant.getWeight();
-            if (selection <= 0) {
-                consumer.accept(variant);
-                return;
-            }
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (selection <= cumulativeWeights[i]) return variants[i];
         }
+        return null;
     }
 
     private static float hashToFloat(int x, int y, int z) {
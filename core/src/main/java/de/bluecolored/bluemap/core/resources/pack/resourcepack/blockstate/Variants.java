@@ -56,17 +56,22 @@ public VariantSet getDefaultVariant() {
     }
 
     public void forEach(BlockState blockState, int x, int y, int z, Consumer<Variant> consumer) {
+        VariantSet variant = getVariantSet(blockState);
+        if (variant != null) variant.forEach(x, y, z, consumer);
+    }
+
+    /**
+     * Returns the first {@link VariantSet} matching the given block-state, or the default-variant if none matches.
+     */
+    public @Nullable VariantSet getVariantSet(BlockState blockState) {
         for (VariantSet variant : variants){
             if (variant.getCondition().matches(blockState)){
-                variant.forEach(x, y, z, consumer);
-                return;
+                return variant;
             }
         }
 
-        // still here? do default
-        if (defaultVariant != null) {
-            defaultVariant.forEach(x, y, z, consumer);
-        }
+        // still here? use default
+        return defaultVariant;
     }
 
     static class Adapter extends AbstractTypeAdapterFactory<Variants> {
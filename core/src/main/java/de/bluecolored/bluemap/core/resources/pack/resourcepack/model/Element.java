@@ -36,8 +36,8 @@
 import lombok.Getter;
 
 import java.io.IOException;
-import java.util.Dictionary;
 import java.util.EnumMap;
+import java.util.Map;
 
 @SuppressWarnings({"FieldMayBeFinal", "FieldCanBeLocal"})
 @JsonAdapter(Element.Adapter.class)
@@ -104,8 +104,8 @@ public void optimize(ResourcePack resourcePack) {
         }
     }
 
-    public <K> Dictionary<K, Face> getFaces() {
-        return null;
+    public Map<Direction, Face> getFaces() {
+        return faces;
     }
 
     static class Adapter extends AbstractTypeAdapterFactory<Element> {
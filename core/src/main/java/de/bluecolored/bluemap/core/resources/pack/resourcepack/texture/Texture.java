@@ -98,6 +98,10 @@ public String getTexture() {
         return texture;
     }
 
+    public @Nullable AnimationMeta getAnimation() {
+        return animation;
+    }
+
     public static Texture from(ResourcePath<Texture> resourcePath, BufferedImage image) throws IOException {
         return from(resourcePath, image, null);
     }
@@ -62,6 +62,14 @@ public interface GridStorage {
      */
     boolean exists(int x, int z) throws IOException;
 
+    /**
+     * Returns the {@link ItemMetadata} of the item stored on the given position without reading the item-data,
+     * or null if there is no item stored or if this storage is not able to provide metadata.
+     */
+    default @Nullable ItemMetadata metadata(int x, int z) throws IOException {
+        return null;
+    }
+
     /**
      * Returns a {@link ItemStorage} for the given position
      */
@@ -119,6 +127,11 @@ public boolean exists() throws IOException {
             return storage.exists(x, z);
         }
 
+        @Override
+        public @Nullable ItemMetadata metadata() throws IOException {
+            return storage.metadata(x, z);
+        }
+
         @Override
         public boolean isClosed() {
             return storage.isClosed();
@@ -0,0 +1,65 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.storage;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Metadata about a stored item that a storage can provide without reading the item-data.
+ *
+ * @param length The length of the stored (compressed) item-data in bytes, or -1 if unknown
+ * @param lastModified The time when the item has last been modified in milliseconds since the epoch, or -1 if unknown
+ * @param contentHash A hash of the stored (compressed) item-data, or null if unknown
+ */
+public record ItemMetadata(long length, long lastModified, @Nullable String contentHash) {
+
+    /**
+     * Returns a tag that changes whenever the stored item-data changes, or null if this metadata is not sufficient
+     * to detect changes.
+     */
+    public @Nullable String getTag() {
+        if (contentHash != null) return contentHash + "-" + Long.toHexString(length);
+        if (length >= 0 && lastModified >= 0) return Long.toHexString(length) + "-" + Long.toHexString(lastModified);
+        return null;
+    }
+
+    /**
+     * Creates the metadata for the given (compressed) item-data, using the hex-encoded MD5-hash of the data as
+     * content-hash (the same hash that the sql-databases compute with their <code>md5</code>-function)
+     */
+    public static ItemMetadata of(byte[] data) {
+        try {
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            return new ItemMetadata(data.length, -1, HexFormat.of().formatHex(md5.digest(data)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("MD5 is not supported on this platform", ex);
+        }
+    }
+
+}
@@ -56,6 +56,14 @@ public interface ItemStorage {
      */
     boolean exists() throws IOException;
 
+    /**
+     * Returns the {@link ItemMetadata} of the stored item without reading the item-data,
+     * or null if there is no item stored or if this storage is not able to provide metadata.
+     */
+    default @Nullable ItemMetadata metadata() throws IOException {
+        return null;
+    }
+
     /**
      * Checks if this storage is closed
      */
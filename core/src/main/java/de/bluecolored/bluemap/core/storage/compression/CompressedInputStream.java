@@ -25,9 +25,13 @@
 package de.bluecolored.bluemap.core.storage.compression;
 
 import de.bluecolored.bluemap.core.util.stream.DelegateInputStream;
+import de.bluecolored.bluemap.core.util.stream.LimitedInputStream;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 
 /**
  * An InputStream that is aware of the {@link Compression} that it's data is compressed with.
@@ -35,6 +39,8 @@
 public class CompressedInputStream extends DelegateInputStream {
 
     private final Compression compression;
+    private final @Nullable FileChannel fileChannel;
+    private final long fileChannelLength;
 
     /**
      * Creates a new CompressedInputStream with {@link Compression#NONE} from an (uncompressed) {@link InputStream}.
@@ -52,6 +58,31 @@ public CompressedInputStream(InputStream in) {
     public CompressedInputStream(InputStream in, Compression compression) {
         super(in);
         this.compression = compression;
+        this.fileChannel = null;
+        this.fileChannelLength = -1;
+    }
+
+    /**
+     * Creates a new CompressedInputStream reading the <b>already compressed</b> data from a {@link FileChannel}.
+     * This does <b>not</b> compress the provided data.
+     */
+    public CompressedInputStream(FileChannel fileChannel, Compression compression) {
+        super(Channels.newInputStream(fileChannel));
+        this.compression = compression;
+        this.fileChannel = fileChannel;
+        this.fileChannelLength = -1;
+    }
+
+    /**
+     * Creates a new CompressedInputStream reading the <b>already compressed</b> data from a section of a {@link FileChannel}:
+     * <code>length</code> bytes starting at the current position of the channel.
+     * This does <b>not</b> compress the provided data.
+     */
+    public CompressedInputStream(FileChannel fileChannel, long length, Compression compression) {
+        super(new LimitedInputStream(Channels.newInputStream(fileChannel), length));
+        this.compression = compression;
+        this.fileChannel = fileChannel;
+        this.fileChannelLength = length;
     }
 
     /**
@@ -68,4 +99,22 @@ public Compression getCompression() {
         return compression;
     }
 
+    /**
+     * Returns the {@link FileChannel} that the (compressed) data of this InputStream is read from,
+     * or <code>null</code> if the data is not coming directly from a file.<br>
+     * This can be used to transfer the data without copying it through the heap.
+     */
+    public @Nullable FileChannel getFileChannel() {
+        return fileChannel;
+    }
+
+    /**
+     * Returns the amount of bytes that belong to this InputStream's data in the {@link #getFileChannel() FileChannel},
+     * starting at the current position of the channel.<br>
+     * Returns -1 if the data reaches until the end of the file (or if there is no FileChannel).
+     */
+    public long getFileChannelLength() {
+        return fileChannelLength;
+    }
+
 }
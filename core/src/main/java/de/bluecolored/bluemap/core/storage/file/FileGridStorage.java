@@ -25,6 +25,7 @@
 package de.bluecolored.bluemap.core.storage.file;
 
 import de.bluecolored.bluemap.core.storage.GridStorage;
+import de.bluecolored.bluemap.core.storage.ItemMetadata;
 import de.bluecolored.bluemap.core.storage.ItemStorage;
 import de.bluecolored.bluemap.core.storage.compression.CompressedInputStream;
 import de.bluecolored.bluemap.core.storage.compression.Compression;
@@ -73,6 +74,11 @@ public boolean exists(int x, int z) throws IOException {
         return cell(x, z).exists();
     }
 
+    @Override
+    public @Nullable ItemMetadata metadata(int x, int z) throws IOException {
+        return cell(x, z).metadata();
+    }
+
     @Override
     public ItemStorage cell(int x, int z) {
         return new FileItemStorage(getItemPath(x, z), compression, atomic);
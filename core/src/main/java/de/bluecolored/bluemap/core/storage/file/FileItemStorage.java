@@ -24,6 +24,7 @@
  */
 package de.bluecolored.bluemap.core.storage.file;
 
+import de.bluecolored.bluemap.core.storage.ItemMetadata;
 import de.bluecolored.bluemap.core.storage.ItemStorage;
 import de.bluecolored.bluemap.core.storage.compression.CompressedInputStream;
 import de.bluecolored.bluemap.core.storage.compression.Compression;
@@ -34,10 +35,12 @@
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 
 @RequiredArgsConstructor
 public class FileItemStorage implements ItemStorage {
@@ -61,7 +64,7 @@ public OutputStream write() throws IOException {
     public @Nullable CompressedInputStream read() throws IOException {
         if (!Files.exists(file)) return null;
         try {
-            return new CompressedInputStream(Files.newInputStream(file), compression);
+            return new CompressedInputStream(FileChannel.open(file, StandardOpenOption.READ), compression);
         } catch (FileNotFoundException | NoSuchFileException ex) {
             return null;
         }
@@ -77,6 +80,21 @@ public boolean exists() {
         return Files.exists(file);
     }
 
+    @Override
+    public @Nullable ItemMetadata metadata() throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) return null;
+            return new ItemMetadata(
+                    attributes.size(),
+                    attributes.lastModifiedTime().toMillis(),
+                    null
+            );
+        } catch (FileNotFoundException | NoSuchFileException ex) {
+            return null;
+        }
+    }
+
     @Override
     public boolean isClosed() {
         return false;
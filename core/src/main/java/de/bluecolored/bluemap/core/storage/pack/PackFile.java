@@ -0,0 +1,437 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.storage.pack;
+
+import de.bluecolored.bluemap.core.logger.Logger;
+import de.bluecolored.bluemap.core.storage.compression.CompressedInputStream;
+import de.bluecolored.bluemap.core.storage.compression.Compression;
+import de.bluecolored.bluemap.core.util.FileHelper;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * A file holding all items of one region ({@link #REGION_SIZE} x {@link #REGION_SIZE} cells) of a {@link PackGridStorage}.
+ * <p>
+ * The file starts with a small header, followed by two table-slots and the item-data.
+ * Each table-slot contains a sequence-number, a crc32-checksum and the offset and length of each item in the file.<br>
+ * Items are only ever appended to the end of the file, then the complete table is written into the currently
+ * inactive slot with an incremented sequence-number. When loading, the valid slot with the highest sequence-number is
+ * used, so an interrupted table-write falls back to the previous (intact) table.<br>
+ * Once enough space is wasted by overwritten or deleted items, the file is compacted into a new file which then
+ * atomically replaces the old one. If the old file can not be replaced (e.g. on Windows while an item is still being
+ * read from it), the compaction is dropped and deferred until twice as much space is wasted.
+ * </p>
+ * <p>
+ * The file stays open until it is {@link #close() closed}, and the table is only written after every
+ * {@link #TABLE_WRITE_INTERVAL} changes, on {@link #flush()} and on close. Before a table is written, the item-data
+ * is forced to disk, and the table itself is forced before the next one can overwrite the other slot.
+ * So a crash can only lose the changes since the last table-write, but never corrupt the file.
+ * </p>
+ */
+class PackFile {
+
+    static final int REGION_SHIFT = 5;
+    static final int REGION_SIZE = 1 << REGION_SHIFT;
+    static final int REGION_MASK = REGION_SIZE - 1;
+    static final int CELL_COUNT = REGION_SIZE * REGION_SIZE;
+
+    private static final int MAGIC = 0x424D504B; // "BMPK"
+    private static final int VERSION = 1;
+
+    static final int FILE_HEADER_SIZE = 16;
+    static final int SLOT_HEADER_SIZE = 16;
+    static final int ENTRY_SIZE = 12;
+    static final int SLOT_SIZE = SLOT_HEADER_SIZE + CELL_COUNT * ENTRY_SIZE;
+    static final long DATA_START = FILE_HEADER_SIZE + 2L * SLOT_SIZE;
+
+    static final long COMPACTION_MIN_GARBAGE = 4L * 1024 * 1024;
+    static final int TABLE_WRITE_INTERVAL = 32;
+
+    private final Path file;
+
+    // an offset of 0 means the cell is empty
+    private final long[] offsets = new long[CELL_COUNT];
+    private final int[] lengths = new int[CELL_COUNT];
+    private int itemCount;
+    private long liveBytes;
+    private long dataEnd;
+    private long sequence;
+
+    private long compactionMinGarbage = COMPACTION_MIN_GARBAGE;
+
+    private @Nullable FileChannel channel;
+    private int unwrittenChanges;
+    private boolean closed;
+
+    private PackFile(Path file) {
+        this.file = file;
+        this.dataEnd = DATA_START;
+    }
+
+    /**
+     * Creates a new PackFile and loads the table from the given file if it exists.
+     */
+    public static PackFile load(Path file) throws IOException {
+        PackFile packFile = new PackFile(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            packFile.readTable(channel);
+        } catch (FileNotFoundException | NoSuchFileException ignore) {}
+        return packFile;
+    }
+
+    /**
+     * Returns the index of the cell with the given grid-position in its region.
+     */
+    public static int index(int x, int z) {
+        return (z & REGION_MASK) << REGION_SHIFT | (x & REGION_MASK);
+    }
+
+    public synchronized boolean exists(int index) {
+        return offsets[index] != 0;
+    }
+
+    public synchronized boolean isEmpty() {
+        return itemCount == 0;
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Returns the indices of all existing items in this file.
+     */
+    public synchronized int[] indices() {
+        int[] indices = new int[itemCount];
+        int i = 0;
+        for (int index = 0; index < CELL_COUNT; index++) {
+            if (offsets[index] != 0) indices[i++] = index;
+        }
+        return indices;
+    }
+
+    /**
+     * Opens a new {@link FileChannel} positioned at the item-data and returns it as a {@link CompressedInputStream},
+     * or null if the item does not exist.
+     * Item-data is never modified once it has been written, so the returned stream stays valid even if the item
+     * gets overwritten or the file gets compacted while reading.
+     */
+    public synchronized @Nullable CompressedInputStream read(int index, Compression compression) throws IOException {
+        long offset = offsets[index];
+        if (offset == 0) return null;
+
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+        } catch (FileNotFoundException | NoSuchFileException ex) {
+            return null;
+        }
+
+        try {
+            channel.position(offset);
+            return new CompressedInputStream(channel, lengths[index], compression);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Appends the data to the file and points the table-entry of the given index to it.
+     */
+    public synchronized void write(int index, byte[] data) throws IOException {
+        FileChannel channel = channel();
+
+        long offset = dataEnd;
+        writeFully(channel, ByteBuffer.wrap(data), offset);
+        dataEnd += data.length;
+
+        if (offsets[index] != 0) {
+            liveBytes -= lengths[index];
+        } else {
+            itemCount++;
+        }
+        offsets[index] = offset;
+        lengths[index] = data.length;
+        liveBytes += data.length;
+
+        tableChanged();
+    }
+
+    /**
+     * Removes the item with the given index from the table, deleting the whole file if no items are left.
+     */
+    public synchronized void delete(int index) throws IOException {
+        ensureOpen();
+        if (offsets[index] == 0) return;
+
+        itemCount--;
+        liveBytes -= lengths[index];
+        offsets[index] = 0;
+        lengths[index] = 0;
+
+        if (itemCount == 0) {
+            closeChannel();
+            Files.deleteIfExists(file);
+            clear();
+            return;
+        }
+
+        tableChanged();
+    }
+
+    /**
+     * Writes the table if there are changes that have not been written yet.
+     */
+    public synchronized void flush() throws IOException {
+        ensureOpen();
+        writeTable();
+    }
+
+    /**
+     * Writes the table if needed and closes the file. A closed PackFile can no longer be modified.
+     */
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        try {
+            writeTable();
+        } finally {
+            closed = true;
+            closeChannel();
+        }
+    }
+
+    private FileChannel channel() throws IOException {
+        ensureOpen();
+        if (channel != null) return channel;
+
+        FileHelper.createDirectories(file.toAbsolutePath().normalize().getParent());
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        if (channel.size() < DATA_START) {
+            // new (or externally deleted) file
+            writeFileHeader(channel);
+            clear();
+        }
+        return channel;
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } finally {
+            channel = null;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) throw new IOException("Pack-file '" + file + "' is closed!");
+    }
+
+    private void tableChanged() throws IOException {
+        if (needsCompaction() && compact()) return;
+
+        if (++unwrittenChanges >= TABLE_WRITE_INTERVAL)
+            writeTable();
+    }
+
+    private void clear() {
+        Arrays.fill(offsets, 0);
+        Arrays.fill(lengths, 0);
+        itemCount = 0;
+        liveBytes = 0;
+        dataEnd = DATA_START;
+        sequence = 0;
+        unwrittenChanges = 0;
+        compactionMinGarbage = COMPACTION_MIN_GARBAGE;
+    }
+
+    private boolean needsCompaction() {
+        long garbage = dataEnd - DATA_START - liveBytes;
+        return garbage > compactionMinGarbage && garbage > liveBytes;
+    }
+
+    /**
+     * Copies all items into a new file without gaps and then atomically replaces this file with it.<br>
+     * The old file is never written to, because readers may still read item-data from it. So if it can not be
+     * replaced, the compacted file is discarded and false is returned.
+     */
+    private boolean compact() throws IOException {
+        Path compactFile = file.resolveSibling(file.getFileName() + ".compact");
+        long[] newOffsets = new long[CELL_COUNT];
+        long newDataEnd = DATA_START;
+
+        try (
+                FileChannel source = FileChannel.open(file, StandardOpenOption.READ);
+                FileChannel target = FileChannel.open(compactFile,
+                        StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)
+        ) {
+            writeFileHeader(target);
+            for (int index = 0; index < CELL_COUNT; index++) {
+                if (offsets[index] == 0) continue;
+                newOffsets[index] = newDataEnd;
+                transferFully(source, offsets[index], lengths[index], target, newDataEnd);
+                newDataEnd += lengths[index];
+            }
+            writeFully(target, createTable(newOffsets, sequence + 1), FILE_HEADER_SIZE + ((sequence + 1) & 1) * SLOT_SIZE);
+            target.force(true);
+        } catch (IOException ex) {
+            Files.deleteIfExists(compactFile);
+            throw ex;
+        }
+
+        // the channel still points to the old file, it is opened again on the next write
+        closeChannel();
+        try {
+            FileHelper.atomicMove(compactFile, file);
+        } catch (IOException ex) {
+            Files.deleteIfExists(compactFile);
+            compactionMinGarbage = (dataEnd - DATA_START - liveBytes) * 2;
+            Logger.global.logDebug("Deferred compaction of pack-file '" + file + "': " + ex);
+            return false;
+        }
+
+        System.arraycopy(newOffsets, 0, offsets, 0, CELL_COUNT);
+        dataEnd = newDataEnd;
+        sequence++;
+        unwrittenChanges = 0;
+        compactionMinGarbage = COMPACTION_MIN_GARBAGE;
+        return true;
+    }
+
+    private void readTable(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < DATA_START) return; // never completely initialized
+
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        readFully(channel, header, 0);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(8) != REGION_SIZE)
+            throw new IOException("File '" + file + "' is not a valid pack-file!");
+
+        ByteBuffer table = null;
+        for (int slot = 0; slot < 2; slot++) {
+            ByteBuffer slotData = ByteBuffer.allocate(SLOT_SIZE);
+            readFully(channel, slotData, FILE_HEADER_SIZE + (long) slot * SLOT_SIZE);
+
+            long slotSequence = slotData.getLong(0);
+            if (slotSequence <= 0 || slotData.getInt(8) != checksum(slotData)) continue;
+            if (table != null && slotSequence <= sequence) continue;
+
+            table = slotData;
+            sequence = slotSequence;
+        }
+
+        // data after the last table-write (e.g. from an interrupted write) is kept as garbage
+        dataEnd = size;
+        if (table == null) return;
+
+        for (int index = 0; index < CELL_COUNT; index++) {
+            int position = SLOT_HEADER_SIZE + index * ENTRY_SIZE;
+            long offset = table.getLong(position);
+            int length = table.getInt(position + 8);
+            if (offset < DATA_START || length < 0 || offset + length > size) continue;
+
+            offsets[index] = offset;
+            lengths[index] = length;
+            itemCount++;
+            liveBytes += length;
+        }
+    }
+
+    private void writeTable() throws IOException {
+        if (unwrittenChanges == 0) return;
+        FileChannel channel = channel();
+
+        // the item-data needs to be on disk before the table pointing to it, and this table needs to be on disk
+        // before the next table-write can overwrite the previous one
+        channel.force(false);
+        long nextSequence = sequence + 1;
+        writeFully(channel, createTable(offsets, nextSequence), FILE_HEADER_SIZE + (nextSequence & 1) * SLOT_SIZE);
+        channel.force(false);
+
+        sequence = nextSequence;
+        unwrittenChanges = 0;
+    }
+
+    private ByteBuffer createTable(long[] offsets, long sequence) {
+        ByteBuffer table = ByteBuffer.allocate(SLOT_SIZE);
+        table.putLong(0, sequence);
+        for (int index = 0; index < CELL_COUNT; index++) {
+            int position = SLOT_HEADER_SIZE + index * ENTRY_SIZE;
+            table.putLong(position, offsets[index]);
+            table.putInt(position + 8, offsets[index] != 0 ? lengths[index] : 0);
+        }
+        table.putInt(8, checksum(table));
+        return table;
+    }
+
+    private static int checksum(ByteBuffer table) {
+        CRC32 crc = new CRC32();
+        crc.update(table.slice(0, 8));
+        crc.update(table.slice(SLOT_HEADER_SIZE, SLOT_SIZE - SLOT_HEADER_SIZE));
+        return (int) crc.getValue();
+    }
+
+    private static void writeFileHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate((int) DATA_START);
+        header.putInt(0, MAGIC);
+        header.putInt(4, VERSION);
+        header.putInt(8, REGION_SIZE);
+        writeFully(channel, header, 0);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) throw new IOException("Unexpected end of file");
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private static void transferFully(FileChannel source, long position, long length, FileChannel target, long targetPosition) throws IOException {
+        long transferred = 0;
+        while (transferred < length) {
+            long count = source.transferTo(position + transferred, length - transferred, target.position(targetPosition + transferred));
+            if (count <= 0) throw new IOException("Unexpected end of file");
+            transferred += count;
+        }
+    }
+
+}
@@ -0,0 +1,212 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.storage.pack;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import de.bluecolored.bluemap.core.logger.Logger;
+import de.bluecolored.bluemap.core.storage.GridStorage;
+import de.bluecolored.bluemap.core.storage.ItemStorage;
+import de.bluecolored.bluemap.core.storage.compression.CompressedInputStream;
+import de.bluecolored.bluemap.core.storage.compression.Compression;
+import de.bluecolored.bluemap.core.util.stream.OnCloseOutputStream;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * A {@link GridStorage} that packs the items of each region into one {@link PackFile}.
+ */
+class PackGridStorage implements GridStorage {
+
+    private static final String FILE_SUFFIX = ".pack";
+
+    private final Path root;
+    private final String suffix;
+    private final Compression compression;
+    private final Pattern fileNamePattern;
+
+    // pack-files are kept open while they are in use, and closed (writing their table) once they are evicted
+    private final LoadingCache<Long, PackFile> packFiles;
+
+    private volatile boolean closed;
+
+    public PackGridStorage(Path root, String suffix, Compression compression) {
+        this.root = root;
+        this.suffix = suffix + FILE_SUFFIX;
+        this.compression = compression;
+        this.fileNamePattern = Pattern.compile("r\\.(-?\\d+)\\.(-?\\d+)" + Pattern.quote(this.suffix));
+
+        this.packFiles = Caffeine.newBuilder()
+                .maximumSize(16)
+                .expireAfterAccess(10, TimeUnit.SECONDS)
+                .scheduler(Scheduler.systemScheduler())
+                .evictionListener((Long key, PackFile packFile, RemovalCause cause) -> close(packFile))
+                .build(key -> PackFile.load(getPackFilePath((int) (key >> 32), (int) (long) key)));
+    }
+
+    @Override
+    public OutputStream write(int x, int z) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        return new OnCloseOutputStream(compression.compress(bytes),
+                () -> withPackFile(x, z, packFile -> {
+                    packFile.write(PackFile.index(x, z), bytes.toByteArray());
+                    return null;
+                })
+        );
+    }
+
+    @Override
+    public @Nullable CompressedInputStream read(int x, int z) throws IOException {
+        return withPackFile(x, z, packFile -> packFile.read(PackFile.index(x, z), compression));
+    }
+
+    @Override
+    public void delete(int x, int z) throws IOException {
+        withPackFile(x, z, packFile -> {
+            packFile.delete(PackFile.index(x, z));
+            return null;
+        });
+    }
+
+    @Override
+    public boolean exists(int x, int z) throws IOException {
+        return withPackFile(x, z, packFile -> packFile.exists(PackFile.index(x, z)));
+    }
+
+    @Override
+    public ItemStorage cell(int x, int z) {
+        return new GridStorageCell(this, x, z);
+    }
+
+    @SuppressWarnings("resource")
+    @Override
+    public Stream<Cell> stream() throws IOException {
+        if (!Files.exists(root)) return Stream.empty();
+        return Files.list(root)
+                .flatMap(path -> {
+                    Matcher matcher = fileNamePattern.matcher(path.getFileName().toString());
+                    if (!matcher.matches()) return Stream.empty();
+                    int regionX = Integer.parseInt(matcher.group(1));
+                    int regionZ = Integer.parseInt(matcher.group(2));
+
+                    int[] indices;
+                    try {
+                        indices = withPackFile(regionX << PackFile.REGION_SHIFT, regionZ << PackFile.REGION_SHIFT, PackFile::indices);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+
+                    return Arrays.stream(indices).mapToObj(index -> new GridStorageCell(this,
+                            (regionX << PackFile.REGION_SHIFT) + (index & PackFile.REGION_MASK),
+                            (regionZ << PackFile.REGION_SHIFT) + (index >> PackFile.REGION_SHIFT)
+                    ));
+                });
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Closes this storage and all loaded pack-files (writing their pending tables).
+     * Any further access to this storage fails with an {@link IOException}.
+     */
+    void close() {
+        closed = true;
+        invalidate();
+    }
+
+    /**
+     * Closes all loaded pack-files (writing their pending tables), so they will be reloaded from disk on the next access.
+     */
+    public void invalidate() {
+        for (Long key : packFiles.asMap().keySet()) {
+            packFiles.asMap().computeIfPresent(key, (k, packFile) -> {
+                close(packFile);
+                return null;
+            });
+        }
+    }
+
+    public Path getPackFilePath(int regionX, int regionZ) {
+        return root.resolve("r." + regionX + "." + regionZ + suffix);
+    }
+
+    /**
+     * Runs the action on the loaded pack-file of the region containing the given cell.<br>
+     * The action holds the pack-file's monitor, so the pack-file can not be closed (evicted) while the action is running.
+     * If the pack-file has been closed already, the next access loads it again. This way there is never more than
+     * one open instance per file.
+     */
+    private <T> T withPackFile(int x, int z, PackFileAction<T> action) throws IOException {
+        while (true) {
+            if (closed) throw new IOException("Storage '" + root + "' is closed!");
+            PackFile packFile = packFile(x, z);
+            synchronized (packFile) {
+                if (!packFile.isClosed()) return action.apply(packFile);
+            }
+        }
+    }
+
+    private void close(PackFile packFile) {
+        try {
+            packFile.close();
+        } catch (IOException ex) {
+            Logger.global.logError("Failed to close pack-file", ex);
+        }
+    }
+
+    private PackFile packFile(int x, int z) throws IOException {
+        int regionX = x >> PackFile.REGION_SHIFT;
+        int regionZ = z >> PackFile.REGION_SHIFT;
+        try {
+            return packFiles.get((long) regionX << 32 | regionZ & 0xFFFFFFFFL);
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof IOException ioException) throw ioException;
+            throw ex;
+        }
+    }
+
+    @FunctionalInterface
+    private interface PackFileAction<T> {
+        T apply(PackFile packFile) throws IOException;
+    }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.storage.pack;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import de.bluecolored.bluemap.core.storage.GridStorage;
+import de.bluecolored.bluemap.core.storage.ItemStorage;
+import de.bluecolored.bluemap.core.storage.MapStorage;
+import de.bluecolored.bluemap.core.storage.compression.Compression;
+import de.bluecolored.bluemap.core.storage.file.FileMapStorage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.DoublePredicate;
+
+/**
+ * A {@link MapStorage} storing all grid-items (tiles and render-state) in region-sized {@link PackFile}s,
+ * while all other items (settings, textures, assets, ...) are stored as plain files like in a {@link FileMapStorage}.
+ */
+public class PackMapStorage implements MapStorage {
+
+    private static final String TILES_PATH = "tiles";
+    private static final String RENDER_STATE_PATH = "rstate";
+
+    private final FileMapStorage fileMapStorage;
+
+    private final PackGridStorage hiresGridStorage;
+    private final LoadingCache<Integer, PackGridStorage> lowresGridStorages;
+    private final PackGridStorage tileStateStorage;
+    private final PackGridStorage chunkStateStorage;
+
+    private volatile boolean closed;
+
+    public PackMapStorage(Path root, Compression compression, boolean atomic) {
+        this.fileMapStorage = new FileMapStorage(root, compression, atomic);
+
+        this.hiresGridStorage = new PackGridStorage(
+                root.resolve(TILES_PATH).resolve("0"),
+                ".prbm" + compression.getFileSuffix(),
+                compression
+        );
+
+        this.lowresGridStorages = Caffeine.newBuilder().build(lod -> {
+            PackGridStorage lowresGridStorage = new PackGridStorage(
+                    root.resolve(TILES_PATH).resolve(String.valueOf(lod)),
+                    ".png",
+                    Compression.NONE
+            );
+            if (closed) lowresGridStorage.close();
+            return lowresGridStorage;
+        });
+
+        this.tileStateStorage = new PackGridStorage(
+                root.resolve(RENDER_STATE_PATH),
+                ".tiles.dat",
+                Compression.GZIP
+        );
+
+        this.chunkStateStorage = new PackGridStorage(
+                root.resolve(RENDER_STATE_PATH),
+                ".chunks.dat",
+                Compression.GZIP
+        );
+    }
+
+    @Override
+    public GridStorage hiresTiles() {
+        return hiresGridStorage;
+    }
+
+    @Override
+    public GridStorage lowresTiles(int lod) {
+        return lowresGridStorages.get(lod);
+    }
+
+    @Override
+    public GridStorage tileState() {
+        return tileStateStorage;
+    }
+
+    @Override
+    public GridStorage chunkState() {
+        return chunkStateStorage;
+    }
+
+    @Override
+    public ItemStorage asset(String name) {
+        return fileMapStorage.asset(name);
+    }
+
+    @Override
+    public ItemStorage settings() {
+        return fileMapStorage.settings();
+    }
+
+    @Override
+    public ItemStorage textures() {
+        return fileMapStorage.textures();
+    }
+
+    @Override
+    public ItemStorage markers() {
+        return fileMapStorage.markers();
+    }
+
+    @Override
+    public ItemStorage players() {
+        return fileMapStorage.players();
+    }
+
+    @Override
+    public void delete(DoublePredicate onProgress) throws IOException {
+        // close the pack-files before deleting them, and make sure no outdated tables are used afterward
+        invalidate();
+        fileMapStorage.delete(onProgress);
+        invalidate();
+    }
+
+    /**
+     * Closes all loaded pack-files, writing their pending tables.
+     */
+    void invalidate() {
+        hiresGridStorage.invalidate();
+        lowresGridStorages.asMap().values().forEach(PackGridStorage::invalidate);
+        tileStateStorage.invalidate();
+        chunkStateStorage.invalidate();
+    }
+
+    /**
+     * Closes all grid-storages of this map and their loaded pack-files, writing their pending tables.
+     */
+    void close() {
+        closed = true;
+        hiresGridStorage.close();
+        lowresGridStorages.asMap().values().forEach(PackGridStorage::close);
+        tileStateStorage.close();
+        chunkStateStorage.close();
+    }
+
+    @Override
+    public boolean exists() throws IOException {
+        return fileMapStorage.exists();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+}
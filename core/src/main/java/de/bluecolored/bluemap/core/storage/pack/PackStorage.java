@@ -0,0 +1,81 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.storage.pack;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import de.bluecolored.bluemap.core.storage.Storage;
+import de.bluecolored.bluemap.core.storage.compression.Compression;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+public class PackStorage implements Storage {
+
+    @Getter private final Path root;
+    private final LoadingCache<String, PackMapStorage> mapStorages;
+
+    private volatile boolean closed;
+
+    public PackStorage(Path root, Compression compression, boolean atomic) {
+        this.root = root;
+
+        mapStorages = Caffeine.newBuilder()
+                .build(id -> new PackMapStorage(root.resolve(id), compression, atomic));
+    }
+
+    @Override
+    public void initialize() throws IOException {}
+
+    @Override
+    public PackMapStorage map(String mapId) {
+        return mapStorages.get(mapId);
+    }
+
+    @SuppressWarnings("resource")
+    @Override
+    public Stream<String> mapIds() throws IOException {
+        if (!Files.exists(root)) return Stream.empty();
+        return Files.list(root)
+                .filter(Files::isDirectory)
+                .map(Path::getFileName)
+                .map(Path::toString);
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        mapStorages.asMap().values().forEach(PackMapStorage::close);
+    }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.storage.sql;
+
+import de.bluecolored.bluemap.core.storage.compression.Compression;
+import de.bluecolored.bluemap.core.storage.sql.commandset.CommandSet;
+import de.bluecolored.bluemap.core.storage.sql.commandset.CommandSet.TilePosition;
+import de.bluecolored.bluemap.core.util.Key;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Spliterator} listing the grid-items of a sql-grid-storage page by page using keyset-pagination on (x, z).
+ * It can be split into independent x-ranges, so the listing can be processed in parallel.
+ */
+public class GridItemSpliterator implements Spliterator<TilePosition> {
+
+    private static final TilePosition[] EMPTY = new TilePosition[0];
+
+    private final CommandSet sql;
+    private final String map;
+    private final Key storage;
+    private final Compression compression;
+    private final int pageSize;
+
+    private int minX;
+    private int maxX;
+    private long estimatedSize;
+
+    private @Nullable TilePosition after;
+    private TilePosition[] page = EMPTY;
+    private int pos;
+    private boolean exhausted;
+
+    public GridItemSpliterator(
+            CommandSet sql, String map, Key storage, Compression compression,
+            int pageSize, CommandSet.GridRange range
+    ) {
+        this(sql, map, storage, compression, pageSize, range.minX(), range.maxX(), range.count());
+    }
+
+    private GridItemSpliterator(
+            CommandSet sql, String map, Key storage, Compression compression,
+            int pageSize, int minX, int maxX, long estimatedSize
+    ) {
+        if (pageSize <= 0) throw new IllegalArgumentException("pageSize has to be greater than 0");
+
+        this.sql = sql;
+        this.map = map;
+        this.storage = storage;
+        this.compression = compression;
+        this.pageSize = pageSize;
+        this.minX = minX;
+        this.maxX = maxX;
+        this.estimatedSize = estimatedSize;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super TilePosition> action) {
+        if (!refill()) return false;
+        action.accept(page[pos++]);
+        if (estimatedSize > 0) estimatedSize--;
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super TilePosition> action) {
+        while (refill()) {
+            while (pos < page.length) action.accept(page[pos++]);
+        }
+        estimatedSize = 0;
+    }
+
+    @Override
+    public @Nullable Spliterator<TilePosition> trySplit() {
+        if (exhausted) return null;
+
+        // everything up to and including "after" has already been fetched,
+        // so the x-range starting at the cursor's x is still open
+        long cursorX = after != null ? after.x() : minX;
+        long width = (long) maxX - cursorX + 1;
+        if (width < 2) return null;
+
+        long remaining = estimatedSize - (page.length - pos);
+        if (remaining < pageSize) return null;
+
+        int splitX = (int) (cursorX + width / 2);
+        long prefixSize = (long) (remaining * ((double) (splitX - cursorX) / width)) + (page.length - pos);
+
+        // the prefix (as required for ORDERED spliterators) takes over the current cursor and page
+        GridItemSpliterator prefix = new GridItemSpliterator(
+                sql, map, storage, compression,
+                pageSize, minX, splitX - 1, prefixSize
+        );
+        prefix.after = this.after;
+        prefix.page = this.page;
+        prefix.pos = this.pos;
+
+        this.minX = splitX;
+        this.estimatedSize = Math.max(estimatedSize - prefixSize, 0);
+        this.after = null;
+        this.page = EMPTY;
+        this.pos = 0;
+
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return estimatedSize;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | DISTINCT | NONNULL;
+    }
+
+    @SuppressWarnings("BooleanMethodIsAlwaysInverted")
+    private boolean refill() {
+        if (pos < page.length) return true;
+        if (exhausted) return false;
+
+        try {
+            page = sql.listGridItems(map, storage, compression, minX, maxX, after, pageSize);
+        } catch (IOException ex) { throw new RuntimeException(ex); }
+        pos = 0;
+
+        if (page.length < pageSize) exhausted = true;
+        if (page.length == 0) return false;
+
+        after = page[page.length - 1];
+        return true;
+    }
+
+}
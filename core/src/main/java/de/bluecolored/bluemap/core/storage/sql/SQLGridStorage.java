@@ -24,6 +24,7 @@
  */
 package de.bluecolored.bluemap.core.storage.sql;
 
+import de.bluecolored.bluemap.core.storage.ItemMetadata;
 import de.bluecolored.bluemap.core.storage.ItemStorage;
 import de.bluecolored.bluemap.core.storage.compression.CompressedInputStream;
 import de.bluecolored.bluemap.core.storage.compression.Compression;
@@ -41,6 +42,8 @@
 @RequiredArgsConstructor
 public class SQLGridStorage implements GridStorage {
 
+    private static final int PAGE_SIZE = 1000;
+
     private final CommandSet sql;
     private final String map;
     private final Key storage;
@@ -71,6 +74,11 @@ public boolean exists(int x, int z) throws IOException {
         return sql.hasGridItem(map, storage, x, z, compression);
     }
 
+    @Override
+    public @Nullable ItemMetadata metadata(int x, int z) throws IOException {
+        return sql.gridItemMetadata(map, storage, x, z, compression);
+    }
+
     @Override
     public ItemStorage cell(int x, int z) {
         return new GridStorageCell(this, x, z);
@@ -78,12 +86,11 @@ public ItemStorage cell(int x, int z) {
 
     @Override
     public Stream<Cell> stream() throws IOException {
+        CommandSet.GridRange range = sql.gridItemRange(map, storage, compression);
+        if (range == null) return Stream.empty();
+
         return StreamSupport.stream(
-                new PageSpliterator<>(page -> {
-                    try {
-                        return sql.listGridItems(map, storage, compression, page * 1000, 1000);
-                    } catch (IOException ex) { throw new RuntimeException(ex); }
-                }),
+                new GridItemSpliterator(sql, map, storage, compression, PAGE_SIZE, range),
                 false
         ).map(tilePosition -> new GridStorageCell(this, tilePosition.x(), tilePosition.z()));
     }
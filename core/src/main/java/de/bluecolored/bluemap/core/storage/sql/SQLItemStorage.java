@@ -26,6 +26,7 @@
 
 import de.bluecolored.bluemap.core.storage.compression.CompressedInputStream;
 import de.bluecolored.bluemap.core.storage.compression.Compression;
+import de.bluecolored.bluemap.core.storage.ItemMetadata;
 import de.bluecolored.bluemap.core.storage.ItemStorage;
 import de.bluecolored.bluemap.core.storage.sql.commandset.CommandSet;
 import de.bluecolored.bluemap.core.util.Key;
@@ -68,6 +69,11 @@ public boolean exists() throws IOException {
         return sql.hasItem(map, storage, compression);
     }
 
+    @Override
+    public @Nullable ItemMetadata metadata() throws IOException {
+        return sql.itemMetadata(map, storage, compression);
+    }
+
     @Override
     public boolean isClosed() {
         return sql.isClosed();
@@ -36,6 +36,7 @@
 import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 @SuppressWarnings("SqlSourceToSinkFlow")
@@ -164,6 +165,38 @@ public void writeGridItem(
         ));
     }
 
+    @Override
+    public void writeGridItems(Collection<GridItem> items) throws IOException {
+        if (items.isEmpty()) return;
+
+        // resolve all keys first, they might need their own connection
+        int[][] keys = new int[items.size()][];
+        int i = 0;
+        for (GridItem item : items) {
+            keys[i++] = new int[]{
+                    mapKey(item.mapId()),
+                    gridStorageKey(item.key()),
+                    compressionKey(item.compression())
+            };
+        }
+
+        db.run(connection -> {
+            PreparedStatement statement = connection.prepareStatement(gridStorageWriteStatement());
+            int j = 0;
+            for (GridItem item : items) {
+                int[] itemKeys = keys[j++];
+                statement.setObject(1, itemKeys[0]);
+                statement.setObject(2, itemKeys[1]);
+                statement.setObject(3, item.x());
+                statement.setObject(4, item.z());
+                statement.setObject(5, itemKeys[2]);
+                statement.setObject(6, item.bytes());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        });
+    }
+
     @Language("sql")
     public abstract String gridStorageReadStatement();
 
@@ -225,16 +258,23 @@ public boolean hasGridItem(
     @Override
     public TilePosition[] listGridItems(
             String mapId, Key key, Compression compression,
-            int start, int count
+            int minX, int maxX, @Nullable TilePosition after, int count
     ) throws IOException {
         int mapKey = mapKey(mapId);
         int storageKey = gridStorageKey(key);
         int compressionKey = compressionKey(compression);
+
+        // keyset-cursor: everything ordered after (afterX, afterZ)
+        long afterX = after != null ? after.x() : (long) minX - 1;
+        long afterZ = after != null ? after.z() : Long.MIN_VALUE;
+
         return db.run(connection -> {
             ResultSet result = executeQuery(connection,
                     gridStorageListStatement(),
                     mapKey, storageKey, compressionKey,
-                    count, start
+                    minX, maxX,
+                    afterX, afterX, afterZ,
+                    count
             );
 
             TilePosition[] tiles = new TilePosition[count];
@@ -256,6 +296,28 @@ public TilePosition[] listGridItems(
         });
     }
 
+    @Language("sql")
+    public abstract String gridStorageRangeStatement();
+
+    @Override
+    public @Nullable GridRange gridItemRange(
+            String mapId, Key key, Compression compression
+    ) throws IOException {
+        int mapKey = mapKey(mapId);
+        int storageKey = gridStorageKey(key);
+        int compressionKey = compressionKey(compression);
+        return db.run(connection -> {
+            ResultSet result = executeQuery(connection,
+                    gridStorageRangeStatement(),
+                    mapKey, storageKey, compressionKey
+            );
+            if (!result.next()) throw new IllegalStateException("Counting query returned empty result!");
+            long count = result.getLong(1);
+            if (count <= 0) return null;
+            return new GridRange(count, result.getInt(2), result.getInt(3));
+        });
+    }
+
     @Language("sql")
     public abstract String gridStorageCountMapItemsStatement();
 
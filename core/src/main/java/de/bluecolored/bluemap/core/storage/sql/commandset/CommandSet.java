@@ -24,12 +24,14 @@
  */
 package de.bluecolored.bluemap.core.storage.sql.commandset;
 
+import de.bluecolored.bluemap.core.storage.ItemMetadata;
 import de.bluecolored.bluemap.core.storage.compression.Compression;
 import de.bluecolored.bluemap.core.util.Key;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Collection;
 
 public interface CommandSet extends Closeable {
 
@@ -43,11 +45,26 @@ public interface CommandSet extends Closeable {
 
     boolean hasItem(String mapId, Key key, Compression compression) throws IOException;
 
+    /**
+     * Returns the metadata of the item if it is available without querying the database, or <code>null</code> otherwise.
+     * The databases only store the item-data itself, so by default this returns <code>null</code> and callers read the
+     * item with {@link #readItem(String, Key, Compression)} and compute the metadata from the data, which needs only
+     * one query and no hashing on the database-server.
+     */
+    default @Nullable ItemMetadata itemMetadata(String mapId, Key key, Compression compression) throws IOException {
+        return null;
+    }
+
     void writeGridItem(
             String mapId, Key key, int x, int z, Compression compression,
             byte[] bytes
     ) throws IOException;
 
+    /**
+     * Writes all given grid-items in one transaction (using a batch-statement)
+     */
+    void writeGridItems(Collection<GridItem> items) throws IOException;
+
     byte @Nullable [] readGridItem(
             String mapId, Key key, int x, int z, Compression compression
     ) throws IOException;
@@ -60,9 +77,34 @@ boolean hasGridItem(
             String mapId, Key key, int x, int z, Compression compression
     ) throws IOException;
 
+    /**
+     * Returns the metadata of the grid-item if it is available without querying the database, or <code>null</code>
+     * otherwise.
+     * @see #itemMetadata(String, Key, Compression)
+     */
+    default @Nullable ItemMetadata gridItemMetadata(
+            String mapId, Key key, int x, int z, Compression compression
+    ) throws IOException {
+        return null;
+    }
+
+    /**
+     * Lists up to <code>count</code> grid-items with an x-position between <code>minX</code> and <code>maxX</code> (inclusive),
+     * ordered by x and z.
+     * Only items ordered after the given <code>after</code>-position are returned (keyset-pagination), or all items
+     * of the range if <code>after</code> is <code>null</code>.
+     */
     TilePosition[] listGridItems(
             String mapId, Key key, Compression compression,
-            int start, int count
+            int minX, int maxX, @Nullable TilePosition after, int count
+    ) throws IOException;
+
+    /**
+     * Counts the grid-items of the given storage and returns their count together with the min and max x-position,
+     * or <code>null</code> if there are no items.
+     */
+    @Nullable GridRange gridItemRange(
+            String mapId, Key key, Compression compression
     ) throws IOException;
 
     int countMapGridsItems(String mapId) throws IOException;
@@ -79,4 +121,8 @@ TilePosition[] listGridItems(
 
     record TilePosition (int x, int z) {}
 
+    record GridRange (long count, int minX, int maxX) {}
+
+    record GridItem (String mapId, Key key, int x, int z, Compression compression, byte[] bytes) {}
+
 }
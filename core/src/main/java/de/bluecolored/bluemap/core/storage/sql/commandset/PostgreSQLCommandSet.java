@@ -238,7 +238,23 @@ public String gridStorageListStatement() {
         WHERE map = ?
         AND storage = ?
         AND compression = ?
-        LIMIT ? OFFSET ?
+        AND x >= ?
+        AND x <= ?
+        AND (x > ? OR (x = ? AND z > ?))
+        ORDER BY x, z
+        LIMIT ?
+        """;
+    }
+
+    @Override
+    @Language("postgresql")
+    public String gridStorageRangeStatement() {
+        return """
+        SELECT COUNT(*), MIN(x), MAX(x)
+        FROM bluemap_grid_storage_data
+        WHERE map = ?
+        AND storage = ?
+        AND compression = ?
         """;
     }
 
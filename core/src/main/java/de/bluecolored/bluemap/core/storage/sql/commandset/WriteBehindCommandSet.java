@@ -0,0 +1,377 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.storage.sql.commandset;
+
+import de.bluecolored.bluemap.core.BlueMap;
+import de.bluecolored.bluemap.core.logger.Logger;
+import de.bluecolored.bluemap.core.storage.ItemMetadata;
+import de.bluecolored.bluemap.core.storage.compression.Compression;
+import de.bluecolored.bluemap.core.util.Key;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link CommandSet} that wraps another CommandSet and does not write grid-items immediately, but collects them in
+ * a queue which is written in batches (one transaction each) by a background thread.<br>
+ * <br>
+ * A batch is written once {@link #batchSize} items are pending, or {@link #maxDelayMillis} after its oldest item
+ * has been queued. If the pending data exceeds {@link #maxPendingBytes}, writing threads are blocked until the queue
+ * has been worked off.<br>
+ * Reading, checking and deleting grid-items takes pending writes into account, all other operations on grid-items
+ * {@link #flush() flush} the queue first.<br>
+ * <br>
+ * Since writes happen in the background, failing writes can not be reported to the caller and are only logged.
+ */
+public class WriteBehindCommandSet implements CommandSet {
+
+    public static final int DEFAULT_BATCH_SIZE = 64;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 1000;
+    public static final long DEFAULT_MAX_PENDING_BYTES = 64 * 1024 * 1024;
+
+    private final CommandSet sql;
+    private final int batchSize;
+    private final long maxDelayMillis;
+    private final long maxPendingBytes;
+
+    private final LinkedHashMap<ItemKey, PendingItem> pending = new LinkedHashMap<>();
+    private final Map<ItemKey, PendingItem> inFlight = new HashMap<>();
+    private long pendingBytes = 0;
+    private long nextSequence = 0;
+    private boolean flushRequested = false;
+    private boolean closed = false;
+
+    private final Thread writerThread;
+
+    public WriteBehindCommandSet(CommandSet sql) {
+        this(sql, DEFAULT_BATCH_SIZE, DEFAULT_MAX_DELAY_MILLIS, DEFAULT_MAX_PENDING_BYTES);
+    }
+
+    public WriteBehindCommandSet(CommandSet sql, int batchSize, long maxDelayMillis, long maxPendingBytes) {
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize must be at least 1");
+
+        this.sql = sql;
+        this.batchSize = batchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.maxPendingBytes = maxPendingBytes;
+
+        this.writerThread = new Thread(this::writeLoop, "BlueMap-SQLWriter");
+        this.writerThread.setDaemon(true);
+        // use current classloader, this fixes ClassLoading issues with forge
+        this.writerThread.setContextClassLoader(BlueMap.class.getClassLoader());
+        this.writerThread.start();
+    }
+
+    @Override
+    public void writeGridItem(String mapId, Key key, int x, int z, Compression compression, byte[] bytes) throws IOException {
+        ItemKey itemKey = new ItemKey(mapId, key, x, z);
+        synchronized (this) {
+            if (closed) throw new IOException("CommandSet is closed!");
+
+            // back-pressure: wait until there is room in the queue
+            try {
+                while (pendingBytes >= maxPendingBytes && !closed) wait();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for pending writes", ex);
+            }
+            if (closed) throw new IOException("CommandSet is closed!");
+
+            // replace (and move to the end of the queue) any pending write for the same item
+            PendingItem previous = pending.remove(itemKey);
+            if (previous != null) pendingBytes -= previous.bytes.length;
+
+            pending.put(itemKey, new PendingItem(compression, bytes, nextSequence++, System.currentTimeMillis()));
+            pendingBytes += bytes.length;
+            notifyAll();
+        }
+    }
+
+    @Override
+    public void writeGridItems(Collection<GridItem> items) throws IOException {
+        for (GridItem item : items)
+            writeGridItem(item.mapId(), item.key(), item.x(), item.z(), item.compression(), item.bytes());
+    }
+
+    @Override
+    public byte @Nullable [] readGridItem(String mapId, Key key, int x, int z, Compression compression) throws IOException {
+        PendingItem item = findPending(new ItemKey(mapId, key, x, z));
+        if (item != null) return item.compression.equals(compression) ? item.bytes : null;
+        return sql.readGridItem(mapId, key, x, z, compression);
+    }
+
+    @Override
+    public boolean hasGridItem(String mapId, Key key, int x, int z, Compression compression) throws IOException {
+        PendingItem item = findPending(new ItemKey(mapId, key, x, z));
+        if (item != null) return item.compression.equals(compression);
+        return sql.hasGridItem(mapId, key, x, z, compression);
+    }
+
+    @Override
+    public @Nullable ItemMetadata gridItemMetadata(String mapId, Key key, int x, int z, Compression compression) throws IOException {
+        PendingItem item = findPending(new ItemKey(mapId, key, x, z));
+        if (item != null) return item.compression.equals(compression) ? ItemMetadata.of(item.bytes) : null;
+        return sql.gridItemMetadata(mapId, key, x, z, compression);
+    }
+
+    @Override
+    public void deleteGridItem(String mapId, Key key, int x, int z) throws IOException {
+        ItemKey itemKey = new ItemKey(mapId, key, x, z);
+        synchronized (this) {
+            PendingItem previous = pending.remove(itemKey);
+            if (previous != null) {
+                pendingBytes -= previous.bytes.length;
+                notifyAll();
+            }
+
+            // make sure a batch that is currently written won't recreate the item after we deleted it
+            try {
+                while (inFlight.containsKey(itemKey)) wait();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for pending writes", ex);
+            }
+        }
+        sql.deleteGridItem(mapId, key, x, z);
+    }
+
+    @Override
+    public TilePosition[] listGridItems(
+            String mapId, Key key, Compression compression,
+            int minX, int maxX, @Nullable TilePosition after, int count
+    ) throws IOException {
+        flush();
+        return sql.listGridItems(mapId, key, compression, minX, maxX, after, count);
+    }
+
+    @Override
+    public @Nullable GridRange gridItemRange(String mapId, Key key, Compression compression) throws IOException {
+        flush();
+        return sql.gridItemRange(mapId, key, compression);
+    }
+
+    @Override
+    public int countMapGridsItems(String mapId) throws IOException {
+        flush();
+        return sql.countMapGridsItems(mapId);
+    }
+
+    @Override
+    public int purgeMapGrids(String mapId, int limit) throws IOException {
+        flush();
+        return sql.purgeMapGrids(mapId, limit);
+    }
+
+    @Override
+    public void purgeMap(String mapId) throws IOException {
+        flush();
+        sql.purgeMap(mapId);
+    }
+
+    /**
+     * Blocks until all grid-items that have been queued before this call are written.
+     */
+    public void flush() throws IOException {
+        synchronized (this) {
+            long sequence = nextSequence;
+            flushRequested = true;
+            notifyAll();
+
+            try {
+                while (hasPendingBefore(sequence) && writerThread.isAlive()) wait(100);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for pending writes", ex);
+            }
+        }
+    }
+
+    private synchronized @Nullable PendingItem findPending(ItemKey itemKey) {
+        PendingItem item = pending.get(itemKey);
+        if (item == null) item = inFlight.get(itemKey);
+        return item;
+    }
+
+    private boolean hasPendingBefore(long sequence) {
+        // the queue is in order, and in-flight items are always older than the queued ones
+        if (!inFlight.isEmpty()) return true;
+        if (pending.isEmpty()) return false;
+        return pending.values().iterator().next().sequence < sequence;
+    }
+
+    private void writeLoop() {
+        List<GridItem> batch = new ArrayList<>(batchSize);
+        while (true) {
+            synchronized (this) {
+                try {
+                    while (!closed && !isBatchReady()) {
+                        if (pending.isEmpty()) {
+                            wait();
+                        } else {
+                            long oldest = pending.values().iterator().next().time;
+                            long delay = oldest + maxDelayMillis - System.currentTimeMillis();
+                            if (delay > 0) wait(delay);
+                        }
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    closed = true;
+                }
+
+                if (pending.isEmpty()) {
+                    flushRequested = false;
+                    notifyAll();
+                    if (closed) return;
+                    continue;
+                }
+
+                // move the oldest items into the in-flight batch
+                Iterator<Map.Entry<ItemKey, PendingItem>> iterator = pending.entrySet().iterator();
+                while (iterator.hasNext() && batch.size() < batchSize) {
+                    Map.Entry<ItemKey, PendingItem> entry = iterator.next();
+                    ItemKey itemKey = entry.getKey();
+                    PendingItem item = entry.getValue();
+                    iterator.remove();
+
+                    inFlight.put(itemKey, item);
+                    batch.add(new GridItem(itemKey.mapId, itemKey.key, itemKey.x, itemKey.z, item.compression, item.bytes));
+                }
+            }
+
+            writeBatch(batch);
+
+            synchronized (this) {
+                for (PendingItem item : inFlight.values())
+                    pendingBytes -= item.bytes.length;
+                inFlight.clear();
+                batch.clear();
+                notifyAll();
+            }
+        }
+    }
+
+    private boolean isBatchReady() {
+        if (pending.isEmpty()) return false;
+        if (flushRequested || pending.size() >= batchSize || pendingBytes >= maxPendingBytes) return true;
+        return pending.values().iterator().next().time + maxDelayMillis <= System.currentTimeMillis();
+    }
+
+    private void writeBatch(List<GridItem> batch) {
+        try {
+            sql.writeGridItems(batch);
+        } catch (IOException | RuntimeException batchEx) {
+            Logger.global.logDebug("Failed to write a batch of " + batch.size() + " grid-items, retrying them one by one: " + batchEx);
+
+            // write the items one by one, so only the failing ones get lost
+            for (GridItem item : batch) {
+                try {
+                    sql.writeGridItem(item.mapId(), item.key(), item.x(), item.z(), item.compression(), item.bytes());
+                } catch (IOException | RuntimeException ex) {
+                    Logger.global.logError("Failed to write grid-item %s (%s,%s) of map '%s'"
+                            .formatted(item.key().getFormatted(), item.x(), item.z(), item.mapId()), ex);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return sql.isClosed();
+    }
+
+    /**
+     * Writes all pending grid-items and closes the wrapped CommandSet.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (this) {
+            if (!pending.isEmpty() || !inFlight.isEmpty())
+                Logger.global.logWarning("Closing the sql-storage with %s grid-items not written!"
+                        .formatted(pending.size() + inFlight.size()));
+        }
+
+        sql.close();
+    }
+
+    // all other operations are delegated
+
+    @Override
+    public void initializeTables() throws IOException {
+        sql.initializeTables();
+    }
+
+    @Override
+    public void writeItem(String mapId, Key key, Compression compression, byte[] bytes) throws IOException {
+        sql.writeItem(mapId, key, compression, bytes);
+    }
+
+    @Override
+    public byte @Nullable [] readItem(String mapId, Key key, Compression compression) throws IOException {
+        return sql.readItem(mapId, key, compression);
+    }
+
+    @Override
+    public void deleteItem(String mapId, Key key) throws IOException {
+        sql.deleteItem(mapId, key);
+    }
+
+    @Override
+    public boolean hasItem(String mapId, Key key, Compression compression) throws IOException {
+        return sql.hasItem(mapId, key, compression);
+    }
+
+    @Override
+    public @Nullable ItemMetadata itemMetadata(String mapId, Key key, Compression compression) throws IOException {
+        return sql.itemMetadata(mapId, key, compression);
+    }
+
+    @Override
+    public boolean hasMap(String mapId) throws IOException {
+        return sql.hasMap(mapId);
+    }
+
+    @Override
+    public String[] listMapIds(int start, int count) throws IOException {
+        return sql.listMapIds(start, count);
+    }
+
+    private record ItemKey (String mapId, Key key, int x, int z) {}
+
+    private record PendingItem (Compression compression, byte[] bytes, long sequence, long time) {}
+
+}
@@ -0,0 +1,195 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A minimal PNG-encoder that writes 8-bit RGBA images directly from an int-array with ARGB pixels.<br>
+ * Each scanline is filtered with the filter (none, sub, up or paeth) that produces the smallest absolute sum,
+ * and the result is compressed with a {@link Deflater} with a configurable compression-level.
+ */
+public class PNGEncoder {
+
+    private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+    private static final byte[] IHDR = "IHDR".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IDAT = "IDAT".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IEND = "IEND".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int BYTES_PER_PIXEL = 4;
+    private static final int CHUNK_SIZE = 0x10000;
+
+    private static final byte FILTER_NONE = 0, FILTER_SUB = 1, FILTER_UP = 2, FILTER_PAETH = 4;
+
+    private final int level;
+
+    /**
+     * @param level the compression-level (0-9) used for the image-data, see {@link Deflater#setLevel(int)}
+     */
+    public PNGEncoder(int level) {
+        if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)
+            throw new IllegalArgumentException("Invalid compression-level: " + level);
+        this.level = level;
+    }
+
+    /**
+     * Encodes the given ARGB-pixels (non-premultiplied, row by row) as PNG and writes it to the stream.
+     */
+    public void encode(int[] argb, int width, int height, OutputStream out) throws IOException {
+        if (argb.length < width * height) throw new IllegalArgumentException("Pixel-array is too small for the given size");
+
+        CRC32 crc = new CRC32();
+        out.write(SIGNATURE);
+
+        byte[] header = new byte[13];
+        writeInt(header, 0, width);
+        writeInt(header, 4, height);
+        header[8] = 8; // bit-depth
+        header[9] = 6; // color-type: RGBA
+        header[10] = 0; // compression-method: deflate
+        header[11] = 0; // filter-method: adaptive
+        header[12] = 0; // no interlace
+        writeChunk(out, crc, IHDR, header, header.length);
+
+        int rowLength = width * BYTES_PER_PIXEL;
+        byte[] previous = new byte[rowLength + 1];
+        byte[] current = new byte[rowLength + 1];
+        byte[] sub = new byte[rowLength + 1], up = new byte[rowLength + 1], paeth = new byte[rowLength + 1];
+        previous[0] = FILTER_NONE; current[0] = FILTER_NONE;
+        sub[0] = FILTER_SUB; up[0] = FILTER_UP; paeth[0] = FILTER_PAETH;
+
+        Deflater deflater = new Deflater(level);
+        try {
+            byte[] buffer = new byte[CHUNK_SIZE];
+            int buffered = 0;
+            for (int y = 0; y < height; y++) {
+                int offset = y * width;
+                for (int x = 0, i = 1; x < width; x++, i += BYTES_PER_PIXEL) {
+                    int pixel = argb[offset + x];
+                    current[i] = (byte) (pixel >> 16);
+                    current[i + 1] = (byte) (pixel >> 8);
+                    current[i + 2] = (byte) pixel;
+                    current[i + 3] = (byte) (pixel >> 24);
+                }
+
+                deflater.setInput(filter(current, previous, sub, up, paeth));
+                while (!deflater.needsInput()) {
+                    buffered += deflater.deflate(buffer, buffered, buffer.length - buffered);
+                    if (buffered == buffer.length) {
+                        writeChunk(out, crc, IDAT, buffer, buffered);
+                        buffered = 0;
+                    }
+                }
+
+                byte[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+
+            deflater.finish();
+            while (!deflater.finished()) {
+                buffered += deflater.deflate(buffer, buffered, buffer.length - buffered);
+                if (buffered == buffer.length || deflater.finished()) {
+                    writeChunk(out, crc, IDAT, buffer, buffered);
+                    buffered = 0;
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+
+        writeChunk(out, crc, IEND, new byte[0], 0);
+    }
+
+    /**
+     * Applies the sub, up and paeth filters to the row and returns the row (with the leading filter-type byte)
+     * that has the smallest sum of absolute (signed) values, or the unfiltered row if none of the filters improves it.
+     * The rows are expected to start with a filter-type byte, so the pixel-data starts at index 1.
+     */
+    private static byte[] filter(byte[] row, byte[] previous, byte[] sub, byte[] up, byte[] paeth) {
+        long noneSum = 0, subSum = 0, upSum = 0, paethSum = 0;
+        for (int i = 1; i < row.length; i++) {
+            byte x = row[i];
+            int a = i > BYTES_PER_PIXEL ? row[i - BYTES_PER_PIXEL] & 0xFF : 0;
+            int b = previous[i] & 0xFF;
+            int c = i > BYTES_PER_PIXEL ? previous[i - BYTES_PER_PIXEL] & 0xFF : 0;
+
+            byte s = (byte) (x - a);
+            byte u = (byte) (x - b);
+            byte p = (byte) (x - paethPredictor(a, b, c));
+
+            sub[i] = s;
+            up[i] = u;
+            paeth[i] = p;
+
+            noneSum += Math.abs(x);
+            subSum += Math.abs(s);
+            upSum += Math.abs(u);
+            paethSum += Math.abs(p);
+        }
+
+        long min = Math.min(Math.min(noneSum, subSum), Math.min(upSum, paethSum));
+        if (min == noneSum) return row;
+        if (min == subSum) return sub;
+        if (min == upSum) return up;
+        return paeth;
+    }
+
+    private static int paethPredictor(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) return a;
+        if (pb <= pc) return b;
+        return c;
+    }
+
+    private static void writeChunk(OutputStream out, CRC32 crc, byte[] type, byte[] data, int length) throws IOException {
+        byte[] intBuffer = new byte[4];
+        writeInt(intBuffer, 0, length);
+        out.write(intBuffer);
+        out.write(type);
+        out.write(data, 0, length);
+
+        crc.reset();
+        crc.update(type);
+        crc.update(data, 0, length);
+        writeInt(intBuffer, 0, (int) crc.getValue());
+        out.write(intBuffer);
+    }
+
+    private static void writeInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+
+}
@@ -29,6 +29,8 @@
 
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -36,14 +38,22 @@
  * Represents a BlockState<br>
  * It is important that {@link #hashCode} and {@link #equals} are implemented correctly, for the caching to work properly.<br>
  * <br>
+ * Every distinct BlockState gets a dense integer-id assigned once it is {@link #intern() interned}, which can be used
+ * to look up cached data in flat arrays (see {@link BlockStateCache}).<br>
+ * <br>
  * <i>The implementation of this class has to be thread-save!</i><br>
  */
 public class BlockState extends Key {
 
     private static final Pattern BLOCKSTATE_SERIALIZATION_PATTERN = Pattern.compile("^(.+?)(?:\\[(.*)])?$");
 
-    public static final BlockState AIR = new BlockState("minecraft:air");
-    public static final BlockState MISSING = new BlockState("bluemap:missing");
+    private static final ConcurrentHashMap<BlockState, BlockState> INTERN_POOL = new ConcurrentHashMap<>();
+    private static final AtomicInteger NEXT_ID = new AtomicInteger(0);
+
+    public static final BlockState AIR = new BlockState("minecraft:air").intern();
+    public static final BlockState MISSING = new BlockState("bluemap:missing").intern();
+
+    private int id = -1;
 
     private boolean hashed;
     private int hash;
@@ -134,11 +144,34 @@ public int getRedstonePower() {
         return redstonePower;
     }
 
+    /**
+     * Returns a canonical representation of this BlockState.<br>
+     * For two equal BlockStates <code>a.intern() == b.intern()</code> is always true.
+     */
+    public BlockState intern() {
+        if (id != -1) return this;
+        return INTERN_POOL.computeIfAbsent(this, state -> {
+            state.id = NEXT_ID.getAndIncrement();
+            return state;
+        });
+    }
+
+    /**
+     * Returns the id of this BlockState.<br>
+     * Ids are assigned in the order the BlockStates are first interned, starting at 0 without gaps.
+     * Equal BlockStates always have the same id.
+     */
+    public int getId() {
+        int id = this.id;
+        return id != -1 ? id : intern().id;
+    }
+
     @SuppressWarnings("StringEquality")
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
         if (!(obj instanceof BlockState b)) return false;
+        if (id != -1 && b.id != -1) return id == b.id;
         if (!b.canEqual(this)) return false;
         if (getFormatted() != b.getFormatted()) return false;
         return Arrays.equals(propertiesArray, b.propertiesArray);
@@ -0,0 +1,83 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.world;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * A thread-safe cache for values that are computed from a {@link BlockState}.<br>
+ * The values are stored in a flat array indexed by the {@link BlockState#getId() id} of the block-state, so a lookup
+ * of an already cached value does not need any hashing or equality-checks.<br>
+ * <br>
+ * Values are never evicted, which is fine because there is only a limited number of distinct block-states.
+ * If the loader returns <code>null</code>, the result is not cached.
+ */
+public class BlockStateCache<T> {
+
+    private final Function<BlockState, T> loader;
+    private volatile AtomicReferenceArray<T> values;
+
+    public BlockStateCache(Function<BlockState, T> loader) {
+        this.loader = loader;
+        this.values = new AtomicReferenceArray<>(1024);
+    }
+
+    public @Nullable T get(BlockState blockState) {
+        int id = blockState.getId();
+        AtomicReferenceArray<T> values = this.values;
+        if (id < values.length()) {
+            T value = values.get(id);
+            if (value != null) return value;
+        }
+
+        T value = loader.apply(blockState);
+        if (value != null) put(id, value);
+        return value;
+    }
+
+    public synchronized void clear() {
+        this.values = new AtomicReferenceArray<>(values.length());
+    }
+
+    private synchronized void put(int id, T value) {
+        AtomicReferenceArray<T> values = this.values;
+        if (id >= values.length()) {
+            int length = values.length();
+            while (length <= id) length *= 2;
+
+            AtomicReferenceArray<T> grown = new AtomicReferenceArray<>(length);
+            for (int i = 0; i < values.length(); i++)
+                grown.set(i, values.get(i));
+
+            this.values = values = grown;
+        }
+
+        values.set(id, value);
+    }
+
+}
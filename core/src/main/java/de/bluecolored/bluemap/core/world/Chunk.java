@@ -46,6 +46,15 @@ default long getInhabitedTime() {
         return 0;
     }
 
+    /**
+     * A hash over all data of this chunk that is relevant for rendering it (blocks, biomes, light, ...).<br>
+     * The hash is stable across restarts, so it can be persisted to detect changes.
+     * Returns 0 if this chunk has no content-hash.
+     */
+    default int getContentHash() {
+        return 0;
+    }
+
     default BlockState getBlockState(int x, int y, int z) {
         return BlockState.AIR;
     }
@@ -66,6 +75,23 @@ default int getMinY(int x, int z) {
         return 0;
     }
 
+    /**
+     * Returns a y-coordinate in the given column above which there are only air-blocks,
+     * so the empty sky above the ground can be skipped.<br>
+     * Defaults to {@link #getMaxY(int, int)}.
+     */
+    default int getColumnMaxY(int x, int z) {
+        return getMaxY(x, z);
+    }
+
+    /**
+     * Returns the block-state that the entire 16x16x16 section containing the given y-coordinate is filled with,
+     * or null if the section is not (known to be) filled with a single block-state.
+     */
+    default @Nullable BlockState getUniformBlockState(int y) {
+        return null;
+    }
+
     default boolean hasWorldSurfaceHeights() {
         return false;
     }
@@ -99,6 +99,24 @@ default void preloadRegionChunks(int x, int z) {
      */
     void preloadRegionChunks(int x, int z, Predicate<Vector2i> chunkFilter);
 
+    /**
+     * Loads the filtered chunks from the specified region into the chunk cache (if there is a cache),
+     * until the loaded chunks take up the given amount of memory.
+     * @return the estimated amount of memory used by the loaded chunks
+     */
+    default long preloadRegionChunks(int x, int z, Predicate<Vector2i> chunkFilter, long memoryBudget) {
+        preloadRegionChunks(x, z, chunkFilter);
+        return 0;
+    }
+
+    /**
+     * The amount of memory that chunk-preloading may use up without evicting most of the cached chunks that are in use
+     * (0 if there is no cache)
+     */
+    default long getChunkPreloadBudget() {
+        return 0;
+    }
+
     /**
      * Invalidates the complete chunk cache (if there is a cache), so that every chunk has to be reloaded from disk
      */
@@ -109,6 +127,14 @@ default void preloadRegionChunks(int x, int z) {
      */
     void invalidateChunkCache(int x, int z);
 
+    /**
+     * Invalidates the chunk from the chunk-cache (if there is a cache), unless the cached chunk has been preloaded while it
+     * had the given lastModified timestamp, which means it is still up-to-date
+     */
+    default void invalidateChunkCache(int x, int z, int lastModified) {
+        invalidateChunkCache(x, z);
+    }
+
     void iterateEntities(int minX, int minZ, int maxX, int maxZ, Consumer<Entity> entityConsumer);
 
     /**
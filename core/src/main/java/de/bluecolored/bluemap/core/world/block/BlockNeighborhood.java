@@ -26,7 +26,11 @@
 
 import de.bluecolored.bluemap.core.map.hires.RenderSettings;
 import de.bluecolored.bluemap.core.resources.pack.resourcepack.ResourcePack;
+import de.bluecolored.bluemap.core.world.BlockProperties;
+import de.bluecolored.bluemap.core.world.BlockState;
 import de.bluecolored.bluemap.core.world.DimensionType;
+import de.bluecolored.bluemap.core.world.LightData;
+import org.jetbrains.annotations.Nullable;
 
 public class BlockNeighborhood extends ExtendedBlock {
 
@@ -36,12 +40,16 @@ public class BlockNeighborhood extends ExtendedBlock {
 
     private final ExtendedBlock[] neighborhood;
 
+    private final @Nullable BlockSnapshot snapshot;
+    private final LightData neighborLightData = new LightData(0, 0);
+
     private int thisIndex = -1;
 
     public BlockNeighborhood(BlockAccess blockAccess, ResourcePack resourcePack, RenderSettings renderSettings, DimensionType dimensionType) {
         super(blockAccess, resourcePack, renderSettings, dimensionType);
 
         this.neighborhood = new ExtendedBlock[DIAMETER * DIAMETER * DIAMETER];
+        this.snapshot = blockAccess instanceof SnapshotBlock snapshotBlock ? snapshotBlock.getSnapshot() : null;
     }
 
     @Override
@@ -63,6 +71,50 @@ public ExtendedBlock getNeighborBlock(int dx, int dy, int dz) {
         );
     }
 
+    /**
+     * Returns the block-state of the neighbor at the given offset, like
+     * <code>getNeighborBlock(dx, dy, dz).getBlockState()</code>.<br>
+     * If this neighborhood is on a {@link BlockSnapshot}, the state is read straight from the snapshot
+     * instead of (re)positioning a neighbor-block.
+     */
+    public BlockState getNeighborBlockState(int dx, int dy, int dz) {
+        int x = getX() + dx, y = getY() + dy, z = getZ() + dz;
+        if (snapshot == null || !snapshot.containsColumn(x, z))
+            return getBlock(x, y, z).getBlockState();
+
+        if (isOutsideRenderEdges(x, y, z)) return BlockState.AIR;
+        return snapshot.getBlockState(x, y, z);
+    }
+
+    /**
+     * Returns the light-data of the neighbor at the given offset, like
+     * <code>getNeighborBlock(dx, dy, dz).getLightData()</code>.<br>
+     * If this neighborhood is on a {@link BlockSnapshot}, the light is read straight from the snapshot
+     * into a {@link LightData} instance that is reused by the next call.
+     */
+    public LightData getNeighborLightData(int dx, int dy, int dz) {
+        int x = getX() + dx, y = getY() + dy, z = getZ() + dz;
+        if (snapshot == null || !snapshot.containsColumn(x, z))
+            return getBlock(x, y, z).getLightData();
+
+        LightData ld = snapshot.getLightData(x, y, z, neighborLightData);
+        if (isOutsideRenderEdges(x, y, z)) ld.set(getDimensionType().hasSkylight() ? 16 : 0, ld.getBlockLight());
+        return ld;
+    }
+
+    /**
+     * Returns the block-properties of the neighbor at the given offset, like
+     * <code>getNeighborBlock(dx, dy, dz).getProperties()</code>.
+     */
+    public BlockProperties getNeighborProperties(int dx, int dy, int dz) {
+        return getResourcePack().getBlockProperties(getNeighborBlockState(dx, dy, dz));
+    }
+
+    private boolean isOutsideRenderEdges(int x, int y, int z) {
+        RenderSettings renderSettings = getRenderSettings();
+        return renderSettings.isRenderEdges() && !renderSettings.isInsideRenderBoundaries(x, y, z);
+    }
+
     private ExtendedBlock getBlock(int x, int y, int z) {
         int i = index(x, y, z);
         if (i == thisIndex()) return this;
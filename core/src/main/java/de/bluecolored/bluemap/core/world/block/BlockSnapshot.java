@@ -0,0 +1,269 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.world.block;
+
+import de.bluecolored.bluemap.core.world.BlockState;
+import de.bluecolored.bluemap.core.world.Chunk;
+import de.bluecolored.bluemap.core.world.LightData;
+import de.bluecolored.bluemap.core.world.World;
+import de.bluecolored.bluemap.core.world.biome.Biome;
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * A snapshot of a box of blocks of a {@link World}, stored in flat primitive arrays.<br>
+ * The chunks of all columns are resolved once when the snapshot is {@link #load loaded}, and each block-state,
+ * light-value and biome is copied from its chunk the first time it is accessed. All later lookups
+ * (e.g. the many neighbor-lookups of the block-renderers) are plain array-reads.<br>
+ * <br>
+ * Use {@link #createAccess()} to get a {@link BlockAccess} on this snapshot.
+ * Blocks above or below the stored y-range of a contained column are read from the column's chunk, and only
+ * blocks outside the x/z-bounds of the box are looked up from the world.<br>
+ * <br>
+ * <i>A BlockSnapshot is <b>not</b> thread-safe and is meant to be reused for each rendered tile.</i>
+ */
+public class BlockSnapshot {
+
+    private static final int UNSET = -1;
+
+    @Getter private @Nullable World world;
+    @Getter private int minX, minY, minZ, maxX, maxY, maxZ;
+    private int sizeY, sizeZ, volume;
+
+    private Chunk[] chunks = new Chunk[0];
+    private int[] blockStates = new int[0];
+    private short[] lightData = new short[0];
+    private short[] biomes = new short[0];
+
+    private BlockState[] blockStatePalette = new BlockState[256];
+    private Biome[] biomePalette = new Biome[16];
+    private int biomePaletteSize;
+
+    /**
+     * (Re)loads this snapshot to cover the box from min to max (inclusive) of the given world.<br>
+     * The y-range is narrowed to the blocks the chunks of the box actually contain
+     * (from their min-y up to their {@link Chunk#getColumnMaxY(int, int) column-max-y}) plus one block above and below.
+     * Lookups outside of that narrowed y-range (but still within the x/z-bounds) are not cached and go straight to
+     * the already resolved chunk of the column.<br>
+     * The arrays are reused and only grow if the new box needs more space than any box before.
+     */
+    public void load(World world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        if (maxX < minX || maxZ < minZ)
+            throw new IllegalArgumentException("max can not be smaller than min");
+
+        this.world = world;
+        this.minX = minX;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxZ = maxZ;
+
+        int sizeX = maxX - minX + 1;
+        this.sizeZ = maxZ - minZ + 1;
+
+        int columns = sizeX * sizeZ;
+        if (chunks.length < columns) chunks = new Chunk[columns];
+
+        // resolve chunks, consecutive columns are mostly in the same chunk
+        Chunk chunk = null;
+        int chunkX = 0, chunkZ = 0;
+        int contentMinY = Integer.MAX_VALUE, contentMaxY = Integer.MIN_VALUE;
+        int column = 0;
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                if (chunk == null || (x >> 4) != chunkX || (z >> 4) != chunkZ) {
+                    chunk = world.getChunkAtBlock(x, z);
+                    chunkX = x >> 4;
+                    chunkZ = z >> 4;
+                }
+                chunks[column++] = chunk;
+
+                contentMinY = Math.min(contentMinY, chunk.getMinY(x, z));
+                contentMaxY = Math.max(contentMaxY, chunk.getColumnMaxY(x, z));
+            }
+        }
+
+        this.minY = (int) Math.max(minY, contentMinY - 1L);
+        this.maxY = (int) Math.min(maxY, contentMaxY + 1L);
+        if (this.maxY < this.minY) this.maxY = this.minY;
+
+        this.sizeY = this.maxY - this.minY + 1;
+        this.volume = columns * sizeY;
+
+        if (blockStates.length < volume) {
+            blockStates = new int[volume];
+            lightData = new short[volume];
+            biomes = new short[volume];
+        }
+
+        Arrays.fill(blockStates, 0, volume, UNSET);
+        Arrays.fill(lightData, 0, volume, (short) UNSET);
+        Arrays.fill(biomes, 0, volume, (short) UNSET);
+        this.biomePaletteSize = 0;
+    }
+
+    /**
+     * Releases all references to the world and its chunks, the arrays are kept to be reused for the next
+     * {@link #load}.
+     */
+    public void clear() {
+        Arrays.fill(chunks, null);
+        Arrays.fill(biomePalette, null);
+        this.biomePaletteSize = 0;
+        this.world = null;
+        this.volume = 0;
+    }
+
+    /**
+     * Creates a new {@link BlockAccess} on this snapshot.
+     */
+    public BlockAccess createAccess() {
+        return new SnapshotBlock(this);
+    }
+
+    public boolean contains(int x, int y, int z) {
+        return
+                x >= minX && x <= maxX &&
+                y >= minY && y <= maxY &&
+                z >= minZ && z <= maxZ &&
+                volume > 0;
+    }
+
+    public boolean containsColumn(int x, int z) {
+        return
+                x >= minX && x <= maxX &&
+                z >= minZ && z <= maxZ &&
+                volume > 0;
+    }
+
+    /**
+     * Returns the chunk of the column at the given x and z coordinates.
+     * The column has to be {@link #containsColumn(int, int) contained} in this snapshot.
+     */
+    public Chunk getChunk(int x, int z) {
+        return chunks[columnIndex(x, z)];
+    }
+
+    /**
+     * Returns the index of the block at the given position.
+     * The position has to be {@link #contains(int, int, int) contained} in this snapshot.
+     */
+    int index(int x, int y, int z) {
+        return columnIndex(x, z) * sizeY + (y - minY);
+    }
+
+    /**
+     * Returns the block-state at the given position.
+     * The column of the position has to be {@link #containsColumn(int, int) contained} in this snapshot.
+     */
+    BlockState getBlockState(int x, int y, int z) {
+        if (y < minY || y > maxY) return getChunk(x, z).getBlockState(x, y, z);
+        return getBlockState(index(x, y, z), x, y, z);
+    }
+
+    /**
+     * Reads the light-data at the given position into the target.
+     * The column of the position has to be {@link #containsColumn(int, int) contained} in this snapshot.
+     */
+    LightData getLightData(int x, int y, int z, LightData target) {
+        if (y < minY || y > maxY) return getChunk(x, z).getLightData(x, y, z, target);
+        return getLightData(index(x, y, z), x, y, z, target);
+    }
+
+    BlockState getBlockState(int index, int x, int y, int z) {
+        int id = blockStates[index];
+        if (id == UNSET) id = loadBlockState(index, x, y, z);
+        return blockStatePalette[id];
+    }
+
+    LightData getLightData(int index, int x, int y, int z, LightData target) {
+        int light = lightData[index];
+        if (light == UNSET) {
+            chunks[index / sizeY].getLightData(x, y, z, target);
+            lightData[index] = (short) (target.getSkyLight() << 8 | target.getBlockLight());
+            return target;
+        }
+        return target.set(light >> 8, light & 0xFF);
+    }
+
+    Biome getBiome(int index, int x, int y, int z) {
+        int id = biomes[index];
+        if (id == UNSET) {
+            Biome biome = chunks[index / sizeY].getBiome(x, y, z);
+            id = biomeId(biome);
+            if (id == UNSET) return biome; // palette is full
+            biomes[index] = (short) id;
+        }
+        return biomePalette[id];
+    }
+
+    private int columnIndex(int x, int z) {
+        return (x - minX) * sizeZ + (z - minZ);
+    }
+
+    private int loadBlockState(int index, int x, int y, int z) {
+        Chunk chunk = chunks[index / sizeY];
+
+        // if the whole section is made of one block-state, we can fill the entire column-slice at once
+        BlockState uniform = chunk.getUniformBlockState(y);
+        if (uniform != null) {
+            int id = paletteBlockState(uniform);
+            int sectionMinY = Math.max(y & ~0xF, minY);
+            int sectionMaxY = Math.min(y | 0xF, maxY);
+            int offset = index - (y - sectionMinY);
+            Arrays.fill(blockStates, offset, offset + sectionMaxY - sectionMinY + 1, id);
+            return id;
+        }
+
+        int id = paletteBlockState(chunk.getBlockState(x, y, z));
+        blockStates[index] = id;
+        return id;
+    }
+
+    private int paletteBlockState(BlockState blockState) {
+        int id = blockState.getId();
+        if (id >= blockStatePalette.length)
+            blockStatePalette = Arrays.copyOf(blockStatePalette, Math.max(id + 1, blockStatePalette.length * 2));
+
+        // ids are global and unique, so an existing entry is always an equal state
+        if (blockStatePalette[id] == null) blockStatePalette[id] = blockState;
+        return id;
+    }
+
+    private int biomeId(Biome biome) {
+        for (int i = 0; i < biomePaletteSize; i++) {
+            if (biomePalette[i] == biome) return i;
+        }
+
+        if (biomePaletteSize >= Short.MAX_VALUE) return UNSET;
+        if (biomePaletteSize >= biomePalette.length)
+            biomePalette = Arrays.copyOf(biomePalette, biomePalette.length * 2);
+
+        biomePalette[biomePaletteSize] = biome;
+        return biomePaletteSize++;
+    }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.world.block;
+
+import de.bluecolored.bluemap.core.world.BlockEntity;
+import de.bluecolored.bluemap.core.world.BlockState;
+import de.bluecolored.bluemap.core.world.Chunk;
+import de.bluecolored.bluemap.core.world.LightData;
+import de.bluecolored.bluemap.core.world.World;
+import de.bluecolored.bluemap.core.world.biome.Biome;
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Objects;
+
+/**
+ * A {@link BlockAccess} reading from a {@link BlockSnapshot}.
+ * Positions outside the stored y-range of a contained column are read from the column's chunk,
+ * positions outside the x/z-bounds of the snapshot are looked up from the world like a normal {@link Block}.
+ */
+public class SnapshotBlock implements BlockAccess {
+
+    private final BlockSnapshot snapshot;
+
+    @Getter private int x, y, z;
+    private int index = -1;
+    private boolean inColumn;
+
+    private final LightData lightData = new LightData(0, 0);
+    private @Nullable Block fallback;
+
+    public SnapshotBlock(BlockSnapshot snapshot) {
+        this.snapshot = Objects.requireNonNull(snapshot);
+    }
+
+    @Override
+    public void set(int x, int y, int z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+
+        this.inColumn = snapshot.containsColumn(x, z);
+        this.index = inColumn && snapshot.contains(x, y, z) ? snapshot.index(x, y, z) : -1;
+    }
+
+    @Override
+    public SnapshotBlock copy() {
+        SnapshotBlock copy = new SnapshotBlock(snapshot);
+        copy.x = x;
+        copy.y = y;
+        copy.z = z;
+        copy.index = index;
+        copy.inColumn = inColumn;
+        return copy;
+    }
+
+    BlockSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public BlockState getBlockState() {
+        if (index != -1) return snapshot.getBlockState(index, x, y, z);
+        if (inColumn) return getChunk().getBlockState(x, y, z);
+        return fallback().getBlockState();
+    }
+
+    @Override
+    public LightData getLightData() {
+        if (index != -1) return snapshot.getLightData(index, x, y, z, lightData);
+        if (inColumn) return getChunk().getLightData(x, y, z, lightData);
+        return fallback().getLightData();
+    }
+
+    @Override
+    public Biome getBiome() {
+        if (index != -1) return snapshot.getBiome(index, x, y, z);
+        if (inColumn) return getChunk().getBiome(x, y, z);
+        return fallback().getBiome();
+    }
+
+    @Override
+    public @Nullable BlockEntity getBlockEntity() {
+        if (!inColumn) return fallback().getBlockEntity();
+        return getChunk().getBlockEntity(x, y, z);
+    }
+
+    @Override
+    public boolean hasOceanFloorY() {
+        if (!inColumn) return fallback().hasOceanFloorY();
+        return getChunk().hasOceanFloorHeights();
+    }
+
+    @Override
+    public int getOceanFloorY() {
+        if (!inColumn) return fallback().getOceanFloorY();
+        return getChunk().getOceanFloorY(x, z);
+    }
+
+    private Chunk getChunk() {
+        return snapshot.getChunk(x, z);
+    }
+
+    private Block fallback() {
+        World world = Objects.requireNonNull(snapshot.getWorld(), "The snapshot is not loaded");
+        if (fallback == null || fallback.getWorld() != world) fallback = new Block(world, x, y, z);
+        else fallback.set(x, y, z);
+        return fallback;
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.world.mca;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import de.bluecolored.bluemap.core.BlueMap;
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * A cache for loaded chunks that can be shared between multiple {@link ChunkGrid}s (and worlds).<br>
+ * Instead of a number of chunks, the cache is bounded by the estimated amount of memory the cached chunks are retaining,
+ * so its size does not depend on GC-pressure and large chunks don't blow up the heap.
+ */
+public class ChunkCache {
+
+    public static final long DEFAULT_MAX_MEMORY_USAGE = 512L * 1024 * 1024;
+
+    @Getter private final long maxMemoryUsage;
+    private final Cache<Key, Entry> cache;
+
+    public ChunkCache() {
+        this(DEFAULT_MAX_MEMORY_USAGE);
+    }
+
+    public ChunkCache(long maxMemoryUsage) {
+        this.maxMemoryUsage = maxMemoryUsage;
+        this.cache = Caffeine.newBuilder()
+                .executor(BlueMap.THREAD_POOL)
+                .maximumWeight(maxMemoryUsage)
+                .weigher(ChunkCache::weigh)
+                .expireAfterWrite(10, TimeUnit.MINUTES)
+                .expireAfterAccess(1, TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+    }
+
+    <T> T get(ChunkGrid<T> grid, int x, int z, Function<Key, T> loader) {
+        //noinspection unchecked
+        return (T) cache.get(new Key(grid, x, z), key -> new Entry(loader.apply(key), 0)).chunk();
+    }
+
+    /**
+     * Puts a chunk into the cache that has been loaded from a region-file where it had the given lastModified timestamp
+     */
+    <T> void put(ChunkGrid<T> grid, int x, int z, T chunk, int lastModified) {
+        cache.put(new Key(grid, x, z), new Entry(chunk, lastModified));
+    }
+
+    void invalidate(ChunkGrid<?> grid, int x, int z) {
+        cache.invalidate(new Key(grid, x, z));
+    }
+
+    /**
+     * Invalidates the cached chunk, unless it has been put into the cache with the same (known) lastModified timestamp
+     */
+    void invalidate(ChunkGrid<?> grid, int x, int z, int lastModified) {
+        Key key = new Key(grid, x, z);
+        Entry entry = cache.asMap().get(key); // does not count as a hit or miss
+        if (entry == null) return;
+        if (lastModified != 0 && entry.lastModified() == lastModified) return;
+        cache.asMap().remove(key, entry);
+    }
+
+    void invalidateAll(ChunkGrid<?> grid) {
+        cache.asMap().keySet().removeIf(key -> key.grid == grid);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    void cleanUp() {
+        cache.cleanUp();
+    }
+
+    /**
+     * Returns a snapshot of the current size and the hit/miss/eviction/load-time counters of this cache.
+     */
+    public Stats getStats() {
+        long memoryUsage = cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L);
+        return new Stats(cache.estimatedSize(), memoryUsage, maxMemoryUsage, cache.stats());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int weigh(Key key, Entry entry) {
+        return Math.max(((ChunkGrid<Object>) key.grid).estimateMemoryUsage(entry.chunk()), 1);
+    }
+
+    record Key(ChunkGrid<?> grid, int x, int z) {}
+
+    /**
+     * @param lastModified the timestamp the chunk had in its region-file when it was loaded, or 0 if unknown
+     */
+    private record Entry(Object chunk, int lastModified) {}
+
+    public record Stats(
+            long chunkCount,
+            long memoryUsage,
+            long maxMemoryUsage,
+            long hitCount,
+            long missCount,
+            long evictionCount,
+            long loadCount,
+            long totalLoadTimeNanos
+    ) {
+
+        private Stats(long chunkCount, long memoryUsage, long maxMemoryUsage, CacheStats stats) {
+            this(
+                    chunkCount, memoryUsage, maxMemoryUsage,
+                    stats.hitCount(), stats.missCount(), stats.evictionCount(), stats.loadCount(), stats.totalLoadTime()
+            );
+        }
+
+        public double hitRate() {
+            long requestCount = hitCount + missCount;
+            return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+        }
+
+        public double averageLoadTimeMillis() {
+            return loadCount == 0 ? 0.0 : totalLoadTimeNanos / 1_000_000.0 / loadCount;
+        }
+
+    }
+
+}
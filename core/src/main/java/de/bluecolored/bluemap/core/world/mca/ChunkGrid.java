@@ -65,13 +65,7 @@
             .expireAfterWrite(10, TimeUnit.MINUTES)
             .expireAfterAccess(1, TimeUnit.MINUTES)
             .build(this::loadRegion);
-    private final LoadingCache<Vector2i, T> chunkCache = Caffeine.newBuilder()
-            .executor(BlueMap.THREAD_POOL)
-            .softValues()
-            .maximumSize(10240) // 10 regions worth of chunks
-            .expireAfterWrite(10, TimeUnit.MINUTES)
-            .expireAfterAccess(1, TimeUnit.MINUTES)
-            .build(this::loadChunk);
+    private final ChunkCache chunkCache;
 
     public Grid getChunkGrid() {
         return CHUNK_GRID;
@@ -82,11 +76,7 @@ public Grid getRegionGrid() {
     }
 
     public T getChunk(int x, int z) {
-        return getChunk(VECTOR_2_I_CACHE.get(x, z));
-    }
-
-    private T getChunk(Vector2i pos) {
-        return chunkCache.get(pos);
+        return chunkCache.get(this, x, z, key -> loadChunk(key.x(), key.z()));
     }
 
     public Region<T> getRegion(int x, int z) {
@@ -97,29 +87,60 @@ private Region<T> getRegion(Vector2i pos) {
         return regionCache.get(pos);
     }
 
+    /**
+     * Loads the filtered chunks of a region into the chunk-cache.<br>
+     * A single preload stops once the loaded chunks take up the {@link #getPreloadMemoryBudget() preload-budget}.
+     */
     public void preloadRegionChunks(int x, int z, Predicate<Vector2i> chunkFilter) {
-        try {
-            getRegion(x, z).iterateAllChunks(new ChunkConsumer<>() {
-                @Override
-                public boolean filter(int chunkX, int chunkZ, int lastModified) {
-                    Vector2i chunkPos = VECTOR_2_I_CACHE.get(chunkX, chunkZ);
-                    return chunkFilter.test(chunkPos);
-                }
+        preloadRegionChunks(x, z, chunkFilter, getPreloadMemoryBudget());
+    }
 
-                @Override
-                public void accept(int chunkX, int chunkZ, T chunk) {
-                    Vector2i chunkPos = VECTOR_2_I_CACHE.get(chunkX, chunkZ);
-                    chunkCache.put(chunkPos, chunk);
-                }
+    /**
+     * Loads the filtered chunks of a region into the chunk-cache, until the loaded chunks take up the given amount of memory.
+     * @return the estimated amount of memory used by the loaded chunks
+     */
+    public long preloadRegionChunks(int x, int z, Predicate<Vector2i> chunkFilter, long memoryBudget) {
+        if (memoryBudget <= 0) return 0;
+
+        var consumer = new ChunkConsumer<T>() {
+            private long memoryUsage = 0;
+            private int lastModified;
+
+            @Override
+            public boolean filter(int chunkX, int chunkZ, int lastModified) {
+                if (memoryUsage >= memoryBudget) return false;
+                Vector2i chunkPos = VECTOR_2_I_CACHE.get(chunkX, chunkZ);
+                this.lastModified = lastModified; // accept is called right after a chunk passed the filter
+                return chunkFilter.test(chunkPos);
+            }
 
-                @Override
-                public void fail(int chunkX, int chunkZ, IOException ex) {
-                    Logger.global.logDebug("Failed to preload chunk (%d, %d) from region ('%s' -> x:%d, z:%d): %s".formatted(chunkX, chunkZ, regionFolder, x, z, ex));
-                }
-            });
+            @Override
+            public void accept(int chunkX, int chunkZ, T chunk) {
+                memoryUsage += estimateMemoryUsage(chunk);
+                chunkCache.put(ChunkGrid.this, chunkX, chunkZ, chunk, lastModified);
+            }
+
+            @Override
+            public void fail(int chunkX, int chunkZ, IOException ex) {
+                Logger.global.logDebug("Failed to preload chunk (%d, %d) from region ('%s' -> x:%d, z:%d): %s".formatted(chunkX, chunkZ, regionFolder, x, z, ex));
+            }
+        };
+
+        try {
+            getRegion(x, z).iterateAllChunks(consumer);
         } catch (IOException ex) {
             Logger.global.logDebug("Unexpected exception trying to preload region ('%s' -> x:%d, z:%d): %s".formatted(regionFolder, x, z, ex));
         }
+
+        return consumer.memoryUsage;
+    }
+
+    /**
+     * The amount of memory that preloading may fill up, a quarter of the cache's memory-budget,
+     * so preloading never evicts most of the chunks that are currently in use.
+     */
+    public long getPreloadMemoryBudget() {
+        return chunkCache.getMaxMemoryUsage() / 4;
     }
 
     public Collection<Vector2i> listRegions() {
@@ -144,17 +165,38 @@ public Collection<Vector2i> listRegions() {
     }
 
     public WatchService<Vector2i> createRegionWatchService() throws IOException {
-        return new MCAWorldRegionWatchService(this.regionFolder);
+        return new MCAWorldRegionWatchService(this.regionFolder, this::invalidateRegion);
     }
 
     public void invalidateChunkCache() {
         regionCache.invalidateAll();
-        chunkCache.invalidateAll();
+        chunkCache.invalidateAll(this);
     }
 
     public void invalidateChunkCache(int x, int z) {
         regionCache.invalidate(VECTOR_2_I_CACHE.get(x >> 5, z >> 5));
-        chunkCache.invalidate(VECTOR_2_I_CACHE.get(x, z));
+        chunkCache.invalidate(this, x, z);
+    }
+
+    /**
+     * Like {@link #invalidateChunkCache(int, int)}, but keeps the cached chunk if it has been preloaded while it had the
+     * given lastModified timestamp in its region-file.
+     */
+    public void invalidateChunkCache(int x, int z, int lastModified) {
+        regionCache.invalidate(VECTOR_2_I_CACHE.get(x >> 5, z >> 5));
+        chunkCache.invalidate(this, x, z, lastModified);
+    }
+
+    /**
+     * Drops the cached (memory-mapped) region-file so it is re-mapped with its current content on next access.
+     * Already cached chunks of that region are kept.
+     */
+    private void invalidateRegion(Vector2i regionPos) {
+        regionCache.invalidate(regionPos);
+    }
+
+    int estimateMemoryUsage(T chunk) {
+        return chunkLoader.estimateMemoryUsage(chunk);
     }
 
     private Region<T> loadRegion(Vector2i regionPos) {
@@ -165,10 +207,6 @@ private Region<T> loadRegion(int x, int z) {
         return RegionType.loadRegion(chunkLoader, regionFolder, x, z);
     }
 
-    private T loadChunk(Vector2i chunkPos) {
-        return loadChunk(chunkPos.getX(), chunkPos.getY());
-    }
-
     private T loadChunk(int x, int z) {
         final int tries = 3;
         final int tryInterval = 1000;
@@ -184,6 +222,9 @@ private T loadChunk(int x, int z) {
 
                 loadException = e;
 
+                // the cached region might be outdated, so make sure the next try reads the current region-file
+                regionCache.invalidate(VECTOR_2_I_CACHE.get(x >> 5, z >> 5));
+
                 if (i + 1 < tries) {
                     try {
                         Thread.sleep(tryInterval);
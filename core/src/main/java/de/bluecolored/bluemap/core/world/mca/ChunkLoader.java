@@ -27,13 +27,31 @@
 import de.bluecolored.bluemap.core.storage.compression.Compression;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public interface ChunkLoader<T> {
 
-    T load(byte[] data, int offset, int length, Compression compression) throws IOException;
+    default T load(byte[] data, int offset, int length, Compression compression) throws IOException {
+        return load(ByteBuffer.wrap(data, offset, length), compression);
+    }
+
+    /**
+     * Loads the chunk from the remaining bytes of the given buffer.<br>
+     * Implementations must not modify the position or limit of the buffer, so it is safe to pass in slices of a
+     * shared (e.g. memory-mapped) buffer.
+     */
+    T load(ByteBuffer data, Compression compression) throws IOException;
 
     T emptyChunk();
 
     T erroredChunk();
 
+    /**
+     * Estimates the amount of heap-memory (in bytes) the given loaded chunk is retaining.
+     * This is used to weigh the chunk in the {@link ChunkCache}.
+     */
+    default int estimateMemoryUsage(T chunk) {
+        return 16 * 1024;
+    }
+
 }
@@ -69,7 +69,7 @@ public class MCAWorld implements World {
     private final ChunkGrid<Chunk> blockChunkGrid;
     private final ChunkGrid<MCAEntityChunk> entityChunkGrid;
 
-    private MCAWorld(Path worldFolder, Key dimension, DataPack dataPack, LevelData levelData) {
+    private MCAWorld(Path worldFolder, Key dimension, DataPack dataPack, LevelData levelData, ChunkCache chunkCache) {
         this.id = World.id(worldFolder, dimension);
         this.worldFolder = worldFolder;
         this.dimension = dimension;
@@ -96,8 +96,8 @@ private MCAWorld(Path worldFolder, Key dimension, DataPack dataPack, LevelData l
         );
         this.dimensionFolder = resolveDimensionFolder(worldFolder, dimension);
 
-        this.blockChunkGrid = new ChunkGrid<>(new MCAChunkLoader(this), dimensionFolder.resolve("region"));
-        this.entityChunkGrid = new ChunkGrid<>(new MCAEntityChunkLoader(), dimensionFolder.resolve("entities"));
+        this.blockChunkGrid = new ChunkGrid<>(new MCAChunkLoader(this), dimensionFolder.resolve("region"), chunkCache);
+        this.entityChunkGrid = new ChunkGrid<>(new MCAEntityChunkLoader(), dimensionFolder.resolve("entities"), chunkCache);
 
     }
 
@@ -147,6 +147,18 @@ public void preloadRegionChunks(int x, int z, Predicate<Vector2i> chunkFilter) {
         entityChunkGrid.preloadRegionChunks(x, z, chunkFilter);
     }
 
+    @Override
+    public long preloadRegionChunks(int x, int z, Predicate<Vector2i> chunkFilter, long memoryBudget) {
+        long memoryUsage = blockChunkGrid.preloadRegionChunks(x, z, chunkFilter, memoryBudget);
+        memoryUsage += entityChunkGrid.preloadRegionChunks(x, z, chunkFilter, memoryBudget - memoryUsage);
+        return memoryUsage;
+    }
+
+    @Override
+    public long getChunkPreloadBudget() {
+        return blockChunkGrid.getPreloadMemoryBudget();
+    }
+
     @Override
     public void invalidateChunkCache() {
         blockChunkGrid.invalidateChunkCache();
@@ -159,6 +171,14 @@ public void invalidateChunkCache(int x, int z) {
         entityChunkGrid.invalidateChunkCache(x, z);
     }
 
+    @Override
+    public void invalidateChunkCache(int x, int z, int lastModified) {
+        blockChunkGrid.invalidateChunkCache(x, z, lastModified);
+
+        // the timestamp is from the block-region, entity-chunks have their own timestamps
+        entityChunkGrid.invalidateChunkCache(x, z);
+    }
+
     @Override
     public void iterateEntities(int minX, int minZ, int maxX, int maxZ, Consumer<Entity> entityConsumer) {
         int minChunkX = minX >> 4, minChunkZ = minZ >> 4;
@@ -185,7 +205,10 @@ public void iterateEntities(int minX, int minZ, int maxX, int maxZ, Consumer<Ent
         }
     }
 
-    public static MCAWorld load(Path worldFolder, Key dimension, DataPack dataPack) throws IOException, InterruptedException {
+    /**
+     * Loads the world, caching its loaded chunks in the given (possibly shared) {@link ChunkCache}.
+     */
+    public static MCAWorld load(Path worldFolder, Key dimension, DataPack dataPack, ChunkCache chunkCache) throws IOException, InterruptedException {
 
         // load level.dat
         Path levelFile = worldFolder.resolve("level.dat");
@@ -196,7 +219,7 @@ public static MCAWorld load(Path worldFolder, Key dimension, DataPack dataPack)
         }
 
         // create world
-        return new MCAWorld(worldFolder, dimension, dataPack, levelData);
+        return new MCAWorld(worldFolder, dimension, dataPack, levelData, chunkCache);
     }
 
     public static Path resolveDimensionFolder(Path worldFolder, Key dimension) {
@@ -35,15 +35,26 @@
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public class MCAWorldRegionWatchService implements WatchService<Vector2i> {
 
     private final Path regionFolder;
+    private final Consumer<Vector2i> changeListener;
     private final java.nio.file.WatchService watchService;
     private boolean initialized;
 
     public MCAWorldRegionWatchService(Path regionFolder) throws IOException {
+        this(regionFolder, region -> {});
+    }
+
+    /**
+     * @param changeListener called for each changed region as soon as the change is polled from this watch-service,
+     *                       before the change is returned to the caller
+     */
+    public MCAWorldRegionWatchService(Path regionFolder, Consumer<Vector2i> changeListener) throws IOException {
         this.regionFolder = regionFolder;
+        this.changeListener = changeListener;
         this.watchService = regionFolder.getFileSystem().newWatchService();
     }
 
@@ -121,6 +132,7 @@ private List<Vector2i> processWatchKey(WatchKey key) {
                         }
                     })
                     .filter(Objects::nonNull)
+                    .peek(changeListener)
                     .toList();
         } finally {
             key.reset();
@@ -62,10 +62,14 @@ public class Chunk_1_16 extends MCAChunk {
 
     private final Section[] sections;
     private final int sectionMin, sectionMax;
+    private final int nonAirMaxY;
 
     private final int[] biomes;
     private final Map<Long, BlockEntity> blockEntities;
 
+    private final int contentHash;
+    private final int memoryUsage;
+
     public Chunk_1_16(MCAWorld world, Data data) {
         super(world, data);
 
@@ -121,6 +125,40 @@ public Chunk_1_16(MCAWorld world, Data data) {
             this.sectionMax = 0;
         }
 
+        // find the top of the highest section that contains anything other than air
+        int nonAirMaxY = this.sectionMin * 16 - 1;
+        for (int i = this.sections.length - 1; i >= 0; i--) {
+            Section section = this.sections[i];
+            if (section == null) continue;
+
+            BlockState uniformBlockState = section.getUniformBlockState();
+            if (uniformBlockState != null && uniformBlockState.isAir()) continue;
+
+            nonAirMaxY = (this.sectionMin + i) * 16 + 15;
+            break;
+        }
+        this.nonAirMaxY = nonAirMaxY;
+
+        // hash everything that is relevant for rendering this chunk
+        ContentHasher contentHasher = new ContentHasher()
+                .add(getDataVersion())
+                .add(generated)
+                .add(hasLightData)
+                .add(level.heightmaps.worldSurface)
+                .add(level.heightmaps.oceanFloor)
+                .add(level.biomes);
+        if (sectionsData != null) {
+            for (SectionData sectionData : sectionsData) {
+                contentHasher
+                        .add(sectionData.y)
+                        .add(sectionData.palette)
+                        .add(sectionData.blockStates)
+                        .add(sectionData.blockLight)
+                        .add(sectionData.skyLight);
+            }
+        }
+        this.contentHash = contentHasher.get();
+
         // load block-entities
         this.blockEntities = new HashMap<>(level.blockEntities.length);
         for (int i = 0; i < level.blockEntities.length; i++) {
@@ -130,6 +168,22 @@ public Chunk_1_16(MCAWorld world, Data data) {
             long hash = (long) be.getY() << 8 | (be.getX() & 0xF) << 4 | be.getZ() & 0xF;
             blockEntities.put(hash, be);
         }
+
+        int memoryUsage = 128 +
+                estimateMemoryUsage(level.heightmaps.worldSurface) +
+                estimateMemoryUsage(level.heightmaps.oceanFloor) +
+                estimateMemoryUsage(biomes) +
+                estimateMemoryUsage(sections) +
+                estimateMemoryUsage(blockEntities);
+        for (Section section : sections) {
+            if (section != null) memoryUsage += section.memoryUsage;
+        }
+        this.memoryUsage = memoryUsage;
+    }
+
+    @Override
+    public int estimateMemoryUsage() {
+        return memoryUsage;
     }
 
     @Override
@@ -147,6 +201,11 @@ public long getInhabitedTime() {
         return inhabitedTime;
     }
 
+    @Override
+    public int getContentHash() {
+        return contentHash;
+    }
+
     @Override
     public BlockState getBlockState(int x, int y, int z) {
         Section section = getSection(y >> 4);
@@ -190,6 +249,22 @@ public int getMaxY(int x, int z) {
         return sectionMax * 16 + 15;
     }
 
+    @Override
+    public int getColumnMaxY(int x, int z) {
+        // heightmaps are only reliable on fully generated chunks
+        if (hasLightData && hasWorldSurfaceHeights)
+            return Math.min(nonAirMaxY, getWorldSurfaceY(x, z));
+        return nonAirMaxY;
+    }
+
+    @Override
+    public @Nullable BlockState getUniformBlockState(int y) {
+        Section section = getSection(y >> 4);
+        if (section == null) return BlockState.AIR;
+
+        return section.getUniformBlockState();
+    }
+
     @Override
     public boolean hasWorldSurfaceHeights() {
         return hasWorldSurfaceHeights;
@@ -234,14 +309,25 @@ protected static class Section {
         private final byte[] blockLight;
         private final byte[] skyLight;
 
+        private final int memoryUsage;
+
         public Section(SectionData sectionData) {
             this.sectionY = sectionData.y;
 
-            this.blockPalette = sectionData.palette;
-            this.blocks = new PackedIntArrayAccess(sectionData.blockStates, BLOCKS_PER_SECTION);
+            this.blockPalette = compactPalette(sectionData.palette);
+
+            // single-value sections don't need their index-data
+            long[] blocksData = blockPalette.length > 1 ? sectionData.blockStates : EMPTY_LONG_ARRAY;
+            this.blocks = blocksData.length > 0 ? new PackedIntArrayAccess(blocksData, BLOCKS_PER_SECTION) : EMPTY_PACKED_INT_ARRAY;
+
+            this.blockLight = compactNibbleArray(sectionData.getBlockLight());
+            this.skyLight = compactNibbleArray(sectionData.getSkyLight());
 
-            this.blockLight = sectionData.getBlockLight();
-            this.skyLight = sectionData.getSkyLight();
+            this.memoryUsage = 40 +
+                    estimateMemoryUsage(blockPalette) +
+                    (blocks != EMPTY_PACKED_INT_ARRAY ? 48 + estimateMemoryUsage(blocksData) : 0) +
+                    estimateMemoryUsage(blockLight) +
+                    estimateMemoryUsage(skyLight);
         }
 
         public BlockState getBlockState(int x, int y, int z) {
@@ -270,6 +356,12 @@ public LightData getLightData(int x, int y, int z, LightData target) {
             );
         }
 
+        public @Nullable BlockState getUniformBlockState() {
+            if (blockPalette.length == 1) return blockPalette[0];
+            if (blockPalette.length == 0) return BlockState.AIR;
+            return null;
+        }
+
         public int getSectionY() {
             return sectionY;
         }
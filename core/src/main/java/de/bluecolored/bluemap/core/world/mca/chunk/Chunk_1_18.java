@@ -63,9 +63,13 @@ public class Chunk_1_18 extends MCAChunk {
 
     private final Section[] sections;
     private final int sectionMin, sectionMax;
+    private final int nonAirMaxY;
 
     private final Map<Long, BlockEntity> blockEntities;
 
+    private final int contentHash;
+    private final int memoryUsage;
+
     public Chunk_1_18(MCAWorld world, Data data) {
         super(world, data);
 
@@ -118,6 +122,41 @@ public Chunk_1_18(MCAWorld world, Data data) {
             this.sectionMax = 0;
         }
 
+        // find the top of the highest section that contains anything other than air
+        int nonAirMaxY = this.sectionMin * 16 - 1;
+        for (int i = this.sections.length - 1; i >= 0; i--) {
+            Section section = this.sections[i];
+            if (section == null) continue;
+
+            BlockState uniformBlockState = section.getUniformBlockState();
+            if (uniformBlockState != null && uniformBlockState.isAir()) continue;
+
+            nonAirMaxY = (this.sectionMin + i) * 16 + 15;
+            break;
+        }
+        this.nonAirMaxY = nonAirMaxY;
+
+        // hash everything that is relevant for rendering this chunk
+        ContentHasher contentHasher = new ContentHasher()
+                .add(getDataVersion())
+                .add(generated)
+                .add(hasLightData)
+                .add(data.heightmaps.worldSurface)
+                .add(data.heightmaps.oceanFloor);
+        if (sectionsData != null) {
+            for (SectionData sectionData : sectionsData) {
+                contentHasher
+                        .add(sectionData.y)
+                        .add(sectionData.blockStates.palette)
+                        .add(sectionData.blockStates.data)
+                        .add(sectionData.biomes.palette)
+                        .add(sectionData.biomes.data)
+                        .add(sectionData.blockLight)
+                        .add(sectionData.skyLight);
+            }
+        }
+        this.contentHash = contentHasher.get();
+
         // load block-entities
         this.blockEntities = new HashMap<>(data.blockEntities.length);
         for (int i = 0; i < data.blockEntities.length; i++) {
@@ -127,6 +166,21 @@ public Chunk_1_18(MCAWorld world, Data data) {
             long hash = (long) be.getY() << 8 | (be.getX() & 0xF) << 4 | be.getZ() & 0xF;
             blockEntities.put(hash, be);
         }
+
+        int memoryUsage = 128 +
+                estimateMemoryUsage(data.heightmaps.worldSurface) +
+                estimateMemoryUsage(data.heightmaps.oceanFloor) +
+                estimateMemoryUsage(sections) +
+                estimateMemoryUsage(blockEntities);
+        for (Section section : sections) {
+            if (section != null) memoryUsage += section.memoryUsage;
+        }
+        this.memoryUsage = memoryUsage;
+    }
+
+    @Override
+    public int estimateMemoryUsage() {
+        return memoryUsage;
     }
 
     @Override
@@ -144,6 +198,11 @@ public long getInhabitedTime() {
         return inhabitedTime;
     }
 
+    @Override
+    public int getContentHash() {
+        return contentHash;
+    }
+
     @Override
     public BlockState getBlockState(int x, int y, int z) {
         Section section = getSection(y >> 4);
@@ -181,6 +240,22 @@ public int getMaxY(int x, int z) {
         return sectionMax * 16 + 15;
     }
 
+    @Override
+    public int getColumnMaxY(int x, int z) {
+        // heightmaps are only reliable on fully generated chunks
+        if (hasLightData && hasWorldSurfaceHeights)
+            return Math.min(nonAirMaxY, getWorldSurfaceY(x, z));
+        return nonAirMaxY;
+    }
+
+    @Override
+    public @Nullable BlockState getUniformBlockState(int y) {
+        Section section = getSection(y >> 4);
+        if (section == null) return BlockState.AIR;
+
+        return section.getUniformBlockState();
+    }
+
     @Override
     public boolean hasWorldSurfaceHeights() {
         return hasWorldSurfaceHeights;
@@ -227,10 +302,12 @@ protected static class Section {
         private final byte[] blockLight;
         private final byte[] skyLight;
 
+        private final int memoryUsage;
+
         public Section(MCAWorld world, SectionData sectionData) {
             this.sectionY = sectionData.y;
 
-            this.blockPalette = sectionData.blockStates.palette;
+            this.blockPalette = compactPalette(sectionData.blockStates.palette);
 
             this.biomePalette = new Biome[sectionData.biomes.palette.length];
             for (int i = 0; i < this.biomePalette.length; i++) {
@@ -239,11 +316,22 @@ public Section(MCAWorld world, SectionData sectionData) {
                 this.biomePalette[i] = biome;
             }
 
-            this.blocks = new PackedIntArrayAccess(sectionData.blockStates.data, BLOCKS_PER_SECTION);
-            this.biomes = new PackedIntArrayAccess(Math.max(MCAUtil.ceilLog2(this.biomePalette.length), 1), sectionData.biomes.data);
-
-            this.blockLight = sectionData.blockLight;
-            this.skyLight = sectionData.skyLight;
+            // single-value sections don't need their index-data
+            long[] blocksData = blockPalette.length > 1 ? sectionData.blockStates.data : EMPTY_LONG_ARRAY;
+            long[] biomesData = biomePalette.length > 1 ? sectionData.biomes.data : EMPTY_LONG_ARRAY;
+            this.blocks = blocksData.length > 0 ? new PackedIntArrayAccess(blocksData, BLOCKS_PER_SECTION) : EMPTY_PACKED_INT_ARRAY;
+            this.biomes = biomesData.length > 0 ? new PackedIntArrayAccess(Math.max(MCAUtil.ceilLog2(this.biomePalette.length), 1), biomesData) : EMPTY_PACKED_INT_ARRAY;
+
+            this.blockLight = compactNibbleArray(sectionData.blockLight);
+            this.skyLight = compactNibbleArray(sectionData.skyLight);
+
+            this.memoryUsage = 48 +
+                    estimateMemoryUsage(blockPalette) +
+                    estimateMemoryUsage(biomePalette) +
+                    (blocks != EMPTY_PACKED_INT_ARRAY ? 48 + estimateMemoryUsage(blocksData) : 0) +
+                    (biomes != EMPTY_PACKED_INT_ARRAY ? 48 + estimateMemoryUsage(biomesData) : 0) +
+                    estimateMemoryUsage(blockLight) +
+                    estimateMemoryUsage(skyLight);
         }
 
         public BlockState getBlockState(int x, int y, int z) {
@@ -285,6 +373,12 @@ public LightData getLightData(int x, int y, int z, LightData target) {
             );
         }
 
+        public @Nullable BlockState getUniformBlockState() {
+            if (blockPalette.length == 1) return blockPalette[0];
+            if (blockPalette.length == 0) return BlockState.AIR;
+            return null;
+        }
+
         public int getSectionY() {
             return sectionY;
         }
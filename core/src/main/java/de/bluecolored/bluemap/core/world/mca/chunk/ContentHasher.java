@@ -0,0 +1,100 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.world.mca.chunk;
+
+import java.util.Objects;
+
+/**
+ * Builds a 32-bit hash over the render-relevant content of a chunk.<br>
+ * Every step is a bijection of the previous state, so a change of a single value always changes the resulting hash.
+ * The hash only depends on the hashed values, so it is stable across restarts and can be persisted.
+ */
+class ContentHasher {
+
+    private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private long hash = 0x2545F4914F6CDD1DL;
+
+    public ContentHasher add(long value) {
+        hash = (hash + value) * MULTIPLIER;
+        hash ^= hash >>> 29;
+        return this;
+    }
+
+    public ContentHasher add(int value) {
+        return add((long) value);
+    }
+
+    public ContentHasher add(boolean value) {
+        return add(value ? 1L : 0L);
+    }
+
+    public ContentHasher add(long[] values) {
+        add(values.length);
+        for (long value : values) add(value);
+        return this;
+    }
+
+    public ContentHasher add(int[] values) {
+        add(values.length);
+        for (int value : values) add(value);
+        return this;
+    }
+
+    public ContentHasher add(byte[] values) {
+        add(values.length);
+
+        int i = 0;
+        for (; i + 8 <= values.length; i += 8) {
+            add(
+                    (values[i    ] & 0xFFL)       | (values[i + 1] & 0xFFL) <<  8 |
+                    (values[i + 2] & 0xFFL) << 16 | (values[i + 3] & 0xFFL) << 24 |
+                    (values[i + 4] & 0xFFL) << 32 | (values[i + 5] & 0xFFL) << 40 |
+                    (values[i + 6] & 0xFFL) << 48 | (values[i + 7] & 0xFFL) << 56
+            );
+        }
+        for (; i < values.length; i++) add(values[i]);
+
+        return this;
+    }
+
+    /**
+     * Adds the {@link Object#hashCode()} of all values, so the values need to have a hashCode that is stable across restarts
+     */
+    public ContentHasher add(Object[] values) {
+        add(values.length);
+        for (Object value : values) add(Objects.hashCode(value));
+        return this;
+    }
+
+    /**
+     * Returns the resulting hash, this is never 0
+     */
+    public int get() {
+        int result = (int) (hash ^ (hash >>> 32));
+        return result != 0 ? result : 1;
+    }
+
+}
@@ -26,13 +26,18 @@
 
 import de.bluecolored.bluemap.core.util.Key;
 import de.bluecolored.bluemap.core.world.BlockState;
+import de.bluecolored.bluemap.core.world.BlockStateCache;
 import de.bluecolored.bluemap.core.world.Chunk;
 import de.bluecolored.bluemap.core.world.BlockEntity;
 import de.bluecolored.bluemap.core.world.mca.MCAWorld;
+import de.bluecolored.bluemap.core.world.mca.PackedIntArrayAccess;
 import de.bluecolored.bluenbt.NBTName;
 import lombok.Getter;
 import lombok.ToString;
 
+import java.util.Arrays;
+import java.util.Map;
+
 @Getter
 @ToString
 public abstract class MCAChunk implements Chunk {
@@ -47,6 +52,20 @@ public abstract class MCAChunk implements Chunk {
     protected static final Key[] EMPTY_KEY_ARRAY = new Key[0];
     protected static final BlockState[] EMPTY_BLOCKSTATE_ARRAY = new BlockState[0];
     protected static final BlockEntity[] EMPTY_BLOCK_ENTITIES_ARRAY = new BlockEntity[0];
+    protected static final PackedIntArrayAccess EMPTY_PACKED_INT_ARRAY = new PackedIntArrayAccess(1, EMPTY_LONG_ARRAY);
+
+    private static final int NIBBLE_ARRAY_SIZE = BLOCKS_PER_SECTION / 2;
+    private static final byte[][] UNIFORM_NIBBLE_ARRAYS = new byte[16][];
+    static {
+        for (int i = 1; i < UNIFORM_NIBBLE_ARRAYS.length; i++) {
+            UNIFORM_NIBBLE_ARRAYS[i] = new byte[NIBBLE_ARRAY_SIZE];
+            Arrays.fill(UNIFORM_NIBBLE_ARRAYS[i], (byte) (i << 4 | i));
+        }
+    }
+
+    private static final BlockStateCache<BlockState[]> SINGLE_BLOCKSTATE_PALETTES = new BlockStateCache<>(
+            blockState -> new BlockState[]{ blockState }
+    );
 
     private final MCAWorld world;
     private final int dataVersion;
@@ -56,6 +75,81 @@ public MCAChunk(MCAWorld world, Data chunkData) {
         this.dataVersion = chunkData.getDataVersion();
     }
 
+    /**
+     * Estimates the amount of heap-memory (in bytes) this chunk is retaining, not counting data that is shared with
+     * other chunks. This is used to weigh the chunk in the chunk-cache.
+     */
+    public int estimateMemoryUsage() {
+        return 64;
+    }
+
+    /**
+     * Drops nibble-arrays (e.g. light-data) with all values being the same value in favor of a shared array,
+     * or an empty array if all values are 0.
+     */
+    protected static byte[] compactNibbleArray(byte[] nibbles) {
+        if (nibbles.length == 0) return EMPTY_BYTE_ARRAY;
+        if (nibbles.length != NIBBLE_ARRAY_SIZE) return nibbles;
+
+        byte first = nibbles[0];
+        if ((first >> 4 & 0xF) != (first & 0xF)) return nibbles;
+        for (int i = 1; i < nibbles.length; i++) {
+            if (nibbles[i] != first) return nibbles;
+        }
+
+        if (first == 0) return EMPTY_BYTE_ARRAY;
+        return UNIFORM_NIBBLE_ARRAYS[first & 0xF];
+    }
+
+    /**
+     * Replaces palettes that only contain a single block-state with a shared palette-instance.
+     */
+    protected static BlockState[] compactPalette(BlockState[] palette) {
+        if (palette.length == 0) return EMPTY_BLOCKSTATE_ARRAY;
+        if (palette.length != 1) return palette;
+
+        BlockState[] shared = SINGLE_BLOCKSTATE_PALETTES.get(palette[0]);
+        return shared != null ? shared : palette;
+    }
+
+    protected static int estimateMemoryUsage(byte[] array) {
+        if (isShared(array)) return 0;
+        return 16 + array.length;
+    }
+
+    protected static int estimateMemoryUsage(int[] array) {
+        if (array == EMPTY_INT_ARRAY) return 0;
+        return 16 + array.length * 4;
+    }
+
+    protected static int estimateMemoryUsage(long[] array) {
+        if (array == EMPTY_LONG_ARRAY) return 0;
+        return 16 + array.length * 8;
+    }
+
+    protected static int estimateMemoryUsage(Object[] array) {
+        if (array.length == 0) return 0;
+        return 16 + array.length * 4;
+    }
+
+    protected static int estimateMemoryUsage(BlockState[] palette) {
+        if (palette.length <= 1) return 0; // compacted palettes with a single entry are shared
+        return 16 + palette.length * 4;
+    }
+
+    protected static int estimateMemoryUsage(Map<?, BlockEntity> blockEntities) {
+        // hash-map node + boxed key + a rough guess for the block-entity itself
+        return 64 + blockEntities.size() * (48 + 256);
+    }
+
+    private static boolean isShared(byte[] nibbles) {
+        if (nibbles == EMPTY_BYTE_ARRAY) return true;
+        for (byte[] uniform : UNIFORM_NIBBLE_ARRAYS) {
+            if (nibbles == uniform) return true;
+        }
+        return false;
+    }
+
     @SuppressWarnings("FieldMayBeFinal")
     @Getter
     public static class Data {
@@ -25,22 +25,38 @@
 package de.bluecolored.bluemap.core.world.mca.chunk;
 
 import de.bluecolored.bluemap.core.storage.compression.Compression;
+import de.bluecolored.bluemap.core.util.InstancePool;
+import de.bluecolored.bluemap.core.util.stream.ByteBufferInputStream;
 import de.bluecolored.bluemap.core.world.Chunk;
 import de.bluecolored.bluemap.core.world.mca.ChunkLoader;
 import de.bluecolored.bluemap.core.world.mca.MCAUtil;
 import de.bluecolored.bluemap.core.world.mca.MCAWorld;
+import de.bluecolored.bluenbt.NBTReader;
+import de.bluecolored.bluenbt.TagType;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
 import java.util.function.BiFunction;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 public class MCAChunkLoader implements ChunkLoader<Chunk> {
 
+    // buffers larger than this are not kept in the pool, to not hold on to memory of some rare huge chunks
+    private static final int MAX_POOLED_BUFFER_SIZE = 4 * 1024 * 1024;
+    private static final InstancePool<DecompressionBuffer> DECOMPRESSION_BUFFER_POOL = new InstancePool<>(
+            DecompressionBuffer::new,
+            DecompressionBuffer::recycle
+    );
+
     private final MCAWorld world;
 
     public MCAChunkLoader(MCAWorld world) {
@@ -55,30 +71,21 @@ public MCAChunkLoader(MCAWorld world) {
             new ChunkVersionLoader<>(Chunk_1_13.Data.class, Chunk_1_13::new, 0)
     );
 
-    private ChunkVersionLoader<?> lastUsedLoader = CHUNK_VERSION_LOADERS.get(0);
+    @Override
+    public MCAChunk load(ByteBuffer data, Compression compression) throws IOException {
+        DecompressionBuffer buffer = DECOMPRESSION_BUFFER_POOL.claimInstance();
+        try {
 
-    public MCAChunk load(byte[] data, int offset, int length, Compression compression) throws IOException {
-        InputStream in = new ByteArrayInputStream(data, offset, length);
-        in.mark(-1);
+            // decompress only once into a reusable buffer
+            buffer.decompress(data, compression);
 
-        // try last used version
-        ChunkVersionLoader<?> usedLoader = lastUsedLoader;
-        MCAChunk chunk;
-        try (InputStream decompressedIn = compression.decompress(in)) {
-            chunk = usedLoader.load(world, decompressedIn);
-        }
+            // peek the data-version first, so the chunk only needs to be decoded once with the right loader
+            ChunkVersionLoader<?> loader = findBestLoaderForVersion(peekDataVersion(buffer.inputStream()));
+            return loader.load(world, buffer.inputStream());
 
-        // check version and reload chunk if the wrong loader has been used and a better one has been found
-        ChunkVersionLoader<?> actualLoader = findBestLoaderForVersion(chunk.getDataVersion());
-        if (actualLoader != null && usedLoader != actualLoader) {
-            in.reset(); // reset read position
-            try (InputStream decompressedIn = compression.decompress(in)) {
-                chunk = actualLoader.load(world, decompressedIn);
-            }
-            lastUsedLoader = actualLoader;
+        } finally {
+            DECOMPRESSION_BUFFER_POOL.recycleInstance(buffer);
         }
-
-        return chunk;
     }
 
     @Override
@@ -91,11 +98,35 @@ public Chunk erroredChunk() {
         return Chunk.ERRORED_CHUNK;
     }
 
-    private @Nullable ChunkVersionLoader<?> findBestLoaderForVersion(int version) {
+    @Override
+    public int estimateMemoryUsage(Chunk chunk) {
+        if (chunk instanceof MCAChunk mcaChunk) return mcaChunk.estimateMemoryUsage();
+        return 64; // empty or errored chunks are shared instances
+    }
+
+    private ChunkVersionLoader<?> findBestLoaderForVersion(int version) {
         for (ChunkVersionLoader<?> loader : CHUNK_VERSION_LOADERS) {
             if (loader.mightSupport(version)) return loader;
         }
-        return null;
+        return CHUNK_VERSION_LOADERS.get(CHUNK_VERSION_LOADERS.size() - 1);
+    }
+
+    /**
+     * Scans the root-compound of the chunk for the DataVersion tag, skipping all other tags without decoding them.
+     * Returns 0 if the chunk has no DataVersion.
+     */
+    private static int peekDataVersion(InputStream in) throws IOException {
+        try (NBTReader reader = new NBTReader(in)) {
+            reader.beginCompound();
+            while (reader.hasNext()) {
+                if (reader.peek() == TagType.INT && reader.name().equals("DataVersion"))
+                    return reader.nextInt();
+                reader.skip();
+            }
+            return 0;
+        } catch (Exception e) {
+            throw new IOException("Failed to read chunk data-version: " + e, e);
+        }
     }
 
     @RequiredArgsConstructor
@@ -121,4 +152,85 @@ public boolean mightSupport(int dataVersion) {
 
     }
 
+    /**
+     * Holds the decompressed data of a chunk.<br>
+     * Zlib-compressed chunks (the default) are inflated directly from the (memory-mapped) region-data into the reused
+     * byte-array, and uncompressed chunks are not copied at all.
+     */
+    private static class DecompressionBuffer {
+
+        private final Inflater inflater = new Inflater();
+        private byte[] data = new byte[64 * 1024];
+        private int size = 0;
+        private @Nullable ByteBuffer uncompressed;
+
+        public void decompress(ByteBuffer compressed, Compression compression) throws IOException {
+            uncompressed = null;
+            size = 0;
+
+            if (compression == Compression.NONE) {
+                uncompressed = compressed;
+                return;
+            }
+
+            if (compression == Compression.DEFLATE) {
+                inflate(compressed);
+                return;
+            }
+
+            try (InputStream in = compression.decompress(new ByteBufferInputStream(compressed))) {
+                int read;
+                while ((read = in.read(data, size, data.length - size)) >= 0) {
+                    size += read;
+                    if (size == data.length) grow();
+                }
+            }
+        }
+
+        private void inflate(ByteBuffer compressed) throws IOException {
+            inflater.reset();
+            inflater.setInput(compressed.duplicate());
+            try {
+                while (!inflater.finished()) {
+                    if (size == data.length) grow();
+                    int inflated = inflater.inflate(data, size, data.length - size);
+                    size += inflated;
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                        throw new EOFException("Unexpected end of compressed chunk-data");
+                }
+            } catch (DataFormatException ex) {
+                throw new IOException("Invalid compressed chunk-data: " + ex, ex);
+            }
+        }
+
+        private void grow() {
+            data = Arrays.copyOf(data, data.length * 2);
+        }
+
+        /**
+         * Releases the references to the last decompressed chunk-data, so it does not pin a (memory-mapped)
+         * region-file while the buffer is pooled.<br>
+         * Returns null and releases the native memory of the inflater if the buffer got too large to be pooled.
+         */
+        private @Nullable DecompressionBuffer recycle() {
+            uncompressed = null;
+            size = 0;
+
+            if (data.length > MAX_POOLED_BUFFER_SIZE) {
+                inflater.end();
+                return null;
+            }
+
+            // resetting the inflater also drops its reference to the last input-buffer
+            inflater.reset();
+            return this;
+        }
+
+        public InputStream inputStream() {
+            if (uncompressed != null) return new ByteBufferInputStream(uncompressed);
+            return new ByteArrayInputStream(data, 0, size);
+        }
+
+    }
+
 }
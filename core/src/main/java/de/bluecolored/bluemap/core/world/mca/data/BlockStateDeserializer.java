@@ -24,31 +24,50 @@
  */
 package de.bluecolored.bluemap.core.world.mca.data;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import de.bluecolored.bluemap.core.world.BlockState;
 import de.bluecolored.bluenbt.NBTReader;
 import de.bluecolored.bluenbt.TypeDeserializer;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+/**
+ * Deserializes palette-entries into interned {@link BlockState}s.<br>
+ * Recently seen block-states are looked up by their serialized form, so most palette-entries do not need to create
+ * a new {@link BlockState} instance to be {@link BlockState#intern() interned}.
+ * The lookup-cache is bounded, the interned block-states themselves are kept by {@link BlockState#intern()}.
+ */
 public class BlockStateDeserializer implements TypeDeserializer<BlockState> {
 
+    private static final String[] NO_PROPERTIES = new String[0];
+    private static final Cache<String, BlockState> BLOCK_STATE_CACHE = Caffeine.newBuilder()
+            .maximumSize(10000)
+            .build();
+
     @Override
     public BlockState read(NBTReader reader) throws IOException {
         reader.beginCompound();
 
         String id = null;
-        Map<String, String> properties = null;
+        String[] properties = NO_PROPERTIES;
+        int propertyCount = 0;
 
         while (reader.hasNext()) {
             switch (reader.name()) {
                 case "Name" : id = reader.nextString(); break;
                 case "Properties" :
-                    properties = new LinkedHashMap<>();
                     reader.beginCompound();
-                    while (reader.hasNext())
-                        properties.put(reader.name(), reader.nextString());
+                    while (reader.hasNext()) {
+                        int i = propertyCount++ * 2;
+                        if (i + 1 >= properties.length)
+                            properties = Arrays.copyOf(properties, Math.max(properties.length * 2, 8));
+                        properties[i] = reader.name();
+                        properties[i + 1] = reader.nextString();
+                    }
                     reader.endCompound();
                     break;
                 default : reader.skip();
@@ -58,7 +77,22 @@ public BlockState read(NBTReader reader) throws IOException {
         reader.endCompound();
 
         if (id == null) throw new IOException("Invalid BlockState, Name is missing!");
-        return properties == null ? new BlockState(id) : new BlockState(id, properties);
+        if (propertyCount == 0) return BLOCK_STATE_CACHE.get(id, k -> new BlockState(k).intern());
+
+        StringBuilder key = new StringBuilder(id);
+        for (int i = 0; i < propertyCount * 2; i += 2)
+            key.append(';').append(properties[i]).append('=').append(properties[i + 1]);
+
+        BlockState blockState = BLOCK_STATE_CACHE.getIfPresent(key.toString());
+        if (blockState != null) return blockState;
+
+        Map<String, String> propertyMap = new LinkedHashMap<>();
+        for (int i = 0; i < propertyCount * 2; i += 2)
+            propertyMap.put(properties[i], properties[i + 1]);
+
+        blockState = new BlockState(id, propertyMap).intern();
+        BLOCK_STATE_CACHE.put(key.toString(), blockState);
+        return blockState;
     }
 
-}
\ No newline at end of file
+}
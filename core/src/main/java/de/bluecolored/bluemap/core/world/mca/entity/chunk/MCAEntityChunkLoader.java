@@ -26,18 +26,19 @@
 
 import de.bluecolored.bluemap.core.storage.compression.Compression;
 import de.bluecolored.bluemap.core.world.mca.ChunkLoader;
+import de.bluecolored.bluemap.core.util.stream.ByteBufferInputStream;
 import de.bluecolored.bluemap.core.world.mca.MCAUtil;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 public class MCAEntityChunkLoader implements ChunkLoader<MCAEntityChunk> {
 
     @Override
-    public MCAEntityChunk load(byte[] data, int offset, int length, Compression compression) throws IOException {
+    public MCAEntityChunk load(ByteBuffer data, Compression compression) throws IOException {
         try (
-                InputStream in = new ByteArrayInputStream(data, offset, length);
+                InputStream in = new ByteBufferInputStream(data);
                 InputStream decompressedIn = compression.decompress(in)
         ) {
             try {
@@ -58,4 +59,10 @@ public MCAEntityChunk erroredChunk() {
         return MCAEntityChunk.ERRORED_CHUNK;
     }
 
+    @Override
+    public int estimateMemoryUsage(MCAEntityChunk chunk) {
+        // a rough guess, entities are holding quite some nested objects
+        return 64 + chunk.getEntities().length * 512;
+    }
+
 }
@@ -26,23 +26,37 @@
 
 import com.flowpowered.math.vector.Vector2i;
 import de.bluecolored.bluemap.core.storage.compression.Compression;
-import de.bluecolored.bluemap.core.world.Chunk;
 import de.bluecolored.bluemap.core.world.ChunkConsumer;
 import de.bluecolored.bluemap.core.world.Region;
 import de.bluecolored.bluemap.core.world.mca.ChunkLoader;
-import de.bluecolored.bluemap.core.world.mca.chunk.MCAChunkLoader;
-import de.bluecolored.bluemap.core.world.mca.chunk.MCAChunk;
+import lombok.AccessLevel;
 import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
-import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Locale;
 import java.util.regex.Pattern;
 
+/**
+ * A {@link Region} reading the anvil (.mca) region-file format.<br>
+ * <br>
+ * The location/timestamp header-table is parsed once and then reused for all chunk-loads and iterations, as long as
+ * the size and modification-time of the region-file do not change. If they change (checked with a single stat per
+ * access), the header is parsed again, so changes the server writes into the file are seen.<br>
+ * The region-file is memory-mapped together with parsing the header, and chunks are then decompressed directly from
+ * slices of the mapped file. All chunk-locations are validated against the length of the mapped file before reading.<br>
+ * <br>
+ * On Windows, mapped files can not be replaced or truncated while the mapping exists, so there the file is read
+ * using normal (positional) reads instead.
+ */
 @Getter
 public class MCARegion<T> implements Region<T> {
 
@@ -58,13 +72,32 @@
         CHUNK_COMPRESSION_MAP[4] = Compression.LZ4;
     }
 
+    private static final boolean DEFAULT_MEMORY_MAPPED = !System.getProperty("os.name", "")
+            .toLowerCase(Locale.ROOT).startsWith("windows");
+
+    private static final int SECTOR_SIZE = 4096;
+    private static final int HEADER_SIZE = SECTOR_SIZE * 2;
+    private static final int CHUNK_COUNT = 32 * 32;
+
     private final Path regionFile;
     private final ChunkLoader<T> chunkLoader;
     private final Vector2i regionPos;
+    private final boolean memoryMapped;
+
+    @Getter(AccessLevel.NONE)
+    private volatile @Nullable Header header;
 
     public MCARegion(ChunkLoader<T> chunkLoader, Path regionFile) throws IllegalArgumentException {
+        this(chunkLoader, regionFile, DEFAULT_MEMORY_MAPPED);
+    }
+
+    /**
+     * @param memoryMapped whether the region-file should be memory-mapped, or read using positional reads
+     */
+    public MCARegion(ChunkLoader<T> chunkLoader, Path regionFile, boolean memoryMapped) throws IllegalArgumentException {
         this.chunkLoader = chunkLoader;
         this.regionFile = regionFile;
+        this.memoryMapped = memoryMapped;
 
         String[] filenameParts = regionFile.getFileName().toString().split("\\.");
         int rX = Integer.parseInt(filenameParts[1]);
@@ -75,92 +108,69 @@ public MCARegion(ChunkLoader<T> chunkLoader, Path regionFile) throws IllegalArgu
 
     @Override
     public T loadChunk(int chunkX, int chunkZ) throws IOException {
-        if (Files.notExists(regionFile)) return chunkLoader.emptyChunk();
-
-        long fileLength = Files.size(regionFile);
-        if (fileLength == 0) return chunkLoader.emptyChunk();
+        Header header = getHeader();
+        if (header == null) return chunkLoader.emptyChunk();
 
-        try (FileChannel channel = FileChannel.open(regionFile, StandardOpenOption.READ)) {
-            int xzChunk = (chunkZ & 0b11111) << 5 | (chunkX & 0b11111);
+        int location = header.locations[(chunkZ & 0b11111) << 5 | (chunkX & 0b11111)];
+        if ((location & 0xFF) == 0) return chunkLoader.emptyChunk();
 
-            byte[] header = new byte[4];
-            channel.position(xzChunk * 4);
-            readFully(channel, header, 0, 4);
+        if (header.data != null)
+            return loadChunk(header.data, sectorOffset(location), location);
 
-            long offset = (header[0] & 0xFF) << 16;
-            offset |= (header[1] & 0xFF) << 8;
-            offset |= header[2] & 0xFF;
-            offset *= 4096;
-            int size = (header[3] & 0xFF) * 4096;
-
-            if (size == 0) return chunkLoader.emptyChunk();
-
-            byte[] chunkDataBuffer = new byte[size];
-
-            channel.position(offset);
-            readFully(channel, chunkDataBuffer, 0, size);
-
-            return loadChunk(chunkDataBuffer, size);
+        try (FileChannel channel = openChannel()) {
+            if (channel == null) return chunkLoader.emptyChunk();
+            return loadChunk(readFully(channel, location, null), 0, location);
         }
     }
 
     @Override
     public void iterateAllChunks(ChunkConsumer<T> consumer) throws IOException {
-        if (Files.notExists(regionFile)) return;
+        Header header = getHeader();
+        if (header == null) return;
+
+        ByteBuffer data = header.data;
+        if (data != null) {
+            iterateAllChunks(consumer, header, location -> loadChunk(data, sectorOffset(location), location));
+            return;
+        }
 
-        long fileLength = Files.size(regionFile);
-        if (fileLength == 0) return;
+        try (FileChannel channel = openChannel()) {
+            if (channel == null) return;
 
+            ByteBuffer[] chunkDataBuffer = new ByteBuffer[1];
+            iterateAllChunks(consumer, header, location -> {
+                chunkDataBuffer[0] = readFully(channel, location, chunkDataBuffer[0]);
+                return loadChunk(chunkDataBuffer[0], 0, location);
+            });
+        }
+    }
+
+    private void iterateAllChunks(ChunkConsumer<T> consumer, Header header, ChunkReader<T> chunkReader) throws IOException {
         int chunkStartX = regionPos.getX() * 32;
         int chunkStartZ = regionPos.getY() * 32;
 
-        try (FileChannel channel = FileChannel.open(regionFile, StandardOpenOption.READ)) {
-            byte[] header = new byte[1024 * 8];
-            byte[] chunkDataBuffer = null;
-
-            // read the header
-            readFully(channel, header, 0, header.length);
-
-            // iterate over all chunks
-            for (int x = 0; x < 32; x++) {
-                for (int z = 0; z < 32; z++) {
-                    int xzChunk = (z & 0b11111) << 5 | (x & 0b11111);
-
-                    int size = (header[xzChunk * 4 + 3] & 0xFF) * 4096;
-                    if (size == 0) continue;
-
-                    int chunkX = chunkStartX + x;
-                    int chunkZ = chunkStartZ + z;
-
-                    int i = xzChunk * 4 + 4096;
-                    int timestamp = header[i++] << 24;
-                    timestamp |= (header[i++] & 0xFF) << 16;
-                    timestamp |= (header[i++] & 0xFF) << 8;
-                    timestamp |= header[i] & 0xFF;
-
-                    // load chunk only if consumers filter returns true
-                    if (consumer.filter(chunkX, chunkZ, timestamp)) {
-                        i = xzChunk * 4;
-                        long offset = (header[i++] & 0xFF) << 16;
-                        offset |= (header[i++] & 0xFF) << 8;
-                        offset |= header[i] & 0xFF;
-                        offset *= 4096;
-
-                        if (chunkDataBuffer == null || chunkDataBuffer.length < size)
-                            chunkDataBuffer = new byte[size];
-
-                        channel.position(offset);
-                        readFully(channel, chunkDataBuffer, 0, size);
-
-                        try {
-                            T chunk = loadChunk(chunkDataBuffer, size);
-                            consumer.accept(chunkX, chunkZ, chunk);
-                        } catch (IOException ex) {
-                            consumer.fail(chunkX, chunkZ, ex);
-                        } catch (Exception ex) {
-                            consumer.fail(chunkX, chunkZ, new IOException(ex));
-                        }
-
+        // iterate over all chunks
+        for (int x = 0; x < 32; x++) {
+            for (int z = 0; z < 32; z++) {
+                int xzChunk = (z & 0b11111) << 5 | (x & 0b11111);
+
+                // a chunk with a size of 0 sectors does not exist
+                int location = header.locations[xzChunk];
+                if ((location & 0xFF) == 0) continue;
+
+                int chunkX = chunkStartX + x;
+                int chunkZ = chunkStartZ + z;
+                int timestamp = header.timestamps[xzChunk];
+
+                // load chunk only if consumers filter returns true
+                if (consumer.filter(chunkX, chunkZ, timestamp)) {
+                    try {
+                        T chunk = chunkReader.read(location);
+                        consumer.accept(chunkX, chunkZ, chunk);
+                    } catch (IOException ex) {
+                        consumer.fail(chunkX, chunkZ, ex);
+                    } catch (Exception ex) {
+                        consumer.fail(chunkX, chunkZ, new IOException(ex));
                     }
                 }
             }
@@ -172,38 +182,136 @@ public T emptyChunk() {
         return chunkLoader.emptyChunk();
     }
 
-    private T loadChunk(byte[] data, int size) throws IOException {
-        int compressionTypeId = Byte.toUnsignedInt(data[4]);
+    private T loadChunk(ByteBuffer data, long offset, int location) throws IOException {
+        int sectorSize = (location & 0xFF) * SECTOR_SIZE;
+
+        if (offset + 5 > data.limit())
+            throw new IOException("Chunk-data at offset %d is out of bounds of the region-file (%d bytes)"
+                    .formatted(offset, data.limit()));
+
+        int chunkOffset = (int) offset;
+        int length = data.getInt(chunkOffset);
+        if (length <= 1 || length > sectorSize - 4 || chunkOffset + 4 + length > data.limit())
+            throw new IOException("Invalid chunk-data length: " + length);
+
+        int compressionTypeId = Byte.toUnsignedInt(data.get(chunkOffset + 4));
         Compression compression = CHUNK_COMPRESSION_MAP[compressionTypeId];
         if (compression == null)
             throw new IOException("Unknown chunk compression-id: " + compressionTypeId);
 
-        return chunkLoader.load(data, 5, size - 5, compression);
+        return chunkLoader.load(data.slice(chunkOffset + 5, length - 1), compression);
     }
 
-    public static String getRegionFileName(int regionX, int regionZ) {
-        return "r." + regionX + "." + regionZ + FILE_SUFFIX;
+    /**
+     * Returns the parsed header of the current region-file, parsing it again if the file changed since it has been
+     * parsed the last time. Returns null if the region-file does not exist or has no complete header (yet).
+     * A missing region is not remembered, so a region-file that gets created later is found on the next access.
+     */
+    private @Nullable Header getHeader() throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(regionFile, BasicFileAttributes.class);
+        } catch (NoSuchFileException ex) {
+            return this.header = null;
+        }
+
+        Header header = this.header;
+        if (header != null && header.isCurrent(attributes.size(), attributes.lastModifiedTime())) return header;
+        return readHeader();
     }
 
-    @SuppressWarnings("SameParameterValue")
-    private static void readFully(ReadableByteChannel src, byte[] dst, int off, int len) throws IOException {
-        readFully(src, ByteBuffer.wrap(dst), off, len);
+    private synchronized @Nullable Header readHeader() throws IOException {
+        try (FileChannel channel = openChannel()) {
+            if (channel == null) return this.header = null;
+            long fileLength = channel.size();
+            FileTime lastModified = Files.getLastModifiedTime(regionFile);
+
+            // another thread might have parsed the header already
+            Header header = this.header;
+            if (header != null && header.isCurrent(fileLength, lastModified)) return header;
+
+            // an empty or incomplete header means there are no chunks (yet)
+            if (fileLength < HEADER_SIZE) return this.header = null;
+
+            if (fileLength > Integer.MAX_VALUE)
+                throw new IOException("Region-file is too large: " + fileLength + " bytes");
+
+            // the mapping stays valid after the channel is closed
+            ByteBuffer data = memoryMapped ? channel.map(FileChannel.MapMode.READ_ONLY, 0, fileLength) : null;
+            ByteBuffer headerData = data != null ? data : readFully(channel, 0, HEADER_SIZE, null);
+            if (headerData.limit() < HEADER_SIZE) return this.header = null;
+
+            int[] locations = new int[CHUNK_COUNT];
+            int[] timestamps = new int[CHUNK_COUNT];
+            headerData.slice(0, SECTOR_SIZE).asIntBuffer().get(locations);
+            headerData.slice(SECTOR_SIZE, SECTOR_SIZE).asIntBuffer().get(timestamps);
+
+            return this.header = new Header(fileLength, lastModified, locations, timestamps, data);
+        }
+    }
+
+    private @Nullable FileChannel openChannel() throws IOException {
+        try {
+            return FileChannel.open(regionFile, StandardOpenOption.READ);
+        } catch (NoSuchFileException ex) {
+            return null;
+        }
+    }
+
+    private static long sectorOffset(int location) {
+        return (long) (location >>> 8) * SECTOR_SIZE;
+    }
+
+    /**
+     * Reads all sectors of the chunk at the given location into a buffer (reusing the given buffer if it is large enough)
+     */
+    private static ByteBuffer readFully(FileChannel channel, int location, @Nullable ByteBuffer buffer) throws IOException {
+        return readFully(channel, sectorOffset(location), (location & 0xFF) * SECTOR_SIZE, buffer);
+    }
+
+    /**
+     * Reads up to length bytes at the given position, the limit of the returned buffer is the amount of bytes read
+     */
+    private static ByteBuffer readFully(FileChannel channel, long position, int length, @Nullable ByteBuffer buffer) throws IOException {
+        if (buffer == null || buffer.capacity() < length)
+            buffer = ByteBuffer.allocate(length);
+
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) break;
+        }
+
+        return buffer.flip();
     }
 
-    private static void readFully(ReadableByteChannel src, ByteBuffer bb, int off, int len) throws IOException {
-        int limit = off + len;
-        if (limit > bb.capacity()) throw new IllegalArgumentException("buffer too small");
+    public static String getRegionFileName(int regionX, int regionZ) {
+        return "r." + regionX + "." + regionZ + FILE_SUFFIX;
+    }
 
-        bb.limit(limit);
-        bb.position(off);
+    /**
+     * The parsed header-table of a region-file
+     *
+     * @param fileLength the length of the region-file the header has been parsed from
+     * @param lastModified the modification-time of the region-file the header has been parsed from
+     * @param data the whole memory-mapped region-file, or null if the file is not memory-mapped
+     */
+    private record Header(
+            long fileLength,
+            FileTime lastModified,
+            int[] locations,
+            int[] timestamps,
+            @Nullable ByteBuffer data
+    ) {
+
+        boolean isCurrent(long fileLength, FileTime lastModified) {
+            return this.fileLength == fileLength && this.lastModified.equals(lastModified);
+        }
+
+    }
 
-        do {
-            int read = src.read(bb);
-            if (read < 0)
-                // zero out all the remaining data from the buffer
-                while (bb.remaining() > 0)
-                    bb.put((byte) 0);
-        } while (bb.remaining() > 0);
+    @FunctionalInterface
+    private interface ChunkReader<T> {
+        T read(int location) throws IOException;
     }
 
 }
@@ -0,0 +1,124 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.map;
+
+import de.bluecolored.bluemap.core.storage.GridStorage;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class TileWriterTest {
+
+    private final GridStorage storage = mock(GridStorage.class);
+
+    @Test
+    public void testWritesOfSameTileKeepOrder() {
+        TileWriter writer = new TileWriter("test");
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            int value = i;
+            writer.submit(storage, 3, 4, () -> order.add(value));
+        }
+        writer.flush();
+
+        assertEquals(100, order.size());
+        for (int i = 0; i < 100; i++) assertEquals(i, order.get(i));
+    }
+
+    @Test
+    public void testFlushOnlyWaitsForOwnWrites() throws Exception {
+        TileWriter blocked = new TileWriter("blocked"), other = new TileWriter("other");
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            blocked.submit(storage, 0, 0, () -> await(release));
+
+            AtomicBoolean written = new AtomicBoolean();
+            other.submit(storage, 0, 0, () -> written.set(true));
+
+            CompletableFuture<Void> flush = CompletableFuture.runAsync(other::flush);
+            flush.get(10, TimeUnit.SECONDS);
+            assertTrue(written.get());
+
+            CompletableFuture<Void> blockedFlush = CompletableFuture.runAsync(blocked::flush);
+            assertThrows(TimeoutException.class, () -> blockedFlush.get(100, TimeUnit.MILLISECONDS));
+            release.countDown();
+            blockedFlush.get(10, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testQueuedBytesAreLimited() throws Exception {
+        TileWriter writer = new TileWriter("test", 4096);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // fills the limit while the write is blocked
+            writer.submit(storage, 0, 0, 4096, () -> await(release));
+
+            CompletableFuture<Void> submit = CompletableFuture.runAsync(() -> writer.submit(storage, 1, 0, 1, () -> {}));
+            assertThrows(TimeoutException.class, () -> submit.get(100, TimeUnit.MILLISECONDS));
+
+            // writes without queued memory are not limited
+            CompletableFuture.runAsync(() -> writer.submit(storage, 2, 0, () -> {})).get(10, TimeUnit.SECONDS);
+
+            release.countDown();
+            submit.get(10, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+        }
+
+        // a single write that is bigger than the limit is accepted as well
+        AtomicBoolean written = new AtomicBoolean();
+        CompletableFuture.runAsync(() -> writer.submit(storage, 0, 0, 1024 * 1024, () -> written.set(true)))
+                .get(10, TimeUnit.SECONDS);
+        writer.flush();
+        assertTrue(written.get());
+    }
+
+    @Test
+    public void testFailedWriteReleasesQueuedBytes() throws Exception {
+        TileWriter writer = new TileWriter("test", 4096);
+        writer.submit(storage, 0, 0, 4096, () -> { throw new IllegalStateException("test"); });
+        writer.flush();
+
+        CompletableFuture.runAsync(() -> writer.submit(storage, 0, 0, 4096, () -> {}))
+                .get(10, TimeUnit.SECONDS);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
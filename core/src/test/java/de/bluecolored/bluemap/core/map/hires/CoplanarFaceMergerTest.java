@@ -0,0 +1,215 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.map.hires;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CoplanarFaceMergerTest {
+
+    private static final int ANIMATED_MATERIAL = 9;
+    private static final CoplanarFaceMerger MERGER = new CoplanarFaceMerger(material -> material != ANIMATED_MATERIAL);
+
+    @Test
+    public void testMergeRow() {
+        ArrayTileModel model = new ArrayTileModel(10);
+        addTopQuad(model, 0, 64, 0, 0);
+        addTopQuad(model, 1, 64, 0, 0);
+        addTopQuad(model, 2, 64, 0, 0);
+
+        MERGER.merge(model);
+
+        assertEquals(2, model.size);
+        assertQuad(model, 0, 0, 64, 0, 3, 1);
+    }
+
+    @Test
+    public void testMergeRectangle() {
+        ArrayTileModel model = new ArrayTileModel(20);
+        for (int z = 5; z < 7; z++) {
+            for (int x = -2; x < 1; x++) {
+                addTopQuad(model, x, 10, z, 0);
+            }
+        }
+
+        MERGER.merge(model);
+
+        assertEquals(2, model.size);
+        assertQuad(model, 0, -2, 10, 5, 3, 2);
+    }
+
+    @Test
+    public void testMergeKeepsOtherFaces() {
+        ArrayTileModel model = new ArrayTileModel(20);
+        addTopQuad(model, 0, 64, 0, 0);
+        addTopQuad(model, 1, 64, 0, 0);
+
+        // on a different plane
+        addTopQuad(model, 2, 65, 0, 0);
+
+        // not touching the others
+        addTopQuad(model, 5, 64, 0, 0);
+
+        MERGER.merge(model);
+
+        assertEquals(6, model.size);
+        assertQuad(model, 0, 0, 64, 0, 2, 1);
+        assertQuad(model, 2, 2, 65, 0, 1, 1);
+        assertQuad(model, 4, 5, 64, 0, 1, 1);
+    }
+
+    @Test
+    public void testMismatchedFacesAreNotMerged() {
+        assertNotMerged(model -> model.setMaterialIndex(2, 1).setMaterialIndex(3, 1));
+        assertNotMerged(model -> model.setColor(2, 0.5f, 1f, 1f).setColor(3, 0.5f, 1f, 1f));
+        assertNotMerged(model -> model.setSunlight(2, 14).setSunlight(3, 14));
+        assertNotMerged(model -> model.setBlocklight(2, 3).setBlocklight(3, 3));
+        assertNotMerged(model -> model.setAOs(2, 0.5f, 0.5f, 0.5f).setAOs(3, 0.5f, 0.5f, 0.5f));
+    }
+
+    @Test
+    public void testNonUniformFacesAreNotMerged() {
+        // ambient occlusion changing over the quad
+        assertNotMerged(model -> model.setAOs(2, 1f, 0.5f, 1f));
+
+        // texture not mapped exactly once onto the quad
+        assertNotMerged(model -> model
+                .setUvs(2, 0f, 0f, 0.5f, 0f, 0.5f, 1f)
+                .setUvs(3, 0f, 0f, 0.5f, 1f, 0f, 1f)
+        );
+
+        // not a full block-face
+        assertNotMerged(model -> model
+                .setPositions(2, 1f, 64f, 0f, 1.5f, 64f, 0f, 1.5f, 64f, 1f)
+                .setPositions(3, 1f, 64f, 0f, 1.5f, 64f, 1f, 1f, 64f, 1f)
+        );
+    }
+
+    @Test
+    public void testAnimatedMaterialIsNotMerged() {
+        ArrayTileModel model = new ArrayTileModel(10);
+        addTopQuad(model, 0, 64, 0, ANIMATED_MATERIAL);
+        addTopQuad(model, 1, 64, 0, ANIMATED_MATERIAL);
+
+        MERGER.merge(model);
+        assertEquals(4, model.size);
+    }
+
+    @Test
+    public void testRotatedTexture() {
+        ArrayTileModel model = new ArrayTileModel(10);
+        for (int x = 0; x < 2; x++) {
+            int face = addTopQuad(model, x, 64, 0, 0);
+
+            // texture rotated by 90 degrees: u runs along z, v runs against x
+            model.setUvs(face, 0f, 1f, 0f, 0f, 1f, 0f);
+            model.setUvs(face + 1, 0f, 1f, 1f, 0f, 1f, 1f);
+        }
+
+        MERGER.merge(model);
+        assertEquals(2, model.size);
+
+        for (int face = 0; face < 2; face++) {
+            for (int j = 0; j < 3; j++) {
+                float x = model.position[face * ArrayTileModel.FI_POSITION + j * 3];
+                float z = model.position[face * ArrayTileModel.FI_POSITION + j * 3 + 2];
+                assertEquals(z, model.uv[face * ArrayTileModel.FI_UV + j * 2]);
+                assertEquals(1f - x, model.uv[face * ArrayTileModel.FI_UV + j * 2 + 1]);
+            }
+        }
+    }
+
+    /**
+     * Creates two adjacent quads, applies the modification (faces 2 and 3 are the second quad) and asserts that nothing
+     * got merged
+     */
+    private static void assertNotMerged(Consumer<ArrayTileModel> modification) {
+        ArrayTileModel model = new ArrayTileModel(10);
+        addTopQuad(model, 0, 64, 0, 0);
+        addTopQuad(model, 1, 64, 0, 0);
+        modification.accept(model);
+
+        float[] positions = model.position.clone();
+        float[] uvs = model.uv.clone();
+
+        MERGER.merge(model);
+
+        assertEquals(4, model.size);
+        assertArrayEquals(positions, model.position);
+        assertArrayEquals(uvs, model.uv);
+    }
+
+    /**
+     * Adds an upwards facing quad covering the top of one block, with the texture mapped once onto it
+     */
+    private static int addTopQuad(ArrayTileModel model, int x, int y, int z, int material) {
+        int face = model.add(2);
+        model.setPositions(face, x, y, z, x + 1, y, z, x + 1, y, z + 1);
+        model.setPositions(face + 1, x, y, z, x + 1, y, z + 1, x, y, z + 1);
+        model.setUvs(face, 0f, 0f, 1f, 0f, 1f, 1f);
+        model.setUvs(face + 1, 0f, 0f, 1f, 1f, 0f, 1f);
+        for (int i = face; i < face + 2; i++) {
+            model.setAOs(i, 1f, 1f, 1f);
+            model.setColor(i, 1f, 1f, 1f);
+            model.setSunlight(i, 15);
+            model.setBlocklight(i, 0);
+            model.setMaterialIndex(i, material);
+        }
+        return face;
+    }
+
+    /**
+     * Asserts that the two faces starting at the given face form an upwards facing quad with the given position and
+     * size, repeating the texture once per block
+     */
+    private static void assertQuad(ArrayTileModel model, int face, int x, int y, int z, int width, int depth) {
+        float minX = Float.POSITIVE_INFINITY, maxX = Float.NEGATIVE_INFINITY;
+        float minZ = Float.POSITIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+
+        for (int f = face; f < face + 2; f++) {
+            for (int j = 0; j < 3; j++) {
+                int pi = f * ArrayTileModel.FI_POSITION + j * 3;
+                float px = model.position[pi], py = model.position[pi + 1], pz = model.position[pi + 2];
+                assertEquals(y, py);
+
+                minX = Math.min(minX, px); maxX = Math.max(maxX, px);
+                minZ = Math.min(minZ, pz); maxZ = Math.max(maxZ, pz);
+
+                int ui = f * ArrayTileModel.FI_UV + j * 2;
+                assertEquals(px - x, model.uv[ui]);
+                assertEquals(pz - z, model.uv[ui + 1]);
+            }
+        }
+
+        assertEquals(x, minX);
+        assertEquals(x + width, maxX);
+        assertEquals(z, minZ);
+        assertEquals(z + depth, maxZ);
+    }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.map.hires;
+
+import com.flowpowered.math.vector.Vector3i;
+import de.bluecolored.bluemap.core.map.TextureGallery;
+import de.bluecolored.bluemap.core.map.hires.block.BlockRendererType;
+import de.bluecolored.bluemap.core.resources.pack.resourcepack.ResourcePack;
+import de.bluecolored.bluemap.core.resources.pack.resourcepack.blockstate.Variant;
+import de.bluecolored.bluemap.core.resources.pack.resourcepack.blockstate.VariantSet;
+import de.bluecolored.bluemap.core.util.Key;
+import de.bluecolored.bluemap.core.world.*;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+public class HiresModelRendererTest {
+
+    private static final BlockState STONE = new BlockState("minecraft:stone");
+    private static final BlockState GLASS = new BlockState("minecraft:glass");
+
+    private static final int MAX_Y = 127;
+
+    private HiresModelRenderer renderer;
+
+    @BeforeEach
+    public void setup() {
+        VariantSet[] opaque = variants("opaque", 1f), translucent = variants("translucent", 0.5f);
+
+        ResourcePack resourcePack = mock(ResourcePack.class);
+        when(resourcePack.getBlockProperties(any())).thenReturn(BlockProperties.DEFAULT);
+        when(resourcePack.getBlockStateVariants(STONE)).thenReturn(opaque);
+        when(resourcePack.getBlockStateVariants(GLASS)).thenReturn(translucent);
+
+        RenderSettings renderSettings = new RenderSettings() {
+            @Override public int getRemoveCavesBelowY() { return Integer.MIN_VALUE; }
+            @Override public int getCaveDetectionOceanFloor() { return Integer.MIN_VALUE; }
+            @Override public boolean isCaveDetectionUsesBlockLight() { return false; }
+            @Override public float getAmbientLight() { return 0; }
+            @Override public boolean isSaveHiresLayer() { return true; }
+            @Override public boolean isRenderTopOnly() { return false; }
+        };
+
+        renderer = new HiresModelRenderer(resourcePack, new TextureGallery(), renderSettings);
+    }
+
+    @Test
+    public void testLitSurface() {
+        BlockState[] blocks = new BlockState[MAX_Y + 1];
+        int[] blockLight = new int[MAX_Y + 1];
+        Arrays.fill(blocks, BlockState.AIR);
+        Arrays.fill(blocks, 0, 65, STONE);
+
+        // a torch-lit surface, and a lamp high up in an all-air section (e.g. next to the column)
+        blockLight[65] = 12;
+        blockLight[66] = 10;
+        blockLight[100] = 14;
+
+        Map<Integer, String> baseline = render(new TestChunk(blocks, blockLight, false));
+        Map<Integer, String> skipping = render(new TestChunk(blocks, blockLight, true));
+
+        assertEquals(baseline, skipping);
+        assertEquals("64/14", skipping.get(0).substring(skipping.get(0).indexOf('|') + 1));
+    }
+
+    @Test
+    public void testLitAirBelowTranslucentBlock() {
+        BlockState[] blocks = new BlockState[MAX_Y + 1];
+        int[] blockLight = new int[MAX_Y + 1];
+        Arrays.fill(blocks, BlockState.AIR);
+        Arrays.fill(blocks, 0, 48, STONE);
+        blocks[64] = GLASS;
+
+        // lit air in the all-air section below the glass is seen through the glass
+        blockLight[50] = 10;
+        blockLight[65] = 4;
+
+        Map<Integer, String> baseline = render(new TestChunk(blocks, blockLight, false));
+        Map<Integer, String> skipping = render(new TestChunk(blocks, blockLight, true));
+
+        assertEquals(baseline, skipping);
+        assertEquals("64/5", skipping.get(0).substring(skipping.get(0).indexOf('|') + 1));
+    }
+
+    @Test
+    public void testUnlitColumn() {
+        BlockState[] blocks = new BlockState[MAX_Y + 1];
+        Arrays.fill(blocks, BlockState.AIR);
+        Arrays.fill(blocks, 0, 20, STONE);
+
+        Map<Integer, String> baseline = render(new TestChunk(blocks, new int[MAX_Y + 1], false));
+        Map<Integer, String> skipping = render(new TestChunk(blocks, new int[MAX_Y + 1], true));
+
+        assertEquals(baseline, skipping);
+        assertEquals("19/0", skipping.get(0).substring(skipping.get(0).indexOf('|') + 1));
+    }
+
+    /**
+     * Renders one chunk and returns the tile-meta of every column as "color|height/block-light"
+     */
+    private Map<Integer, String> render(Chunk chunk) {
+        World world = mock(World.class);
+        when(world.getChunkAtBlock(anyInt(), anyInt())).thenReturn(chunk);
+        when(world.getDimensionType()).thenReturn(DimensionType.OVERWORLD);
+
+        Map<Integer, String> meta = new HashMap<>();
+        renderer.render(world, new Vector3i(0, 0, 0), new Vector3i(15, MAX_Y, 15), new ArrayTileModel(100),
+                (x, z, color, height, blockLight) -> meta.put(x << 4 | z, color.getInt() + "|" + height + "/" + blockLight)
+        );
+        assertEquals(256, meta.size());
+        return meta;
+    }
+
+    private static VariantSet[] variants(String name, float alpha) {
+        Variant variant = mock(Variant.class);
+        when(variant.getRenderer()).thenReturn(new BlockRendererType.Impl(Key.bluemap("test-" + name),
+                (resourcePack, textureGallery, renderSettings) -> (block, v, tileModel, blockColor) ->
+                        blockColor.set(0.5f, 0.5f, 0.5f, alpha, false)
+        ));
+
+        VariantSet variantSet = mock(VariantSet.class);
+        when(variantSet.select(anyInt(), anyInt(), anyInt())).thenReturn(variant);
+        return new VariantSet[]{ variantSet };
+    }
+
+    /**
+     * A chunk where every column is the same.
+     * Without hints, it only implements what is needed to look up every block, like chunks did before the renderer
+     * skipped any air.
+     */
+    private record TestChunk(BlockState[] blocks, int[] blockLight, boolean hints) implements Chunk {
+
+        @Override
+        public boolean isGenerated() {
+            return true;
+        }
+
+        @Override
+        public boolean hasLightData() {
+            return true;
+        }
+
+        @Override
+        public BlockState getBlockState(int x, int y, int z) {
+            if (y < 0 || y > MAX_Y) return BlockState.AIR;
+            return blocks[y];
+        }
+
+        @Override
+        public LightData getLightData(int x, int y, int z, LightData target) {
+            if (y < 0 || y > MAX_Y) return target.set(15, 0);
+            return target.set(15, blockLight[y]);
+        }
+
+        @Override
+        public int getMaxY(int x, int z) {
+            return MAX_Y;
+        }
+
+        @Override
+        public int getColumnMaxY(int x, int z) {
+            if (!hints) return getMaxY(x, z);
+
+            // the first air-block above the ground, like from the world-surface heightmap
+            int y = MAX_Y;
+            while (y >= 0 && blocks[y].isAir()) y--;
+            return y + 1;
+        }
+
+        @Override
+        public @Nullable BlockState getUniformBlockState(int y) {
+            if (!hints) return null;
+
+            int sectionMinY = y & ~0xF;
+            for (int i = sectionMinY; i < sectionMinY + 16; i++) {
+                if (blocks[i] != blocks[sectionMinY]) return null;
+            }
+            return blocks[sectionMinY];
+        }
+
+    }
+
+}
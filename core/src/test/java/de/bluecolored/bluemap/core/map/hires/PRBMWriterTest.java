@@ -0,0 +1,342 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.map.hires;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PRBMWriterTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        ArrayTileModel model = new ArrayTileModel(10);
+
+        // a quad on top of a block, two triangles sharing two vertices
+        addQuad(model, 0,
+                -100.5f, 64f, 200.25f,
+                -99.5f, 64f, 200.25f,
+                -99.5f, 64f, 201.25f,
+                -100.5f, 64f, 201.25f
+        );
+
+        // a quad on the side of the block, sharing an edge with the first quad but facing a different direction
+        addQuad(model, 3,
+                -100.5f, 64f, 201.25f,
+                -99.5f, 64f, 201.25f,
+                -99.5f, 63f + 1f / 16f, 201.25f,
+                -100.5f, 63f + 1f / 16f, 201.25f
+        );
+
+        Decoded decoded = writeAndDecode(model);
+        assertEquals(2, decoded.version);
+
+        // each quad has 4 distinct vertices, the shared edge is not shared because the normals differ
+        assertEquals(8, decoded.vertexCount);
+        assertEquals(12, decoded.indices.length);
+        assertArrayEquals(new int[]{ 0, 1, 2, 0, 2, 3, 4, 5, 6, 4, 6, 7 }, decoded.indices);
+
+        // positions on the 1/256 block-grid are exact
+        assertEquals(1f / 256f, decoded.positionStep[0]);
+        assertEquals(-101f, decoded.positionOffset[0]);
+        assertModelEquals(model, decoded, 0f, 0f);
+
+        float[] normal = decoded.vertex("normal", decoded.indices[0]);
+        assertArrayEquals(new float[]{ 0, -1, 0 }, normal, 0.01f);
+        normal = decoded.vertex("normal", decoded.indices[6]);
+        assertArrayEquals(new float[]{ 0, 0, -1 }, normal, 0.01f);
+
+        assertEquals(2, decoded.groups.size());
+        assertArrayEquals(new int[]{ 0, 0, 6 }, decoded.groups.get(0));
+        assertArrayEquals(new int[]{ 3, 6, 6 }, decoded.groups.get(1));
+    }
+
+    @Test
+    public void testRepeatedUvs() throws IOException {
+        ArrayTileModel model = new ArrayTileModel(10);
+
+        // a merged quad repeats its texture, so its uvs are outside [0, 1] (and can be negative)
+        addQuad(model, 0,
+                0f, 0f, 0f,
+                32f, 0f, 0f,
+                32f, 0f, 2f,
+                0f, 0f, 2f
+        );
+        model.setUvs(0, 1f, 0f, -31f, 0f, -31f, 2f);
+        model.setUvs(1, 1f, 0f, -31f, 2f, 1f, 2f);
+
+        // and a normal face with arbitrary uvs in the same tile
+        addQuad(model, 1,
+                0f, 1f, 0f,
+                1f, 1f, 0f,
+                1f, 1f, 1f,
+                0f, 1f, 1f
+        );
+        model.setUvs(2, 0.3f, 0.1f, 0.7f, 0.1f, 0.7f, 0.9f);
+        model.setUvs(3, 0.3f, 0.1f, 0.7f, 0.9f, 0.3f, 0.9f);
+
+        Decoded decoded = writeAndDecode(model);
+        assertEquals(ATTRIBUTE_UNSIGNED_16, decoded.encodings.get("uv"));
+        assertEquals(-31f, decoded.uvOffset[0]);
+        assertEquals(1f / 1024f, decoded.uvStep[0]);
+        assertModelEquals(model, decoded, 0f, 1f / 1024f / 2f);
+
+        // whole texture-pixels stay exact
+        assertArrayEquals(new float[]{ -31f, 2f }, decoded.vertex("uv", decoded.indices[2]));
+    }
+
+    @Test
+    public void testFloatUvFallback() throws IOException {
+        ArrayTileModel model = new ArrayTileModel(10);
+        addQuad(model, 0,
+                0f, 0f, 0f,
+                4f, 0f, 0f,
+                4f, 0f, 2f,
+                0f, 0f, 2f
+        );
+        model.setUvs(0, 0f, 0f, 4000f, 0f, 4000f, 2.5f);
+        model.setUvs(1, 0f, 0f, 4000f, 2.5f, 0f, 2.5f);
+
+        Decoded decoded = writeAndDecode(model);
+        assertEquals(ATTRIBUTE_FLOAT_32, decoded.encodings.get("uv"));
+        assertModelEquals(model, decoded, 0f, 0f);
+    }
+
+    @Test
+    public void testCoarsePositionStep() throws IOException {
+        ArrayTileModel model = new ArrayTileModel(10);
+
+        // a tile spanning more than 256 blocks vertically needs a coarser step
+        addQuad(model, 0,
+                0f, -64f, 0f,
+                0.3f, -64f, 0f,
+                0.3f, 319.7f, 0f,
+                0f, 319.7f, 0f
+        );
+
+        Decoded decoded = writeAndDecode(model);
+        assertEquals(1f / 128f, decoded.positionStep[1]);
+        assertEquals(ATTRIBUTE_UNSIGNED_16, decoded.encodings.get("position"));
+        assertEquals(ATTRIBUTE_UNSIGNED_16, decoded.encodings.get("uv"));
+        assertModelEquals(model, decoded, 1f / 128f / 2f, 0f);
+    }
+
+    @Test
+    public void testEmptyModel() throws IOException {
+        Decoded decoded = writeAndDecode(new ArrayTileModel(10));
+        assertEquals(0, decoded.vertexCount);
+        assertEquals(0, decoded.indices.length);
+        assertTrue(decoded.groups.isEmpty());
+    }
+
+    private static void addQuad(
+            ArrayTileModel model, int material,
+            float x1, float y1, float z1,
+            float x2, float y2, float z2,
+            float x3, float y3, float z3,
+            float x4, float y4, float z4
+    ) {
+        int face = model.add(2);
+        model.setPositions(face, x1, y1, z1, x2, y2, z2, x3, y3, z3);
+        model.setPositions(face + 1, x1, y1, z1, x3, y3, z3, x4, y4, z4);
+        model.setUvs(face, 0f, 0f, 1f, 0f, 1f, 0.5f);
+        model.setUvs(face + 1, 0f, 0f, 1f, 0.5f, 0f, 0.5f);
+        model.setAOs(face, 1f, 0.5f, 0.75f);
+        model.setAOs(face + 1, 1f, 0.75f, 0.25f);
+        for (int i = face; i < face + 2; i++) {
+            model.setColor(i, 0.2f, 0.6f, 1f);
+            model.setSunlight(i, 15);
+            model.setBlocklight(i, 7);
+            model.setMaterialIndex(i, material);
+        }
+    }
+
+    private static void assertModelEquals(ArrayTileModel model, Decoded decoded, float positionDelta, float uvDelta) {
+        for (int face = 0; face < model.size; face++) {
+            for (int j = 0; j < 3; j++) {
+                int vertex = decoded.indices[face * 3 + j];
+
+                int pi = face * ArrayTileModel.FI_POSITION + j * 3;
+                assertArrayEquals(
+                        new float[]{ model.position[pi], model.position[pi + 1], model.position[pi + 2] },
+                        decoded.vertex("position", vertex), positionDelta
+                );
+
+                int ui = face * ArrayTileModel.FI_UV + j * 2;
+                assertArrayEquals(
+                        new float[]{ model.uv[ui], model.uv[ui + 1] },
+                        decoded.vertex("uv", vertex), uvDelta
+                );
+
+                int ci = face * ArrayTileModel.FI_COLOR;
+                assertArrayEquals(
+                        new float[]{ model.color[ci], model.color[ci + 1], model.color[ci + 2] },
+                        decoded.vertex("color", vertex), 1f / 255f
+                );
+
+                assertEquals(model.ao[face * ArrayTileModel.FI_AO + j], decoded.vertex("ao", vertex)[0], 1f / 255f);
+                assertEquals(model.sunlight[face], decoded.vertex("sunlight", vertex)[0]);
+                assertEquals(model.blocklight[face], decoded.vertex("blocklight", vertex)[0]);
+            }
+        }
+    }
+
+    private static Decoded writeAndDecode(ArrayTileModel model) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (PRBMWriter writer = new PRBMWriter(bytes)) {
+            writer.write(model);
+        }
+        return decode(ByteBuffer.wrap(bytes.toByteArray()).order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    private static final int ATTRIBUTE_FLOAT_32 = 1, ATTRIBUTE_UNSIGNED_16 = 8;
+
+    /**
+     * Decodes PRBM v2 data the same way the web-app's PRBMLoader does
+     */
+    private static Decoded decode(ByteBuffer data) {
+        Decoded decoded = new Decoded();
+        decoded.version = data.get(0);
+
+        int flags = data.get(1) & 0xFF;
+        assertEquals(1, flags >> 7 & 1, "indexed");
+        assertEquals(0, flags >> 5 & 1, "little endian");
+        boolean indices32bit = (flags >> 6 & 1) == 1;
+        int attributeCount = flags & 0x1F;
+
+        decoded.vertexCount = read3byteValue(data, 2);
+        int indexCount = read3byteValue(data, 5);
+
+        for (int axis = 0; axis < 3; axis++) {
+            decoded.positionOffset[axis] = data.getFloat(8 + axis * 4);
+            decoded.positionStep[axis] = data.getFloat(20 + axis * 4);
+        }
+        for (int axis = 0; axis < 2; axis++) {
+            decoded.uvOffset[axis] = data.getFloat(32 + axis * 4);
+            decoded.uvStep[axis] = data.getFloat(40 + axis * 4);
+        }
+
+        int pos = 48;
+        for (int a = 0; a < attributeCount; a++) {
+            StringBuilder name = new StringBuilder();
+            byte c;
+            while ((c = data.get(pos++)) != 0) name.append((char) c);
+
+            int attributeFlags = data.get(pos++) & 0xFF;
+            boolean normalized = (attributeFlags >> 6 & 1) == 1;
+            int cardinality = (attributeFlags >> 4 & 0x3) + 1;
+            int encoding = attributeFlags & 0xF;
+            pos = pad(pos);
+
+            float[] values = new float[decoded.vertexCount * cardinality];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = switch (encoding) {
+                    case 1 -> data.getFloat(pos + i * 4);
+                    case 3 -> normalized ? Math.max(data.get(pos + i) / 127f, -1f) : data.get(pos + i);
+                    case 7 -> (data.get(pos + i) & 0xFF) / (normalized ? 255f : 1f);
+                    case 8 -> (data.getShort(pos + i * 2) & 0xFFFF) / (normalized ? 65535f : 1f);
+                    default -> throw new AssertionError("unexpected encoding " + encoding + " of " + name);
+                };
+            }
+            pos += values.length * switch (encoding) {
+                case 1 -> 4;
+                case 8 -> 2;
+                default -> 1;
+            };
+
+            if (name.toString().equals("position")) {
+                for (int i = 0; i < values.length; i++)
+                    values[i] = decoded.positionOffset[i % 3] + values[i] * decoded.positionStep[i % 3];
+            }
+            if (name.toString().equals("uv") && encoding != ATTRIBUTE_FLOAT_32) {
+                for (int i = 0; i < values.length; i++)
+                    values[i] = decoded.uvOffset[i % 2] + values[i] * decoded.uvStep[i % 2];
+            }
+
+            decoded.attributes.put(name.toString(), values);
+            decoded.cardinalities.put(name.toString(), cardinality);
+            decoded.encodings.put(name.toString(), encoding);
+        }
+
+        pos = pad(pos);
+        decoded.indices = new int[indexCount];
+        int nextVertex = 0;
+        for (int i = 0; i < indexCount; i++) {
+            int value = indices32bit ? data.getInt(pos) : data.getShort(pos) & 0xFFFF;
+            pos += indices32bit ? 4 : 2;
+
+            int index = nextVertex - value;
+            if (index == nextVertex) nextVertex++;
+            decoded.indices[i] = index;
+        }
+        assertEquals(decoded.vertexCount, nextVertex, "every vertex is used");
+
+        pos = pad(pos);
+        int material;
+        while ((material = data.getInt(pos)) != -1) {
+            decoded.groups.add(new int[]{ material, data.getInt(pos + 4), data.getInt(pos + 8) });
+            pos += 12;
+        }
+        assertEquals(data.limit(), pos + 4);
+
+        return decoded;
+    }
+
+    private static int read3byteValue(ByteBuffer data, int pos) {
+        return (data.get(pos) & 0xFF) | (data.get(pos + 1) & 0xFF) << 8 | (data.get(pos + 2) & 0xFF) << 16;
+    }
+
+    private static int pad(int pos) {
+        return (pos + 3) & ~3;
+    }
+
+    private static class Decoded {
+        int version, vertexCount;
+        final float[] positionOffset = new float[3], positionStep = new float[3];
+        final float[] uvOffset = new float[2], uvStep = new float[2];
+        final Map<String, float[]> attributes = new HashMap<>();
+        final Map<String, Integer> cardinalities = new HashMap<>();
+        final Map<String, Integer> encodings = new HashMap<>();
+        int[] indices;
+        final List<int[]> groups = new ArrayList<>();
+
+        float[] vertex(String attribute, int index) {
+            int cardinality = cardinalities.get(attribute);
+            float[] result = new float[cardinality];
+            System.arraycopy(attributes.get(attribute), index * cardinality, result, 0, cardinality);
+            return result;
+        }
+    }
+
+}
@@ -0,0 +1,185 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.map.renderstate;
+
+import com.flowpowered.math.vector.Vector2i;
+import de.bluecolored.bluemap.core.storage.GridStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+public class CellStorageTest {
+
+    private static final int CELL_COUNT = 10;
+
+    private GridStorage gridStorage;
+    private List<Vector2i> writes;
+    private CountDownLatch writeEntered, writeReleased;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        writes = new CopyOnWriteArrayList<>();
+        writeEntered = new CountDownLatch(1);
+        writeReleased = new CountDownLatch(1);
+
+        // a storage without any stored cells, where writing blocks until it is released
+        gridStorage = mock(GridStorage.class);
+        when(gridStorage.write(anyInt(), anyInt())).thenAnswer(invocation -> {
+            writes.add(new Vector2i(invocation.<Integer>getArgument(0), invocation.<Integer>getArgument(1)));
+            writeEntered.countDown();
+            assertTrue(writeReleased.await(10, TimeUnit.SECONDS));
+            return new ByteArrayOutputStream();
+        });
+    }
+
+    @AfterEach
+    public void cleanup() {
+        writeReleased.countDown();
+    }
+
+    @Test
+    public void testInvalidCacheSize() {
+        assertThrows(IllegalArgumentException.class, () -> new TestCellStorage(gridStorage, 0));
+    }
+
+    @Test
+    public void testEvictedCellIsTakenBackWhileSaving() throws Exception {
+        TestCellStorage storage = new TestCellStorage(gridStorage, 1);
+        TestCell[] cells = modifyCells(storage);
+
+        // the saves of the evicted cells are now pending behind the blocked write
+        assertTrue(writeEntered.await(10, TimeUnit.SECONDS));
+
+        for (int i = 0; i < CELL_COUNT; i++) {
+            assertSame(cells[i], storage.cell(i, 0), "cell " + i);
+            verify(gridStorage, times(1)).read(i, 0);
+        }
+
+        writeReleased.countDown();
+        storage.save();
+
+        // no modification got lost
+        for (int i = 0; i < CELL_COUNT; i++) {
+            assertTrue(writes.contains(new Vector2i(i, 0)), "cell " + i);
+        }
+    }
+
+    @Test
+    public void testSaveWritesCachedCells() throws Exception {
+        TestCellStorage storage = new TestCellStorage(gridStorage, CELL_COUNT);
+        modifyCells(storage);
+        assertTrue(writes.isEmpty());
+
+        writeReleased.countDown();
+        storage.save();
+        assertEquals(CELL_COUNT, writes.size());
+    }
+
+    @Test
+    public void testResetDiscardsPendingSaves() throws Exception {
+        TestCellStorage storage = new TestCellStorage(gridStorage, 1);
+        TestCell[] cells = modifyCells(storage);
+        assertTrue(writeEntered.await(10, TimeUnit.SECONDS));
+
+        // reset waits for the blocked write, so it runs in the background
+        Thread resetThread = new Thread(storage::reset);
+        resetThread.start();
+
+        long timeout = System.currentTimeMillis() + 10000;
+        while (!isEmpty(storage)) {
+            assertTrue(System.currentTimeMillis() < timeout, "reset did not discard the cells");
+            Thread.sleep(1);
+        }
+        assertTrue(resetThread.isAlive());
+
+        writeReleased.countDown();
+        resetThread.join(10000);
+        assertFalse(resetThread.isAlive());
+
+        // only the save that was already running when resetting is written
+        assertEquals(1, writes.size());
+
+        // all cells are loaded fresh again
+        for (int i = 0; i < CELL_COUNT; i++) {
+            TestCell cell = storage.cell(i, 0);
+            assertNotSame(cells[i], cell, "cell " + i);
+            assertFalse(cell.isModified());
+        }
+    }
+
+    private TestCell[] modifyCells(TestCellStorage storage) {
+        TestCell[] cells = new TestCell[CELL_COUNT];
+        for (int i = 0; i < CELL_COUNT; i++) {
+            cells[i] = storage.update(i, 0, cell -> {
+                cell.modified = true;
+                return cell;
+            });
+        }
+        return cells;
+    }
+
+    private boolean isEmpty(TestCellStorage storage) {
+        for (int i = 0; i < CELL_COUNT; i++) {
+            if (storage.cellIfPresent(i, 0) != null) return false;
+        }
+        return true;
+    }
+
+    private static class TestCellStorage extends CellStorage<TestCell> {
+
+        public TestCellStorage(GridStorage storage, int cacheSize) {
+            super(storage, TestCell.class, cacheSize);
+        }
+
+        @Override
+        protected TestCell createNewCell() {
+            return new TestCell();
+        }
+
+    }
+
+    public static class TestCell implements CellStorage.Cell {
+
+        private boolean modified;
+
+        @Override
+        public boolean isModified() {
+            return modified;
+        }
+
+    }
+
+}
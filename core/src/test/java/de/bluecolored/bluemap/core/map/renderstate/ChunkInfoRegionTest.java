@@ -0,0 +1,111 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.map.renderstate;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChunkInfoRegionTest {
+
+    @Test
+    public void testSameTimestampIsUnchanged() {
+        ChunkInfoRegion region = ChunkInfoRegion.create();
+        region.set(3, 4, 1000, 0);
+
+        // the content-hash is not needed and must not be loaded
+        assertTrue(region.isUnchanged(3, 4, 1000, failingContentHash()));
+    }
+
+    @Test
+    public void testChangedTimestampWithoutContentHash() {
+        ChunkInfoRegion region = ChunkInfoRegion.create();
+        region.set(3, 4, 1000, 0);
+
+        // without a content-hash from the last render (e.g. older render-states) the chunk counts as changed
+        assertFalse(region.isUnchanged(3, 4, 2000, failingContentHash()));
+    }
+
+    @Test
+    public void testChangedTimestampWithSameContent() {
+        ChunkInfoRegion region = ChunkInfoRegion.create();
+        region.set(3, 4, 1000, 12345);
+
+        AtomicInteger calls = new AtomicInteger();
+        assertTrue(region.isUnchanged(3, 4, 2000, () -> {
+            calls.incrementAndGet();
+            return 12345;
+        }));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void testChangedTimestampWithChangedContent() {
+        ChunkInfoRegion region = ChunkInfoRegion.create();
+        region.set(3, 4, 1000, 12345);
+
+        assertFalse(region.isUnchanged(3, 4, 2000, () -> 54321));
+
+        // a chunk that does not exist anymore has no content-hash
+        assertFalse(region.isUnchanged(3, 4, 0, () -> 0));
+    }
+
+    @Test
+    public void testNeverRenderedChunk() {
+        ChunkInfoRegion region = ChunkInfoRegion.create();
+        assertFalse(region.isUnchanged(3, 4, 1000, failingContentHash()));
+
+        // chunks that don't exist and never existed are unchanged
+        assertTrue(region.isUnchanged(3, 4, 0, failingContentHash()));
+    }
+
+    @Test
+    public void testSetAndGet() {
+        ChunkInfoRegion region = ChunkInfoRegion.create();
+        assertFalse(region.isModified());
+
+        region.set(0, 0, 0, 0);
+        assertFalse(region.isModified());
+
+        region.set(5, ChunkInfoRegion.REGION_LENGTH + 7, 1000, 12345);
+        assertTrue(region.isModified());
+        assertEquals(new ChunkInfoRegion.ChunkInfo(1000, 12345), region.get(5, 7));
+        assertEquals(1000, region.getTimestamp(-ChunkInfoRegion.REGION_LENGTH + 5, 7));
+        assertEquals(12345, region.getContentHash(5, 7));
+        assertEquals(new ChunkInfoRegion.ChunkInfo(0, 0), region.get(7, 5));
+
+        ChunkInfoRegion.ChunkInfo previous = region.set(5, 7, new ChunkInfoRegion.ChunkInfo(2000, 0));
+        assertEquals(new ChunkInfoRegion.ChunkInfo(1000, 12345), previous);
+        assertEquals(new ChunkInfoRegion.ChunkInfo(2000, 0), region.get(5, 7));
+    }
+
+    private static IntSupplier failingContentHash() {
+        return () -> fail("content-hash should not be loaded");
+    }
+
+}
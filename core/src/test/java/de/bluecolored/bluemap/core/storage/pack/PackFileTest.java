@@ -0,0 +1,197 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.storage.pack;
+
+import de.bluecolored.bluemap.core.storage.compression.CompressedInputStream;
+import de.bluecolored.bluemap.core.storage.compression.Compression;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static de.bluecolored.bluemap.core.storage.pack.PackFile.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PackFileTest {
+
+    @Test
+    public void testWriteAndLoad(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("r.0.0.pack");
+        PackFile packFile = PackFile.load(file);
+        packFile.write(index(1, 2), bytes("a"));
+        packFile.write(index(3, 4), bytes("b"));
+        packFile.write(index(1, 2), bytes("c"));
+        packFile.delete(index(3, 4));
+        packFile.close();
+
+        PackFile loaded = PackFile.load(file);
+        assertEquals("c", read(loaded, index(1, 2)));
+        assertFalse(loaded.exists(index(3, 4)));
+        assertArrayEquals(new int[] { index(1, 2) }, loaded.indices());
+    }
+
+    @Test
+    public void testClosed(@TempDir Path dir) throws IOException {
+        PackFile packFile = PackFile.load(dir.resolve("r.0.0.pack"));
+        packFile.close();
+
+        assertTrue(packFile.isClosed());
+        assertThrows(IOException.class, () -> packFile.write(0, bytes("a")));
+    }
+
+    @Test
+    public void testTableIsWrittenInIntervals(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("r.0.0.pack");
+        PackFile packFile = PackFile.load(file);
+        for (int i = 0; i < TABLE_WRITE_INTERVAL + 1; i++)
+            packFile.write(i, bytes("item " + i));
+
+        // e.g. after a crash, only the changes up to the last table-write are visible
+        PackFile loaded = PackFile.load(file);
+        for (int i = 0; i < TABLE_WRITE_INTERVAL; i++)
+            assertEquals("item " + i, read(loaded, i));
+        assertFalse(loaded.exists(TABLE_WRITE_INTERVAL));
+
+        packFile.flush();
+        assertEquals("item " + TABLE_WRITE_INTERVAL, read(PackFile.load(file), TABLE_WRITE_INTERVAL));
+        packFile.close();
+    }
+
+    @Test
+    public void testFallbackToOtherSlot(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("r.0.0.pack");
+        PackFile packFile = PackFile.load(file);
+        packFile.write(0, bytes("a"));
+        packFile.flush(); // sequence 1 -> slot 1
+        packFile.write(0, bytes("b"));
+        packFile.write(1, bytes("c"));
+        packFile.close(); // sequence 2 -> slot 0
+
+        // a broken latest table (e.g. an interrupted table-write) falls back to the previous one
+        corruptSlot(file, 0);
+        PackFile loaded = PackFile.load(file);
+        assertEquals("a", read(loaded, 0));
+        assertFalse(loaded.exists(1));
+
+        // the next table-write does not overwrite the intact table
+        loaded.write(2, bytes("d"));
+        loaded.close();
+        loaded = PackFile.load(file);
+        assertEquals("a", read(loaded, 0));
+        assertEquals("d", read(loaded, 2));
+    }
+
+    @Test
+    public void testCorruptTablesAreRejected(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("r.0.0.pack");
+        PackFile packFile = PackFile.load(file);
+        packFile.write(0, bytes("a"));
+        packFile.flush();
+        packFile.write(1, bytes("b"));
+        packFile.close();
+
+        corruptSlot(file, 0);
+        corruptSlot(file, 1);
+        PackFile loaded = PackFile.load(file);
+        assertTrue(loaded.isEmpty());
+        assertNull(loaded.read(0, Compression.NONE));
+    }
+
+    @Test
+    public void testInvalidHeaderIsRejected(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("r.0.0.pack");
+        PackFile packFile = PackFile.load(file);
+        packFile.write(0, bytes("a"));
+        packFile.close();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 0, 0, 0, 0 }), 0);
+        }
+        assertThrows(IOException.class, () -> PackFile.load(file));
+    }
+
+    @Test
+    public void testCompaction(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("r.0.0.pack");
+        PackFile packFile = PackFile.load(file);
+
+        // overwriting the same item creates garbage until the file is compacted
+        int itemSize = 1024 * 1024;
+        for (int i = 0; i < 8; i++) {
+            byte[] data = new byte[itemSize];
+            data[0] = (byte) i;
+            packFile.write(0, data);
+        }
+        packFile.write(1, bytes("small"));
+
+        long size = Files.size(file);
+        assertTrue(size < DATA_START + COMPACTION_MIN_GARBAGE + 2L * itemSize, "File has not been compacted: " + size);
+        assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".compact")));
+
+        // still readable and writable after the compaction
+        assertEquals(7, readBytes(packFile, 0)[0]);
+        packFile.write(2, bytes("after"));
+        packFile.close();
+
+        PackFile loaded = PackFile.load(file);
+        assertEquals(7, readBytes(loaded, 0)[0]);
+        assertEquals(itemSize, readBytes(loaded, 0).length);
+        assertEquals("small", read(loaded, 1));
+        assertEquals("after", read(loaded, 2));
+    }
+
+    private static void corruptSlot(Path file, int slot) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // flip a byte in the first table-entry, so the checksum does not match anymore
+            long position = FILE_HEADER_SIZE + (long) slot * SLOT_SIZE + SLOT_HEADER_SIZE;
+            ByteBuffer buffer = ByteBuffer.allocate(1);
+            channel.read(buffer, position);
+            buffer.put(0, (byte) ~buffer.get(0));
+            channel.write(buffer.rewind(), position);
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String read(PackFile packFile, int index) throws IOException {
+        return new String(readBytes(packFile, index), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(PackFile packFile, int index) throws IOException {
+        try (CompressedInputStream in = packFile.read(index, Compression.NONE)) {
+            assertNotNull(in, "Item " + index + " does not exist");
+            return in.decompress().readAllBytes();
+        }
+    }
+
+}
@@ -0,0 +1,217 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.storage.pack;
+
+import de.bluecolored.bluemap.core.storage.GridStorage;
+import de.bluecolored.bluemap.core.storage.compression.CompressedInputStream;
+import de.bluecolored.bluemap.core.storage.compression.Compression;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PackGridStorageTest {
+
+    @Test
+    public void testStream(@TempDir Path dir) throws IOException {
+        PackGridStorage storage = new PackGridStorage(dir, ".test", Compression.NONE);
+
+        // cells in multiple regions, including negative ones and region borders
+        Set<String> expected = new HashSet<>();
+        for (int x = -40; x <= 40; x += 13) {
+            for (int z = -33; z <= 64; z += 31) {
+                write(storage, x, z, x + "," + z);
+                expected.add(x + "," + z);
+            }
+        }
+        storage.delete(-40, -33);
+        expected.remove("-40,-33");
+
+        // other files in the directory are ignored
+        new PackGridStorage(dir, ".other", Compression.NONE).write(0, 0).close();
+
+        assertEquals(expected, list(storage));
+
+        // the listed cells are readable
+        try (Stream<GridStorage.Cell> stream = storage.stream()) {
+            for (GridStorage.Cell cell : stream.toList()) {
+                assertEquals(cell.getX() + "," + cell.getZ(), read(storage, cell.getX(), cell.getZ()));
+            }
+        }
+
+        assertEquals(Set.of(), list(new PackGridStorage(dir.resolve("missing"), ".test", Compression.NONE)));
+    }
+
+    @Test
+    public void testCompressedItems(@TempDir Path dir) throws IOException {
+        PackGridStorage storage = new PackGridStorage(dir, ".test", Compression.GZIP);
+        write(storage, 3, 4, "compressed");
+
+        try (CompressedInputStream in = storage.read(3, 4)) {
+            assertNotNull(in);
+            assertEquals(Compression.GZIP, in.getCompression());
+            assertEquals("compressed", new String(in.decompress().readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testManyRegions(@TempDir Path dir) throws IOException {
+        PackGridStorage storage = new PackGridStorage(dir, ".test", Compression.NONE);
+
+        // more regions than pack-files are kept open, so some are evicted (closed) and loaded again
+        int regions = 40;
+        for (int round = 0; round < 2; round++) {
+            for (int r = 0; r < regions; r++) {
+                int x = r * PackFile.REGION_SIZE + round;
+                write(storage, x, 0, "item " + x);
+            }
+        }
+
+        for (int round = 0; round < 2; round++) {
+            for (int r = 0; r < regions; r++) {
+                int x = r * PackFile.REGION_SIZE + round;
+                assertEquals("item " + x, read(storage, x, 0));
+            }
+        }
+        assertEquals(regions * 2, list(storage).size());
+    }
+
+    @Test
+    public void testClose(@TempDir Path dir) throws IOException {
+        PackGridStorage storage = new PackGridStorage(dir, ".test", Compression.NONE);
+        write(storage, 1, 2, "a");
+        write(storage, 100, 2, "b");
+        assertFalse(storage.isClosed());
+
+        storage.close();
+        assertTrue(storage.isClosed());
+        assertThrows(IOException.class, () -> storage.read(1, 2));
+        assertThrows(IOException.class, () -> storage.exists(1, 2));
+        assertThrows(IOException.class, () -> storage.delete(1, 2));
+        assertThrows(IOException.class, () -> write(storage, 1, 2, "c"));
+
+        // closing has written the pending tables of all open pack-files
+        PackGridStorage reopened = new PackGridStorage(dir, ".test", Compression.NONE);
+        assertEquals("a", read(reopened, 1, 2));
+        assertEquals("b", read(reopened, 100, 2));
+    }
+
+    @Test
+    public void testCloseMapStorage(@TempDir Path dir) throws IOException {
+        PackStorage storage = new PackStorage(dir, Compression.NONE, true);
+        PackMapStorage map = storage.map("test");
+        write((PackGridStorage) map.hiresTiles(), 0, 0, "hires");
+        write((PackGridStorage) map.lowresTiles(1), 0, 0, "lowres");
+
+        storage.close();
+        assertTrue(storage.isClosed());
+        assertTrue(map.isClosed());
+        assertTrue(map.hiresTiles().isClosed());
+        assertTrue(map.lowresTiles(1).isClosed());
+        assertTrue(map.lowresTiles(2).isClosed());
+        assertTrue(map.tileState().isClosed());
+
+        PackMapStorage reopened = new PackStorage(dir, Compression.NONE, true).map("test");
+        assertEquals("hires", read((PackGridStorage) reopened.hiresTiles(), 0, 0));
+        assertEquals("lowres", read((PackGridStorage) reopened.lowresTiles(1), 0, 0));
+    }
+
+    @Test
+    public void testInvalidateReloadsFromDisk(@TempDir Path dir) throws IOException {
+        PackGridStorage storage = new PackGridStorage(dir, ".test", Compression.NONE);
+        write(storage, 1, 2, "a");
+
+        // invalidating writes the pending table, so another instance can see the item
+        storage.invalidate();
+        PackGridStorage other = new PackGridStorage(dir, ".test", Compression.NONE);
+        assertEquals("a", read(other, 1, 2));
+
+        // changes of the other instance are visible after invalidating again
+        write(other, 1, 2, "b");
+        write(other, 3, 4, "c");
+        other.invalidate();
+
+        storage.invalidate();
+        assertEquals("b", read(storage, 1, 2));
+        assertEquals("c", read(storage, 3, 4));
+        assertEquals(Set.of("1,2", "3,4"), list(storage));
+
+        // the storage stays usable after invalidating
+        assertFalse(storage.isClosed());
+        write(storage, 5, 6, "d");
+        assertEquals("d", read(storage, 5, 6));
+    }
+
+    @Test
+    public void testStreamSurvivesInvalidate(@TempDir Path dir) throws IOException {
+        PackGridStorage storage = new PackGridStorage(dir, ".test", Compression.NONE);
+        write(storage, 1, 2, "old");
+
+        try (CompressedInputStream in = storage.read(1, 2)) {
+            assertNotNull(in);
+
+            // closing and modifying the pack-file does not affect an item that is currently being read
+            storage.invalidate();
+            write(storage, 1, 2, "new");
+            storage.delete(1, 2);
+
+            assertEquals("old", new String(in.decompress().readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        assertNull(storage.read(1, 2));
+    }
+
+    private static void write(PackGridStorage storage, int x, int z, String value) throws IOException {
+        try (OutputStream out = storage.write(x, z)) {
+            out.write(value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String read(PackGridStorage storage, int x, int z) throws IOException {
+        try (CompressedInputStream in = storage.read(x, z)) {
+            assertNotNull(in, "Item " + x + "," + z + " does not exist");
+            return new String(in.decompress().readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static Set<String> list(PackGridStorage storage) throws IOException {
+        try (Stream<GridStorage.Cell> stream = storage.stream()) {
+            List<String> cells = stream.map(cell -> cell.getX() + "," + cell.getZ()).toList();
+            Set<String> set = new HashSet<>(cells);
+            assertEquals(cells.size(), set.size(), "duplicate cells");
+            return set;
+        }
+    }
+
+}
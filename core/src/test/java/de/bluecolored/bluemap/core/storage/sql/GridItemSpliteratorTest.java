@@ -0,0 +1,169 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.storage.sql;
+
+import de.bluecolored.bluemap.core.storage.compression.Compression;
+import de.bluecolored.bluemap.core.storage.sql.commandset.CommandSet;
+import de.bluecolored.bluemap.core.storage.sql.commandset.CommandSet.TilePosition;
+import de.bluecolored.bluemap.core.storage.sql.commandset.SqliteCommandSet;
+import de.bluecolored.bluemap.core.util.Key;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GridItemSpliteratorTest {
+
+    private static final String MAP = "test";
+    private static final Key STORAGE = Key.bluemap("tile-state");
+
+    private SqliteCommandSet sql;
+    private List<TilePosition> expected;
+
+    @BeforeEach
+    public void setup(@TempDir Path dir) throws IOException {
+        sql = new SqliteCommandSet(new Database("jdbc:sqlite:" + dir.resolve("test.db"), Map.of(), 1));
+        sql.initializeTables();
+
+        // columns of very different lengths, so pages end at different points within and between columns
+        expected = new ArrayList<>();
+        List<CommandSet.GridItem> items = new ArrayList<>();
+        for (int x = -6; x <= 6; x++) {
+            int count = Math.floorMod(x * 7, 11);
+            for (int z = -3; z < count - 3; z++) {
+                expected.add(new TilePosition(x, z));
+                items.add(new CommandSet.GridItem(MAP, STORAGE, x, z, Compression.NONE, new byte[]{ 1 }));
+            }
+        }
+
+        // an item of another storage and compression must not be listed
+        items.add(new CommandSet.GridItem(MAP, Key.bluemap("other"), 0, 100, Compression.NONE, new byte[]{ 1 }));
+        items.add(new CommandSet.GridItem(MAP, STORAGE, 0, 101, Compression.GZIP, new byte[]{ 1 }));
+
+        sql.writeGridItems(items);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        sql.close();
+    }
+
+    @Test
+    public void testRange() throws IOException {
+        CommandSet.GridRange range = sql.gridItemRange(MAP, STORAGE, Compression.NONE);
+        assertNotNull(range);
+        assertEquals(expected.size(), range.count());
+        assertEquals(expected.get(0).x(), range.minX());
+        assertEquals(expected.get(expected.size() - 1).x(), range.maxX());
+    }
+
+    @Test
+    public void testPagingAcrossPageBoundaries() throws IOException {
+        for (int pageSize : new int[]{ 1, 2, 3, 4, 7, expected.size() - 1, expected.size(), expected.size() + 1 }) {
+            List<TilePosition> listed = new ArrayList<>();
+            spliterator(pageSize).forEachRemaining(listed::add);
+            assertEquals(expected, listed, "pageSize " + pageSize);
+
+            listed.clear();
+            GridItemSpliterator spliterator = spliterator(pageSize);
+            while (spliterator.tryAdvance(listed::add));
+            assertEquals(expected, listed, "pageSize " + pageSize);
+        }
+    }
+
+    @Test
+    public void testSplitCoversEveryCellOnce() throws IOException {
+        for (int pageSize : new int[]{ 1, 2, 3, 5 }) {
+            for (int advance = 0; advance < expected.size(); advance += 3) {
+                GridItemSpliterator spliterator = spliterator(pageSize);
+
+                // move the cursor into the middle of a column before splitting
+                List<TilePosition> listed = new ArrayList<>();
+                for (int i = 0; i < advance; i++) assertTrue(spliterator.tryAdvance(listed::add));
+
+                splitAll(spliterator, listed);
+
+                String message = "pageSize " + pageSize + ", advance " + advance;
+                assertEquals(expected.size(), listed.size(), message);
+                assertEquals(new HashSet<>(expected), new HashSet<>(listed), message);
+            }
+        }
+    }
+
+    @Test
+    public void testSplitKeepsOrder() throws IOException {
+        GridItemSpliterator spliterator = spliterator(2);
+        List<TilePosition> prefix = new ArrayList<>();
+        spliterator.tryAdvance(prefix::add);
+        spliterator.tryAdvance(prefix::add);
+        spliterator.tryAdvance(prefix::add);
+
+        GridItemSpliterator split = (GridItemSpliterator) spliterator.trySplit();
+        assertNotNull(split);
+        split.forEachRemaining(prefix::add);
+
+        List<TilePosition> suffix = new ArrayList<>();
+        spliterator.forEachRemaining(suffix::add);
+
+        // the split-off part is the prefix, and the split happens between two columns
+        assertFalse(suffix.isEmpty());
+        assertTrue(prefix.get(prefix.size() - 1).x() < suffix.get(0).x());
+
+        List<TilePosition> all = new ArrayList<>(prefix);
+        all.addAll(suffix);
+        assertEquals(expected, all);
+    }
+
+    @Test
+    public void testParallelStream() throws IOException {
+        List<TilePosition> listed = StreamSupport.stream(spliterator(2), true)
+                .collect(Collectors.toList());
+        assertEquals(expected, listed);
+    }
+
+    private GridItemSpliterator spliterator(int pageSize) throws IOException {
+        CommandSet.GridRange range = Objects.requireNonNull(sql.gridItemRange(MAP, STORAGE, Compression.NONE));
+        return new GridItemSpliterator(sql, MAP, STORAGE, Compression.NONE, pageSize, range);
+    }
+
+    private static void splitAll(Spliterator<TilePosition> spliterator, List<TilePosition> target) {
+        Spliterator<TilePosition> prefix = spliterator.trySplit();
+        if (prefix != null) splitAll(prefix, target);
+
+        // advance a bit between the splits, so splitting happens with a partially consumed page as well
+        if (spliterator.tryAdvance(target::add)) {
+            splitAll(spliterator, target);
+        }
+    }
+
+}
@@ -0,0 +1,235 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.storage.sql.commandset;
+
+import de.bluecolored.bluemap.core.storage.compression.Compression;
+import de.bluecolored.bluemap.core.storage.sql.Database;
+import de.bluecolored.bluemap.core.util.Key;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteBehindCommandSetTest {
+
+    private static final String MAP = "test";
+    private static final Key STORAGE = Key.bluemap("hires");
+    private static final long NEVER = TimeUnit.HOURS.toMillis(1);
+
+    private GatedCommandSet sql;
+    private WriteBehindCommandSet writeBehind;
+
+    @BeforeEach
+    public void setup(@TempDir Path dir) throws IOException {
+        Database db = new Database("jdbc:sqlite:" + dir.resolve("test.db"), Map.of(), 1);
+        sql = new GatedCommandSet(db);
+        sql.initializeTables();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        sql.release();
+        if (writeBehind != null) writeBehind.close();
+        else sql.close();
+    }
+
+    @Test
+    public void testReadQueuedItem() throws IOException {
+        writeBehind = new WriteBehindCommandSet(sql, 64, NEVER, Long.MAX_VALUE);
+        writeBehind.writeGridItem(MAP, STORAGE, 1, 2, Compression.GZIP, bytes(1));
+
+        // not written yet, but visible through the write-behind
+        assertNull(sql.readGridItem(MAP, STORAGE, 1, 2, Compression.GZIP));
+        assertArrayEquals(bytes(1), writeBehind.readGridItem(MAP, STORAGE, 1, 2, Compression.GZIP));
+        assertTrue(writeBehind.hasGridItem(MAP, STORAGE, 1, 2, Compression.GZIP));
+        assertNotNull(writeBehind.gridItemMetadata(MAP, STORAGE, 1, 2, Compression.GZIP));
+
+        // a different compression does not match the queued item
+        assertNull(writeBehind.readGridItem(MAP, STORAGE, 1, 2, Compression.NONE));
+        assertFalse(writeBehind.hasGridItem(MAP, STORAGE, 1, 2, Compression.NONE));
+
+        // the latest queued write wins
+        writeBehind.writeGridItem(MAP, STORAGE, 1, 2, Compression.GZIP, bytes(2));
+        assertArrayEquals(bytes(2), writeBehind.readGridItem(MAP, STORAGE, 1, 2, Compression.GZIP));
+    }
+
+    @Test
+    public void testReadInFlightItem() throws Exception {
+        writeBehind = new WriteBehindCommandSet(sql, 1, 0, Long.MAX_VALUE);
+        sql.hold();
+
+        writeBehind.writeGridItem(MAP, STORAGE, 1, 2, Compression.GZIP, bytes(1));
+        sql.awaitBlockedWrite();
+
+        assertArrayEquals(bytes(1), writeBehind.readGridItem(MAP, STORAGE, 1, 2, Compression.GZIP));
+        assertTrue(writeBehind.hasGridItem(MAP, STORAGE, 1, 2, Compression.GZIP));
+
+        sql.release();
+        writeBehind.flush();
+        assertArrayEquals(bytes(1), sql.readGridItem(MAP, STORAGE, 1, 2, Compression.GZIP));
+    }
+
+    @Test
+    public void testDeleteDuringInFlightBatch() throws Exception {
+        writeBehind = new WriteBehindCommandSet(sql, 1, 0, Long.MAX_VALUE);
+        sql.hold();
+
+        writeBehind.writeGridItem(MAP, STORAGE, 1, 2, Compression.GZIP, bytes(1));
+        sql.awaitBlockedWrite();
+
+        // the delete has to wait for the in-flight write, or the batch would recreate the item afterwards
+        Future<?> delete = runAsync(() -> writeBehind.deleteGridItem(MAP, STORAGE, 1, 2));
+        assertThrows(TimeoutException.class, () -> delete.get(200, TimeUnit.MILLISECONDS));
+
+        sql.release();
+        delete.get(10, TimeUnit.SECONDS);
+
+        writeBehind.flush();
+        assertNull(sql.readGridItem(MAP, STORAGE, 1, 2, Compression.GZIP));
+        assertNull(writeBehind.readGridItem(MAP, STORAGE, 1, 2, Compression.GZIP));
+    }
+
+    @Test
+    public void testDeleteQueuedItem() throws IOException {
+        writeBehind = new WriteBehindCommandSet(sql, 64, NEVER, Long.MAX_VALUE);
+        sql.writeGridItem(MAP, STORAGE, 1, 2, Compression.GZIP, bytes(1));
+        writeBehind.writeGridItem(MAP, STORAGE, 1, 2, Compression.GZIP, bytes(2));
+
+        writeBehind.deleteGridItem(MAP, STORAGE, 1, 2);
+        writeBehind.flush();
+
+        assertNull(sql.readGridItem(MAP, STORAGE, 1, 2, Compression.GZIP));
+        assertFalse(writeBehind.hasGridItem(MAP, STORAGE, 1, 2, Compression.GZIP));
+    }
+
+    @Test
+    public void testFlushWaitsForEarlierWrites() throws Exception {
+        writeBehind = new WriteBehindCommandSet(sql, 4, NEVER, Long.MAX_VALUE);
+        for (int i = 0; i < 10; i++)
+            writeBehind.writeGridItem(MAP, STORAGE, i, 0, Compression.GZIP, bytes(i));
+
+        // keep the writer busy with the first batch, the flush has to wait for all of them
+        sql.hold();
+        Future<?> flush = runAsync(writeBehind::flush);
+        sql.awaitBlockedWrite();
+        assertThrows(TimeoutException.class, () -> flush.get(200, TimeUnit.MILLISECONDS));
+
+        sql.release();
+        flush.get(10, TimeUnit.SECONDS);
+
+        for (int i = 0; i < 10; i++)
+            assertArrayEquals(bytes(i), sql.readGridItem(MAP, STORAGE, i, 0, Compression.GZIP));
+    }
+
+    @Test
+    public void testBackPressure() throws Exception {
+        writeBehind = new WriteBehindCommandSet(sql, 1, 0, 100);
+        sql.hold();
+
+        // fills up the queue, and stays counted while it is in flight
+        writeBehind.writeGridItem(MAP, STORAGE, 1, 0, Compression.GZIP, new byte[100]);
+        sql.awaitBlockedWrite();
+
+        Future<?> write = runAsync(() -> writeBehind.writeGridItem(MAP, STORAGE, 2, 0, Compression.GZIP, bytes(2)));
+        assertThrows(TimeoutException.class, () -> write.get(200, TimeUnit.MILLISECONDS));
+
+        sql.release();
+        write.get(10, TimeUnit.SECONDS);
+
+        writeBehind.flush();
+        assertArrayEquals(bytes(2), sql.readGridItem(MAP, STORAGE, 2, 0, Compression.GZIP));
+    }
+
+    private static byte[] bytes(int value) {
+        return new byte[] { 1, 2, 3, (byte) value };
+    }
+
+    private static Future<?> runAsync(ThrowingRunnable task) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                task.run();
+            } catch (Exception ex) {
+                throw new CompletionException(ex);
+            }
+        });
+    }
+
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+
+    /**
+     * A sqlite-commandset where batch-writes can be held back, to test the behaviour while a batch is in flight
+     */
+    private static class GatedCommandSet extends SqliteCommandSet {
+
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+        private final Semaphore blockedWrites = new Semaphore(0);
+
+        GatedCommandSet(Database db) {
+            super(db);
+        }
+
+        /**
+         * Holds back all following batch-writes until {@link #release()} is called.
+         */
+        void hold() {
+            gate = new CountDownLatch(1);
+        }
+
+        void release() {
+            gate.countDown();
+        }
+
+        void awaitBlockedWrite() throws InterruptedException {
+            assertTrue(blockedWrites.tryAcquire(10, TimeUnit.SECONDS), "No batch-write started");
+        }
+
+        @Override
+        public void writeGridItems(Collection<GridItem> items) throws IOException {
+            CountDownLatch gate = this.gate;
+            if (gate.getCount() > 0) {
+                blockedWrites.release();
+                try {
+                    gate.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(ex);
+                }
+            }
+            super.writeGridItems(items);
+        }
+
+    }
+
+}
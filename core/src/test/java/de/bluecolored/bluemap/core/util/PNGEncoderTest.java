@@ -0,0 +1,94 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PNGEncoderTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Random random = new Random(42);
+        int width = 37, height = 23;
+        int[] argb = new int[width * height];
+        for (int i = 0; i < argb.length; i++) {
+            // mix noise with smooth gradients so every filter-type gets picked at some point
+            argb[i] = switch (i % 3) {
+                case 0 -> random.nextInt();
+                case 1 -> 0xFF000000 | (i % width) * 0x010203;
+                default -> (i / width) << 24 | 0x336699;
+            };
+        }
+
+        for (int level = 0; level <= 9; level++) {
+            assertPixelsEqual(argb, width, height, encodeAndDecode(new PNGEncoder(level), argb, width, height));
+        }
+    }
+
+    @Test
+    public void testLargeImage() throws IOException {
+        // bigger than a single IDAT-chunk
+        int width = 500, height = 500;
+        int[] argb = new int[width * height];
+        Random random = new Random(7);
+        for (int i = 0; i < argb.length; i++) argb[i] = random.nextInt();
+
+        assertPixelsEqual(argb, width, height, encodeAndDecode(new PNGEncoder(1), argb, width, height));
+    }
+
+    @Test
+    public void testInvalidLevel() {
+        assertThrows(IllegalArgumentException.class, () -> new PNGEncoder(-1));
+        assertThrows(IllegalArgumentException.class, () -> new PNGEncoder(10));
+    }
+
+    private static BufferedImage encodeAndDecode(PNGEncoder encoder, int[] argb, int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.encode(argb, width, height, out);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        assertNotNull(image);
+        return image;
+    }
+
+    private static void assertPixelsEqual(int[] expected, int width, int height, BufferedImage image) {
+        assertEquals(width, image.getWidth());
+        assertEquals(height, image.getHeight());
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals(expected[y * width + x], image.getRGB(x, y), "Pixel at " + x + ", " + y);
+            }
+        }
+    }
+
+}
@@ -30,8 +30,7 @@
 import java.util.HashMap;
 import java.util.Map;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 public class BlockStateTest {
 
@@ -87,6 +86,23 @@ public void testFromString() {
         assertEquals("testVal2", blockState.getProperties().get("testProp2"));
     }
 
+    @Test
+    public void testIntern() {
+        BlockState a = new BlockState("someblock", mapOf("testProp", "testVal", "testProp2", "testVal2"));
+        BlockState b = BlockState.fromString("minecraft:someblock[testProp2=testVal2,testProp=testVal]");
+        BlockState c = BlockState.fromString("minecraft:someblock[testProp2=otherVal,testProp=testVal]");
+
+        assertSame(a.intern(), b.intern());
+        assertNotSame(a.intern(), c.intern());
+
+        assertEquals(a.getId(), b.getId());
+        assertNotEquals(a.getId(), c.getId());
+        assertEquals(a.getId(), a.intern().getId());
+
+        assertEquals(a, b);
+        assertNotEquals(a, c);
+    }
+
     private <L, V> Map<L, V> mapOf(L key, V value) {
         Map<L, V> map = new HashMap<>();
         map.put(key, value);
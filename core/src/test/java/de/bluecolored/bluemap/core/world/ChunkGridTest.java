@@ -0,0 +1,95 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.world;
+
+import de.bluecolored.bluemap.core.world.mca.ChunkCache;
+import de.bluecolored.bluemap.core.world.mca.ChunkGrid;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static de.bluecolored.bluemap.core.world.MCARegionTest.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ChunkGridTest {
+
+    private static final int CHUNK_SIZE = 16 * 1024; // default estimated memory-usage of a chunk
+
+    @Test
+    public void testInvalidateKeepsPreloadedChunk(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("r.0.0.mca");
+        writeRegion(file, Map.of(index(0, 0), "a", index(1, 0), "b"), 42);
+
+        ChunkGrid<String> grid = new ChunkGrid<>(STRING_LOADER, dir, new ChunkCache());
+        grid.preloadRegionChunks(0, 0, pos -> true);
+
+        // the file changes, but the chunk (0, 0) keeps its timestamp, so the preloaded chunk is kept
+        writeRegion(file, Map.of(index(0, 0), "c", index(1, 0), "d"), 42);
+        grid.invalidateChunkCache(0, 0, 42);
+        assertEquals("a", grid.getChunk(0, 0));
+
+        // a different timestamp means the chunk changed after it has been preloaded
+        grid.invalidateChunkCache(1, 0, 43);
+        assertEquals("d", grid.getChunk(1, 0));
+    }
+
+    @Test
+    public void testInvalidateDropsLoadedChunk(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("r.0.0.mca");
+        writeRegion(file, Map.of(index(0, 0), "a"), 42);
+
+        ChunkGrid<String> grid = new ChunkGrid<>(STRING_LOADER, dir, new ChunkCache());
+        assertEquals("a", grid.getChunk(0, 0));
+
+        // the timestamp of a chunk loaded on demand is unknown, so it is always invalidated
+        writeRegion(file, Map.of(index(0, 0), "b"), 42);
+        grid.invalidateChunkCache(0, 0, 42);
+        assertEquals("b", grid.getChunk(0, 0));
+    }
+
+    @Test
+    public void testPreloadMemoryBudget(@TempDir Path dir) throws IOException {
+        writeRegion(dir.resolve("r.0.0.mca"), Map.of(
+                index(0, 0), "a", index(1, 0), "b", index(2, 0), "c", index(3, 0), "d"
+        ), 42);
+        writeRegion(dir.resolve("r.1.0.mca"), Map.of(index(0, 0), "e"), 42);
+
+        ChunkCache chunkCache = new ChunkCache(16L * CHUNK_SIZE);
+        ChunkGrid<String> grid = new ChunkGrid<>(STRING_LOADER, dir, chunkCache);
+        assertEquals(4L * CHUNK_SIZE, grid.getPreloadMemoryBudget());
+
+        long memoryBudget = 2L * CHUNK_SIZE;
+        memoryBudget -= grid.preloadRegionChunks(0, 0, pos -> true, memoryBudget);
+        assertEquals(0, memoryBudget);
+
+        // the budget is used up, nothing more is loaded
+        assertEquals(0, grid.preloadRegionChunks(1, 0, pos -> true, memoryBudget));
+        assertEquals(2, chunkCache.getStats().chunkCount());
+    }
+
+}
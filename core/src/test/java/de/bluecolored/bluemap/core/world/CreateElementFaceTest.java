@@ -120,6 +120,9 @@ private void setupBasicMocks() {
         when(block.getProperties()).thenReturn(blockProperties);
         when(block.getLightData()).thenReturn(lightData);
         when(block.getNeighborBlock(anyInt(), anyInt(), anyInt())).thenReturn(neighborBlock);
+        when(block.getNeighborBlockState(anyInt(), anyInt(), anyInt())).thenAnswer(invocation -> neighborBlock.getBlockState());
+        when(block.getNeighborLightData(anyInt(), anyInt(), anyInt())).thenAnswer(invocation -> neighborBlock.getLightData());
+        when(block.getNeighborProperties(anyInt(), anyInt(), anyInt())).thenAnswer(invocation -> neighborBlock.getProperties());
         when(block.isRemoveIfCave()).thenReturn(false);
         when(block.getBlockState()).thenReturn(mock(BlockState.class));
 
@@ -0,0 +1,243 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.world;
+
+import de.bluecolored.bluemap.core.storage.compression.Compression;
+import de.bluecolored.bluemap.core.util.stream.ByteBufferInputStream;
+import de.bluecolored.bluemap.core.world.mca.ChunkLoader;
+import de.bluecolored.bluemap.core.world.mca.region.MCARegion;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MCARegionTest {
+
+    static final ChunkLoader<String> STRING_LOADER = new ChunkLoader<>() {
+        @Override
+        public String load(ByteBuffer data, Compression compression) throws IOException {
+            try (InputStream in = compression.decompress(new ByteBufferInputStream(data))) {
+                return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        }
+
+        @Override
+        public String emptyChunk() {
+            return "empty";
+        }
+
+        @Override
+        public String erroredChunk() {
+            return "errored";
+        }
+    };
+
+    @Test
+    public void testLoadChunk(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve(MCARegion.getRegionFileName(1, -1));
+        writeRegion(file, Map.of(
+                index(3, 5), "chunk 3,5",
+                index(31, 31), "chunk 31,31"
+        ));
+
+        MCARegion<String> region = new MCARegion<>(STRING_LOADER, file);
+        assertEquals("chunk 3,5", region.loadChunk(32 + 3, -32 + 5));
+        assertEquals("chunk 31,31", region.loadChunk(32 + 31, -32 + 31));
+        assertEquals("empty", region.loadChunk(32, -32));
+    }
+
+    @Test
+    public void testIterateAllChunks(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve(MCARegion.getRegionFileName(0, 0));
+        writeRegion(file, Map.of(
+                index(0, 0), "a",
+                index(1, 0), "b",
+                index(0, 1), "c"
+        ));
+
+        Map<String, String> found = new HashMap<>();
+        new MCARegion<>(STRING_LOADER, file).iterateAllChunks(new ChunkConsumer<>() {
+            @Override
+            public boolean filter(int chunkX, int chunkZ, int lastModified) {
+                assertEquals(42, lastModified);
+                return !(chunkX == 1 && chunkZ == 0);
+            }
+
+            @Override
+            public void accept(int chunkX, int chunkZ, String chunk) {
+                found.put(chunkX + "," + chunkZ, chunk);
+            }
+        });
+
+        assertEquals(Map.of("0,0", "a", "0,1", "c"), found);
+    }
+
+    @Test
+    public void testMissingOrEmptyFile(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve(MCARegion.getRegionFileName(0, 0));
+        assertEquals("empty", new MCARegion<>(STRING_LOADER, file).loadChunk(0, 0));
+
+        Files.createFile(file);
+        assertEquals("empty", new MCARegion<>(STRING_LOADER, file).loadChunk(0, 0));
+    }
+
+    @Test
+    public void testRegionFileCreatedLater(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve(MCARegion.getRegionFileName(0, 0));
+        MCARegion<String> region = new MCARegion<>(STRING_LOADER, file);
+        assertEquals("empty", region.loadChunk(0, 0));
+
+        writeRegion(file, Map.of(index(0, 0), "a"));
+        assertEquals("a", region.loadChunk(0, 0));
+    }
+
+    @Test
+    public void testRegionFileChanged(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve(MCARegion.getRegionFileName(0, 0));
+        writeRegion(file, Map.of(index(0, 0), "a"));
+
+        MCARegion<String> region = new MCARegion<>(STRING_LOADER, file);
+        assertEquals("a", region.loadChunk(0, 0));
+        assertEquals("empty", region.loadChunk(5, 5));
+
+        // the file grows, and gets new timestamps
+        writeRegion(file, Map.of(index(0, 0), "a", index(5, 5), "b"), 43);
+        assertEquals("b", region.loadChunk(5, 5));
+
+        Map<String, Integer> timestamps = new HashMap<>();
+        region.iterateAllChunks((ChunkConsumer.ListOnly<String>) (chunkX, chunkZ, lastModified) ->
+                timestamps.put(chunkX + "," + chunkZ, lastModified));
+        assertEquals(Map.of("0,0", 43, "5,5", 43), timestamps);
+    }
+
+    @Test
+    public void testWithoutMemoryMapping(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve(MCARegion.getRegionFileName(0, 0));
+        MCARegion<String> region = new MCARegion<>(STRING_LOADER, file, false);
+        assertEquals("empty", region.loadChunk(0, 0));
+
+        writeRegion(file, Map.of(index(0, 0), "a", index(3, 1), "b"));
+        assertEquals("a", region.loadChunk(0, 0));
+        assertEquals("b", region.loadChunk(3, 1));
+        assertEquals("empty", region.loadChunk(1, 1));
+
+        Map<String, String> found = new HashMap<>();
+        region.iterateAllChunks(new ChunkConsumer<>() {
+            @Override
+            public boolean filter(int chunkX, int chunkZ, int lastModified) {
+                return true;
+            }
+
+            @Override
+            public void accept(int chunkX, int chunkZ, String chunk) {
+                found.put(chunkX + "," + chunkZ, chunk);
+            }
+        });
+        assertEquals(Map.of("0,0", "a", "3,1", "b"), found);
+    }
+
+    @Test
+    public void testTruncatedFile(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve(MCARegion.getRegionFileName(0, 0));
+        writeRegion(file, Map.of(index(0, 0), "a", index(1, 0), "b"));
+
+        MCARegion<String> region = new MCARegion<>(STRING_LOADER, file);
+        assertEquals("a", region.loadChunk(0, 0));
+
+        // truncate the file after it got mapped, this must not fail with anything but an IOException
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(8192);
+        }
+        assertThrows(IOException.class, () -> region.loadChunk(1, 0));
+    }
+
+    @Test
+    public void testChunkOutOfBounds(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve(MCARegion.getRegionFileName(0, 0));
+        writeRegion(file, Map.of(index(0, 0), "a"));
+
+        // let a second chunk point behind the end of the file
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, 10 << 8 | 1), index(1, 0) * 4);
+        }
+
+        for (boolean memoryMapped : new boolean[]{ true, false }) {
+            MCARegion<String> region = new MCARegion<>(STRING_LOADER, file, memoryMapped);
+            assertEquals("a", region.loadChunk(0, 0));
+            assertThrows(IOException.class, () -> region.loadChunk(1, 0));
+        }
+    }
+
+    static int index(int x, int z) {
+        return z << 5 | x;
+    }
+
+    static void writeRegion(Path file, Map<Integer, String> chunks) throws IOException {
+        writeRegion(file, chunks, 42);
+    }
+
+    static void writeRegion(Path file, Map<Integer, String> chunks, int timestamp) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(8192);
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        int sector = 2;
+
+        for (var entry : chunks.entrySet()) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (OutputStream out = Compression.DEFLATE.compress(compressed)) {
+                out.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+            }
+
+            ByteBuffer chunk = ByteBuffer.allocate(4096);
+            chunk.putInt(compressed.size() + 1);
+            chunk.put((byte) 2);
+            chunk.put(compressed.toByteArray());
+
+            header.putInt(entry.getKey() * 4, sector << 8 | 1);
+            header.putInt(4096 + entry.getKey() * 4, timestamp);
+            data.write(chunk.array());
+            sector++;
+        }
+
+        try (OutputStream out = Files.newOutputStream(file)) {
+            out.write(header.array());
+            data.writeTo(out);
+        }
+    }
+
+}
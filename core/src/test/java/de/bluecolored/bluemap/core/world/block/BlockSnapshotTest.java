@@ -0,0 +1,240 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.world.block;
+
+import com.flowpowered.math.vector.Vector3i;
+import de.bluecolored.bluemap.core.map.hires.RenderSettings;
+import de.bluecolored.bluemap.core.resources.pack.resourcepack.ResourcePack;
+import de.bluecolored.bluemap.core.world.*;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+public class BlockSnapshotTest {
+
+    private static final BlockState STONE = new BlockState("minecraft:stone");
+    private static final BlockState GLASS = new BlockState("minecraft:glass");
+    private static final BlockState DIRT = new BlockState("minecraft:dirt");
+
+    @Test
+    public void testUniformSectionFill() {
+        TestChunk chunk = new TestChunk(0, 40);
+        chunk.uniformSection = 1; // y 16 - 31
+
+        BlockSnapshot snapshot = new BlockSnapshot();
+        snapshot.load(world(chunk, null), 0, 0, 0, 15, 127, 15);
+        BlockAccess access = snapshot.createAccess();
+
+        for (int y = 16; y <= 31; y++) {
+            access.set(3, y, 5);
+            assertEquals(DIRT, access.getBlockState());
+        }
+        assertEquals(1, chunk.uniformLookups);
+        assertEquals(0, chunk.blockLookups);
+
+        // other columns are filled separately
+        access.set(4, 20, 5);
+        assertEquals(DIRT, access.getBlockState());
+        assertEquals(2, chunk.uniformLookups);
+
+        // non-uniform sections are read per block and cached
+        access.set(3, 5, 5);
+        assertEquals(chunk.getBlockState(3, 5, 5), access.getBlockState());
+        int lookups = chunk.blockLookups;
+        access.set(3, 6, 5);
+        access.set(3, 5, 5);
+        assertEquals(chunk.getBlockState(3, 5, 5), access.getBlockState());
+        assertEquals(lookups + 1, chunk.blockLookups);
+    }
+
+    @Test
+    public void testYClipping() {
+        TestChunk chunk = new TestChunk(0, 20);
+        chunk.oddBlockY = 100;
+        World world = world(chunk, null);
+
+        BlockSnapshot snapshot = new BlockSnapshot();
+        snapshot.load(world, 0, -64, 0, 15, 319, 15);
+        assertEquals(-1, snapshot.getMinY());
+        assertEquals(21, snapshot.getMaxY());
+        clearInvocations(world);
+
+        // positions above the stored range are still read from the column's chunk, not the world
+        BlockAccess access = snapshot.createAccess();
+        for (int y : new int[]{ -10, 0, 20, 21, 22, 100, 319 }) {
+            access.set(7, y, 9);
+            assertEquals(chunk.getBlockState(7, y, 9), access.getBlockState(), "y = " + y);
+            assertEquals(chunk.getLightData(7, y, 9, new LightData(0, 0)).toString(), access.getLightData().toString(), "y = " + y);
+        }
+        access.set(7, 100, 9);
+        assertEquals(GLASS, access.getBlockState());
+        verifyNoInteractions(world);
+    }
+
+    @Test
+    public void testOutOfBoxFallback() {
+        TestChunk chunk = new TestChunk(0, 20), outside = new TestChunk(0, 20);
+        outside.uniformSection = 0;
+        World world = world(chunk, outside);
+
+        BlockSnapshot snapshot = new BlockSnapshot();
+        snapshot.load(world, 0, 0, 0, 15, 127, 15);
+        clearInvocations(world);
+
+        BlockAccess access = snapshot.createAccess();
+        access.set(-1, 5, 3);
+        assertEquals(DIRT, access.getBlockState());
+        verify(world).getChunkAtBlock(-1, 3);
+
+        access.set(16, 5, 3);
+        assertEquals(DIRT, access.getBlockState());
+        verify(world).getChunkAtBlock(16, 3);
+
+        access.set(15, 5, 3);
+        assertEquals(chunk.getBlockState(15, 5, 3), access.getBlockState());
+        verifyNoMoreInteractions(world);
+
+        // after clearing, everything is looked up from the world
+        snapshot.clear();
+        assertFalse(snapshot.containsColumn(15, 3));
+    }
+
+    @Test
+    public void testNeighborAccessors() {
+        TestChunk chunk = new TestChunk(0, 20), outside = new TestChunk(0, 20);
+        outside.uniformSection = 0;
+        chunk.oddBlockY = 25;
+        World world = world(chunk, outside);
+
+        ResourcePack resourcePack = mock(ResourcePack.class);
+        BlockProperties culling = BlockProperties.builder().culling(true).build();
+        when(resourcePack.getBlockProperties(any())).thenReturn(BlockProperties.DEFAULT);
+        when(resourcePack.getBlockProperties(STONE)).thenReturn(culling);
+
+        RenderSettings renderSettings = new RenderSettings() {
+            @Override public int getRemoveCavesBelowY() { return Integer.MIN_VALUE; }
+            @Override public int getCaveDetectionOceanFloor() { return Integer.MIN_VALUE; }
+            @Override public boolean isCaveDetectionUsesBlockLight() { return false; }
+            @Override public float getAmbientLight() { return 0; }
+            @Override public boolean isSaveHiresLayer() { return true; }
+            @Override public boolean isRenderTopOnly() { return false; }
+            @Override public Vector3i getMaxPos() { return new Vector3i(14, 23, 100); }
+        };
+
+        BlockSnapshot snapshot = new BlockSnapshot();
+        snapshot.load(world, 0, 0, 0, 15, 127, 15);
+
+        BlockNeighborhood snapshotNeighborhood = new BlockNeighborhood(
+                snapshot.createAccess(), resourcePack, renderSettings, DimensionType.OVERWORLD);
+        BlockNeighborhood worldNeighborhood = new BlockNeighborhood(
+                new Block(world, 0, 0, 0), resourcePack, renderSettings, DimensionType.OVERWORLD);
+
+        for (Vector3i pos : new Vector3i[]{ new Vector3i(0, 10, 0), new Vector3i(15, 21, 15), new Vector3i(8, 24, 8) }) {
+            snapshotNeighborhood.set(pos.getX(), pos.getY(), pos.getZ());
+            worldNeighborhood.set(pos.getX(), pos.getY(), pos.getZ());
+
+            for (int dx = -2; dx <= 2; dx++) {
+                for (int dy = -2; dy <= 2; dy++) {
+                    for (int dz = -2; dz <= 2; dz++) {
+                        String message = pos + " + " + dx + "," + dy + "," + dz;
+                        ExtendedBlock expected = worldNeighborhood.getNeighborBlock(dx, dy, dz);
+
+                        assertEquals(expected.getBlockState(), snapshotNeighborhood.getNeighborBlockState(dx, dy, dz), message);
+                        assertEquals(expected.getLightData().toString(), snapshotNeighborhood.getNeighborLightData(dx, dy, dz).toString(), message);
+                        assertSame(expected.getProperties(), snapshotNeighborhood.getNeighborProperties(dx, dy, dz), message);
+                        assertEquals(expected.getBlockState(), snapshotNeighborhood.getNeighborBlock(dx, dy, dz).getBlockState(), message);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A world returning the given chunk for all blocks in x/z 0-15 and the outside chunk for everything else
+     */
+    private World world(Chunk chunk, @Nullable Chunk outside) {
+        World world = mock(World.class);
+        when(world.getChunkAtBlock(anyInt(), anyInt())).thenAnswer(invocation -> {
+            int x = invocation.getArgument(0), z = invocation.getArgument(1);
+            return x >= 0 && x <= 15 && z >= 0 && z <= 15 ? chunk : outside;
+        });
+        return world;
+    }
+
+    private static class TestChunk implements Chunk {
+
+        private final int minY, columnMaxY;
+        private int uniformSection = Integer.MIN_VALUE;
+        private int oddBlockY = Integer.MIN_VALUE;
+
+        private int blockLookups, uniformLookups;
+
+        private TestChunk(int minY, int columnMaxY) {
+            this.minY = minY;
+            this.columnMaxY = columnMaxY;
+        }
+
+        @Override
+        public boolean isGenerated() {
+            return true;
+        }
+
+        @Override
+        public BlockState getBlockState(int x, int y, int z) {
+            blockLookups++;
+            if (y >> 4 == uniformSection) return DIRT;
+            if (y == oddBlockY) return GLASS;
+            if (y < minY || y > columnMaxY) return BlockState.AIR;
+            return (x + y + z) % 3 == 0 ? GLASS : STONE;
+        }
+
+        @Override
+        public @Nullable BlockState getUniformBlockState(int y) {
+            uniformLookups++;
+            return y >> 4 == uniformSection ? DIRT : null;
+        }
+
+        @Override
+        public LightData getLightData(int x, int y, int z, LightData target) {
+            return target.set(y > columnMaxY ? 15 : (x + z) & 0xF, (x + y + z) & 0xF);
+        }
+
+        @Override
+        public int getMinY(int x, int z) {
+            return minY;
+        }
+
+        @Override
+        public int getColumnMaxY(int x, int z) {
+            return columnMaxY;
+        }
+
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.world.mca;
+
+import de.bluecolored.bluemap.core.storage.compression.Compression;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChunkCacheTest {
+
+    // chunks are strings here, weighing 100 bytes per character
+    private static final ChunkLoader<String> WEIGHTED_LOADER = new ChunkLoader<>() {
+        @Override
+        public String load(ByteBuffer data, Compression compression) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String emptyChunk() {
+            return "";
+        }
+
+        @Override
+        public String erroredChunk() {
+            return "errored";
+        }
+
+        @Override
+        public int estimateMemoryUsage(String chunk) {
+            return chunk.length() * 100;
+        }
+    };
+
+    @Test
+    public void testWeighedByMemoryUsage(@TempDir Path dir) {
+        ChunkCache cache = new ChunkCache(10_000);
+        ChunkGrid<String> grid = new ChunkGrid<>(WEIGHTED_LOADER, dir, cache);
+
+        cache.put(grid, 0, 0, "a".repeat(10), 42);
+        cache.put(grid, 1, 0, "b".repeat(20), 42);
+        cache.cleanUp();
+
+        ChunkCache.Stats stats = cache.getStats();
+        assertEquals(2, stats.chunkCount());
+        assertEquals(3_000, stats.memoryUsage());
+        assertEquals(10_000, stats.maxMemoryUsage());
+
+        // replacing a chunk replaces its weight
+        cache.put(grid, 1, 0, "b".repeat(5), 42);
+        cache.cleanUp();
+        assertEquals(1_500, cache.getStats().memoryUsage());
+    }
+
+    @Test
+    public void testEvictsByMemoryUsage(@TempDir Path dir) {
+        ChunkCache cache = new ChunkCache(10_000);
+        ChunkGrid<String> grid = new ChunkGrid<>(WEIGHTED_LOADER, dir, cache);
+
+        // many small chunks fit, even if the same number of large chunks would not
+        for (int i = 0; i < 50; i++) cache.put(grid, i, 0, "s", 42);
+        cache.cleanUp();
+        assertEquals(50, cache.getStats().chunkCount());
+        assertEquals(0, cache.getStats().evictionCount());
+
+        for (int i = 0; i < 50; i++) cache.put(grid, i, 1, "l".repeat(20), 42);
+        cache.cleanUp();
+        assertTrue(cache.getStats().memoryUsage() <= 10_000);
+        assertTrue(cache.getStats().chunkCount() < 100);
+        assertTrue(cache.getStats().evictionCount() > 0);
+
+        // a chunk that is bigger than the whole cache is not kept
+        cache.invalidateAll();
+        cache.put(grid, 0, 0, "x".repeat(200), 42);
+        cache.cleanUp();
+        assertEquals(0, cache.getStats().chunkCount());
+        assertEquals(0, cache.getStats().memoryUsage());
+    }
+
+    @Test
+    public void testMinimumWeight(@TempDir Path dir) {
+        ChunkCache cache = new ChunkCache(10_000);
+        ChunkGrid<String> grid = new ChunkGrid<>(WEIGHTED_LOADER, dir, cache);
+
+        // empty chunks are estimated with 0 bytes, but still count, so the cache is bounded in any case
+        for (int i = 0; i < 20_000; i++) cache.put(grid, i, 0, "", 0);
+        cache.cleanUp();
+        assertEquals(10_000, cache.getStats().chunkCount());
+        assertEquals(10_000, cache.getStats().memoryUsage());
+    }
+
+    @Test
+    public void testLoadAndInvalidate(@TempDir Path dir) {
+        ChunkCache cache = new ChunkCache(10_000);
+        ChunkGrid<String> grid = new ChunkGrid<>(WEIGHTED_LOADER, dir, cache);
+        ChunkGrid<String> otherGrid = new ChunkGrid<>(WEIGHTED_LOADER, dir, cache);
+
+        assertEquals("a", cache.get(grid, 0, 0, key -> "a"));
+        assertEquals("a", cache.get(grid, 0, 0, key -> fail("chunk should be cached")));
+        assertEquals("b", cache.get(otherGrid, 0, 0, key -> "b"));
+
+        ChunkCache.Stats stats = cache.getStats();
+        assertEquals(1, stats.hitCount());
+        assertEquals(2, stats.missCount());
+        assertEquals(2, stats.loadCount());
+
+        // invalidating one grid keeps the chunks of the other grids sharing the cache
+        cache.invalidateAll(grid);
+        assertEquals("c", cache.get(grid, 0, 0, key -> "c"));
+        assertEquals("b", cache.get(otherGrid, 0, 0, key -> fail("chunk should be cached")));
+
+        cache.invalidate(otherGrid, 0, 0);
+        assertEquals("d", cache.get(otherGrid, 0, 0, key -> "d"));
+    }
+
+}
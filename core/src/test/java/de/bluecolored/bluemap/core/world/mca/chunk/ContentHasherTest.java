@@ -0,0 +1,119 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.world.mca.chunk;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContentHasherTest {
+
+    @Test
+    public void testStable() {
+        // the hashes are persisted, so they must never change between runs or versions
+        assertEquals(hash(new long[]{ 1, 2, 3 }), hash(new long[]{ 1, 2, 3 }));
+        assertEquals(
+                new ContentHasher().add(42).add(true).add(new int[]{ 5, 6 }).add(new Object[]{ "a", null }).get(),
+                new ContentHasher().add(42).add(true).add(new int[]{ 5, 6 }).add(new Object[]{ "a", null }).get()
+        );
+        assertEquals(-2032370296, new ContentHasher().add(1L).add(2L).get());
+    }
+
+    @Test
+    public void testSingleValueChanges() {
+        long[] values = new long[256];
+        int base = hash(values);
+
+        Set<Integer> hashes = new HashSet<>();
+        hashes.add(base);
+        for (int i = 0; i < values.length; i++) {
+            for (int bit = 0; bit < 64; bit += 7) {
+                values[i] ^= 1L << bit;
+                assertTrue(hashes.add(hash(values)), "collision when flipping bit " + bit + " of value " + i);
+                values[i] ^= 1L << bit;
+            }
+        }
+
+        assertEquals(base, hash(values));
+    }
+
+    @Test
+    public void testOrderMatters() {
+        assertNotEquals(hash(new long[]{ 1, 2 }), hash(new long[]{ 2, 1 }));
+        assertNotEquals(
+                new ContentHasher().add(true).add(false).get(),
+                new ContentHasher().add(false).add(true).get()
+        );
+    }
+
+    @Test
+    public void testArrayLengthMatters() {
+        // arrays are prefixed with their length, so moving a value from one array to the next changes the hash
+        assertNotEquals(
+                new ContentHasher().add(new int[]{ 1, 2 }).add(new int[]{ 3 }).get(),
+                new ContentHasher().add(new int[]{ 1 }).add(new int[]{ 2, 3 }).get()
+        );
+        assertNotEquals(
+                new ContentHasher().add(new long[0]).get(),
+                new ContentHasher().add(new long[]{ 0 }).get()
+        );
+    }
+
+    @Test
+    public void testByteArrays() {
+        byte[] bytes = new byte[2048 + 5]; // not a multiple of 8, so the tail is hashed as well
+        int base = new ContentHasher().add(bytes).get();
+
+        for (int i = 0; i < bytes.length; i += 97) {
+            bytes[i] = 1;
+            assertNotEquals(base, new ContentHasher().add(bytes).get(), "changed byte " + i);
+            bytes[i] = 0;
+        }
+
+        bytes[bytes.length - 1] = 1;
+        assertNotEquals(base, new ContentHasher().add(bytes).get());
+        bytes[bytes.length - 1] = 0;
+
+        assertEquals(base, new ContentHasher().add(bytes).get());
+        assertNotEquals(base, new ContentHasher().add(new byte[bytes.length - 1]).get());
+    }
+
+    @Test
+    public void testNeverZero() {
+        // 0 means "unknown" for the stored content-hashes
+        for (int i = 0; i < 100_000; i++) {
+            assertNotEquals(0, new ContentHasher().add(i).get());
+        }
+        assertNotEquals(0, new ContentHasher().get());
+    }
+
+    private static int hash(long[] values) {
+        return new ContentHasher().add(values).get();
+    }
+
+}
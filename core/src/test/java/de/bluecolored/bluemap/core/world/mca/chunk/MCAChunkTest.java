@@ -0,0 +1,104 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.world.mca.chunk;
+
+import de.bluecolored.bluemap.core.world.BlockState;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MCAChunkTest {
+
+    private static final int NIBBLE_ARRAY_SIZE = 2048;
+
+    @Test
+    public void testCompactUniformNibbleArray() {
+        byte[] nibbles = uniform(0xFF);
+        byte[] compacted = MCAChunk.compactNibbleArray(nibbles);
+        assertNotSame(nibbles, compacted);
+        assertArrayEquals(nibbles, compacted);
+
+        // the same shared instance for all arrays with the same value, which is not counted as retained memory
+        assertSame(compacted, MCAChunk.compactNibbleArray(uniform(0xFF)));
+        assertEquals(0, MCAChunk.estimateMemoryUsage(compacted));
+
+        for (int i = 1; i < 16; i++) {
+            byte[] uniform = uniform(i << 4 | i);
+            assertArrayEquals(uniform, MCAChunk.compactNibbleArray(uniform));
+        }
+    }
+
+    @Test
+    public void testCompactZeroNibbleArray() {
+        byte[] compacted = MCAChunk.compactNibbleArray(new byte[NIBBLE_ARRAY_SIZE]);
+        assertEquals(0, compacted.length);
+        assertSame(compacted, MCAChunk.compactNibbleArray(new byte[0]));
+        assertEquals(0, MCAChunk.estimateMemoryUsage(compacted));
+    }
+
+    @Test
+    public void testKeepNonUniformNibbleArray() {
+        // two different nibbles in each byte
+        byte[] mixedNibbles = uniform(0x12);
+        assertSame(mixedNibbles, MCAChunk.compactNibbleArray(mixedNibbles));
+
+        // a single different value at the end
+        byte[] lastDiffers = uniform(0x77);
+        lastDiffers[NIBBLE_ARRAY_SIZE - 1] = 0x70;
+        assertSame(lastDiffers, MCAChunk.compactNibbleArray(lastDiffers));
+        assertEquals(16 + NIBBLE_ARRAY_SIZE, MCAChunk.estimateMemoryUsage(lastDiffers));
+
+        // arrays with an unexpected size
+        byte[] wrongSize = new byte[NIBBLE_ARRAY_SIZE / 2];
+        assertSame(wrongSize, MCAChunk.compactNibbleArray(wrongSize));
+    }
+
+    @Test
+    public void testCompactPalette() {
+        BlockState stone = new BlockState("minecraft:stone");
+
+        BlockState[] compacted = MCAChunk.compactPalette(new BlockState[]{ stone });
+        assertArrayEquals(new BlockState[]{ stone }, compacted);
+        assertSame(compacted, MCAChunk.compactPalette(new BlockState[]{ stone }));
+        assertEquals(0, MCAChunk.estimateMemoryUsage(compacted));
+
+        BlockState[] empty = MCAChunk.compactPalette(new BlockState[0]);
+        assertEquals(0, empty.length);
+        assertSame(empty, MCAChunk.compactPalette(new BlockState[0]));
+
+        BlockState[] palette = new BlockState[]{ stone, new BlockState("minecraft:dirt") };
+        assertSame(palette, MCAChunk.compactPalette(palette));
+        assertEquals(16 + 2 * 4, MCAChunk.estimateMemoryUsage(palette));
+    }
+
+    private static byte[] uniform(int value) {
+        byte[] nibbles = new byte[NIBBLE_ARRAY_SIZE];
+        Arrays.fill(nibbles, (byte) value);
+        return nibbles;
+    }
+
+}
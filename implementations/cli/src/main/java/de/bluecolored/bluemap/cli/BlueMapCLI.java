@@ -76,6 +76,7 @@ public class BlueMapCLI {
     private String minecraftVersion = null;
     private Path configFolder = Path.of("config");
     private Path modsFolder = null;
+    private @Nullable TileCache tileCache = null;
 
 
     public void renderMaps(BlueMapService blueMap, boolean watch, TileUpdateStrategy force, boolean forceGenerateWebapp,
@@ -88,7 +89,7 @@ public void renderMaps(BlueMapService blueMap, boolean watch, TileUpdateStrategy
         blueMap.getOrLoadResourcePack();
 
         //create renderManager
-        RenderManager renderManager = new RenderManager();
+        RenderManager renderManager = new RenderManager(blueMap.getConfig().getCoreConfig().resolveMaxActiveRenderTasks());
 
         //load maps
         Predicate<String> mapFilter = mapId -> true;
@@ -98,6 +99,12 @@ public void renderMaps(BlueMapService blueMap, boolean watch, TileUpdateStrategy
         }
         Map<String, BmMap> maps = blueMap.getOrLoadMaps(mapFilter);
 
+        //keep the webservers tile-cache up to date
+        if (tileCache != null) {
+            for (BmMap map : maps.values())
+                map.addTileUpdateListener(tileCache.map(map.getId()));
+        }
+
         //watcher
         List<MapUpdateService> mapUpdateServices = new ArrayList<>();
         if (watch) {
@@ -257,6 +264,10 @@ public void startWebserver(BlueMapService blueMap, boolean verbose) throws IOExc
 
         RoutingRequestHandler routingRequestHandler = new RoutingRequestHandler();
 
+        // tile-cache
+        long tileCacheSize = config.resolveTileCacheSize();
+        tileCache = tileCacheSize > 0 ? new TileCache(tileCacheSize) : null;
+
         // default route
         routingRequestHandler.register(".*", new FileRequestHandler(config.getWebroot()));
 
@@ -268,7 +279,7 @@ public void startWebserver(BlueMapService blueMap, boolean verbose) throws IOExc
             routingRequestHandler.register(
                     "maps/" + Pattern.quote(mapConfigEntry.getKey()) + "/(.*)",
                     "$1",
-                    new MapRequestHandler(storage)
+                    new MapRequestHandler(storage, tileCache != null ? tileCache.map(mapConfigEntry.getKey()) : null)
             );
         }
 
@@ -291,7 +302,12 @@ public void startWebserver(BlueMapService blueMap, boolean verbose) throws IOExc
 
         try {
             //noinspection resource
-            HttpServer webServer = new HttpServer(handler);
+            HttpServer webServer = new HttpServer(
+                    handler,
+                    config.getWorkerThreads(),
+                    config.getMaxPendingRequests(),
+                    TimeUnit.SECONDS.toMillis(config.getRequestTimeout())
+            );
             webServer.bind(new InetSocketAddress(
                     config.resolveIp(),
                     config.getPort()